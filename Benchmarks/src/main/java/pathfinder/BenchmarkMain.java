@@ -0,0 +1,29 @@
+package pathfinder;
+
+/**
+ * Runs the benchmarks with the gc profiler turned on, so the allocation rate of each
+ * benchmark is shown next to its times. Any of the usual JMH options can be given, for
+ * example <code>QueryBenchmark -p m_nSize=256 -p m_zFamily=MAZE</code> runs the queries of
+ * one map only.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.*;
+
+public class BenchmarkMain
+{
+	public static void main(String[] args) throws Exception
+	{
+		Options options = new OptionsBuilder()
+								.parent(new CommandLineOptions(args))
+								.addProfiler(GCProfiler.class)
+								.build();
+
+		new Runner(options).run();
+	}
+}
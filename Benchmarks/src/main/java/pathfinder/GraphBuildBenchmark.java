@@ -0,0 +1,122 @@
+package pathfinder;
+
+/**
+ * The GraphBuildBenchmark measures the work done once per map before any path is searched
+ * for: reading the map in, building the explicit graph of it, precomputing the jump point
+ * distances and building the hierarchy of clusters. Each call does the whole of the work
+ * over again from scratch.
+ * <p>
+ * The largest maps take seconds to build so only the sizes up to 1024 run by default, the
+ * 4096 maps can be measured by passing <code>-p m_nSize=4096</code> along with a larger heap.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class GraphBuildBenchmark
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The family of the map
+	 */
+	@Param({ "OPEN", "RANDOM20", "MAZE", "ROOMS" })
+	public String m_zFamily;
+
+	/**
+	 * The width and height of the map
+	 */
+	@Param({ "64", "256", "1024" })
+	public int m_nSize;
+
+	/**
+	 * The map the graphs are built from
+	 */
+	private GridMap m_gridMap;
+
+	/**
+	 * The name of the text form of the map
+	 */
+	private String m_zTextFile;
+
+	/**
+	 * The name of the binary form of the map
+	 */
+	private String m_zBinaryFile;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Writes out the map before any of the work is timed
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws Exception
+	{
+		m_zTextFile = MapCorpus.getTextFile(m_zFamily, m_nSize);
+		m_zBinaryFile = MapCorpus.getBinaryFile(m_zFamily, m_nSize);
+
+		m_gridMap = new GridMap();
+		if (!m_gridMap.InitBinary(m_zBinaryFile))
+		{
+			throw new IllegalStateException("Couldn't load the " + m_zFamily + " map");
+		}
+	}
+
+	/**
+	 * Reads the map in from the text format
+	 */
+	@Benchmark
+	public MapFile parseText() throws Exception
+	{
+		return MapTextParser.parse(m_zTextFile);
+	}
+
+	/**
+	 * Maps the map in from the binary format
+	 */
+	@Benchmark
+	public MapFile loadBinary() throws Exception
+	{
+		return MapFile.load(m_zBinaryFile);
+	}
+
+	/**
+	 * Builds the explicit graph of the map
+	 */
+	@Benchmark
+	public CSRGraph generateGraph()
+	{
+		return m_gridMap.generateGraph();
+	}
+
+	/**
+	 * Precomputes the jump distances of every cell
+	 */
+	@Benchmark
+	public JumpPointSearch jumpPointPrecompute()
+	{
+		return new JumpPointSearch(m_gridMap.getGridGraph(), true);
+	}
+
+	/**
+	 * Builds the clusters, entrances and abstract graph of the hierarchy
+	 */
+	@Benchmark
+	public HierarchicalMap hierarchyBuild()
+	{
+		return new HierarchicalMap(m_gridMap.getGridGraph(), 16);
+	}
+}
@@ -0,0 +1,102 @@
+package pathfinder;
+
+/**
+ * The GraphQueryBenchmark measures A* over the explicit graph of each map, answering the
+ * same queries in the same order as QueryBenchmark so the two can be compared. Every
+ * connection of the explicit graph is stored, so the graph of a map takes many times the
+ * memory of the map itself.
+ * <p>
+ * The explicit graph of the largest maps doesn't fit in the usual heap so only the sizes up
+ * to 1024 run by default, the 4096 maps can be measured by passing
+ * <code>-p m_nSize=4096</code> along with a larger heap.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class GraphQueryBenchmark
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The number of queries each run cycles through
+	 */
+	private static final int NUM_QUERIES = 1024;
+
+	/**
+	 * The family of the map
+	 */
+	@Param({ "OPEN", "RANDOM10", "RANDOM20", "RANDOM30", "WEIGHTED", "MAZE", "ROOMS" })
+	public String m_zFamily;
+
+	/**
+	 * The width and height of the map
+	 */
+	@Param({ "64", "256", "1024" })
+	public int m_nSize;
+
+	/**
+	 * The explicit graph of the map
+	 */
+	private CSRGraph m_csrGraph;
+
+	/**
+	 * The context every search is run in
+	 */
+	private SearchContext m_context;
+
+	/**
+	 * The start cells then the goal cells of the queries
+	 */
+	private int [][] m_nQueries;
+
+	/**
+	 * The index of the next query
+	 */
+	private int m_nNextQuery;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Loads the map and builds its explicit graph before any searches are timed
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws Exception
+	{
+		GridMap gridMap = new GridMap();
+		if (!gridMap.InitBinary(MapCorpus.getBinaryFile(m_zFamily, m_nSize)))
+		{
+			throw new IllegalStateException("Couldn't load the " + m_zFamily + " map");
+		}
+
+		m_csrGraph = gridMap.generateGraph();
+		m_context = new SearchContext();
+		m_context.ensureCapacity(m_csrGraph.getNodeCapacity());
+		m_nQueries = MapCorpus.getQueries(gridMap.getGridGraph(), NUM_QUERIES, m_nSize);
+		m_nNextQuery = 0;
+	}
+
+	/**
+	 * A* over the explicit graph of the map
+	 */
+	@Benchmark
+	public int [] astarGraph()
+	{
+		int q = m_nNextQuery;
+		m_nNextQuery = (q + 1) % NUM_QUERIES;
+		return Astar.findPath(m_csrGraph, m_nQueries[0][q], m_nQueries[1][q], m_context);
+	}
+}
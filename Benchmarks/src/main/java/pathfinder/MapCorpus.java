@@ -0,0 +1,404 @@
+package pathfinder;
+
+/**
+ * The MapCorpus generates the maps the benchmarks run on. Every map is made from a fixed
+ * seed so the same family and size always gives the same map, and each map is written to
+ * the temp directory the first time it is asked for so later forks just load it.
+ * <p>
+ * The families of maps are
+ * <ul>
+ * <li>		OPEN - no obstacles at all
+ * <li>		RANDOM10, RANDOM20, RANDOM30 - cells blocked at random with a 10, 20 or 30 percent chance
+ * <li>		WEIGHTED - 20 percent of cells blocked and the rest costing from 1 to 9
+ * <li>		MAZE - a maze with corridors one cell wide
+ * <li>		ROOMS - square rooms joined by doors in their walls
+ * </ul>
+ * Every family but WEIGHTED has a cost of one for each open cell.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.io.*;
+import java.util.*;
+
+public class MapCorpus
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The seed every map is generated from
+	 */
+	private static final long SEED = 0x5EED;
+
+	/**
+	 * The width and height of each room of the ROOMS family, walls included
+	 */
+	private static final int ROOM_SIZE = 16;
+
+	/**
+	 * The width of each door of the ROOMS family
+	 */
+	private static final int DOOR_WIDTH = 2;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Provides the binary map file of a family and size, generating it if it hasn't been
+	 *
+	 * @param zFamily			The family of the map
+	 * @param nSize				The width and height of the map
+	 * @return					The name of the binary map file
+	 * @throws IOException		If the map can't be written
+	 */
+	public static String getBinaryFile(String zFamily, int nSize) throws IOException
+	{
+		File mapFile = getCorpusFile(zFamily, nSize, ".gmap");
+		if (!mapFile.exists())
+		{
+			File tempFile = File.createTempFile("map", ".tmp", mapFile.getParentFile());
+			generate(zFamily, nSize).save(tempFile.getPath());
+			tempFile.renameTo(mapFile);
+		}
+
+		return mapFile.getPath();
+	}
+
+	/**
+	 * Provides the text map file of a family and size, generating it if it hasn't been
+	 *
+	 * @param zFamily			The family of the map
+	 * @param nSize				The width and height of the map
+	 * @return					The name of the text map file
+	 * @throws IOException		If the map can't be written
+	 */
+	public static String getTextFile(String zFamily, int nSize) throws IOException
+	{
+		File mapFile = getCorpusFile(zFamily, nSize, ".txt");
+		if (!mapFile.exists())
+		{
+			File tempFile = File.createTempFile("map", ".tmp", mapFile.getParentFile());
+			writeText(generate(zFamily, nSize), tempFile.getPath());
+			tempFile.renameTo(mapFile);
+		}
+
+		return mapFile.getPath();
+	}
+
+	/**
+	 * Generates a map. The start point is the top left and the goal point the bottom right
+	 * corner, the benchmarks pick their own queries with <code>getQueries</code>.
+	 *
+	 * @param zFamily			The family of the map
+	 * @param nSize				The width and height of the map
+	 * @return					The map
+	 */
+	public static MapFile generate(String zFamily, int nSize)
+	{
+		Random random = new Random(SEED + (31L * nSize) + zFamily.hashCode());
+		int [] nCosts = new int[nSize * nSize];
+
+		if (zFamily.equals("OPEN"))
+		{
+			Arrays.fill(nCosts, 1);
+		}
+		else if (zFamily.equals("RANDOM10"))
+		{
+			fillRandom(nCosts, random, 0.1, 1);
+		}
+		else if (zFamily.equals("RANDOM20"))
+		{
+			fillRandom(nCosts, random, 0.2, 1);
+		}
+		else if (zFamily.equals("RANDOM30"))
+		{
+			fillRandom(nCosts, random, 0.3, 1);
+		}
+		else if (zFamily.equals("WEIGHTED"))
+		{
+			fillRandom(nCosts, random, 0.2, 9);
+		}
+		else if (zFamily.equals("MAZE"))
+		{
+			carveMaze(nCosts, nSize, random);
+		}
+		else if (zFamily.equals("ROOMS"))
+		{
+			buildRooms(nCosts, nSize, random);
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unknown map family " + zFamily);
+		}
+
+		return new MapFile(nSize, nSize, 0, 0, nSize - 1, nSize - 1, new ArrayCellCosts(nCosts));
+	}
+
+	/**
+	 * Picks queries between cells that are connected. Both ends of every query are in the
+	 * largest group of connected open cells, so every query has a path.
+	 *
+	 * @param grid				The grid of the map
+	 * @param nNumQueries		The number of queries to pick
+	 * @param lSeed				The seed to pick them with
+	 * @return					The start cells then the goal cells of the queries
+	 */
+	public static int [][] getQueries(GridGraph grid, int nNumQueries, long lSeed)
+	{
+		int [] nComponents = labelComponents(grid);
+
+		// find the largest group
+		int [] nGroupSizes = new int[grid.getNodeCapacity() + 1];
+		int nLargest = 0;
+		for (int i = 0; i < nComponents.length; i++)
+		{
+			if ((nComponents[i] > 0) && (++nGroupSizes[nComponents[i]] > nGroupSizes[nLargest]))
+			{
+				nLargest = nComponents[i];
+			}
+		}
+
+		Random random = new Random(lSeed);
+		int [][] nQueries = new int[2][nNumQueries];
+		for (int q = 0; q < nNumQueries; q++)
+		{
+			nQueries[0][q] = pickCell(nComponents, nLargest, random);
+			nQueries[1][q] = pickCell(nComponents, nLargest, random);
+		}
+
+		return nQueries;
+	}
+
+	/**
+	 * Picks a random cell of a group
+	 *
+	 * @param nComponents		The group of each cell
+	 * @param nGroup			The group to pick from
+	 * @param random			The random numbers to pick with
+	 * @return					The cell picked
+	 */
+	private static int pickCell(int [] nComponents, int nGroup, Random random)
+	{
+		while (true)
+		{
+			int nCellID = random.nextInt(nComponents.length);
+			if (nComponents[nCellID] == nGroup)
+			{
+				return nCellID;
+			}
+		}
+	}
+
+	/**
+	 * Numbers the groups of connected open cells with a breadth first flood fill
+	 *
+	 * @param grid				The grid of the map
+	 * @return					The group of each cell from 1 up, 0 for blocked cells
+	 */
+	private static int [] labelComponents(GridGraph grid)
+	{
+		int nNumCells = grid.getNodeCapacity();
+		int [] nComponents = new int[nNumCells];
+		int [] nQueue = new int[nNumCells];
+		int nNextGroup = 1;
+
+		for (int nSeedCell = 0; nSeedCell < nNumCells; nSeedCell++)
+		{
+			if ((nComponents[nSeedCell] != 0) || (grid.getCellCost(nSeedCell) == 0))
+			{
+				continue;
+			}
+
+			int nHead = 0;
+			int nTail = 0;
+			nQueue[nTail++] = nSeedCell;
+			nComponents[nSeedCell] = nNextGroup;
+
+			while (nHead < nTail)
+			{
+				int nCellID = nQueue[nHead++];
+				for (int i = 0; i < grid.getConnectionCount(nCellID); i++)
+				{
+					if (grid.getConnectionCost(nCellID, i) > 0)
+					{
+						int nAdjCellID = grid.getConnectedNodeID(nCellID, i);
+						if (nComponents[nAdjCellID] == 0)
+						{
+							nComponents[nAdjCellID] = nNextGroup;
+							nQueue[nTail++] = nAdjCellID;
+						}
+					}
+				}
+			}
+
+			nNextGroup++;
+		}
+
+		return nComponents;
+	}
+
+	/**
+	 * Blocks cells at random and gives the rest a random cost
+	 *
+	 * @param nCosts			The costs to fill
+	 * @param random			The random numbers to fill with
+	 * @param dBlocked			The chance of a cell being blocked
+	 * @param nMaxCost			The highest cost of an open cell
+	 */
+	private static void fillRandom(int [] nCosts, Random random, double dBlocked, int nMaxCost)
+	{
+		for (int i = 0; i < nCosts.length; i++)
+		{
+			nCosts[i] = (random.nextDouble() < dBlocked) ? 0 : 1 + random.nextInt(nMaxCost);
+		}
+	}
+
+	/**
+	 * Carves a maze with a depth first walk. The passages run through the cells with odd
+	 * coordinates and the cells between them are knocked through as the walk moves.
+	 *
+	 * @param nCosts			The costs to fill, all blocked to start with
+	 * @param nSize				The width and height of the map
+	 * @param random			The random numbers to carve with
+	 */
+	private static void carveMaze(int [] nCosts, int nSize, Random random)
+	{
+		int [] nStepX = { 2, 0, -2, 0 };
+		int [] nStepY = { 0, 2, 0, -2 };
+		int [] nStack = new int[nCosts.length];
+		int nStackSize = 0;
+
+		nCosts[(1 * nSize) + 1] = 1;
+		nStack[nStackSize++] = (1 * nSize) + 1;
+
+		while (nStackSize > 0)
+		{
+			int nCellID = nStack[nStackSize - 1];
+			int nX = nCellID % nSize;
+			int nY = nCellID / nSize;
+
+			// try the directions in a random order until one leads somewhere new
+			int nFirst = random.nextInt(4);
+			boolean bMoved = false;
+			for (int d = 0; (d < 4) && !bMoved; d++)
+			{
+				int nDir = (nFirst + d) & 3;
+				int nNextX = nX + nStepX[nDir];
+				int nNextY = nY + nStepY[nDir];
+
+				if (	(nNextX > 0) && (nNextX < nSize - 1) && (nNextY > 0) && (nNextY < nSize - 1)
+						&& (nCosts[(nNextY * nSize) + nNextX] == 0)
+					)
+				{
+					nCosts[((nY + (nStepY[nDir] / 2)) * nSize) + nX + (nStepX[nDir] / 2)] = 1;
+					nCosts[(nNextY * nSize) + nNextX] = 1;
+					nStack[nStackSize++] = (nNextY * nSize) + nNextX;
+					bMoved = true;
+				}
+			}
+
+			if (!bMoved)
+			{
+				nStackSize--;
+			}
+		}
+	}
+
+	/**
+	 * Builds a grid of square rooms. Every wall between two rooms gets a door at a random
+	 * place along it, and a quarter of the walls get a second door.
+	 *
+	 * @param nCosts			The costs to fill
+	 * @param nSize				The width and height of the map
+	 * @param random			The random numbers to build with
+	 */
+	private static void buildRooms(int [] nCosts, int nSize, Random random)
+	{
+		Arrays.fill(nCosts, 1);
+
+		// the walls run along every multiple of the room size
+		for (int nWall = ROOM_SIZE - 1; nWall < nSize; nWall += ROOM_SIZE)
+		{
+			for (int i = 0; i < nSize; i++)
+			{
+				nCosts[(nWall * nSize) + i] = 0;
+				nCosts[(i * nSize) + nWall] = 0;
+			}
+		}
+
+		// knock doors through each stretch of wall between two rooms, first the walls
+		// running across the map then the ones running down it
+		for (int nPass = 0; nPass < 2; nPass++)
+		{
+			for (int nWall = ROOM_SIZE - 1; nWall < nSize - 1; nWall += ROOM_SIZE)
+			{
+				for (int nRoomStart = 0; nRoomStart < nSize; nRoomStart += ROOM_SIZE)
+				{
+					int nRoomLength = Math.min(ROOM_SIZE - 1, nSize - nRoomStart);
+					int nNumDoors = (random.nextInt(4) == 0) ? 2 : 1;
+
+					for (int d = 0; d < nNumDoors; d++)
+					{
+						int nDoor = nRoomStart + random.nextInt(Math.max(nRoomLength - DOOR_WIDTH, 0) + 1);
+						for (int i = nDoor; i < Math.min(nDoor + DOOR_WIDTH, nRoomStart + nRoomLength); i++)
+						{
+							nCosts[(nPass == 0) ? (nWall * nSize) + i : (i * nSize) + nWall] = 1;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes a map in the text format
+	 *
+	 * @param mapFile			The map
+	 * @param zFileName			The name of the file to write
+	 * @throws IOException		If the file can't be written
+	 */
+	private static void writeText(MapFile mapFile, String zFileName) throws IOException
+	{
+		BufferedWriter outWriter = new BufferedWriter(new FileWriter(zFileName), 1 << 16);
+		try
+		{
+			outWriter.write(mapFile.getWidth() + "\n" + mapFile.getHeight() + "\n");
+			outWriter.write(mapFile.getStartPointX() + "\n" + mapFile.getStartPointY() + "\n");
+			outWriter.write(mapFile.getGoalPointX() + "\n" + mapFile.getGoalPointY() + "\n");
+
+			CellCosts costs = mapFile.getCellCosts();
+			for (int y = 0; y < mapFile.getHeight(); y++)
+			{
+				for (int x = 0; x < mapFile.getWidth(); x++)
+				{
+					outWriter.write(Integer.toString(costs.getCost((y * mapFile.getWidth()) + x)));
+					outWriter.write(' ');
+				}
+				outWriter.write('\n');
+			}
+		}
+		finally
+		{
+			outWriter.close();
+		}
+	}
+
+	/**
+	 * Provides where the corpus keeps a map
+	 *
+	 * @param zFamily			The family of the map
+	 * @param nSize				The width and height of the map
+	 * @param zExtension		The extension of the file
+	 * @return					The file of the map
+	 */
+	private static File getCorpusFile(String zFamily, int nSize, String zExtension)
+	{
+		File corpusDir = new File(System.getProperty("java.io.tmpdir"), "pathfinder-corpus");
+		corpusDir.mkdirs();
+
+		return new File(corpusDir, zFamily + "-" + nSize + zExtension);
+	}
+}
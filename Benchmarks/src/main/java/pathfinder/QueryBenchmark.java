@@ -0,0 +1,164 @@
+package pathfinder;
+
+/**
+ * The QueryBenchmark measures how long single path queries take on each family and size
+ * of map in the corpus, and how many can be answered in a second. Each call of a benchmark
+ * answers the next of a fixed list of queries between connected cells, so every run of a
+ * family and size answers the same queries in the same order.
+ * <p>
+ * The time of each query is sampled so the spread of the times can be seen as well as the
+ * average, and when run with the gc profiler the allocation per query is shown as well,
+ * which should be close to nothing once the search context has grown to fit the map.
+ * A* over the explicit graph of the map is measured by GraphQueryBenchmark, since the
+ * explicit graph of the largest maps doesn't fit in the heap these benchmarks run with.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class QueryBenchmark
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The number of queries each run cycles through
+	 */
+	private static final int NUM_QUERIES = 1024;
+
+	/**
+	 * The family of the map
+	 */
+	@Param({ "OPEN", "RANDOM10", "RANDOM20", "RANDOM30", "WEIGHTED", "MAZE", "ROOMS" })
+	public String m_zFamily;
+
+	/**
+	 * The width and height of the map
+	 */
+	@Param({ "64", "256", "1024", "4096" })
+	public int m_nSize;
+
+	/**
+	 * The map being searched
+	 */
+	private GridMap m_gridMap;
+
+	/**
+	 * The implicit graph of the map
+	 */
+	private GridGraph m_grid;
+
+	/**
+	 * The jump point search over the map
+	 */
+	private JumpPointSearch m_jumpPointSearch;
+
+	/**
+	 * The bidirectional search over the map
+	 */
+	private BidirectionalAstar m_bidirectionalAstar;
+
+	/**
+	 * The context every search is run in
+	 */
+	private SearchContext m_context;
+
+	/**
+	 * The start cells then the goal cells of the queries
+	 */
+	private int [][] m_nQueries;
+
+	/**
+	 * The index of the next query
+	 */
+	private int m_nNextQuery;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Loads the map and builds everything the searches need before any are timed
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws Exception
+	{
+		m_gridMap = new GridMap();
+		if (!m_gridMap.InitBinary(MapCorpus.getBinaryFile(m_zFamily, m_nSize)))
+		{
+			throw new IllegalStateException("Couldn't load the " + m_zFamily + " map");
+		}
+
+		m_grid = m_gridMap.getGridGraph();
+		m_jumpPointSearch = m_gridMap.getJumpPointSearch();
+		m_bidirectionalAstar = new BidirectionalAstar(m_grid);
+		m_context = new SearchContext();
+		m_context.ensureCapacity(m_grid.getNodeCapacity());
+		m_nQueries = MapCorpus.getQueries(m_grid, NUM_QUERIES, m_nSize);
+		m_nNextQuery = 0;
+	}
+
+	/**
+	 * Provides the index of the next query to run
+	 *
+	 * @return			The index of the query
+	 */
+	private int nextQuery()
+	{
+		int nQuery = m_nNextQuery;
+		m_nNextQuery = (nQuery + 1) % NUM_QUERIES;
+		return nQuery;
+	}
+
+	/**
+	 * A* over the implicit graph of the map
+	 */
+	@Benchmark
+	public int [] astarGrid()
+	{
+		int q = nextQuery();
+		return Astar.findPath(m_grid, m_nQueries[0][q], m_nQueries[1][q], m_context);
+	}
+
+	/**
+	 * A* through the vector interface, which builds the path as a vector of Integers
+	 */
+	@Benchmark
+	public void astarVector(Blackhole blackhole)
+	{
+		int q = nextQuery();
+		blackhole.consume(Astar.performSearch(m_grid, m_nQueries[0][q], m_nQueries[1][q]));
+	}
+
+	/**
+	 * Bidirectional A* over the implicit graph of the map
+	 */
+	@Benchmark
+	public int [] bidirectional()
+	{
+		int q = nextQuery();
+		return m_bidirectionalAstar.findPath(m_nQueries[0][q], m_nQueries[1][q], m_context);
+	}
+
+	/**
+	 * Jump point search with precomputed jump distances, this falls back to A* on the
+	 * WEIGHTED family as it only works when every open cell costs the same
+	 */
+	@Benchmark
+	public int [] jumpPoint()
+	{
+		int q = nextQuery();
+		return m_jumpPointSearch.findPath(m_nQueries[0][q], m_nQueries[1][q], m_context);
+	}
+}
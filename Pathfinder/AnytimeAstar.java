@@ -0,0 +1,543 @@
+/**
+ * This class implements ARA* (Anytime Repairing A*), an anytime form of the A* routine. It
+ * first runs a Weighted A* search with a large weight, which finds a path quickly, and then
+ * lowers the weight step by step and improves the path, until the path is known to be the
+ * best path or the time or node budget given by the caller runs out. The best path found so
+ * far is returned along with a bound on how far it can be from the best path.
+ * <p>
+ * Each improvement carries on from the search before it rather than starting over. The
+ * costs found so far are kept, and only the nodes whose cost has dropped since they were
+ * expanded are looked at again, so the later searches expand a small part of the nodes a
+ * fresh search would.
+ * <p>
+ * The clock is only checked every few hundred expansions and not while moving from one
+ * search to the next, so a search can run a little past its time budget.
+ * <p>
+ * The arrays used to keep track of the search belong to the AnytimeAstar, so one can only
+ * run one search at a time. Threads should have an AnytimeAstar each. A context is only
+ * used for its SearchListener, which is told about each query once, with the work of all
+ * of its searches added up.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.util.*;
+
+public class AnytimeAstar implements PathSearch
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The number of nodes expanded between checks of the clock
+	 */
+	private static final int CLOCK_CHECK_INTERVAL = 256;
+
+	/**
+	 * The cost of a node that hasn't been reached
+	 */
+	private static final int INFINITE = Integer.MAX_VALUE / 2;
+
+	/**
+	 * The graph searched
+	 */
+	private final SearchGraph m_searchGraph;
+
+	/**
+	 * The heuristic, which must never overestimate for the bounds to hold
+	 */
+	private final Heuristic m_heuristic;
+
+	/**
+	 * The weight of the first search
+	 */
+	private final double m_dInitialWeight;
+
+	/**
+	 * How much the weight drops after each search
+	 */
+	private final double m_dWeightStep;
+
+	/**
+	 * The cost to reach each node from the start, only valid if the node has been reached
+	 * in the current query
+	 */
+	private int [] m_nCosts;
+
+	/**
+	 * The parent of each node, -1 for the start
+	 */
+	private int [] m_nParents;
+
+	/**
+	 * The stamp of the query that last reached each node
+	 */
+	private int [] m_nQueryStamps;
+
+	/**
+	 * The stamp of the search (one improvement of a query) that last closed each node
+	 */
+	private int [] m_nClosedStamps;
+
+	/**
+	 * The stamp of the search that last put each node in the inconsistent list
+	 */
+	private int [] m_nInconsStamps;
+
+	/**
+	 * The nodes whose cost dropped after they were closed, they are looked at again by the
+	 * next search
+	 */
+	private int [] m_nIncons;
+
+	/**
+	 * The number of nodes in the inconsistent list
+	 */
+	private int m_nNumIncons;
+
+	/**
+	 * The stamp of the current query
+	 */
+	private int m_nQueryStamp;
+
+	/**
+	 * The stamp of the current search
+	 */
+	private int m_nSearchStamp;
+
+	/**
+	 * The nodes waiting to be expanded
+	 */
+	private BinaryHeapOpenList m_openList;
+
+	/**
+	 * The bound on how far the last path returned can be from the best path, as a multiple
+	 * of the cost of the best path
+	 */
+	private double m_dBound;
+
+	/**
+	 * The number of searches run by the last query
+	 */
+	private int m_nNumSearches;
+
+	/**
+	 * The number of nodes expanded by the last query
+	 */
+	private int m_nNumExpanded;
+
+	/**
+	 * The number of nodes reached for the first time by the last query
+	 */
+	private int m_nNumGenerated;
+
+	/**
+	 * The number of cheaper routes found to nodes already reached by the last query
+	 */
+	private int m_nNumReopened;
+
+	/**
+	 * The most nodes the open list held at once in the last query
+	 */
+	private int m_nPeakOpenSize;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates the anytime search with a weight that starts at 3 and drops by 0.5 each search
+	 *
+	 * @param searchGraph		The graph to search
+	 * @param heuristic			The heuristic to weight, it must never overestimate
+	 */
+	public AnytimeAstar(SearchGraph searchGraph, Heuristic heuristic)
+	{
+		this(searchGraph, heuristic, 3.0, 0.5);
+	}
+
+	/**
+	 * Creates the anytime search
+	 *
+	 * @param searchGraph		The graph to search
+	 * @param heuristic			The heuristic to weight, it must never overestimate
+	 * @param dInitialWeight	The weight of the first search, at least one
+	 * @param dWeightStep		How much the weight drops after each search
+	 */
+	public AnytimeAstar(SearchGraph searchGraph, Heuristic heuristic, double dInitialWeight, double dWeightStep)
+	{
+		if (!(dInitialWeight >= 1) || !(dWeightStep > 0))
+		{
+			throw new IllegalArgumentException("The weight must start at one or more and drop each search");
+		}
+
+		m_searchGraph = searchGraph;
+		m_heuristic = heuristic;
+		m_dInitialWeight = dInitialWeight;
+		m_dWeightStep = dWeightStep;
+		m_nCosts = new int[0];
+		m_nParents = new int[0];
+		m_nQueryStamps = new int[0];
+		m_nClosedStamps = new int[0];
+		m_nInconsStamps = new int[0];
+		m_nIncons = new int[0];
+		m_openList = new BinaryHeapOpenList();
+		m_dBound = Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Finds the best path with no budget, the context is only used for its listener since
+	 * the search keeps its own arrays between improvements
+	 */
+	public int [] findPath(int nStartNodeID, int nGoalNodeID, SearchContext context)
+	{
+		return findPath(nStartNodeID, nGoalNodeID, Long.MAX_VALUE, Integer.MAX_VALUE, context);
+	}
+
+	/**
+	 * Finds a path and improves it until it is known to be the best path or the budget runs
+	 * out. The first search always runs until it finds a path or the budget runs out, so if
+	 * the budget is too small for even the first search no path is returned.
+	 *
+	 * @param nStartNodeID		The ID of the start node
+	 * @param nGoalNodeID		The ID of the goal node
+	 * @param lTimeBudget		The most time to spend in nanoseconds
+	 * @param nNodeBudget		The most nodes to expand
+	 * @return					The best path found as an array of node ids from the start to
+	 * 							the goal, this is empty if no path was found
+	 */
+	public int [] findPath(int nStartNodeID, int nGoalNodeID, long lTimeBudget, int nNodeBudget)
+	{
+		return findPath(nStartNodeID, nGoalNodeID, lTimeBudget, nNodeBudget, SearchContext.getThreadContext());
+	}
+
+	/**
+	 * Finds a path and improves it the same as the function above, telling the listener of
+	 * the context it is given about the query once it finishes
+	 *
+	 * @param nStartNodeID		The ID of the start node
+	 * @param nGoalNodeID		The ID of the goal node
+	 * @param lTimeBudget		The most time to spend in nanoseconds
+	 * @param nNodeBudget		The most nodes to expand
+	 * @param context			The context whose listener is told about the query
+	 * @return					The best path found as an array of node ids from the start to
+	 * 							the goal, this is empty if no path was found
+	 */
+	public int [] findPath(int nStartNodeID, int nGoalNodeID, long lTimeBudget, int nNodeBudget,
+			SearchContext context)
+	{
+		// only time the query if someone is listening for it
+		SearchListener listener = context.getListener();
+		long lStartTime = (listener != null) ? System.nanoTime() : 0;
+
+		long lDeadline = (lTimeBudget >= Long.MAX_VALUE / 2) ? Long.MAX_VALUE : System.nanoTime() + lTimeBudget;
+		beginQuery();
+
+		int [] nBestPath = SearchContext.noPath();
+		int nBestCost = -1;
+		m_dBound = Double.POSITIVE_INFINITY;
+
+		setCost(nStartNodeID, 0, -1);
+		m_openList.insert(nStartNodeID, getScore(nStartNodeID, nGoalNodeID, m_dInitialWeight));
+		m_nNumGenerated = 1;
+		m_nPeakOpenSize = 1;
+
+		double dWeight = m_dInitialWeight;
+		while (true)
+		{
+			m_nSearchStamp++;
+			m_nNumSearches++;
+
+			boolean bFinished = improvePath(nGoalNodeID, dWeight, lDeadline, nNodeBudget);
+			if (!bFinished)
+			{
+				// out of budget, whatever path there already is will have to do
+				break;
+			}
+
+			if (getCost(nGoalNodeID) >= INFINITE)
+			{
+				// the whole graph has been searched with no way to the goal
+				m_dBound = 1;
+				break;
+			}
+			nBestPath = tracePath(nGoalNodeID);
+			nBestCost = getCost(nGoalNodeID);
+
+			// the best path can't be cheaper than the lowest cost plus estimate still waiting
+			int nLowestBound = gatherWaitingNodes(nGoalNodeID);
+			m_dBound = (nLowestBound >= getCost(nGoalNodeID))
+						? 1
+						: Math.min(dWeight, (double)getCost(nGoalNodeID) / nLowestBound);
+			if ((m_dBound <= 1) || (dWeight <= 1))
+			{
+				m_dBound = 1;
+				break;
+			}
+
+			// carry on from where the last search left off with a smaller weight
+			dWeight = Math.max(1, dWeight - m_dWeightStep);
+			for (int i = 0; i < m_nNumIncons; i++)
+			{
+				m_openList.insert(m_nIncons[i], getScore(m_nIncons[i], nGoalNodeID, dWeight));
+			}
+			m_nNumIncons = 0;
+		}
+
+		// tell the listener about the whole query, however many searches it took
+		if (listener != null)
+		{
+			SearchStats stats = context.getStats();
+			stats.set(nStartNodeID, nGoalNodeID, m_nNumExpanded, m_nNumGenerated, m_nNumReopened,
+						m_nPeakOpenSize, nBestPath.length, nBestCost, System.nanoTime() - lStartTime);
+			listener.searchFinished(stats);
+		}
+
+		return nBestPath;
+	}
+
+	/**
+	 * Expands nodes with the given weight until the goal has the lowest score in the open
+	 * list, the open list runs out, or the budget runs out
+	 *
+	 * @param nGoalNodeID		The ID of the goal node
+	 * @param dWeight			The weight of the heuristic
+	 * @param lDeadline			The time to stop at
+	 * @param nNodeBudget		The most nodes to expand in the whole query
+	 * @return					<code>true</code> if the search finished, <code>false</code>
+	 * 							if the budget ran out first
+	 */
+	private boolean improvePath(int nGoalNodeID, double dWeight, long lDeadline, int nNodeBudget)
+	{
+		while (!m_openList.isEmpty() && (getCost(nGoalNodeID) > m_openList.getLowestScore()))
+		{
+			if (m_nNumExpanded >= nNodeBudget)
+			{
+				return false;
+			}
+			if (((m_nNumExpanded % CLOCK_CHECK_INTERVAL) == 0) && (System.nanoTime() > lDeadline))
+			{
+				return false;
+			}
+
+			int nCurrNodeID = m_openList.removeLowest();
+			m_nClosedStamps[nCurrNodeID] = m_nSearchStamp;
+			m_nNumExpanded++;
+			int nCurrCost = m_nCosts[nCurrNodeID];
+
+			int nNumConnections = m_searchGraph.getConnectionCount(nCurrNodeID);
+			for (int i = 0; i < nNumConnections; i++)
+			{
+				int nTravelCost = m_searchGraph.getConnectionCost(nCurrNodeID, i);
+				if (nTravelCost <= 0)
+				{
+					continue;
+				}
+
+				int nAdjNodeID = m_searchGraph.getConnectedNodeID(nCurrNodeID, i);
+				int nCost = nCurrCost + nTravelCost;
+				int nOldCost = getCost(nAdjNodeID);
+				if (nCost >= nOldCost)
+				{
+					continue;
+				}
+
+				if (nOldCost >= INFINITE)
+				{
+					m_nNumGenerated++;
+				}
+				else
+				{
+					m_nNumReopened++;
+				}
+				setCost(nAdjNodeID, nCost, nCurrNodeID);
+				if (m_nClosedStamps[nAdjNodeID] != m_nSearchStamp)
+				{
+					// not expanded in this search yet so it waits in the open list
+					int nScore = getScore(nAdjNodeID, nGoalNodeID, dWeight);
+					if (m_openList.contains(nAdjNodeID))
+					{
+						m_openList.decreaseScore(nAdjNodeID, nScore);
+					}
+					else
+					{
+						m_openList.insert(nAdjNodeID, nScore);
+					}
+				}
+				else if (m_nInconsStamps[nAdjNodeID] != m_nSearchStamp)
+				{
+					// already expanded in this search, it's looked at again in the next one
+					m_nInconsStamps[nAdjNodeID] = m_nSearchStamp;
+					m_nIncons[m_nNumIncons++] = nAdjNodeID;
+				}
+			}
+
+			m_nPeakOpenSize = Math.max(m_nPeakOpenSize, m_openList.size());
+		}
+
+		return true;
+	}
+
+	/**
+	 * Moves every node still in the open list into the inconsistent list, so the next
+	 * search can put them all back with scores for its weight, and finds the lowest cost
+	 * plus unweighted estimate of all the nodes waiting
+	 *
+	 * @param nGoalNodeID		The ID of the goal node
+	 * @return					The lowest cost plus estimate, INFINITE if nothing is waiting
+	 */
+	private int gatherWaitingNodes(int nGoalNodeID)
+	{
+		while (!m_openList.isEmpty())
+		{
+			int nNodeID = m_openList.removeLowest();
+			if (m_nInconsStamps[nNodeID] != m_nSearchStamp)
+			{
+				m_nInconsStamps[nNodeID] = m_nSearchStamp;
+				m_nIncons[m_nNumIncons++] = nNodeID;
+			}
+		}
+
+		int nLowestBound = INFINITE;
+		for (int i = 0; i < m_nNumIncons; i++)
+		{
+			nLowestBound = Math.min(nLowestBound, getScore(m_nIncons[i], nGoalNodeID, 1));
+		}
+
+		return nLowestBound;
+	}
+
+	/**
+	 * Gets the arrays ready for a new query
+	 */
+	private void beginQuery()
+	{
+		int nNodeCapacity = m_searchGraph.getNodeCapacity();
+		if (nNodeCapacity > m_nCosts.length)
+		{
+			m_nCosts = new int[nNodeCapacity];
+			m_nParents = new int[nNodeCapacity];
+			m_nQueryStamps = new int[nNodeCapacity];
+			m_nClosedStamps = new int[nNodeCapacity];
+			m_nInconsStamps = new int[nNodeCapacity];
+			m_nIncons = new int[nNodeCapacity];
+			m_nQueryStamp = 0;
+			m_nSearchStamp = 0;
+		}
+
+		// clear the stamps out if they are about to run out
+		if ((m_nQueryStamp == Integer.MAX_VALUE) || (m_nSearchStamp >= Integer.MAX_VALUE - nNodeCapacity))
+		{
+			Arrays.fill(m_nQueryStamps, 0);
+			Arrays.fill(m_nClosedStamps, 0);
+			Arrays.fill(m_nInconsStamps, 0);
+			m_nQueryStamp = 0;
+			m_nSearchStamp = 0;
+		}
+
+		m_nQueryStamp++;
+		m_nNumIncons = 0;
+		m_nNumSearches = 0;
+		m_nNumExpanded = 0;
+		m_nNumGenerated = 0;
+		m_nNumReopened = 0;
+		m_nPeakOpenSize = 0;
+		m_openList.clear();
+	}
+
+	/**
+	 * The cost to reach a node in the current query
+	 *
+	 * @param nNodeID			The ID of the node
+	 * @return					The cost, INFINITE if it hasn't been reached
+	 */
+	private int getCost(int nNodeID)
+	{
+		return (m_nQueryStamps[nNodeID] == m_nQueryStamp) ? m_nCosts[nNodeID] : INFINITE;
+	}
+
+	/**
+	 * Records a cheaper way to reach a node
+	 *
+	 * @param nNodeID			The ID of the node
+	 * @param nCost				The cost to reach it
+	 * @param nParentID			The node it is reached from, -1 for the start
+	 */
+	private void setCost(int nNodeID, int nCost, int nParentID)
+	{
+		m_nCosts[nNodeID] = nCost;
+		m_nParents[nNodeID] = nParentID;
+		m_nQueryStamps[nNodeID] = m_nQueryStamp;
+	}
+
+	/**
+	 * The score of a node, its cost plus its weighted estimate
+	 *
+	 * @param nNodeID			The ID of the node
+	 * @param nGoalNodeID		The ID of the goal node
+	 * @param dWeight			The weight of the estimate
+	 * @return					The score
+	 */
+	private int getScore(int nNodeID, int nGoalNodeID, double dWeight)
+	{
+		int nEstimate = m_heuristic.getEstimate(m_searchGraph, nNodeID, nGoalNodeID);
+		return m_nCosts[nNodeID] + (int)Math.min(dWeight * nEstimate, INFINITE);
+	}
+
+	/**
+	 * Follows the parents back from a node to the start
+	 *
+	 * @param nNodeID			The node at the end of the path
+	 * @return					The path from the start to the node
+	 */
+	private int [] tracePath(int nNodeID)
+	{
+		int nLength = 0;
+		for (int n = nNodeID; n != -1; n = m_nParents[n])
+		{
+			nLength++;
+		}
+
+		int [] nPath = new int[nLength];
+		for (int n = nNodeID; n != -1; n = m_nParents[n])
+		{
+			nPath[--nLength] = n;
+		}
+
+		return nPath;
+	}
+
+	/**
+	 * The bound on how far the last path returned can be from the best path. The path costs
+	 * no more than the bound times the cost of the best path, a bound of one means it is the
+	 * best path. The bound is infinite if no path was found before the budget ran out, and
+	 * one if the search proved there is no path at all.
+	 *
+	 * @return					The bound
+	 */
+	public double getBound()
+	{
+		return m_dBound;
+	}
+
+	/**
+	 * The number of searches the last query ran, the first search and each improvement
+	 *
+	 * @return					The number of searches
+	 */
+	public int getNumSearches()
+	{
+		return m_nNumSearches;
+	}
+
+	/**
+	 * The number of nodes the last query expanded over all of its searches
+	 *
+	 * @return					The number of nodes expanded
+	 */
+	public int getNumExpanded()
+	{
+		return m_nNumExpanded;
+	}
+}
@@ -0,0 +1,66 @@
+/**
+ * Cell costs kept in an int array, one int for each cell. This is the quickest storage to
+ * read and can hold any cost, but takes four bytes a cell.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+public class ArrayCellCosts implements CellCosts
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The cost of each cell
+	 */
+	private final int [] m_nCosts;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates the storage for a number of cells, all of them starting with a cost of zero
+	 *
+	 * @param nNumCells		The number of cells
+	 */
+	public ArrayCellCosts(int nNumCells)
+	{
+		this(new int[nNumCells]);
+	}
+
+	/**
+	 * Creates the storage over an array of costs. The array is used as is and not copied.
+	 *
+	 * @param nCosts		The cost of each cell
+	 */
+	public ArrayCellCosts(int [] nCosts)
+	{
+		m_nCosts = nCosts;
+	}
+
+	public int getNumCells()
+	{
+		return m_nCosts.length;
+	}
+
+	public int getMaxCost()
+	{
+		return Integer.MAX_VALUE;
+	}
+
+	public boolean isReadOnly()
+	{
+		return false;
+	}
+
+	public int getCost(int nCellID)
+	{
+		return m_nCosts[nCellID];
+	}
+
+	public void setCost(int nCellID, int nCost)
+	{
+		m_nCosts[nCellID] = nCost;
+	}
+}
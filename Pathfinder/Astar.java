@@ -1,5 +1,12 @@
 /**
- * This class implements the A* pathfinding routine on a graph object.
+ * This class implements the A* pathfinding routine on a graph object. Any graph that
+ * implements SearchGraph can be searched, such as a Graph or a frozen CSRGraph.
+ * <p>
+ * The routine can be called directly through the static functions, or an Astar can be
+ * created for a graph and used as a PathSearch over it.
+ * <p>
+ * The cost left to the goal is estimated by a Heuristic, which can be chosen for each
+ * search. The default is the Chebyshev distance with every step costing one.
  * 
  * @author Jonathan Hanks (jonhanks@gmail.com)
  * @version 1.0
@@ -9,8 +16,51 @@
 import java.util.*;
 import java.lang.*;
 
-public class Astar 
+public class Astar implements PathSearch
 {
+	/*
+	 * Members
+	 */
+	/**
+	 * The graph searched by this path search
+	 */
+	private final SearchGraph m_searchGraph;
+	
+	/**
+	 * The heuristic used by this path search
+	 */
+	private final Heuristic m_heuristic;
+	
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates a path search over a graph
+	 * 
+	 * @param searchGraph		The graph to search
+	 */
+	public Astar(SearchGraph searchGraph)
+	{
+		this(searchGraph, DistanceHeuristic.DEFAULT);
+	}
+	
+	/**
+	 * Creates a path search over a graph that uses the given heuristic
+	 * 
+	 * @param searchGraph		The graph to search
+	 * @param heuristic			The heuristic to estimate the cost to the goal with
+	 */
+	public Astar(SearchGraph searchGraph, Heuristic heuristic)
+	{
+		m_searchGraph = searchGraph;
+		m_heuristic = heuristic;
+	}
+	
+	public int [] findPath(int nStartNodeID, int nGoalNodeID, SearchContext context)
+	{
+		return findPath(m_searchGraph, nStartNodeID, nGoalNodeID, context, m_heuristic);
+	}
+	
 	/**
 	 * This function performs the A* path searching algorithm on the graph that it is given.
 	 * It will find the best path between the desired start and end nodes in the graph as long
@@ -25,239 +75,267 @@ public class Astar
 	 * @param nGoalNodeID		The ID of the goal node
 	 * @return					The path that algorithm found as a vector of node ids
 	 */
-	public static Vector performSearch(Graph searchGraph, int nStartNodeID, int nGoalNodeID)
+	public static Vector performSearch(SearchGraph searchGraph, int nStartNodeID, int nGoalNodeID)
+	{
+		return toVector(findPath(searchGraph, nStartNodeID, nGoalNodeID, 
+									SearchContext.getThreadContext()));
+	}
+	
+	/**
+	 * This function performs the A* path searching algorithm on the graph that it is given
+	 * using the open list that it is given to order the nodes waiting to be expanded.
+	 * <p>
+	 * This creates a new search context for the search, code that performs many searches
+	 * should keep a context with the open list it wants and use <code>findPath</code>.
+	 * 
+	 * @param searchGraph		The graph to perform the A* search over
+	 * @param nStartNodeID		The ID of the start node
+	 * @param nGoalNodeID		The ID of the goal node
+	 * @param openList			The open list to use, it is cleared before the search starts
+	 * @return					The path that algorithm found as a vector of node ids
+	 */
+	public static Vector performSearch(SearchGraph searchGraph, int nStartNodeID, int nGoalNodeID,
+			OpenList openList)
+	{
+		return toVector(findPath(searchGraph, nStartNodeID, nGoalNodeID, 
+									new SearchContext(openList)));
+	}
+	
+	/**
+	 * This function performs the A* path searching algorithm on the graph that it is given,
+	 * keeping track of the search in the context that it is given. Reusing the same context
+	 * for every search means nothing is allocated apart from the path that is returned.
+	 * <p>
+	 * Nodes are taken from the open list in order of their score (the cost to reach them 
+	 * plus their heuristic). When a cheaper route to a node that is already in the open list
+	 * is found the node is given the new parent and its score is lowered in the open list.
+	 * <p>
+	 * If the context has a SearchListener the statistics of the search are recorded and
+	 * handed to it once the search finishes. Without one the only extra work is keeping a
+	 * few counts in local variables.
+	 * 
+	 * @param searchGraph		The graph to perform the A* search over
+	 * @param nStartNodeID		The ID of the start node
+	 * @param nGoalNodeID		The ID of the goal node
+	 * @param context			The context to keep track of the search in
+	 * @return					The path found as an array of node ids from the start to the
+	 * 							goal, this is empty if no path exists
+	 */
+	public static int [] findPath(SearchGraph searchGraph, int nStartNodeID, int nGoalNodeID,
+			SearchContext context)
+	{
+		return findPath(searchGraph, nStartNodeID, nGoalNodeID, context, DistanceHeuristic.DEFAULT);
+	}
+	
+	/**
+	 * This function performs the A* path searching algorithm the same as the function 
+	 * above, but estimates the cost to the goal with the heuristic that it is given rather
+	 * than the default Chebyshev distance. The path found is only sure to be the best path
+	 * if the heuristic never overestimates.
+	 * 
+	 * @param searchGraph		The graph to perform the A* search over
+	 * @param nStartNodeID		The ID of the start node
+	 * @param nGoalNodeID		The ID of the goal node
+	 * @param context			The context to keep track of the search in
+	 * @param heuristic			The heuristic to estimate the cost to the goal with
+	 * @return					The path found as an array of node ids from the start to the
+	 * 							goal, this is empty if no path exists
+	 */
+	public static int [] findPath(SearchGraph searchGraph, int nStartNodeID, int nGoalNodeID,
+			SearchContext context, Heuristic heuristic)
+	{
+		return findPath(searchGraph, nStartNodeID, nGoalNodeID, context, heuristic, context.getListener());
+	}
+	
+	/**
+	 * This function performs the A* path searching algorithm the same as the function 
+	 * above, but tells the listener that it is given about the search rather than the
+	 * listener of the context. Searches that run A* as one part of a query use this to
+	 * add up the statistics of each part, so the query is only reported once.
+	 * 
+	 * @param searchGraph		The graph to perform the A* search over
+	 * @param nStartNodeID		The ID of the start node
+	 * @param nGoalNodeID		The ID of the goal node
+	 * @param context			The context to keep track of the search in
+	 * @param heuristic			The heuristic to estimate the cost to the goal with
+	 * @param listener			The listener to tell about the search, or null for none
+	 * @return					The path found as an array of node ids from the start to the
+	 * 							goal, this is empty if no path exists
+	 */
+	public static int [] findPath(SearchGraph searchGraph, int nStartNodeID, int nGoalNodeID,
+			SearchContext context, Heuristic heuristic, SearchListener listener)
 	{
-		// create the open and closed lists
-		Vector vOpenList = new Vector();
-		Vector vClosedList = new Vector();
+		// only time the search if someone is listening for it
+		long lStartTime = (listener != null) ? System.nanoTime() : 0;
+		int nNumGenerated = 1;
+		int nNumReopened = 0;
+		int nPeakOpenSize = 1;
 		
-		// create the start node as an AstarNode
-		Astar.AstarNode currNode = new Astar.AstarNode();
-		currNode.m_Node = searchGraph.getNode(nStartNodeID);
-		currNode.m_nCost = 0;
-		currNode.m_parentNode = null;
-		currNode.m_nHeuristic = getHeuristic(searchGraph, nStartNodeID, nGoalNodeID);
-		currNode.m_nScore = currNode.m_nCost + currNode.m_nHeuristic;
+		// forget the last search and get the open list ready
+		context.begin(searchGraph);
+		OpenList openList = context.getOpenList();
 		
 		// add the start node to the open list
-		vOpenList.add(currNode);
+		context.setReached(nStartNodeID, 0, -1);
+		openList.insert(nStartNodeID, heuristic.getEstimate(searchGraph, nStartNodeID, nGoalNodeID));
+		
+		// we haven't got a path until we reach the goal
+		int [] nPath = SearchContext.noPath();
 		
 		// while the open list is not empty loop through list searching for the
 		// final path
-		while (vOpenList.size() != 0)
+		while (!openList.isEmpty())
 		{
 			// Pick the current node to be the node in the open list
-			// with the least cost
-			currNode = getLowestCostNode(vOpenList);
+			// with the lowest score
+			int nCurrNodeID = openList.removeLowest();
 			
 			// if we found the goal node then we're done - HOORAY!
-			if (currNode.m_Node.getID() == nGoalNodeID)
+			if (nCurrNodeID == nGoalNodeID)
 			{
-				// we found the right node so break out of the search
+				// trace it back to get the path
+				nPath = context.tracePath(nGoalNodeID);
 				break;
 			}
 			
 			// otherwise this isn't the right one so move it to the closed list
-			removeNodeFromList(vOpenList, currNode);
-			vClosedList.add(currNode);
+			context.setClosed(nCurrNodeID);
+			int nCurrCost = context.getCost(nCurrNodeID);
 			
 			// examine each adjacent node to it
-			Vector vAdjNodes = currNode.m_Node.getAdjacentNodes();
-			for (int i = 0; i < vAdjNodes.size(); i++)
+			int nNumConnections = searchGraph.getConnectionCount(nCurrNodeID);
+			for (int i = 0; i < nNumConnections; i++)
 			{
-				// if not in the open list
-				if (!isInList(vOpenList, (Node)vAdjNodes.get(i)))
+				// zero cost connections can't be travelled
+				int nTravelCost = searchGraph.getConnectionCost(nCurrNodeID, i);
+				if (nTravelCost <= 0)
 				{
-					// and not in the closed list
-					if (!isInList(vClosedList, (Node)vAdjNodes.get(i)))
-					{
-						// we found a node to put in the open list so calculate its data
-						Astar.AstarNode newOpenNode = new Astar.AstarNode();
-						newOpenNode.m_Node = (Node)vAdjNodes.get(i);
-						newOpenNode.m_nCost = 
-							currNode.m_nCost + currNode.m_Node.costToTravel(newOpenNode.m_Node);
-						newOpenNode.m_parentNode = currNode;
-						newOpenNode.m_nHeuristic = 
-							getHeuristic(searchGraph, newOpenNode.m_Node.getID(), nGoalNodeID);
-						newOpenNode.m_nScore = currNode.m_nCost + currNode.m_nHeuristic;
-						
-						// now add it to the open list
-						vOpenList.add(newOpenNode);
-					}
+					continue;
+				}
+				
+				int nAdjNodeID = searchGraph.getConnectedNodeID(nCurrNodeID, i);
+				int nCost = nCurrCost + nTravelCost;
+				
+				if (!context.isReached(nAdjNodeID))
+				{
+					// we found a node to put in the open list
+					context.setReached(nAdjNodeID, nCost, nCurrNodeID);
+					openList.insert(nAdjNodeID, 
+							nCost + heuristic.getEstimate(searchGraph, nAdjNodeID, nGoalNodeID));
+					nNumGenerated++;
+				}
+				else if (!context.isClosed(nAdjNodeID) && (nCost < context.getCost(nAdjNodeID)))
+				{
+					// it's already in the open list but this is a cheaper way to get to it
+					// so route it through the current node instead
+					context.setReached(nAdjNodeID, nCost, nCurrNodeID);
+					openList.decreaseScore(nAdjNodeID, 
+							nCost + heuristic.getEstimate(searchGraph, nAdjNodeID, nGoalNodeID));
+					nNumReopened++;
 				}
 			}// end adjacent node check
+			
+			nPeakOpenSize = Math.max(nPeakOpenSize, openList.size());
 		}
 		
-		Vector vResults = new Vector();
-		
-		// did we find the path?
-		if (vOpenList.size() == 0)
-		{
-			// no we ran out of nodes to check there is no path
-			return vResults;
-		}
-		
-		if (currNode.m_Node.getID() != nGoalNodeID)
-		{
-			// something went wrong!
-			return vResults;
-		}
-		
-		// now we've found the path and it is the currNode so we just need to
-		// trace it back and fill up the results vector
-		while (currNode.m_Node.getID() != nStartNodeID)
+		// if we ran out of nodes to check there is no path, either way tell the listener
+		// how the search went
+		if (listener != null)
 		{
-			vResults.add(new Integer(currNode.m_Node.getID()));
-			currNode = currNode.m_parentNode;
+			SearchStats stats = context.getStats();
+			stats.set(nStartNodeID, nGoalNodeID, context.getNumClosed(), nNumGenerated, nNumReopened,
+						nPeakOpenSize, nPath.length, (nPath.length > 0) ? context.getCost(nGoalNodeID) : -1,
+						System.nanoTime() - lStartTime);
+			listener.searchFinished(stats);
 		}
-				
-		// add the start node
-		vResults.add(new Integer(currNode.m_Node.getID()));
 		
-		// return the path results
-		return vResults;
+		return nPath;
 	}
 	
 	/**
-	 * This returns the heuristic value for the node it is given
-	 * <p>
-	 * The current heuristic is just the travel distance from the node
-	 * to the goal node if there were no obstacles in the way, the graph were fully connected
-	 * and if the costs were all 1 in all the connections remaining to the goal. This is
-	 * a rather simple heuristic but should work rather well for most problems that can
-	 * be represented on a two dimensional graph
+	 * This function performs Weighted A*, the A* search with the heuristic multiplied by a
+	 * weight. The path found costs no more than the weight times the cost of the best path
+	 * as long as the heuristic never overestimates, and the larger the weight the fewer
+	 * nodes are expanded to find it.
 	 * 
-	 * @param searchGraph		The graph that is being search
-	 * @param nNodeID			The id of the node you wish to get the heuristic value for
-	 * @param nGoalID			The id of the goal node
-	 * @return
+	 * @param searchGraph		The graph to perform the A* search over
+	 * @param nStartNodeID		The ID of the start node
+	 * @param nGoalNodeID		The ID of the goal node
+	 * @param context			The context to keep track of the search in
+	 * @param heuristic			The heuristic to estimate the cost to the goal with
+	 * @param dWeight			The weight, at least one, where one is a plain A* search
+	 * @return					The path found as an array of node ids from the start to the
+	 * 							goal, this is empty if no path exists
 	 */
-	private static int getHeuristic(Graph searchGraph, int nNodeID, int nGoalID)
+	public static int [] findPath(SearchGraph searchGraph, int nStartNodeID, int nGoalNodeID,
+			SearchContext context, Heuristic heuristic, double dWeight)
 	{
-		// find the nodes in the graph
-		Node startNode = searchGraph.getNode(nNodeID);
-		Node goalNode = searchGraph.getNode(nGoalID);
-		
-		// now find the x and y positions of the start and goal
-		int nStartX = startNode.getX();
-		int nStartY = startNode.getY();
-		int nGoalX = goalNode.getX();
-		int nGoalY = goalNode.getY();
-		
-		// calculate the travel distance between these two points
-		int nTravelDist = 0;
-		
-		// the travel distance would be the greatest of the two differences
-		if (Math.abs(nStartX - nGoalX) > Math.abs(nStartY - nGoalY))
-		{
-			nTravelDist = Math.abs(nStartX - nGoalX);
-		}
-		else
-		{
-			nTravelDist = Math.abs(nStartY - nGoalY);
-		}
-		
-		// return the travel distance as the heuristic
-		return nTravelDist;
+		return findPath(searchGraph, nStartNodeID, nGoalNodeID, context, 
+						(dWeight == 1) ? heuristic : new WeightedHeuristic(heuristic, dWeight));
 	}
 	
 	/**
-	 * This will find the lowest cost node in the vector of AstarNodes and return it
+	 * Works out the cost to travel a path through a graph by adding up the costs of the
+	 * connections between each node in the path and the next
 	 * 
-	 * @param vNodes		The AstarNodes to search for the lowest cost one in
-	 * @return				The node with the lowest cost in the vector
+	 * @param searchGraph		The graph the path is in
+	 * @param nPath				The path from the start to the goal
+	 * @return					The cost of the path, or -1 if it is empty or two nodes in it
+	 * 							are not connected
 	 */
-	private static Astar.AstarNode getLowestCostNode(Vector vNodes)
+	public static int getPathCost(SearchGraph searchGraph, int [] nPath)
 	{
-		int nLowestCost = Integer.MAX_VALUE;
-		Astar.AstarNode lowestNode = null;
-		
-		for (int i = 0; i < vNodes.size(); i++)
+		if (nPath.length == 0)
 		{
-			// if this node is lower then set it as the lowest node
-			if (((Astar.AstarNode)vNodes.get(i)).m_nCost < nLowestCost)
-			{
-				lowestNode = (Astar.AstarNode)vNodes.get(i);
-				nLowestCost = lowestNode.m_nCost;
-			}
+			return -1;
 		}
 		
-		// we found the lowest cost node so return it
-		return lowestNode;
-	}
-	
-	/**
-	 * Removes the given node from the vector given
-	 * 
-	 * @param vNodes		The list of nodes
-	 * @param toRemove 		The node to remove
-	 */
-	private static void removeNodeFromList(Vector vNodes, Astar.AstarNode toRemove)
-	{
-		// find the node in the list and remove it
-		for (int i = 0; i < vNodes.size(); i++)
+		int nCost = 0;
+		for (int i = 1; i < nPath.length; i++)
 		{
-			if ( ((Astar.AstarNode)vNodes.get(i)).m_Node.getID() == toRemove.m_Node.getID() )
+			// find the cheapest connection between the two nodes
+			int nStepCost = 0;
+			int nNumConnections = searchGraph.getConnectionCount(nPath[i - 1]);
+			for (int j = 0; j < nNumConnections; j++)
 			{
-				vNodes.remove(i);
+				int nTravelCost = searchGraph.getConnectionCost(nPath[i - 1], j);
+				if (	(nTravelCost > 0)
+						&& ((nStepCost == 0) || (nTravelCost < nStepCost))
+						&& (searchGraph.getConnectedNodeID(nPath[i - 1], j) == nPath[i])
+					)
+				{
+					nStepCost = nTravelCost;
+				}
 			}
-		}
-	}
-	
-	/**
-	 * Checks whether the node is in the list given
-	 * 
-	 * @param vNodes		The list of nodes
-	 * @param toCheck		The node to check
-	 * @return				<code>true</code> if in the list <code>false</code> otherwise
-	 */
-	private static boolean isInList(Vector vNodes, Node toCheck)
-	{
-		// search for the node
-		for (int i = 0; i < vNodes.size(); i++)
-		{
-			if (((Astar.AstarNode)vNodes.get(i)).m_Node.getID() == toCheck.getID())
+			
+			if (nStepCost == 0)
 			{
-				return true;
+				// the path isn't connected here
+				return -1;
 			}
+			
+			nCost += nStepCost;
 		}
 		
-		// never found
-		return false;
+		return nCost;
 	}
 	
 	/**
-	 * A private class of nodes only used by the A* routine to help keep track of
-	 * costs of nodes (the cost to and parent nodes
+	 * Converts a path from start to goal into the vector form returned by 
+	 * <code>performSearch</code>, which lists the node ids from the goal back to the start
 	 * 
-	 * @author Jonathan Hanks (jonhanks@gmail.com)
-	 * @version 1.0
+	 * @param nPath				The path from the start to the goal
+	 * @return					The path as a vector of node ids from the goal to the start
 	 */
-	private static class AstarNode
+	public static Vector toVector(int [] nPath)
 	{
-		/**
-		 * The node this keeps track of
-		 */
-		public Node m_Node;
-		/**
-		 * The cost to reach this node from the start node (the sum of the connection costs
-		 * from the start to this node)
-		 */
-		public int m_nCost;
-		/**
-		 * The heuristic cost for this node (the estimated cost to reach the goal node from
-		 * this node)
-		 */
-		public int m_nHeuristic;
-		/**
-		 * The score of this node (the sum of the cost and heuristic) or the total estimated
-		 * cost
-		 */
-		public int m_nScore;
-		/**
-		 * The parent node to this node (the last node travelled through when ariving at this
-		 * node)
-		 */
-		public AstarNode m_parentNode;
+		Vector vResults = new Vector(nPath.length);
+		
+		for (int i = nPath.length - 1; i >= 0; i--)
+		{
+			vResults.add(Integer.valueOf(nPath[i]));
+		}
+		
+		return vResults;
 	}
 }
@@ -0,0 +1,232 @@
+/**
+ * The BatchPathfinder runs many path queries over one graph at the same time, spreading them
+ * across the threads of a fork/join pool. The graph and the path search are shared by every
+ * thread, so the graph must not change while a batch is running (a frozen CSRGraph or the
+ * GridGraph of a GridMap that isn't being changed). Each thread searches with its own
+ * SearchContext so the queries don't allocate anything but their paths.
+ * <p>
+ * The results of a batch come back in the same order as the queries, each with its own
+ * status, so one bad query doesn't stop the rest of the batch.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.util.concurrent.*;
+
+public class BatchPathfinder
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The number of queries below which a share of a batch isn't split any further
+	 */
+	private static final int MIN_SPLIT_SIZE = 8;
+
+	/**
+	 * The graph the queries are in
+	 */
+	private final SearchGraph m_searchGraph;
+
+	/**
+	 * The search used to answer each query
+	 */
+	private final PathSearch m_pathSearch;
+
+	/**
+	 * The pool the queries are run in
+	 */
+	private final ForkJoinPool m_pool;
+
+	/**
+	 * The connected regions of the graph used to turn away queries with no path before
+	 * they are searched, or <code>null</code> if every query is searched
+	 */
+	private final ComponentIndex m_componentIndex;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates a batch pathfinder that answers queries with A* using the common pool
+	 *
+	 * @param searchGraph		The graph the queries are in
+	 */
+	public BatchPathfinder(SearchGraph searchGraph)
+	{
+		this(searchGraph, new Astar(searchGraph), ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates a batch pathfinder
+	 *
+	 * @param searchGraph		The graph the queries are in
+	 * @param pathSearch		The search used to answer each query, it must search the same graph
+	 * @param pool				The pool the queries are run in
+	 */
+	public BatchPathfinder(SearchGraph searchGraph, PathSearch pathSearch, ForkJoinPool pool)
+	{
+		this(searchGraph, pathSearch, pool, null);
+	}
+
+	/**
+	 * Creates a batch pathfinder over a grid that checks the connected regions of the grid
+	 * before each search, so queries with no path are answered without searching
+	 *
+	 * @param searchGraph		The graph the queries are in
+	 * @param pathSearch		The search used to answer each query, it must search the same graph
+	 * @param pool				The pool the queries are run in
+	 * @param componentIndex	The connected regions of the graph, or <code>null</code> to
+	 * 							search every query
+	 */
+	public BatchPathfinder(SearchGraph searchGraph, PathSearch pathSearch, ForkJoinPool pool,
+			ComponentIndex componentIndex)
+	{
+		m_searchGraph = searchGraph;
+		m_pathSearch = pathSearch;
+		m_pool = pool;
+		m_componentIndex = componentIndex;
+	}
+
+	/**
+	 * Finds a path for every query in a batch. The query at each index goes from the start
+	 * node to the goal node at that index of the two arrays.
+	 *
+	 * @param nStartNodeIDs		The start node of each query
+	 * @param nGoalNodeIDs		The goal node of each query
+	 * @return					The result of each query in the same order as the queries
+	 */
+	public PathResult [] findPaths(int [] nStartNodeIDs, int [] nGoalNodeIDs)
+	{
+		if (nStartNodeIDs.length != nGoalNodeIDs.length)
+		{
+			throw new IllegalArgumentException("Every query needs both a start and a goal");
+		}
+
+		PathResult [] results = new PathResult[nStartNodeIDs.length];
+
+		if (results.length > 0)
+		{
+			m_pool.invoke(new BatchTask(nStartNodeIDs, nGoalNodeIDs, results, 0, results.length));
+		}
+
+		return results;
+	}
+
+	/**
+	 * Answers a single query with the context of the current thread. Any problem with the
+	 * query is reported in the status of the result rather than thrown.
+	 *
+	 * @param nStartNodeID		The ID of the start node
+	 * @param nGoalNodeID		The ID of the goal node
+	 * @return					The result of the query
+	 */
+	public PathResult findPath(int nStartNodeID, int nGoalNodeID)
+	{
+		int nNodeCapacity = m_searchGraph.getNodeCapacity();
+
+		// make sure both ends are in the graph
+		if (	(nStartNodeID < 0) || (nStartNodeID >= nNodeCapacity)
+				|| (nGoalNodeID < 0) || (nGoalNodeID >= nNodeCapacity)
+			)
+		{
+			return new PathResult(PathResult.INVALID, SearchContext.noPath(), -1);
+		}
+
+		// don't search if the regions show there's no path
+		if ((m_componentIndex != null) && !m_componentIndex.isReachable(nStartNodeID, nGoalNodeID))
+		{
+			return new PathResult(PathResult.NO_PATH, SearchContext.noPath(), -1);
+		}
+
+		try
+		{
+			int [] nPath = m_pathSearch.findPath(nStartNodeID, nGoalNodeID,
+													SearchContext.getThreadContext());
+
+			if (nPath.length == 0)
+			{
+				return new PathResult(PathResult.NO_PATH, nPath, -1);
+			}
+
+			return new PathResult(PathResult.FOUND, nPath, Astar.getPathCost(m_searchGraph, nPath));
+		}
+		catch (RuntimeException e)
+		{
+			return new PathResult(PathResult.FAILED, SearchContext.noPath(), -1);
+		}
+	}
+
+	/**
+	 * A private task that answers a share of the queries in a batch, splitting it in half
+	 * for other threads to take while it is big enough
+	 *
+	 * @author Jonathan Hanks (jonhanks@gmail.com)
+	 * @version 1.0
+	 */
+	private class BatchTask extends RecursiveAction
+	{
+		/**
+		 * The version of the serialized form of the task
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The start node of each query in the batch
+		 */
+		private final int [] m_nStartNodeIDs;
+		/**
+		 * The goal node of each query in the batch
+		 */
+		private final int [] m_nGoalNodeIDs;
+		/**
+		 * The results of the batch
+		 */
+		private final PathResult [] m_results;
+		/**
+		 * The first query of this share
+		 */
+		private final int m_nFrom;
+		/**
+		 * One past the last query of this share
+		 */
+		private final int m_nTo;
+
+		/**
+		 * Creates the task for a share of a batch
+		 *
+		 * @param nStartNodeIDs		The start node of each query in the batch
+		 * @param nGoalNodeIDs		The goal node of each query in the batch
+		 * @param results			The results of the batch
+		 * @param nFrom				The first query of this share
+		 * @param nTo				One past the last query of this share
+		 */
+		BatchTask(int [] nStartNodeIDs, int [] nGoalNodeIDs, PathResult [] results, int nFrom, int nTo)
+		{
+			m_nStartNodeIDs = nStartNodeIDs;
+			m_nGoalNodeIDs = nGoalNodeIDs;
+			m_results = results;
+			m_nFrom = nFrom;
+			m_nTo = nTo;
+		}
+
+		protected void compute()
+		{
+			if (m_nTo - m_nFrom > MIN_SPLIT_SIZE)
+			{
+				// split the share in two and run the halves side by side
+				int nMiddle = (m_nFrom + m_nTo) >>> 1;
+				invokeAll(	new BatchTask(m_nStartNodeIDs, m_nGoalNodeIDs, m_results, m_nFrom, nMiddle),
+							new BatchTask(m_nStartNodeIDs, m_nGoalNodeIDs, m_results, nMiddle, m_nTo));
+				return;
+			}
+
+			for (int i = m_nFrom; i < m_nTo; i++)
+			{
+				m_results[i] = findPath(m_nStartNodeIDs[i], m_nGoalNodeIDs[i]);
+			}
+		}
+	}
+}
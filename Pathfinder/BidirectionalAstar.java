@@ -0,0 +1,293 @@
+/**
+ * This class implements a bidirectional form of the A* pathfinding routine. One search runs
+ * forward from the start towards the goal while a second runs backward from the goal
+ * towards the start over the reverse connections of the graph, and the path is joined
+ * where they meet. For long paths the two searches together expand far fewer nodes than a
+ * single search does, since each only has to cover about half the distance.
+ * <p>
+ * Each step expands a node from whichever search has the smaller open list. Every time a
+ * search reaches a node the other search has already reached, the cost of the path through
+ * that node is checked against the best path seen so far. The searches stop once the best
+ * path is no more than the lowest score left in either open list, as no path still to be
+ * found can be cheaper than that, so the path found is always a best path.
+ * <p>
+ * The routine can be called directly through the static functions, or a BidirectionalAstar
+ * can be created for a graph and used as a PathSearch over it. The backward search asks
+ * the heuristic for the cost from the start to each node, so heuristics that aren't the
+ * same both ways, such as the LandmarkHeuristic, still never overestimate.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.util.*;
+
+public class BidirectionalAstar implements PathSearch
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * A second context for each thread to run the backward search in
+	 */
+	private static final ThreadLocal m_threadBackwardContexts = new ThreadLocal()
+	{
+		protected Object initialValue()
+		{
+			return new SearchContext();
+		}
+	};
+
+	/**
+	 * The graph searched by this path search
+	 */
+	private final ReverseSearchGraph m_searchGraph;
+
+	/**
+	 * The heuristic used by this path search
+	 */
+	private final Heuristic m_heuristic;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates a path search over a graph
+	 *
+	 * @param searchGraph		The graph to search
+	 */
+	public BidirectionalAstar(ReverseSearchGraph searchGraph)
+	{
+		this(searchGraph, DistanceHeuristic.DEFAULT);
+	}
+
+	/**
+	 * Creates a path search over a graph that uses the given heuristic
+	 *
+	 * @param searchGraph		The graph to search
+	 * @param heuristic			The heuristic to estimate the costs with
+	 */
+	public BidirectionalAstar(ReverseSearchGraph searchGraph, Heuristic heuristic)
+	{
+		m_searchGraph = searchGraph;
+		m_heuristic = heuristic;
+	}
+
+	/**
+	 * Finds the best path with the context it is given for the forward search and the
+	 * backward context of the current thread for the backward search
+	 */
+	public int [] findPath(int nStartNodeID, int nGoalNodeID, SearchContext context)
+	{
+		return findPath(m_searchGraph, nStartNodeID, nGoalNodeID, context,
+						(SearchContext)m_threadBackwardContexts.get(), m_heuristic);
+	}
+
+	/**
+	 * This function performs the bidirectional A* search on the graph that it is given,
+	 * the same as <code>Astar.performSearch</code> does for a single search.
+	 *
+	 * @param searchGraph		The graph to perform the search over
+	 * @param nStartNodeID		The ID of the start node
+	 * @param nGoalNodeID		The ID of the goal node
+	 * @return					The path that was found as a vector of node ids from the goal
+	 * 							to the start, empty if no path exists
+	 */
+	public static Vector performSearch(ReverseSearchGraph searchGraph, int nStartNodeID, int nGoalNodeID)
+	{
+		return Astar.toVector(findPath(searchGraph, nStartNodeID, nGoalNodeID,
+										SearchContext.getThreadContext(),
+										(SearchContext)m_threadBackwardContexts.get(),
+										DistanceHeuristic.DEFAULT));
+	}
+
+	/**
+	 * This function performs the bidirectional A* search on the graph that it is given,
+	 * keeping track of the two searches in the two contexts that it is given. If the forward
+	 * context has a SearchListener the two searches are recorded together as one and handed
+	 * to it once they finish.
+	 *
+	 * @param searchGraph		The graph to perform the search over
+	 * @param nStartNodeID		The ID of the start node
+	 * @param nGoalNodeID		The ID of the goal node
+	 * @param forwardContext	The context to keep track of the search from the start in
+	 * @param backwardContext	The context to keep track of the search from the goal in, it
+	 * 							must not be the same as the forward context
+	 * @param heuristic			The heuristic to estimate the costs with
+	 * @return					The path found as an array of node ids from the start to the
+	 * 							goal, this is empty if no path exists
+	 */
+	public static int [] findPath(ReverseSearchGraph searchGraph, int nStartNodeID, int nGoalNodeID,
+			SearchContext forwardContext, SearchContext backwardContext, Heuristic heuristic)
+	{
+		if (forwardContext == backwardContext)
+		{
+			throw new IllegalArgumentException("The two searches need their own contexts");
+		}
+
+		// only time the search if someone is listening for it
+		SearchListener listener = forwardContext.getListener();
+		long lStartTime = (listener != null) ? System.nanoTime() : 0;
+		int nNumGenerated = 2;
+		int nNumReopened = 0;
+		int nPeakOpenSize = 2;
+
+		// forget the last search and get the open lists ready
+		forwardContext.begin(searchGraph);
+		backwardContext.begin(searchGraph);
+		OpenList forwardList = forwardContext.getOpenList();
+		OpenList backwardList = backwardContext.getOpenList();
+
+		forwardContext.setReached(nStartNodeID, 0, -1);
+		forwardList.insert(nStartNodeID, heuristic.getEstimate(searchGraph, nStartNodeID, nGoalNodeID));
+		backwardContext.setReached(nGoalNodeID, 0, -1);
+		backwardList.insert(nGoalNodeID, heuristic.getEstimate(searchGraph, nStartNodeID, nGoalNodeID));
+
+		// the best path seen so far and the node the two halves of it meet at
+		int nBestCost = Integer.MAX_VALUE;
+		int nMeetNodeID = -1;
+
+		if (nStartNodeID == nGoalNodeID)
+		{
+			nBestCost = 0;
+			nMeetNodeID = nStartNodeID;
+		}
+
+		// once either search runs out of nodes the best path seen is the best there is
+		while (!forwardList.isEmpty() && !backwardList.isEmpty())
+		{
+			// no path still to be found can be cheaper than the lowest score of either list
+			if (nBestCost <= Math.max(forwardList.getLowestScore(), backwardList.getLowestScore()))
+			{
+				break;
+			}
+
+			// expand from the search with less to do
+			boolean bForward = forwardList.size() <= backwardList.size();
+			SearchContext context = bForward ? forwardContext : backwardContext;
+			SearchContext otherContext = bForward ? backwardContext : forwardContext;
+			OpenList openList = context.getOpenList();
+
+			int nCurrNodeID = openList.removeLowest();
+			context.setClosed(nCurrNodeID);
+			int nCurrCost = context.getCost(nCurrNodeID);
+
+			int nNumConnections = bForward
+									? searchGraph.getConnectionCount(nCurrNodeID)
+									: searchGraph.getReverseConnectionCount(nCurrNodeID);
+			for (int i = 0; i < nNumConnections; i++)
+			{
+				// zero cost connections can't be travelled
+				int nTravelCost = bForward
+									? searchGraph.getConnectionCost(nCurrNodeID, i)
+									: searchGraph.getReverseConnectionCost(nCurrNodeID, i);
+				if (nTravelCost <= 0)
+				{
+					continue;
+				}
+
+				int nAdjNodeID = bForward
+									? searchGraph.getConnectedNodeID(nCurrNodeID, i)
+									: searchGraph.getReverseConnectedNodeID(nCurrNodeID, i);
+				int nCost = nCurrCost + nTravelCost;
+
+				if (!context.isReached(nAdjNodeID))
+				{
+					context.setReached(nAdjNodeID, nCost, nCurrNodeID);
+					openList.insert(nAdjNodeID, nCost + getEstimate(searchGraph, heuristic, bForward,
+																	nAdjNodeID, nStartNodeID, nGoalNodeID));
+					nNumGenerated++;
+				}
+				else if (!context.isClosed(nAdjNodeID) && (nCost < context.getCost(nAdjNodeID)))
+				{
+					context.setReached(nAdjNodeID, nCost, nCurrNodeID);
+					openList.decreaseScore(nAdjNodeID, nCost + getEstimate(searchGraph, heuristic, bForward,
+																	nAdjNodeID, nStartNodeID, nGoalNodeID));
+					nNumReopened++;
+				}
+
+				// if the other search got here too there is a path through this node
+				if (otherContext.isReached(nAdjNodeID))
+				{
+					int nPathCost = context.getCost(nAdjNodeID) + otherContext.getCost(nAdjNodeID);
+					if (nPathCost < nBestCost)
+					{
+						nBestCost = nPathCost;
+						nMeetNodeID = nAdjNodeID;
+					}
+				}
+			}
+
+			nPeakOpenSize = Math.max(nPeakOpenSize, forwardList.size() + backwardList.size());
+		}
+
+		// if the searches never met there is no path
+		int [] nPath = (nMeetNodeID == -1)
+						? SearchContext.noPath()
+						: joinPath(forwardContext, backwardContext, nMeetNodeID);
+
+		// either way tell the listener how the two searches went together
+		if (listener != null)
+		{
+			SearchStats stats = forwardContext.getStats();
+			stats.set(nStartNodeID, nGoalNodeID, forwardContext.getNumClosed() + backwardContext.getNumClosed(),
+						nNumGenerated, nNumReopened, nPeakOpenSize, nPath.length,
+						(nPath.length > 0) ? nBestCost : -1, System.nanoTime() - lStartTime);
+			listener.searchFinished(stats);
+		}
+
+		return nPath;
+	}
+
+	/**
+	 * Estimates the cost left for one of the searches, from a node to the goal for the
+	 * forward search or from the start to a node for the backward search
+	 *
+	 * @param searchGraph		The graph being searched
+	 * @param heuristic			The heuristic to estimate the cost with
+	 * @param bForward			Whether it is the forward search
+	 * @param nNodeID			The node reached by the search
+	 * @param nStartNodeID		The start node
+	 * @param nGoalNodeID		The goal node
+	 * @return					The estimated cost
+	 */
+	private static int getEstimate(SearchGraph searchGraph, Heuristic heuristic, boolean bForward,
+			int nNodeID, int nStartNodeID, int nGoalNodeID)
+	{
+		return bForward
+				? heuristic.getEstimate(searchGraph, nNodeID, nGoalNodeID)
+				: heuristic.getEstimate(searchGraph, nStartNodeID, nNodeID);
+	}
+
+	/**
+	 * Joins the path from the start to the meeting node onto the path from the meeting
+	 * node to the goal
+	 *
+	 * @param forwardContext	The context of the search from the start
+	 * @param backwardContext	The context of the search from the goal
+	 * @param nMeetNodeID		The node the two searches met at
+	 * @return					The whole path from the start to the goal
+	 */
+	private static int [] joinPath(SearchContext forwardContext, SearchContext backwardContext,
+			int nMeetNodeID)
+	{
+		int [] nFirstHalf = forwardContext.tracePath(nMeetNodeID);
+
+		// the backward parents lead from the meeting node on to the goal
+		int nLength = nFirstHalf.length;
+		for (int n = backwardContext.getParent(nMeetNodeID); n != -1; n = backwardContext.getParent(n))
+		{
+			nLength++;
+		}
+
+		int [] nPath = Arrays.copyOf(nFirstHalf, nLength);
+		int nIndex = nFirstHalf.length;
+		for (int n = backwardContext.getParent(nMeetNodeID); n != -1; n = backwardContext.getParent(n))
+		{
+			nPath[nIndex++] = n;
+		}
+
+		return nPath;
+	}
+}
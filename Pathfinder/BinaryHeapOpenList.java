@@ -0,0 +1,229 @@
+/**
+ * An open list backed by an indexed binary heap. The heap keeps the position of every node
+ * it holds so that finding, and lowering the score of, a node already in the list does not
+ * need a search.
+ * <p>
+ * Adding a node, removing the lowest node and lowering a score are all O(log n). The index
+ * arrays grow to fit the largest node id that has been added.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+public class BinaryHeapOpenList implements OpenList
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The node ids in heap order, the lowest score is always at position zero
+	 */
+	private int [] m_nHeap;
+
+	/**
+	 * The score of the node at each heap position
+	 */
+	private int [] m_nHeapScores;
+
+	/**
+	 * The heap position plus one of each node id, zero means the node is not in the heap
+	 */
+	private int [] m_nPositions;
+
+	/**
+	 * The number of nodes in the heap
+	 */
+	private int m_nSize;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Default constructor to create the variables for this class
+	 */
+	public BinaryHeapOpenList()
+	{
+		this(64);
+	}
+
+	/**
+	 * Creates the heap with room for the given number of node ids
+	 *
+	 * @param nCapacity		The number of node ids to make room for up front
+	 */
+	public BinaryHeapOpenList(int nCapacity)
+	{
+		if (nCapacity < 1)
+		{
+			nCapacity = 1;
+		}
+
+		m_nHeap = new int[nCapacity];
+		m_nHeapScores = new int[nCapacity];
+		m_nPositions = new int[nCapacity];
+		m_nSize = 0;
+	}
+
+	public void clear()
+	{
+		// only the nodes still in the heap have a position to reset
+		for (int i = 0; i < m_nSize; i++)
+		{
+			m_nPositions[m_nHeap[i]] = 0;
+		}
+
+		m_nSize = 0;
+	}
+
+	public boolean isEmpty()
+	{
+		return m_nSize == 0;
+	}
+
+	public int size()
+	{
+		return m_nSize;
+	}
+
+	public boolean contains(int nNodeID)
+	{
+		return (nNodeID < m_nPositions.length) && (m_nPositions[nNodeID] != 0);
+	}
+
+	public void insert(int nNodeID, int nScore)
+	{
+		// make sure there is room for the id and another heap entry
+		if (nNodeID >= m_nPositions.length)
+		{
+			m_nPositions = grow(m_nPositions, nNodeID + 1);
+		}
+		if (m_nSize == m_nHeap.length)
+		{
+			m_nHeap = grow(m_nHeap, m_nSize + 1);
+			m_nHeapScores = grow(m_nHeapScores, m_nSize + 1);
+		}
+
+		// put it at the bottom and let it rise to its place
+		m_nSize++;
+		siftUp(m_nSize - 1, nNodeID, nScore);
+	}
+
+	public void decreaseScore(int nNodeID, int nScore)
+	{
+		int nPos = m_nPositions[nNodeID] - 1;
+
+		// only ever move a node towards the top
+		if (nScore < m_nHeapScores[nPos])
+		{
+			siftUp(nPos, nNodeID, nScore);
+		}
+	}
+
+	public int getLowestScore()
+	{
+		return m_nHeapScores[0];
+	}
+
+	public int removeLowest()
+	{
+		int nLowestID = m_nHeap[0];
+		m_nPositions[nLowestID] = 0;
+		m_nSize--;
+
+		// move the last node into the hole at the top and let it sink to its place
+		if (m_nSize > 0)
+		{
+			siftDown(0, m_nHeap[m_nSize], m_nHeapScores[m_nSize]);
+		}
+
+		return nLowestID;
+	}
+
+	/**
+	 * Moves a node up from the given heap position until its parent is no greater than it
+	 *
+	 * @param nPos			The position to start from
+	 * @param nNodeID		The node being placed
+	 * @param nScore		The score of the node being placed
+	 */
+	private void siftUp(int nPos, int nNodeID, int nScore)
+	{
+		while (nPos > 0)
+		{
+			int nParent = (nPos - 1) >> 1;
+
+			if (m_nHeapScores[nParent] <= nScore)
+			{
+				break;
+			}
+
+			// pull the parent down into the hole
+			place(nPos, m_nHeap[nParent], m_nHeapScores[nParent]);
+			nPos = nParent;
+		}
+
+		place(nPos, nNodeID, nScore);
+	}
+
+	/**
+	 * Moves a node down from the given heap position until neither child is lower than it
+	 *
+	 * @param nPos			The position to start from
+	 * @param nNodeID		The node being placed
+	 * @param nScore		The score of the node being placed
+	 */
+	private void siftDown(int nPos, int nNodeID, int nScore)
+	{
+		int nHalf = m_nSize >> 1;
+
+		while (nPos < nHalf)
+		{
+			// pick the lower of the two children
+			int nChild = (nPos << 1) + 1;
+			if ((nChild + 1 < m_nSize) && (m_nHeapScores[nChild + 1] < m_nHeapScores[nChild]))
+			{
+				nChild++;
+			}
+
+			if (nScore <= m_nHeapScores[nChild])
+			{
+				break;
+			}
+
+			// pull the child up into the hole
+			place(nPos, m_nHeap[nChild], m_nHeapScores[nChild]);
+			nPos = nChild;
+		}
+
+		place(nPos, nNodeID, nScore);
+	}
+
+	/**
+	 * Puts a node at a heap position and records where it is
+	 *
+	 * @param nPos			The heap position
+	 * @param nNodeID		The node to put there
+	 * @param nScore		The score of the node
+	 */
+	private void place(int nPos, int nNodeID, int nScore)
+	{
+		m_nHeap[nPos] = nNodeID;
+		m_nHeapScores[nPos] = nScore;
+		m_nPositions[nNodeID] = nPos + 1;
+	}
+
+	/**
+	 * Returns a copy of the array that is at least the requested length
+	 *
+	 * @param nArray		The array to grow
+	 * @param nMinLength	The length needed
+	 * @return				The larger array
+	 */
+	private static int [] grow(int [] nArray, int nMinLength)
+	{
+		int nNewLength = Math.max(nMinLength, nArray.length * 2);
+		int [] nNewArray = new int[nNewLength];
+		System.arraycopy(nArray, 0, nNewArray, 0, nArray.length);
+		return nNewArray;
+	}
+}
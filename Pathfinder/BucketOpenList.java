@@ -0,0 +1,253 @@
+/**
+ * An open list that keeps one bucket of nodes per score value. This suits graphs with
+ * small integer connection costs, like the ones a GridMap produces, where the scores in
+ * the list only ever span a small range.
+ * <p>
+ * Each bucket is a doubly linked list threaded through arrays indexed by node id, so adding
+ * a node and lowering its score are O(1). Removing the lowest node moves forward from the
+ * last lowest bucket, which is cheap because A* takes scores out in (nearly) increasing
+ * order. Nodes with the same score come out last in first out, which favours the nodes
+ * closest to the goal when scores tie.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+public class BucketOpenList implements OpenList
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The first node id plus one in each score bucket, zero for an empty bucket
+	 */
+	private int [] m_nBucketHeads;
+
+	/**
+	 * The next node id plus one in the same bucket as each node, zero at the end
+	 */
+	private int [] m_nNext;
+
+	/**
+	 * The previous node id plus one in the same bucket as each node, zero at the start
+	 */
+	private int [] m_nPrev;
+
+	/**
+	 * The score plus one of each node id, zero means the node is not in the list
+	 */
+	private int [] m_nNodeScores;
+
+	/**
+	 * No bucket below this one holds any nodes
+	 */
+	private int m_nLowestBucket;
+
+	/**
+	 * No bucket above this one holds any nodes
+	 */
+	private int m_nHighestBucket;
+
+	/**
+	 * The number of nodes in the list
+	 */
+	private int m_nSize;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Default constructor to create the variables for this class
+	 */
+	public BucketOpenList()
+	{
+		this(64, 64);
+	}
+
+	/**
+	 * Creates the list with room for the given number of node ids and scores
+	 *
+	 * @param nNodeCapacity		The number of node ids to make room for up front
+	 * @param nScoreCapacity	The number of score buckets to make room for up front
+	 */
+	public BucketOpenList(int nNodeCapacity, int nScoreCapacity)
+	{
+		nNodeCapacity = Math.max(nNodeCapacity, 1);
+		nScoreCapacity = Math.max(nScoreCapacity, 1);
+
+		m_nBucketHeads = new int[nScoreCapacity];
+		m_nNext = new int[nNodeCapacity];
+		m_nPrev = new int[nNodeCapacity];
+		m_nNodeScores = new int[nNodeCapacity];
+		m_nLowestBucket = 0;
+		m_nHighestBucket = -1;
+		m_nSize = 0;
+	}
+
+	public void clear()
+	{
+		// empty every bucket that could still hold nodes
+		for (int nScore = m_nLowestBucket; nScore <= m_nHighestBucket; nScore++)
+		{
+			int nEntry = m_nBucketHeads[nScore];
+			while (nEntry != 0)
+			{
+				m_nNodeScores[nEntry - 1] = 0;
+				nEntry = m_nNext[nEntry - 1];
+			}
+			m_nBucketHeads[nScore] = 0;
+		}
+
+		m_nLowestBucket = 0;
+		m_nHighestBucket = -1;
+		m_nSize = 0;
+	}
+
+	public boolean isEmpty()
+	{
+		return m_nSize == 0;
+	}
+
+	public int size()
+	{
+		return m_nSize;
+	}
+
+	public boolean contains(int nNodeID)
+	{
+		return (nNodeID < m_nNodeScores.length) && (m_nNodeScores[nNodeID] != 0);
+	}
+
+	public void insert(int nNodeID, int nScore)
+	{
+		// make sure there is room for the id
+		if (nNodeID >= m_nNodeScores.length)
+		{
+			int nNewLength = Math.max(nNodeID + 1, m_nNodeScores.length * 2);
+			m_nNext = grow(m_nNext, nNewLength);
+			m_nPrev = grow(m_nPrev, nNewLength);
+			m_nNodeScores = grow(m_nNodeScores, nNewLength);
+		}
+
+		link(nNodeID, nScore);
+		m_nSize++;
+	}
+
+	public void decreaseScore(int nNodeID, int nScore)
+	{
+		// only ever move a node to a lower bucket
+		if (nScore < m_nNodeScores[nNodeID] - 1)
+		{
+			unlink(nNodeID);
+			link(nNodeID, nScore);
+		}
+	}
+
+	public int getLowestScore()
+	{
+		// skip forward over the empty buckets
+		while (m_nBucketHeads[m_nLowestBucket] == 0)
+		{
+			m_nLowestBucket++;
+		}
+
+		return m_nLowestBucket;
+	}
+
+	public int removeLowest()
+	{
+		// skip forward over the empty buckets
+		while (m_nBucketHeads[m_nLowestBucket] == 0)
+		{
+			m_nLowestBucket++;
+		}
+
+		int nLowestID = m_nBucketHeads[m_nLowestBucket] - 1;
+		unlink(nLowestID);
+		m_nSize--;
+
+		if (m_nSize == 0)
+		{
+			// nothing left so start the range over
+			m_nLowestBucket = 0;
+			m_nHighestBucket = -1;
+		}
+
+		return nLowestID;
+	}
+
+	/**
+	 * Pushes a node onto the front of the bucket for its score
+	 *
+	 * @param nNodeID		The node to add
+	 * @param nScore		The score of the node
+	 */
+	private void link(int nNodeID, int nScore)
+	{
+		// make sure there is a bucket for the score
+		if (nScore >= m_nBucketHeads.length)
+		{
+			m_nBucketHeads = grow(m_nBucketHeads, Math.max(nScore + 1, m_nBucketHeads.length * 2));
+		}
+
+		int nHead = m_nBucketHeads[nScore];
+		m_nNext[nNodeID] = nHead;
+		m_nPrev[nNodeID] = 0;
+		if (nHead != 0)
+		{
+			m_nPrev[nHead - 1] = nNodeID + 1;
+		}
+		m_nBucketHeads[nScore] = nNodeID + 1;
+		m_nNodeScores[nNodeID] = nScore + 1;
+
+		// widen the range of buckets in use
+		if ((m_nSize == 0) || (nScore < m_nLowestBucket))
+		{
+			m_nLowestBucket = nScore;
+		}
+		if (nScore > m_nHighestBucket)
+		{
+			m_nHighestBucket = nScore;
+		}
+	}
+
+	/**
+	 * Takes a node out of the bucket it is in
+	 *
+	 * @param nNodeID		The node to remove
+	 */
+	private void unlink(int nNodeID)
+	{
+		int nNext = m_nNext[nNodeID];
+		int nPrev = m_nPrev[nNodeID];
+
+		if (nPrev != 0)
+		{
+			m_nNext[nPrev - 1] = nNext;
+		}
+		else
+		{
+			m_nBucketHeads[m_nNodeScores[nNodeID] - 1] = nNext;
+		}
+		if (nNext != 0)
+		{
+			m_nPrev[nNext - 1] = nPrev;
+		}
+
+		m_nNodeScores[nNodeID] = 0;
+	}
+
+	/**
+	 * Returns a copy of the array with the requested length
+	 *
+	 * @param nArray		The array to grow
+	 * @param nNewLength	The new length
+	 * @return				The larger array
+	 */
+	private static int [] grow(int [] nArray, int nNewLength)
+	{
+		int [] nNewArray = new int[nNewLength];
+		System.arraycopy(nArray, 0, nNewArray, 0, nArray.length);
+		return nNewArray;
+	}
+}
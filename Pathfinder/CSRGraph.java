@@ -0,0 +1,433 @@
+/**
+ * The CSRGraph class is a graph that keeps all of its nodes and connections in flat arrays
+ * of ints instead of Node and NodeConnection objects.
+ * <p>
+ * It is built the same way as a Graph, with <code>addNode</code> and <code>addConnection</code>,
+ * and then frozen. Freezing packs the connections into compressed sparse row form: the
+ * connections leaving node n are the entries from <code>m_nOffsets[n]</code> up to
+ * <code>m_nOffsets[n + 1]</code> of the target and cost arrays. Once frozen the graph can't
+ * be changed, and it can be searched from any number of threads at once. The offsets are
+ * set last when freezing and are volatile, so any thread that sees the graph as frozen
+ * also sees all of its connections.
+ * <p>
+ * Freezing also builds the same index of the connections arriving at each node, so a search
+ * can walk the connections backwards from the goal without working them out for each search.
+ * <p>
+ * Node ids are handed out in order starting from zero. Connections with a cost of zero are
+ * untravelable so they are left out when the graph is frozen.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+public class CSRGraph implements ReverseSearchGraph
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The number of nodes in the graph
+	 */
+	private int m_nNumNodes;
+
+	/**
+	 * The x position in the world of each node
+	 */
+	private int [] m_nNodeX;
+
+	/**
+	 * The y position in the world of each node
+	 */
+	private int [] m_nNodeY;
+
+	/**
+	 * The number of connections added while building
+	 */
+	private int m_nNumAdded;
+
+	/**
+	 * The start node of each connection added while building, released when frozen
+	 */
+	private int [] m_nAddedStarts;
+
+	/**
+	 * The end node of each connection added while building, released when frozen
+	 */
+	private int [] m_nAddedDests;
+
+	/**
+	 * The cost of each connection added while building, released when frozen
+	 */
+	private int [] m_nAddedCosts;
+
+	/**
+	 * The index of the first connection of each node, with one extra entry at the end so
+	 * that the connections of node n always end where those of node n + 1 begin. This is
+	 * <code>null</code> until the graph is frozen.
+	 */
+	private volatile int [] m_nOffsets;
+
+	/**
+	 * The end node of each connection once frozen
+	 */
+	private int [] m_nTargets;
+
+	/**
+	 * The cost of each connection once frozen
+	 */
+	private int [] m_nCosts;
+
+	/**
+	 * The index of the first connection arriving at each node once frozen, with one extra
+	 * entry at the end like the offsets
+	 */
+	private int [] m_nReverseOffsets;
+
+	/**
+	 * The start node of each arriving connection once frozen
+	 */
+	private int [] m_nReverseSources;
+
+	/**
+	 * The cost of each arriving connection once frozen
+	 */
+	private int [] m_nReverseCosts;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Default constructor to create the variables for this class
+	 */
+	public CSRGraph()
+	{
+		this(16, 64);
+	}
+
+	/**
+	 * Creates the graph with room for the given number of nodes and connections, it will
+	 * still grow past these if more are added
+	 *
+	 * @param nNodeCapacity			The number of nodes to make room for
+	 * @param nConnectionCapacity	The number of connections to make room for
+	 */
+	public CSRGraph(int nNodeCapacity, int nConnectionCapacity)
+	{
+		nNodeCapacity = Math.max(nNodeCapacity, 1);
+		nConnectionCapacity = Math.max(nConnectionCapacity, 1);
+
+		m_nNodeX = new int[nNodeCapacity];
+		m_nNodeY = new int[nNodeCapacity];
+		m_nAddedStarts = new int[nConnectionCapacity];
+		m_nAddedDests = new int[nConnectionCapacity];
+		m_nAddedCosts = new int[nConnectionCapacity];
+	}
+
+	/**
+	 * This adds a new node to the graph and returns the id number of the node
+	 *
+	 * @param nXPos 	The x position in the world of the node
+	 * @param nYPos		The y position in the world of the node
+	 * @return 			The id number of the node added or -1 if the graph is frozen
+	 */
+	public int addNode(int nXPos, int nYPos)
+	{
+		if (isFrozen())
+		{
+			return -1;
+		}
+
+		// make sure there is room for it
+		if (m_nNumNodes == m_nNodeX.length)
+		{
+			m_nNodeX = grow(m_nNodeX);
+			m_nNodeY = grow(m_nNodeY);
+		}
+
+		m_nNodeX[m_nNumNodes] = nXPos;
+		m_nNodeY[m_nNumNodes] = nYPos;
+
+		// the id is just the position in the node arrays
+		return m_nNumNodes++;
+	}
+
+	/**
+	 * This adds a connection into the graph
+	 *
+	 * @param nStartNodeID 		The start node of the connection
+	 * @param nDestNodeID 		The end node of the connection
+	 * @param nTravelCost 		The cost to travel through this connection
+	 * @return 					whether the connection was added or not, a failure occurs if the
+	 * 							two nodes are not in the graph or the graph is frozen
+	 */
+	public boolean addConnection(int nStartNodeID, int nDestNodeID, int nTravelCost)
+	{
+		if (isFrozen() || !isNode(nStartNodeID) || !isNode(nDestNodeID))
+		{
+			return false;
+		}
+
+		// make sure there is room for it
+		if (m_nNumAdded == m_nAddedStarts.length)
+		{
+			m_nAddedStarts = grow(m_nAddedStarts);
+			m_nAddedDests = grow(m_nAddedDests);
+			m_nAddedCosts = grow(m_nAddedCosts);
+		}
+
+		m_nAddedStarts[m_nNumAdded] = nStartNodeID;
+		m_nAddedDests[m_nNumAdded] = nDestNodeID;
+		m_nAddedCosts[m_nNumAdded] = nTravelCost;
+		m_nNumAdded++;
+
+		return true;
+	}
+
+	/**
+	 * Packs the connections added so far into their final arrays. After this no more nodes
+	 * or connections can be added. Freezing a graph that is already frozen does nothing.
+	 *
+	 * @return					This graph so it can be frozen as it is built
+	 */
+	public CSRGraph freeze()
+	{
+		if (isFrozen())
+		{
+			return this;
+		}
+
+		// count the travelable connections leaving each node, shifted up by one so that
+		// the running total below leaves the start of each node's connections in place
+		int [] nOffsets = new int[m_nNumNodes + 1];
+		for (int i = 0; i < m_nNumAdded; i++)
+		{
+			if (m_nAddedCosts[i] > 0)
+			{
+				nOffsets[m_nAddedStarts[i] + 1]++;
+			}
+		}
+		for (int n = 0; n < m_nNumNodes; n++)
+		{
+			nOffsets[n + 1] += nOffsets[n];
+		}
+
+		// drop each connection into the next free slot of its start node, this keeps the
+		// connections of a node in the order they were added
+		int nNumConnections = nOffsets[m_nNumNodes];
+		int [] nTargets = new int[nNumConnections];
+		int [] nCosts = new int[nNumConnections];
+		int [] nNextSlot = new int[m_nNumNodes];
+		System.arraycopy(nOffsets, 0, nNextSlot, 0, m_nNumNodes);
+
+		for (int i = 0; i < m_nNumAdded; i++)
+		{
+			if (m_nAddedCosts[i] > 0)
+			{
+				int nSlot = nNextSlot[m_nAddedStarts[i]]++;
+				nTargets[nSlot] = m_nAddedDests[i];
+				nCosts[nSlot] = m_nAddedCosts[i];
+			}
+		}
+
+		// the same again for the connections arriving at each node
+		int [] nReverseOffsets = new int[m_nNumNodes + 1];
+		for (int i = 0; i < nNumConnections; i++)
+		{
+			nReverseOffsets[nTargets[i] + 1]++;
+		}
+		for (int n = 0; n < m_nNumNodes; n++)
+		{
+			nReverseOffsets[n + 1] += nReverseOffsets[n];
+		}
+
+		int [] nReverseSources = new int[nNumConnections];
+		int [] nReverseCosts = new int[nNumConnections];
+		System.arraycopy(nReverseOffsets, 0, nNextSlot, 0, m_nNumNodes);
+
+		for (int n = 0; n < m_nNumNodes; n++)
+		{
+			for (int i = nOffsets[n]; i < nOffsets[n + 1]; i++)
+			{
+				int nSlot = nNextSlot[nTargets[i]]++;
+				nReverseSources[nSlot] = n;
+				nReverseCosts[nSlot] = nCosts[i];
+			}
+		}
+
+		m_nTargets = nTargets;
+		m_nCosts = nCosts;
+		m_nReverseOffsets = nReverseOffsets;
+		m_nReverseSources = nReverseSources;
+		m_nReverseCosts = nReverseCosts;
+		m_nOffsets = nOffsets;
+
+		// the building arrays aren't needed any more
+		m_nAddedStarts = null;
+		m_nAddedDests = null;
+		m_nAddedCosts = null;
+		m_nNumAdded = 0;
+
+		return this;
+	}
+
+	/**
+	 * Whether the graph has been frozen yet
+	 *
+	 * @return			<code>true</code> if frozen <code>false</code> otherwise
+	 */
+	public boolean isFrozen()
+	{
+		return m_nOffsets != null;
+	}
+
+	/**
+	 * The number of nodes in the graph
+	 *
+	 * @return			The number of nodes
+	 */
+	public int getNumNodes()
+	{
+		return m_nNumNodes;
+	}
+
+	/**
+	 * The number of travelable connections in the graph, this is only known once frozen
+	 *
+	 * @return			The number of connections
+	 */
+	public int getNumConnections()
+	{
+		checkFrozen();
+		return m_nTargets.length;
+	}
+
+	/**
+	 * The index of the first connection leaving a node. The connections of the node run
+	 * up to, but not including, <code>getConnectionEnd</code> and can be read with
+	 * <code>getConnectionTarget</code> and <code>getConnectionCostAt</code>.
+	 *
+	 * @param nNodeID	The id of the node
+	 * @return			The index of its first connection
+	 */
+	public int getConnectionStart(int nNodeID)
+	{
+		checkFrozen();
+		return m_nOffsets[nNodeID];
+	}
+
+	/**
+	 * The index one past the last connection leaving a node
+	 *
+	 * @param nNodeID	The id of the node
+	 * @return			The index after its last connection
+	 */
+	public int getConnectionEnd(int nNodeID)
+	{
+		checkFrozen();
+		return m_nOffsets[nNodeID + 1];
+	}
+
+	/**
+	 * The end node of a connection by its index in the graph
+	 *
+	 * @param nIndex	The index of the connection
+	 * @return			The id of the node it leads to
+	 */
+	public int getConnectionTarget(int nIndex)
+	{
+		return m_nTargets[nIndex];
+	}
+
+	/**
+	 * The cost of a connection by its index in the graph
+	 *
+	 * @param nIndex	The index of the connection
+	 * @return			The cost to travel it
+	 */
+	public int getConnectionCostAt(int nIndex)
+	{
+		return m_nCosts[nIndex];
+	}
+
+	public int getNodeCapacity()
+	{
+		return m_nNumNodes;
+	}
+
+	public int getNodeX(int nNodeID)
+	{
+		return m_nNodeX[nNodeID];
+	}
+
+	public int getNodeY(int nNodeID)
+	{
+		return m_nNodeY[nNodeID];
+	}
+
+	public int getConnectionCount(int nNodeID)
+	{
+		checkFrozen();
+		return m_nOffsets[nNodeID + 1] - m_nOffsets[nNodeID];
+	}
+
+	public int getConnectedNodeID(int nNodeID, int nConnection)
+	{
+		return m_nTargets[m_nOffsets[nNodeID] + nConnection];
+	}
+
+	public int getConnectionCost(int nNodeID, int nConnection)
+	{
+		return m_nCosts[m_nOffsets[nNodeID] + nConnection];
+	}
+
+	public int getReverseConnectionCount(int nNodeID)
+	{
+		checkFrozen();
+		return m_nReverseOffsets[nNodeID + 1] - m_nReverseOffsets[nNodeID];
+	}
+
+	public int getReverseConnectedNodeID(int nNodeID, int nConnection)
+	{
+		return m_nReverseSources[m_nReverseOffsets[nNodeID] + nConnection];
+	}
+
+	public int getReverseConnectionCost(int nNodeID, int nConnection)
+	{
+		return m_nReverseCosts[m_nReverseOffsets[nNodeID] + nConnection];
+	}
+
+	/**
+	 * Whether the id belongs to a node in the graph
+	 *
+	 * @param nNodeID	The id to check
+	 * @return			<code>true</code> if it is a node <code>false</code> otherwise
+	 */
+	private boolean isNode(int nNodeID)
+	{
+		return (nNodeID >= 0) && (nNodeID < m_nNumNodes);
+	}
+
+	/**
+	 * Makes sure the graph is frozen before its connections are read
+	 */
+	private void checkFrozen()
+	{
+		if (m_nOffsets == null)
+		{
+			throw new IllegalStateException("The graph must be frozen before it is searched");
+		}
+	}
+
+	/**
+	 * Returns a copy of the array with twice the length
+	 *
+	 * @param nArray		The array to grow
+	 * @return				The larger array
+	 */
+	private static int [] grow(int [] nArray)
+	{
+		int [] nNewArray = new int[nArray.length * 2];
+		System.arraycopy(nArray, 0, nNewArray, 0, nArray.length);
+		return nNewArray;
+	}
+}
@@ -0,0 +1,53 @@
+/**
+ * The CellCosts interface is the storage behind the cost of every cell of a grid. The
+ * costs can be kept in an int array or packed into a buffer of bytes, such as a file
+ * mapped into memory, and the grid graph searches them the same way either way.
+ * <p>
+ * Cells are referred to by their id, the cell at (x, y) of a grid has the id y * width + x.
+ * A cost of zero is a cell that can not be moved into.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+public interface CellCosts
+{
+	/**
+	 * The number of cells stored
+	 *
+	 * @return				The number of cells
+	 */
+	public int getNumCells();
+
+	/**
+	 * The largest cost the storage can hold
+	 *
+	 * @return				The largest cost
+	 */
+	public int getMaxCost();
+
+	/**
+	 * Whether the costs can't be changed, such as costs read from a file that could only
+	 * be opened for reading
+	 *
+	 * @return				<code>true</code> if read only <code>false</code> otherwise
+	 */
+	public boolean isReadOnly();
+
+	/**
+	 * Provides the cost of moving into a cell
+	 *
+	 * @param nCellID		The id of the cell
+	 * @return				The cost of the cell, zero if it can not be moved into
+	 */
+	public int getCost(int nCellID);
+
+	/**
+	 * Changes the cost of moving into a cell
+	 *
+	 * @param nCellID		The id of the cell
+	 * @param nCost			The new cost of the cell, from zero up to the largest cost
+	 * @throws java.nio.ReadOnlyBufferException	If the costs are read only
+	 */
+	public void setCost(int nCellID, int nCost);
+}
@@ -0,0 +1,543 @@
+/**
+ * Cell costs kept in a tiled map file (see TiledMapFile) and read in a chunk at a time as
+ * they are needed. The map is split into square chunks and only a set number of them are
+ * kept in memory. When a cell in a chunk that isn't in memory is looked at its chunk is read
+ * from the file, and if that makes too many chunks the one used longest ago is dropped. A
+ * search only ever touches the chunks its frontier reaches, so the memory used grows with
+ * the area searched rather than the size of the world.
+ * <p>
+ * Changed costs are kept in the chunk in memory and written back to the file when the chunk
+ * is dropped or the costs are flushed, so a file that can only be opened for reading gives
+ * costs that can't be changed.
+ * <p>
+ * Reading in chunks changes the storage, so unlike the other storage a ChunkedCellCosts
+ * must only be used by one thread at a time, even just to read costs. Each thread can open
+ * its own over the same file.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+public class ChunkedCellCosts implements CellCosts
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The file the chunks are read from
+	 */
+	private final RandomAccessFile m_tiledFile;
+
+	/**
+	 * The channel of the file
+	 */
+	private final FileChannel m_channel;
+
+	/**
+	 * Whether the file was opened for writing
+	 */
+	private final boolean m_bWritable;
+
+	/**
+	 * The width of the map
+	 */
+	private final int m_nWidth;
+
+	/**
+	 * The height of the map
+	 */
+	private final int m_nHeight;
+
+	/**
+	 * The width and height of a chunk as a power of two
+	 */
+	private final int m_nChunkShift;
+
+	/**
+	 * The number of chunks across the map
+	 */
+	private final int m_nChunksX;
+
+	/**
+	 * The number of bytes used for each cell, 1 or 2
+	 */
+	private final int m_nBytesPerCell;
+
+	/**
+	 * The position in the file of the first chunk
+	 */
+	private final long m_lChunksOffset;
+
+	/**
+	 * The cost of the cheapest cell that can be moved into
+	 */
+	private int m_nMinCost;
+
+	/**
+	 * The cheapest cost as it is recorded in the header of the file
+	 */
+	private int m_nFileMinCost;
+
+	/**
+	 * The cells of each chunk in memory, null for the chunks that aren't
+	 */
+	private final byte [][] m_chunks;
+
+	/**
+	 * When each chunk was last used, as a count of the cells looked at
+	 */
+	private final long [] m_lLastUsed;
+
+	/**
+	 * Whether each chunk in memory has been changed since it was read
+	 */
+	private final boolean [] m_bDirty;
+
+	/**
+	 * The chunks in memory
+	 */
+	private final int [] m_nResident;
+
+	/**
+	 * The number of chunks in memory
+	 */
+	private int m_nNumResident;
+
+	/**
+	 * The count of cells looked at, used to tell which chunk was used longest ago
+	 */
+	private long m_lClock;
+
+	/**
+	 * The cells of the last chunk dropped, kept to read the next chunk into
+	 */
+	private byte [] m_spareChunk;
+
+	/**
+	 * The number of chunks read from the file
+	 */
+	private long m_lNumLoads;
+
+	/**
+	 * The number of chunks dropped from memory to make room
+	 */
+	private long m_lNumEvictions;
+
+	/**
+	 * The number of changed chunks written back to the file
+	 */
+	private long m_lNumWrites;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Opens the costs of a tiled map file. Nothing but the header is read until costs are
+	 * looked at.
+	 *
+	 * @param zFileName				The name of the tiled map file
+	 * @param nMaxResidentChunks	The most chunks to keep in memory at once
+	 * @throws IOException			If the file can't be read or isn't a tiled map
+	 */
+	public ChunkedCellCosts(String zFileName, int nMaxResidentChunks) throws IOException
+	{
+		if (nMaxResidentChunks < 1)
+		{
+			throw new IllegalArgumentException("At least one chunk must be kept in memory");
+		}
+
+		File file = new File(zFileName);
+		m_bWritable = file.canWrite();
+		m_tiledFile = new RandomAccessFile(file, m_bWritable ? "rw" : "r");
+		m_channel = m_tiledFile.getChannel();
+
+		try
+		{
+			ByteBuffer header = ByteBuffer.allocate(TiledMapFile.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			readFully(header, 0);
+
+			if (header.getInt(0) != TiledMapFile.MAGIC)
+			{
+				throw new IOException(zFileName + " is not a tiled map");
+			}
+			if (header.getShort(4) != TiledMapFile.VERSION)
+			{
+				throw new IOException(zFileName + " is version " + header.getShort(4) + " of the format, only version " + TiledMapFile.VERSION + " can be read");
+			}
+
+			int nBitsPerCell = header.getShort(6);
+			m_nWidth = header.getInt(8);
+			m_nHeight = header.getInt(12);
+			int nChunkSize = header.getInt(16);
+			m_nMinCost = header.getInt(36);
+			m_nFileMinCost = m_nMinCost;
+
+			if ((nBitsPerCell != 8) && (nBitsPerCell != 16))
+			{
+				throw new IOException(zFileName + " has " + nBitsPerCell + " bits a cell, only 8 or 16 can be read");
+			}
+			if ((nChunkSize <= 0) || (Integer.bitCount(nChunkSize) != 1) || (nChunkSize > 4096))
+			{
+				throw new IOException(zFileName + " has chunks of " + nChunkSize + " cells, they must be a power of two up to 4096");
+			}
+			if ((m_nWidth <= 0) || (m_nHeight <= 0) || ((long)m_nWidth * m_nHeight > Integer.MAX_VALUE))
+			{
+				throw new IOException(zFileName + " is a " + m_nWidth + " by " + m_nHeight + " map, which can't be searched");
+			}
+
+			m_nBytesPerCell = nBitsPerCell / 8;
+			m_nChunkShift = Integer.numberOfTrailingZeros(nChunkSize);
+			m_nChunksX = (m_nWidth + nChunkSize - 1) >> m_nChunkShift;
+			int nChunksY = (m_nHeight + nChunkSize - 1) >> m_nChunkShift;
+			m_lChunksOffset = TiledMapFile.HEADER_SIZE;
+
+			long lSize = m_lChunksOffset + ((long)m_nChunksX * nChunksY * getChunkBytes());
+			if (m_channel.size() < lSize)
+			{
+				throw new IOException(zFileName + " is too short for a " + m_nWidth + " by " + m_nHeight + " map");
+			}
+
+			int nNumChunks = m_nChunksX * nChunksY;
+			m_chunks = new byte[nNumChunks][];
+			m_lLastUsed = new long[nNumChunks];
+			m_bDirty = new boolean[nNumChunks];
+			m_nResident = new int[Math.min(nMaxResidentChunks, nNumChunks)];
+		}
+		catch (IOException e)
+		{
+			m_tiledFile.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Provides the number of bytes a chunk takes in the file and in memory
+	 *
+	 * @return				The number of bytes in a chunk
+	 */
+	private int getChunkBytes()
+	{
+		return (1 << (m_nChunkShift * 2)) * m_nBytesPerCell;
+	}
+
+	/**
+	 * Finds the position of a cell in the cells of its chunk
+	 *
+	 * @param nX			The x position of the cell
+	 * @param nY			The y position of the cell
+	 * @return				The offset of the first byte of the cell in its chunk
+	 */
+	private int getCellOffset(int nX, int nY)
+	{
+		int nMask = (1 << m_nChunkShift) - 1;
+
+		return (((nY & nMask) << m_nChunkShift) | (nX & nMask)) * m_nBytesPerCell;
+	}
+
+	/**
+	 * Provides the cells of a chunk, reading the chunk in if it isn't in memory
+	 *
+	 * @param nChunk		The index of the chunk
+	 * @return				The cells of the chunk
+	 */
+	private byte [] getChunk(int nChunk)
+	{
+		byte [] chunk = m_chunks[nChunk];
+		if (chunk == null)
+		{
+			chunk = loadChunk(nChunk);
+		}
+
+		m_lLastUsed[nChunk] = ++m_lClock;
+		return chunk;
+	}
+
+	/**
+	 * Reads a chunk into memory, dropping the chunk used longest ago if there isn't room
+	 *
+	 * @param nChunk		The index of the chunk
+	 * @return				The cells of the chunk
+	 */
+	private byte [] loadChunk(int nChunk)
+	{
+		try
+		{
+			int nSlot = m_nNumResident;
+			if (m_nNumResident == m_nResident.length)
+			{
+				// make room by dropping the chunk used longest ago
+				nSlot = 0;
+				for (int i = 1; i < m_nNumResident; i++)
+				{
+					if (m_lLastUsed[m_nResident[i]] < m_lLastUsed[m_nResident[nSlot]])
+					{
+						nSlot = i;
+					}
+				}
+
+				evictChunk(m_nResident[nSlot]);
+			}
+			else
+			{
+				m_nNumResident++;
+			}
+
+			byte [] chunk = (m_spareChunk != null) ? m_spareChunk : new byte[getChunkBytes()];
+			m_spareChunk = null;
+			readFully(ByteBuffer.wrap(chunk), getChunkPosition(nChunk));
+
+			m_chunks[nChunk] = chunk;
+			m_nResident[nSlot] = nChunk;
+			m_lNumLoads++;
+
+			return chunk;
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException("Cannot read chunk " + nChunk + " of the tiled map", e);
+		}
+	}
+
+	/**
+	 * Drops a chunk from memory, writing it back to the file first if it was changed
+	 *
+	 * @param nChunk		The index of the chunk
+	 * @throws IOException	If the chunk can't be written
+	 */
+	private void evictChunk(int nChunk) throws IOException
+	{
+		writeChunk(nChunk);
+
+		m_spareChunk = m_chunks[nChunk];
+		m_chunks[nChunk] = null;
+		m_lNumEvictions++;
+	}
+
+	/**
+	 * Writes a chunk in memory back to the file if it has been changed
+	 *
+	 * @param nChunk		The index of the chunk
+	 * @throws IOException	If the chunk can't be written
+	 */
+	private void writeChunk(int nChunk) throws IOException
+	{
+		if (!m_bDirty[nChunk])
+		{
+			return;
+		}
+
+		ByteBuffer chunkBuffer = ByteBuffer.wrap(m_chunks[nChunk]);
+		long lPosition = getChunkPosition(nChunk);
+		while (chunkBuffer.hasRemaining())
+		{
+			lPosition += m_channel.write(chunkBuffer, lPosition);
+		}
+
+		m_bDirty[nChunk] = false;
+		m_lNumWrites++;
+	}
+
+	/**
+	 * Provides the position of a chunk in the file
+	 *
+	 * @param nChunk		The index of the chunk
+	 * @return				The position of the first byte of the chunk
+	 */
+	private long getChunkPosition(int nChunk)
+	{
+		return m_lChunksOffset + ((long)nChunk * getChunkBytes());
+	}
+
+	/**
+	 * Fills a buffer from the file
+	 *
+	 * @param buffer		The buffer to fill
+	 * @param lPosition		The position in the file to read from
+	 * @throws IOException	If the file ends before the buffer is full
+	 */
+	private void readFully(ByteBuffer buffer, long lPosition) throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			int nRead = m_channel.read(buffer, lPosition);
+			if (nRead < 0)
+			{
+				throw new EOFException("The tiled map ends part way through");
+			}
+			lPosition += nRead;
+		}
+	}
+
+	public int getNumCells()
+	{
+		return m_nWidth * m_nHeight;
+	}
+
+	public int getMaxCost()
+	{
+		return (m_nBytesPerCell == 1) ? 0xFF : 0xFFFF;
+	}
+
+	public boolean isReadOnly()
+	{
+		return !m_bWritable;
+	}
+
+	public int getCost(int nCellID)
+	{
+		int nX = nCellID % m_nWidth;
+		int nY = nCellID / m_nWidth;
+		byte [] chunk = getChunk(((nY >> m_nChunkShift) * m_nChunksX) + (nX >> m_nChunkShift));
+		int nOffset = getCellOffset(nX, nY);
+
+		if (m_nBytesPerCell == 1)
+		{
+			return chunk[nOffset] & 0xFF;
+		}
+
+		// 16 bit costs are little endian like the rest of the file
+		return (chunk[nOffset] & 0xFF) | ((chunk[nOffset + 1] & 0xFF) << 8);
+	}
+
+	public void setCost(int nCellID, int nCost)
+	{
+		if (!m_bWritable)
+		{
+			throw new ReadOnlyBufferException();
+		}
+		if ((nCost < 0) || (nCost > getMaxCost()))
+		{
+			throw new IllegalArgumentException("A cost of " + nCost + " doesn't fit in " + (m_nBytesPerCell * 8) + " bits");
+		}
+
+		int nX = nCellID % m_nWidth;
+		int nY = nCellID / m_nWidth;
+		int nChunk = ((nY >> m_nChunkShift) * m_nChunksX) + (nX >> m_nChunkShift);
+		byte [] chunk = getChunk(nChunk);
+		int nOffset = getCellOffset(nX, nY);
+
+		chunk[nOffset] = (byte)nCost;
+		if (m_nBytesPerCell == 2)
+		{
+			chunk[nOffset + 1] = (byte)(nCost >> 8);
+		}
+		m_bDirty[nChunk] = true;
+
+		if ((nCost > 0) && ((m_nMinCost == 0) || (nCost < m_nMinCost)))
+		{
+			m_nMinCost = nCost;
+		}
+	}
+
+	/**
+	 * Writes every changed chunk in memory back to the file, along with the cheapest cost if
+	 * a cheaper cell has been set. Without it a search of the file once it is opened again
+	 * would take every step to cost more than the cheap cells do and miss the best paths.
+	 *
+	 * @throws IOException	If a chunk or the header can't be written
+	 */
+	public void flush() throws IOException
+	{
+		for (int i = 0; i < m_nNumResident; i++)
+		{
+			writeChunk(m_nResident[i]);
+		}
+
+		if (m_nMinCost != m_nFileMinCost)
+		{
+			ByteBuffer minCostBuffer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+			minCostBuffer.putInt(0, m_nMinCost);
+			while (minCostBuffer.hasRemaining())
+			{
+				m_channel.write(minCostBuffer, 36 + minCostBuffer.position());
+			}
+			m_nFileMinCost = m_nMinCost;
+		}
+	}
+
+	/**
+	 * Writes back any changed chunks and closes the file, the costs can't be used after this
+	 *
+	 * @throws IOException	If a chunk can't be written
+	 */
+	public void close() throws IOException
+	{
+		try
+		{
+			flush();
+		}
+		finally
+		{
+			m_tiledFile.close();
+		}
+	}
+
+	/**
+	 * Get the cost of the cheapest cell that can be moved into, as recorded in the file and
+	 * lowered by any cheaper cost set since, so it can be found without reading every chunk
+	 * @return	the cheapest cost, or zero if no cell can be moved into
+	 */
+	public int getMinCost()
+	{
+		return m_nMinCost;
+	}
+
+	/**
+	 * Get the width and height of a chunk
+	 * @return	the number of cells across a chunk
+	 */
+	public int getChunkSize()
+	{
+		return 1 << m_nChunkShift;
+	}
+
+	/**
+	 * Get the most chunks kept in memory at once
+	 * @return	the most chunks in memory
+	 */
+	public int getMaxResidentChunks()
+	{
+		return m_nResident.length;
+	}
+
+	/**
+	 * Get the number of chunks in memory
+	 * @return	the number of chunks in memory
+	 */
+	public int getNumResidentChunks()
+	{
+		return m_nNumResident;
+	}
+
+	/**
+	 * Get the number of chunks read from the file
+	 * @return	the number of chunk loads
+	 */
+	public long getNumLoads()
+	{
+		return m_lNumLoads;
+	}
+
+	/**
+	 * Get the number of chunks dropped from memory to make room for others
+	 * @return	the number of chunk evictions
+	 */
+	public long getNumEvictions()
+	{
+		return m_lNumEvictions;
+	}
+
+	/**
+	 * Get the number of changed chunks written back to the file
+	 * @return	the number of chunk writes
+	 */
+	public long getNumWrites()
+	{
+		return m_lNumWrites;
+	}
+}
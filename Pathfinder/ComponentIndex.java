@@ -0,0 +1,717 @@
+/**
+ * The ComponentIndex labels the connected regions of a grid graph so whether a path exists
+ * between two cells can be answered straight away, without a search. When there is no path
+ * a search has to expand every cell it can reach before it gives up, which on a large map is
+ * the most expensive query there is, so checking the index first turns the worst queries
+ * into the cheapest.
+ * <p>
+ * Open cells (those that can be moved into) are joined to the open cells around them in the
+ * same 8 directions the grid graph moves in. Each open cell holds a label and the labels are
+ * joined together with a union-find, so two cells are in the same region when their labels
+ * have the same root.
+ * <p>
+ * The index is kept up to date as cells change without labelling the whole grid again.
+ * Opening a cell joins the regions around it. Blocking a cell can only split its region if
+ * the open cells around it aren't joined to each other directly, and then a flood fill is
+ * grown from each side of the blocked cell in turn until all but one have met or run out.
+ * Only the sides that run out are given new labels, so the work is about the size of the
+ * smaller pieces rather than the whole region. Added as a listener of a GridMap it does this
+ * for each cell changed through the map.
+ * <p>
+ * Queries can be made from many threads at once, but changes must not be made while a
+ * query is running.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+public class ComponentIndex implements GridMapListener
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The x step of each of the 8 neighbours of a cell, in order around the cell
+	 */
+	private static final int [] DIR_X = { 1, 1, 0, -1, -1, -1, 0, 1 };
+
+	/**
+	 * The y step of each of the 8 neighbours of a cell, in order around the cell
+	 */
+	private static final int [] DIR_Y = { 0, 1, 1, 1, 0, -1, -1, -1 };
+
+	/**
+	 * The label of a cell that can't be moved into
+	 */
+	private static final int NONE = -1;
+
+	/**
+	 * The most sides a blocked cell can split its region into
+	 */
+	private static final int MAX_SIDES = 4;
+
+	/**
+	 * The grid being labelled
+	 */
+	private final GridGraph m_grid;
+
+	/**
+	 * The label of each cell, or NONE if it can't be moved into
+	 */
+	private final int [] m_nLabels;
+
+	/**
+	 * The parent of each label in the union-find, a root label is its own parent
+	 */
+	private int [] m_nParents;
+
+	/**
+	 * The number of cells in the region of each root label
+	 */
+	private int [] m_nSizes;
+
+	/**
+	 * The number of labels handed out since the grid was last labelled from scratch
+	 */
+	private int m_nNumLabels;
+
+	/**
+	 * The number of separate regions of open cells
+	 */
+	private int m_nNumComponents;
+
+	/**
+	 * The number of times the whole grid has been labelled
+	 */
+	private int m_nNumRebuilds;
+
+	/**
+	 * The flood fill that reached each cell, the fill number times MAX_SIDES plus the side
+	 * it was grown from, so it doesn't have to be cleared between fills
+	 */
+	private final int [] m_nVisits;
+
+	/**
+	 * The number of the current flood fill
+	 */
+	private int m_nFillNumber;
+
+	/**
+	 * The cells reached from each side of a blocked cell, in the order they were reached
+	 */
+	private final int [][] m_nQueues = new int[MAX_SIDES][];
+
+	/**
+	 * How far through its queue each side has grown
+	 */
+	private final int [] m_nQueueHeads = new int[MAX_SIDES];
+
+	/**
+	 * The number of cells in the queue of each side
+	 */
+	private final int [] m_nQueueTails = new int[MAX_SIDES];
+
+	/**
+	 * The side each side has met up with, a side that hasn't met another is its own
+	 */
+	private final int [] m_nSideParents = new int[MAX_SIDES];
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates the index and labels every cell of the grid
+	 *
+	 * @param grid		The grid to label
+	 */
+	public ComponentIndex(GridGraph grid)
+	{
+		m_grid = grid;
+
+		int nNumCells = grid.getNodeCapacity();
+		m_nLabels = new int[nNumCells];
+		m_nVisits = new int[nNumCells];
+		for (int i = 0; i < MAX_SIDES; i++)
+		{
+			m_nQueues[i] = new int[64];
+		}
+
+		rebuild();
+	}
+
+	/**
+	 * Labels every cell of the grid from scratch
+	 */
+	private void rebuild()
+	{
+		int nNumCells = m_nLabels.length;
+
+		// keep the room there was for labels, it will be needed again
+		int nCapacity = (m_nParents != null) ? m_nParents.length : 64;
+		m_nParents = new int[nCapacity];
+		m_nSizes = new int[nCapacity];
+		m_nNumLabels = 0;
+		m_nNumComponents = 0;
+
+		for (int i = 0; i < nNumCells; i++)
+		{
+			m_nLabels[i] = NONE;
+		}
+
+		// flood fill from each open cell that hasn't been labelled yet
+		int [] nQueue = m_nQueues[0];
+		for (int nCellID = 0; nCellID < nNumCells; nCellID++)
+		{
+			if ((m_nLabels[nCellID] != NONE) || (m_grid.getCellCost(nCellID) <= 0))
+			{
+				continue;
+			}
+
+			int nLabel = newLabel();
+			m_nLabels[nCellID] = nLabel;
+			nQueue[0] = nCellID;
+			int nHead = 0;
+			int nTail = 1;
+
+			while (nHead < nTail)
+			{
+				int nCurrCellID = nQueue[nHead++];
+				int nX = m_grid.getNodeX(nCurrCellID);
+				int nY = m_grid.getNodeY(nCurrCellID);
+
+				for (int i = 0; i < DIR_X.length; i++)
+				{
+					if (m_grid.getCellCost(nX + DIR_X[i], nY + DIR_Y[i]) <= 0)
+					{
+						continue;
+					}
+
+					int nAdjCellID = m_grid.getCellID(nX + DIR_X[i], nY + DIR_Y[i]);
+					if (m_nLabels[nAdjCellID] == NONE)
+					{
+						m_nLabels[nAdjCellID] = nLabel;
+						if (nTail == nQueue.length)
+						{
+							nQueue = grow(nQueue);
+						}
+						nQueue[nTail++] = nAdjCellID;
+					}
+				}
+			}
+
+			m_nSizes[nLabel] = nTail;
+		}
+
+		m_nQueues[0] = nQueue;
+		m_nNumRebuilds++;
+	}
+
+	/**
+	 * Hands out a new root label for a region with no cells yet
+	 *
+	 * @return		The new label
+	 */
+	private int newLabel()
+	{
+		if (m_nNumLabels == m_nParents.length)
+		{
+			int [] nParents = new int[m_nParents.length * 2];
+			int [] nSizes = new int[m_nParents.length * 2];
+			System.arraycopy(m_nParents, 0, nParents, 0, m_nNumLabels);
+			System.arraycopy(m_nSizes, 0, nSizes, 0, m_nNumLabels);
+			m_nParents = nParents;
+			m_nSizes = nSizes;
+		}
+
+		int nLabel = m_nNumLabels++;
+		m_nParents[nLabel] = nLabel;
+		m_nSizes[nLabel] = 0;
+		m_nNumComponents++;
+
+		return nLabel;
+	}
+
+	/**
+	 * Finds the root of a label without changing the union-find, so it is safe to call
+	 * from many threads at once
+	 *
+	 * @param nLabel		The label
+	 * @return				The root label of its region
+	 */
+	private int findRoot(int nLabel)
+	{
+		while (m_nParents[nLabel] != nLabel)
+		{
+			nLabel = m_nParents[nLabel];
+		}
+
+		return nLabel;
+	}
+
+	/**
+	 * Finds the root of a label, pointing the labels passed on the way closer to it
+	 *
+	 * @param nLabel		The label
+	 * @return				The root label of its region
+	 */
+	private int compressRoot(int nLabel)
+	{
+		while (m_nParents[nLabel] != nLabel)
+		{
+			m_nParents[nLabel] = m_nParents[m_nParents[nLabel]];
+			nLabel = m_nParents[nLabel];
+		}
+
+		return nLabel;
+	}
+
+	/**
+	 * Joins two regions into one, the smaller region is put under the larger one
+	 *
+	 * @param nRootA		The root label of one region
+	 * @param nRootB		The root label of the other region
+	 * @return				The root label of the joined region
+	 */
+	private int join(int nRootA, int nRootB)
+	{
+		if (nRootA == nRootB)
+		{
+			return nRootA;
+		}
+
+		if (m_nSizes[nRootA] < m_nSizes[nRootB])
+		{
+			int nSwap = nRootA;
+			nRootA = nRootB;
+			nRootB = nSwap;
+		}
+
+		m_nParents[nRootB] = nRootA;
+		m_nSizes[nRootA] += m_nSizes[nRootB];
+		m_nNumComponents--;
+
+		return nRootA;
+	}
+
+	/**
+	 * Works out whether a path can be found from one cell to another. The start cell doesn't
+	 * have to be open since a path can always leave it, but the goal cell does unless it is
+	 * the start as well.
+	 *
+	 * @param nStartCellID		The id of the start cell
+	 * @param nGoalCellID		The id of the goal cell
+	 * @return					<code>true</code> if there is a path from the start to the goal
+	 */
+	public boolean isReachable(int nStartCellID, int nGoalCellID)
+	{
+		if (nStartCellID == nGoalCellID)
+		{
+			return true;
+		}
+
+		int nGoalLabel = m_nLabels[nGoalCellID];
+		if (nGoalLabel == NONE)
+		{
+			return false;
+		}
+
+		int nGoalRoot = findRoot(nGoalLabel);
+		int nStartLabel = m_nLabels[nStartCellID];
+		if (nStartLabel != NONE)
+		{
+			return findRoot(nStartLabel) == nGoalRoot;
+		}
+
+		// a blocked start can still step out into any open cell next to it
+		int nX = m_grid.getNodeX(nStartCellID);
+		int nY = m_grid.getNodeY(nStartCellID);
+		for (int i = 0; i < DIR_X.length; i++)
+		{
+			if (m_grid.isInGrid(nX + DIR_X[i], nY + DIR_Y[i]))
+			{
+				int nAdjLabel = m_nLabels[m_grid.getCellID(nX + DIR_X[i], nY + DIR_Y[i])];
+				if ((nAdjLabel != NONE) && (findRoot(nAdjLabel) == nGoalRoot))
+				{
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Provides the region a cell is in. Two cells are in the same region when their regions
+	 * are the same number, the numbers change as the grid changes.
+	 *
+	 * @param nCellID		The id of the cell
+	 * @return				The number of the region of the cell, or -1 if it can't be moved into
+	 */
+	public int getComponent(int nCellID)
+	{
+		int nLabel = m_nLabels[nCellID];
+
+		return (nLabel == NONE) ? NONE : findRoot(nLabel);
+	}
+
+	/**
+	 * Provides the number of cells in the region a cell is in
+	 *
+	 * @param nCellID		The id of the cell
+	 * @return				The number of cells in its region, or 0 if it can't be moved into
+	 */
+	public int getComponentSize(int nCellID)
+	{
+		int nLabel = m_nLabels[nCellID];
+
+		return (nLabel == NONE) ? 0 : m_nSizes[findRoot(nLabel)];
+	}
+
+	/**
+	 * Get the number of separate regions of open cells
+	 * @return	the number of regions
+	 */
+	public int getNumComponents()
+	{
+		return m_nNumComponents;
+	}
+
+	/**
+	 * Get the number of times the whole grid has been labelled, once when the index is
+	 * created and again each time the labels have run out
+	 * @return	the number of times the grid has been labelled
+	 */
+	public int getNumRebuilds()
+	{
+		return m_nNumRebuilds;
+	}
+
+	public void cellCostChanged(int nCellID, int nOldCost, int nNewCost)
+	{
+		if ((nOldCost > 0) == (nNewCost > 0))
+		{
+			// only the cost changed so the regions are the same
+			return;
+		}
+
+		// the labels of regions that have since been split or joined are never handed out
+		// again, so once as many have been handed out as there are cells the grid is labelled
+		// from scratch to reclaim them, by then this costs no more than the changes that
+		// used them up
+		if (m_nNumLabels >= m_nLabels.length)
+		{
+			rebuild();
+			return;
+		}
+
+		if (nNewCost > 0)
+		{
+			openCell(nCellID);
+		}
+		else
+		{
+			blockCell(nCellID);
+		}
+	}
+
+	/**
+	 * Adds a cell that has just been opened to the regions, joining up any regions that
+	 * meet at it
+	 *
+	 * @param nCellID		The id of the cell
+	 */
+	private void openCell(int nCellID)
+	{
+		if (m_nLabels[nCellID] != NONE)
+		{
+			return;
+		}
+
+		int nX = m_grid.getNodeX(nCellID);
+		int nY = m_grid.getNodeY(nCellID);
+		int nRoot = NONE;
+
+		for (int i = 0; i < DIR_X.length; i++)
+		{
+			if (!m_grid.isInGrid(nX + DIR_X[i], nY + DIR_Y[i]))
+			{
+				continue;
+			}
+
+			int nAdjLabel = m_nLabels[m_grid.getCellID(nX + DIR_X[i], nY + DIR_Y[i])];
+			if (nAdjLabel != NONE)
+			{
+				int nAdjRoot = compressRoot(nAdjLabel);
+				nRoot = (nRoot == NONE) ? nAdjRoot : join(nRoot, nAdjRoot);
+			}
+		}
+
+		if (nRoot == NONE)
+		{
+			// nothing open around it so it is a region on its own
+			nRoot = newLabel();
+		}
+
+		m_nLabels[nCellID] = nRoot;
+		m_nSizes[nRoot]++;
+	}
+
+	/**
+	 * Takes a cell that has just been blocked out of its region, splitting the region up if
+	 * the cell was the only thing joining parts of it together
+	 *
+	 * @param nCellID		The id of the cell
+	 */
+	private void blockCell(int nCellID)
+	{
+		int nLabel = m_nLabels[nCellID];
+		if (nLabel == NONE)
+		{
+			return;
+		}
+
+		int nRoot = compressRoot(nLabel);
+		m_nLabels[nCellID] = NONE;
+		m_nSizes[nRoot]--;
+
+		// find the open neighbours and which of them touch each other, any path through the
+		// cell between neighbours that touch can go straight from one to the other instead
+		int nX = m_grid.getNodeX(nCellID);
+		int nY = m_grid.getNodeY(nCellID);
+		int [] nSides = new int[DIR_X.length];
+		int nNumOpen = 0;
+		for (int i = 0; i < DIR_X.length; i++)
+		{
+			nSides[i] = (m_grid.getCellCost(nX + DIR_X[i], nY + DIR_Y[i]) > 0) ? i : NONE;
+			if (nSides[i] != NONE)
+			{
+				nNumOpen++;
+			}
+		}
+
+		if (nNumOpen == 0)
+		{
+			// it was a region on its own which is now gone
+			m_nNumComponents--;
+			return;
+		}
+
+		for (int i = 0; i < DIR_X.length; i++)
+		{
+			for (int j = i + 1; j < DIR_X.length; j++)
+			{
+				if (	(nSides[i] != NONE) && (nSides[j] != NONE)
+						&& (Math.abs(DIR_X[i] - DIR_X[j]) <= 1) && (Math.abs(DIR_Y[i] - DIR_Y[j]) <= 1)
+					)
+				{
+					// put both on the side of the first neighbour either of them touches
+					int nFrom = Math.max(nSides[i], nSides[j]);
+					int nTo = Math.min(nSides[i], nSides[j]);
+					for (int k = 0; k < DIR_X.length; k++)
+					{
+						if (nSides[k] == nFrom)
+						{
+							nSides[k] = nTo;
+						}
+					}
+				}
+			}
+		}
+
+		// number the sides and start a flood fill from each
+		int nFillBase = nextFillNumber() * MAX_SIDES;
+		int nNumSides = 0;
+		int [] nSideNumbers = new int[DIR_X.length];
+		for (int i = 0; i < DIR_X.length; i++)
+		{
+			if (nSides[i] == NONE)
+			{
+				continue;
+			}
+
+			int nSide;
+			if (nSides[i] == i)
+			{
+				nSide = nNumSides++;
+				m_nQueueHeads[nSide] = 0;
+				m_nQueueTails[nSide] = 0;
+				m_nSideParents[nSide] = nSide;
+			}
+			else
+			{
+				nSide = nSideNumbers[nSides[i]];
+			}
+			nSideNumbers[i] = nSide;
+
+			int nAdjCellID = m_grid.getCellID(nX + DIR_X[i], nY + DIR_Y[i]);
+			m_nVisits[nAdjCellID] = nFillBase + nSide;
+			m_nQueues[nSide][m_nQueueTails[nSide]++] = nAdjCellID;
+		}
+
+		if (nNumSides > 1)
+		{
+			splitRegion(nRoot, nNumSides, nFillBase);
+		}
+	}
+
+	/**
+	 * Grows the flood fills from the sides of a blocked cell a cell at a time each, joining
+	 * sides as they meet, until only one side is left that hasn't met the others or run out.
+	 * Every side that runs out before then is a region of its own and gets a new label.
+	 *
+	 * @param nRoot			The root label of the region the blocked cell was in
+	 * @param nNumSides		The number of sides
+	 * @param nFillBase		The fill number of the fills times MAX_SIDES
+	 */
+	private void splitRegion(int nRoot, int nNumSides, int nFillBase)
+	{
+		boolean [] bFinished = new boolean[nNumSides];
+		int nNumLeft = nNumSides;
+
+		while (nNumLeft > 1)
+		{
+			// grow each side by one cell
+			for (int nSide = 0; nSide < nNumSides; nSide++)
+			{
+				int nSideRoot = findSide(nSide);
+				if (bFinished[nSideRoot] || (m_nQueueHeads[nSide] == m_nQueueTails[nSide]))
+				{
+					continue;
+				}
+
+				int nCurrCellID = m_nQueues[nSide][m_nQueueHeads[nSide]++];
+				int nX = m_grid.getNodeX(nCurrCellID);
+				int nY = m_grid.getNodeY(nCurrCellID);
+
+				for (int i = 0; i < DIR_X.length; i++)
+				{
+					if (m_grid.getCellCost(nX + DIR_X[i], nY + DIR_Y[i]) <= 0)
+					{
+						continue;
+					}
+
+					int nAdjCellID = m_grid.getCellID(nX + DIR_X[i], nY + DIR_Y[i]);
+					int nVisit = m_nVisits[nAdjCellID] - nFillBase;
+					if ((nVisit >= 0) && (nVisit < MAX_SIDES))
+					{
+						// another side got here first so they are still joined
+						int nOtherRoot = findSide(nVisit);
+						if (nOtherRoot != nSideRoot)
+						{
+							m_nSideParents[nOtherRoot] = nSideRoot;
+							nNumLeft--;
+						}
+					}
+					else
+					{
+						m_nVisits[nAdjCellID] = nFillBase + nSide;
+						if (m_nQueueTails[nSide] == m_nQueues[nSide].length)
+						{
+							m_nQueues[nSide] = grow(m_nQueues[nSide]);
+						}
+						m_nQueues[nSide][m_nQueueTails[nSide]++] = nAdjCellID;
+					}
+				}
+			}
+
+			// any side with nothing left to grow has been cut off from the rest
+			for (int nSide = 0; (nSide < nNumSides) && (nNumLeft > 1); nSide++)
+			{
+				if ((findSide(nSide) != nSide) || bFinished[nSide] || isGrowing(nSide, nNumSides))
+				{
+					continue;
+				}
+
+				bFinished[nSide] = true;
+				nNumLeft--;
+
+				int nNewRoot = newLabel();
+				for (int nMember = 0; nMember < nNumSides; nMember++)
+				{
+					if (findSide(nMember) != nSide)
+					{
+						continue;
+					}
+
+					for (int i = 0; i < m_nQueueTails[nMember]; i++)
+					{
+						m_nLabels[m_nQueues[nMember][i]] = nNewRoot;
+					}
+					m_nSizes[nNewRoot] += m_nQueueTails[nMember];
+				}
+				m_nSizes[nRoot] -= m_nSizes[nNewRoot];
+			}
+		}
+	}
+
+	/**
+	 * Finds the side that a side of a blocked cell has been joined to
+	 *
+	 * @param nSide		The side
+	 * @return			The side it has been joined to, itself if it hasn't met another
+	 */
+	private int findSide(int nSide)
+	{
+		while (m_nSideParents[nSide] != nSide)
+		{
+			nSide = m_nSideParents[nSide];
+		}
+
+		return nSide;
+	}
+
+	/**
+	 * Works out whether the flood fill of a side, including every side joined to it, still
+	 * has cells left to grow from
+	 *
+	 * @param nSideRoot		The side the others have been joined to
+	 * @param nNumSides		The number of sides
+	 * @return				<code>true</code> if it can still grow
+	 */
+	private boolean isGrowing(int nSideRoot, int nNumSides)
+	{
+		for (int nSide = 0; nSide < nNumSides; nSide++)
+		{
+			if ((findSide(nSide) == nSideRoot) && (m_nQueueHeads[nSide] < m_nQueueTails[nSide]))
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Moves on to the next flood fill number, clearing the marks of the old fills once the
+	 * numbers run out
+	 *
+	 * @return		The new fill number
+	 */
+	private int nextFillNumber()
+	{
+		if (m_nFillNumber == (Integer.MAX_VALUE / MAX_SIDES) - 1)
+		{
+			for (int i = 0; i < m_nVisits.length; i++)
+			{
+				m_nVisits[i] = 0;
+			}
+			m_nFillNumber = 0;
+		}
+
+		return ++m_nFillNumber;
+	}
+
+	/**
+	 * Makes a queue twice as long, keeping the cells in it
+	 *
+	 * @param nQueue		The queue
+	 * @return				The longer queue
+	 */
+	private static int [] grow(int [] nQueue)
+	{
+		int [] nLonger = new int[nQueue.length * 2];
+		System.arraycopy(nQueue, 0, nLonger, 0, nQueue.length);
+
+		return nLonger;
+	}
+}
@@ -0,0 +1,526 @@
+/**
+ * This class implements the D* Lite incremental pathfinding routine over a grid graph. It
+ * plans from the goal back towards the start and keeps everything it worked out between
+ * plans, so when the costs of some cells change only the part of the search that the
+ * changes affect is worked out again rather than searching the whole map from scratch.
+ * The start can also move along the path (as a unit walks it) without starting over.
+ * <p>
+ * For each cell the planner keeps g, the cost to the goal it last settled on, and rhs, the
+ * cost worked out from the g values of the cell's neighbours. A cell whose two values
+ * differ is inconsistent and sits in the queue, and planning takes cells off the queue
+ * until the start is consistent and nothing left in the queue could change its cost.
+ * <p>
+ * The planner listens for changes to the cells of a GridMap when it is added as one of the
+ * map's listeners. The cost of every cell must be at least one, the same as the other
+ * searches assume for their heuristics.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.util.*;
+
+public class DStarLite implements GridMapListener
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The cost of a cell that can't reach the goal, low enough that adding a connection
+	 * cost to it can't overflow
+	 */
+	private static final int INFINITE = Integer.MAX_VALUE / 2;
+
+	/**
+	 * The graph being planned over
+	 */
+	private final GridGraph m_grid;
+
+	/**
+	 * The goal of the plan
+	 */
+	private final int m_nGoalCellID;
+
+	/**
+	 * The start of the plan
+	 */
+	private int m_nStartCellID;
+
+	/**
+	 * The start the key modifier was last brought up to date for
+	 */
+	private int m_nLastStartCellID;
+
+	/**
+	 * The amount added to every key to make up for the start moving, so the keys of the
+	 * cells already in the queue don't have to be worked out again
+	 */
+	private int m_nKeyModifier;
+
+	/**
+	 * The cost to the goal settled on for each cell
+	 */
+	private final int [] m_nG;
+
+	/**
+	 * The cost to the goal worked out from the neighbours of each cell
+	 */
+	private final int [] m_nRhs;
+
+	/**
+	 * The inconsistent cells ordered by their keys
+	 */
+	private final KeyHeap m_queue;
+
+	/**
+	 * The number of cells expanded by the last plan
+	 */
+	private int m_nLastExpansions;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates a planner between two cells of a grid. Nothing is searched until the first
+	 * path is asked for.
+	 *
+	 * @param grid				The graph to plan over
+	 * @param nStartCellID		The ID of the start cell
+	 * @param nGoalCellID		The ID of the goal cell
+	 */
+	public DStarLite(GridGraph grid, int nStartCellID, int nGoalCellID)
+	{
+		m_grid = grid;
+		m_nStartCellID = nStartCellID;
+		m_nLastStartCellID = nStartCellID;
+		m_nGoalCellID = nGoalCellID;
+
+		int nNumCells = grid.getNodeCapacity();
+		m_nG = new int[nNumCells];
+		m_nRhs = new int[nNumCells];
+		Arrays.fill(m_nG, INFINITE);
+		Arrays.fill(m_nRhs, INFINITE);
+		m_queue = new KeyHeap(nNumCells);
+
+		// the goal is the one cell known to reach the goal
+		m_nRhs[nGoalCellID] = 0;
+		m_queue.insert(nGoalCellID, getKey(nGoalCellID));
+	}
+
+	/**
+	 * Finds the best path from the current start to the goal, repairing the last plan
+	 * after any cell changes and start moves
+	 *
+	 * @return					The path as an array of cell ids from the start to the goal,
+	 * 							this is empty if no path exists
+	 */
+	public int [] findPath()
+	{
+		computeShortestPath();
+
+		if (m_nG[m_nStartCellID] >= INFINITE)
+		{
+			return SearchContext.noPath();
+		}
+
+		// walk down the costs from the start, each step goes to the neighbour the best
+		// path goes through
+		int [] nPath = new int[16];
+		int nLength = 0;
+		int nCurrCellID = m_nStartCellID;
+		nPath[nLength++] = nCurrCellID;
+
+		while (nCurrCellID != m_nGoalCellID)
+		{
+			int nBestCellID = -1;
+			int nBestCost = INFINITE;
+
+			for (int i = 0; i < m_grid.getConnectionCount(nCurrCellID); i++)
+			{
+				int nTravelCost = m_grid.getConnectionCost(nCurrCellID, i);
+				if (nTravelCost <= 0)
+				{
+					continue;
+				}
+
+				int nAdjCellID = m_grid.getConnectedNodeID(nCurrCellID, i);
+				if ((m_nG[nAdjCellID] < INFINITE) && (nTravelCost + m_nG[nAdjCellID] < nBestCost))
+				{
+					nBestCellID = nAdjCellID;
+					nBestCost = nTravelCost + m_nG[nAdjCellID];
+				}
+			}
+
+			// a consistent plan always has a next step and is never longer than the grid
+			if ((nBestCellID == -1) || (nLength == m_nG.length))
+			{
+				throw new IllegalStateException("The plan is broken, the grid changed without the planner being told");
+			}
+
+			if (nLength == nPath.length)
+			{
+				nPath = Arrays.copyOf(nPath, nPath.length * 2);
+			}
+			nPath[nLength++] = nBestCellID;
+			nCurrCellID = nBestCellID;
+		}
+
+		return Arrays.copyOf(nPath, nLength);
+	}
+
+	/**
+	 * Moves the start, usually to the next cell along the last path as it is walked. The
+	 * costs already worked out stay valid since they are costs to the goal.
+	 *
+	 * @param nStartCellID		The ID of the new start cell
+	 */
+	public void moveStart(int nStartCellID)
+	{
+		m_nStartCellID = nStartCellID;
+	}
+
+	/**
+	 * The cost of the best path from the start to the goal as of the last plan
+	 *
+	 * @return					The cost of the path, or -1 if there is no path
+	 */
+	public int getPathCost()
+	{
+		return (m_nG[m_nStartCellID] >= INFINITE) ? -1 : m_nG[m_nStartCellID];
+	}
+
+	/**
+	 * The number of cells the last call to <code>findPath</code> expanded, this shows how
+	 * much of the plan had to be repaired
+	 *
+	 * @return					The number of cells expanded
+	 */
+	public int getLastExpansions()
+	{
+		return m_nLastExpansions;
+	}
+
+	public void cellCostChanged(int nCellID, int nOldCost, int nNewCost)
+	{
+		// the keys in the queue are relative to the start they were worked out for
+		updateKeyModifier();
+
+		// moving into the cell is what costs its cost, so only the cells around it that can
+		// move into it have a changed connection
+		int nX = m_grid.getNodeX(nCellID);
+		int nY = m_grid.getNodeY(nCellID);
+		for (int j = nY - 1; j <= nY + 1; j++)
+		{
+			for (int i = nX - 1; i <= nX + 1; i++)
+			{
+				if (m_grid.isInGrid(i, j) && ((i != nX) || (j != nY)))
+				{
+					updateCell(m_grid.getCellID(i, j));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Takes inconsistent cells off the queue until the cost of the start is settled
+	 */
+	private void computeShortestPath()
+	{
+		updateKeyModifier();
+		m_nLastExpansions = 0;
+
+		while (	!m_queue.isEmpty()
+				&& ((m_queue.getLowestKey() < getKey(m_nStartCellID))
+					|| (m_nRhs[m_nStartCellID] != m_nG[m_nStartCellID]))
+			)
+		{
+			long lOldKey = m_queue.getLowestKey();
+			int nCellID = m_queue.removeLowest();
+			long lNewKey = getKey(nCellID);
+			m_nLastExpansions++;
+
+			if (lOldKey < lNewKey)
+			{
+				// the start moved since it was queued so it goes back with its real key
+				m_queue.insert(nCellID, lNewKey);
+			}
+			else if (m_nG[nCellID] > m_nRhs[nCellID])
+			{
+				// a cheaper way to the goal was found so settle on it
+				m_nG[nCellID] = m_nRhs[nCellID];
+				updatePredecessors(nCellID);
+			}
+			else
+			{
+				// the way to the goal got dearer so work the cell and those before it out again
+				m_nG[nCellID] = INFINITE;
+				updateCell(nCellID);
+				updatePredecessors(nCellID);
+			}
+		}
+	}
+
+	/**
+	 * Updates the cells that can move into a cell after its cost to the goal changed
+	 *
+	 * @param nCellID			The ID of the cell
+	 */
+	private void updatePredecessors(int nCellID)
+	{
+		for (int i = 0; i < m_grid.getReverseConnectionCount(nCellID); i++)
+		{
+			if (m_grid.getReverseConnectionCost(nCellID, i) > 0)
+			{
+				updateCell(m_grid.getReverseConnectedNodeID(nCellID, i));
+			}
+		}
+	}
+
+	/**
+	 * Works out the rhs of a cell from its neighbours again and puts it in the queue if
+	 * that makes it inconsistent
+	 *
+	 * @param nCellID			The ID of the cell
+	 */
+	private void updateCell(int nCellID)
+	{
+		if (nCellID != m_nGoalCellID)
+		{
+			int nRhs = INFINITE;
+			for (int i = 0; i < m_grid.getConnectionCount(nCellID); i++)
+			{
+				int nTravelCost = m_grid.getConnectionCost(nCellID, i);
+				if (nTravelCost <= 0)
+				{
+					continue;
+				}
+
+				int nAdjCellID = m_grid.getConnectedNodeID(nCellID, i);
+				if (m_nG[nAdjCellID] < INFINITE)
+				{
+					nRhs = Math.min(nRhs, nTravelCost + m_nG[nAdjCellID]);
+				}
+			}
+			m_nRhs[nCellID] = nRhs;
+		}
+
+		m_queue.remove(nCellID);
+		if (m_nG[nCellID] != m_nRhs[nCellID])
+		{
+			m_queue.insert(nCellID, getKey(nCellID));
+		}
+	}
+
+	/**
+	 * Adds the distance the start has moved since the keys were last brought up to date to
+	 * the key modifier
+	 */
+	private void updateKeyModifier()
+	{
+		if (m_nStartCellID != m_nLastStartCellID)
+		{
+			m_nKeyModifier += getHeuristic(m_nLastStartCellID, m_nStartCellID);
+			m_nLastStartCellID = m_nStartCellID;
+		}
+	}
+
+	/**
+	 * Works out the key of a cell. The queue is ordered by the estimated cost of a path from
+	 * the start through the cell, then by the cost from the cell to the goal, and both are
+	 * packed into one long with the first in the high half.
+	 *
+	 * @param nCellID			The ID of the cell
+	 * @return					The key of the cell
+	 */
+	private long getKey(int nCellID)
+	{
+		int nCost = Math.min(m_nG[nCellID], m_nRhs[nCellID]);
+		int nEstimate = (nCost >= INFINITE)
+						? INFINITE
+						: nCost + getHeuristic(m_nStartCellID, nCellID) + m_nKeyModifier;
+
+		return (((long)nEstimate) << 32) | nCost;
+	}
+
+	/**
+	 * The estimated cost between two cells, the same distance Astar uses by default
+	 *
+	 * @param nFromCellID		The ID of the first cell
+	 * @param nToCellID			The ID of the second cell
+	 * @return					The estimated cost
+	 */
+	private int getHeuristic(int nFromCellID, int nToCellID)
+	{
+		return DistanceHeuristic.DEFAULT.getEstimate(m_grid, nFromCellID, nToCellID);
+	}
+
+	/**
+	 * A private indexed binary heap of cells ordered by long keys, the same as the
+	 * BinaryHeapOpenList but with the two part keys D* Lite needs and with removal of any
+	 * cell in the heap
+	 *
+	 * @author Jonathan Hanks (jonhanks@gmail.com)
+	 * @version 1.0
+	 */
+	private static class KeyHeap
+	{
+		/**
+		 * The cell ids in heap order
+		 */
+		private final int [] m_nHeap;
+		/**
+		 * The key of the cell at each heap position
+		 */
+		private final long [] m_lHeapKeys;
+		/**
+		 * The heap position plus one of each cell, zero means the cell is not in the heap
+		 */
+		private final int [] m_nPositions;
+		/**
+		 * The number of cells in the heap
+		 */
+		private int m_nSize;
+
+		/**
+		 * Creates a heap with room for every cell
+		 *
+		 * @param nNumCells		The number of cells
+		 */
+		KeyHeap(int nNumCells)
+		{
+			m_nHeap = new int[nNumCells];
+			m_lHeapKeys = new long[nNumCells];
+			m_nPositions = new int[nNumCells];
+		}
+
+		public boolean isEmpty()
+		{
+			return m_nSize == 0;
+		}
+
+		public long getLowestKey()
+		{
+			return m_lHeapKeys[0];
+		}
+
+		public void insert(int nCellID, long lKey)
+		{
+			m_nSize++;
+			siftUp(m_nSize - 1, nCellID, lKey);
+		}
+
+		public int removeLowest()
+		{
+			int nLowestID = m_nHeap[0];
+			remove(nLowestID);
+			return nLowestID;
+		}
+
+		/**
+		 * Takes a cell out of the heap if it is in it
+		 *
+		 * @param nCellID		The cell to take out
+		 */
+		public void remove(int nCellID)
+		{
+			int nPos = m_nPositions[nCellID] - 1;
+			if (nPos < 0)
+			{
+				return;
+			}
+
+			m_nPositions[nCellID] = 0;
+			m_nSize--;
+
+			// fill the hole with the last cell and move it whichever way it needs to go
+			if (nPos < m_nSize)
+			{
+				int nLastID = m_nHeap[m_nSize];
+				long lLastKey = m_lHeapKeys[m_nSize];
+
+				if ((nPos > 0) && (lLastKey < m_lHeapKeys[(nPos - 1) >> 1]))
+				{
+					siftUp(nPos, nLastID, lLastKey);
+				}
+				else
+				{
+					siftDown(nPos, nLastID, lLastKey);
+				}
+			}
+		}
+
+		/**
+		 * Moves a cell up from the given heap position until its parent is no greater
+		 *
+		 * @param nPos			The position to start from
+		 * @param nCellID		The cell being placed
+		 * @param lKey			The key of the cell being placed
+		 */
+		private void siftUp(int nPos, int nCellID, long lKey)
+		{
+			while (nPos > 0)
+			{
+				int nParent = (nPos - 1) >> 1;
+				if (m_lHeapKeys[nParent] <= lKey)
+				{
+					break;
+				}
+
+				place(nPos, m_nHeap[nParent], m_lHeapKeys[nParent]);
+				nPos = nParent;
+			}
+
+			place(nPos, nCellID, lKey);
+		}
+
+		/**
+		 * Moves a cell down from the given heap position until its children are no smaller
+		 *
+		 * @param nPos			The position to start from
+		 * @param nCellID		The cell being placed
+		 * @param lKey			The key of the cell being placed
+		 */
+		private void siftDown(int nPos, int nCellID, long lKey)
+		{
+			while (true)
+			{
+				int nChild = (nPos << 1) + 1;
+				if (nChild >= m_nSize)
+				{
+					break;
+				}
+
+				// pick the smaller child
+				if ((nChild + 1 < m_nSize) && (m_lHeapKeys[nChild + 1] < m_lHeapKeys[nChild]))
+				{
+					nChild++;
+				}
+
+				if (m_lHeapKeys[nChild] >= lKey)
+				{
+					break;
+				}
+
+				place(nPos, m_nHeap[nChild], m_lHeapKeys[nChild]);
+				nPos = nChild;
+			}
+
+			place(nPos, nCellID, lKey);
+		}
+
+		/**
+		 * Stores a cell at a heap position
+		 *
+		 * @param nPos			The heap position
+		 * @param nCellID		The cell
+		 * @param lKey			The key of the cell
+		 */
+		private void place(int nPos, int nCellID, long lKey)
+		{
+			m_nHeap[nPos] = nCellID;
+			m_lHeapKeys[nPos] = lKey;
+			m_nPositions[nCellID] = nPos + 1;
+		}
+	}
+}
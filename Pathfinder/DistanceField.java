@@ -0,0 +1,284 @@
+/**
+ * The DistanceField holds the cost of the best path from every node of a graph to a single
+ * goal, along with the first step of that path (the flow field). It is worked out once with
+ * a Dijkstra search that runs backwards from the goal over the whole graph, and after that
+ * the path from any node to the goal is found by following the steps, without searching.
+ * <p>
+ * This suits many agents heading for the same goal, where searching for each of them on
+ * its own would repeat the same work over and over. The field is kept in two flat arrays,
+ * an int for the distance and a byte for the step of each node, so it takes five bytes a
+ * node however many agents use it.
+ * <p>
+ * The field is worked out from the graph as it was when the field was made and doesn't
+ * change with it. Once made it can be used from many threads at once.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+public class DistanceField
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The distance of a node that can't reach the goal, and the step of a node with no step
+	 */
+	public static final int NONE = -1;
+
+	/**
+	 * The graph the field is over
+	 */
+	private final SearchGraph m_searchGraph;
+
+	/**
+	 * The node everything leads to
+	 */
+	private final int m_nGoalNodeID;
+
+	/**
+	 * The cost of the best path from each node to the goal, NONE if there isn't one
+	 */
+	private final int [] m_nDistances;
+
+	/**
+	 * The connection each node takes for the first step of its best path to the goal, NONE
+	 * for the goal and nodes that can't reach it
+	 */
+	private final byte [] m_nNextSteps;
+
+	/**
+	 * The number of nodes that can reach the goal, including the goal
+	 */
+	private int m_nNumReached;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Works out the field of a goal in a graph
+	 *
+	 * @param searchGraph		The graph, no node may have more than 127 connections
+	 * @param nGoalNodeID		The ID of the goal node
+	 */
+	public DistanceField(ReverseSearchGraph searchGraph, int nGoalNodeID)
+	{
+		this(searchGraph, nGoalNodeID, new BinaryHeapOpenList(searchGraph.getNodeCapacity()));
+	}
+
+	/**
+	 * Works out the field of a goal in a graph using the open list that it is given to order
+	 * the nodes waiting to be expanded
+	 *
+	 * @param searchGraph		The graph, no node may have more than 127 connections
+	 * @param nGoalNodeID		The ID of the goal node
+	 * @param openList			The open list to use, it is cleared before the search starts
+	 * @throws IllegalArgumentException	If the goal isn't in the graph
+	 */
+	public DistanceField(ReverseSearchGraph searchGraph, int nGoalNodeID, OpenList openList)
+	{
+		int nNodeCapacity = searchGraph.getNodeCapacity();
+		if ((nGoalNodeID < 0) || (nGoalNodeID >= nNodeCapacity))
+		{
+			throw new IllegalArgumentException("The goal " + nGoalNodeID + " is not in the graph");
+		}
+
+		m_searchGraph = searchGraph;
+		m_nGoalNodeID = nGoalNodeID;
+		m_nDistances = new int[nNodeCapacity];
+		m_nNextSteps = new byte[nNodeCapacity];
+
+		findDistances(searchGraph, openList);
+		findNextSteps();
+	}
+
+	/**
+	 * Searches backwards from the goal over every connection arriving at each node, so the
+	 * cost of the best path to the goal is found for every node that has one
+	 *
+	 * @param searchGraph		The graph
+	 * @param openList			The open list to order the nodes with
+	 */
+	private void findDistances(ReverseSearchGraph searchGraph, OpenList openList)
+	{
+		for (int i = 0; i < m_nDistances.length; i++)
+		{
+			m_nDistances[i] = NONE;
+		}
+
+		openList.clear();
+		m_nDistances[m_nGoalNodeID] = 0;
+		openList.insert(m_nGoalNodeID, 0);
+		m_nNumReached = 1;
+
+		while (!openList.isEmpty())
+		{
+			int nCurrNodeID = openList.removeLowest();
+			int nCurrDistance = m_nDistances[nCurrNodeID];
+
+			// look at every node that can step into this one
+			int nNumConnections = searchGraph.getReverseConnectionCount(nCurrNodeID);
+			for (int i = 0; i < nNumConnections; i++)
+			{
+				int nTravelCost = searchGraph.getReverseConnectionCost(nCurrNodeID, i);
+				if (nTravelCost <= 0)
+				{
+					continue;
+				}
+
+				int nPrevNodeID = searchGraph.getReverseConnectedNodeID(nCurrNodeID, i);
+				int nDistance = nCurrDistance + nTravelCost;
+
+				if (m_nDistances[nPrevNodeID] == NONE)
+				{
+					m_nDistances[nPrevNodeID] = nDistance;
+					openList.insert(nPrevNodeID, nDistance);
+					m_nNumReached++;
+				}
+				else if ((nDistance < m_nDistances[nPrevNodeID]) && openList.contains(nPrevNodeID))
+				{
+					m_nDistances[nPrevNodeID] = nDistance;
+					openList.decreaseScore(nPrevNodeID, nDistance);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Picks the first step of each node, the first connection that leads to a node whose
+	 * distance plus the cost of the connection is the node's own distance
+	 */
+	private void findNextSteps()
+	{
+		for (int nNodeID = 0; nNodeID < m_nDistances.length; nNodeID++)
+		{
+			m_nNextSteps[nNodeID] = NONE;
+
+			int nDistance = m_nDistances[nNodeID];
+			if ((nDistance == NONE) || (nNodeID == m_nGoalNodeID))
+			{
+				continue;
+			}
+
+			int nNumConnections = m_searchGraph.getConnectionCount(nNodeID);
+			if (nNumConnections > Byte.MAX_VALUE)
+			{
+				throw new IllegalArgumentException("Node " + nNodeID + " has " + nNumConnections + " connections, a field can only step along the first " + Byte.MAX_VALUE);
+			}
+
+			for (int i = 0; i < nNumConnections; i++)
+			{
+				int nTravelCost = m_searchGraph.getConnectionCost(nNodeID, i);
+				if (nTravelCost <= 0)
+				{
+					continue;
+				}
+
+				int nAdjDistance = m_nDistances[m_searchGraph.getConnectedNodeID(nNodeID, i)];
+				if ((nAdjDistance != NONE) && (nAdjDistance + nTravelCost == nDistance))
+				{
+					m_nNextSteps[nNodeID] = (byte)i;
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the node the field leads to
+	 * @return	the id of the goal node
+	 */
+	public int getGoalNodeID()
+	{
+		return m_nGoalNodeID;
+	}
+
+	/**
+	 * Provides the cost of the best path from a node to the goal
+	 *
+	 * @param nNodeID		The id of the node
+	 * @return				The cost of the best path, or NONE if the node can't reach the goal
+	 */
+	public int getDistance(int nNodeID)
+	{
+		return m_nDistances[nNodeID];
+	}
+
+	/**
+	 * Provides the connection a node takes for the first step of its best path to the goal
+	 *
+	 * @param nNodeID		The id of the node
+	 * @return				The index of the connection, or NONE at the goal or if the node
+	 * 						can't reach the goal
+	 */
+	public int getNextConnection(int nNodeID)
+	{
+		return m_nNextSteps[nNodeID];
+	}
+
+	/**
+	 * Provides the node a node steps to first on its best path to the goal
+	 *
+	 * @param nNodeID		The id of the node
+	 * @return				The id of the next node, or NONE at the goal or if the node can't
+	 * 						reach the goal
+	 */
+	public int getNextNodeID(int nNodeID)
+	{
+		int nConnection = m_nNextSteps[nNodeID];
+
+		return (nConnection == NONE) ? NONE : m_searchGraph.getConnectedNodeID(nNodeID, nConnection);
+	}
+
+	/**
+	 * Whether a node can reach the goal
+	 *
+	 * @param nNodeID		The id of the node
+	 * @return				<code>true</code> if there is a path from the node to the goal
+	 */
+	public boolean isReachable(int nNodeID)
+	{
+		return m_nDistances[nNodeID] != NONE;
+	}
+
+	/**
+	 * Follows the steps from a node to the goal to get its best path
+	 *
+	 * @param nStartNodeID		The ID of the start node
+	 * @return					The path as an array of node ids from the start to the goal,
+	 * 							this is empty if the start can't reach the goal
+	 */
+	public int [] getPath(int nStartNodeID)
+	{
+		if (m_nDistances[nStartNodeID] == NONE)
+		{
+			return SearchContext.noPath();
+		}
+
+		// count the steps first so the path can be filled in from the start
+		int nLength = 1;
+		for (int nNodeID = nStartNodeID; nNodeID != m_nGoalNodeID; nNodeID = getNextNodeID(nNodeID))
+		{
+			nLength++;
+		}
+
+		int [] nPath = new int[nLength];
+		int nNodeID = nStartNodeID;
+		for (int i = 0; i < nLength; i++)
+		{
+			nPath[i] = nNodeID;
+			nNodeID = getNextNodeID(nNodeID);
+		}
+
+		return nPath;
+	}
+
+	/**
+	 * Get the number of nodes that can reach the goal, including the goal itself
+	 * @return	the number of nodes in the field
+	 */
+	public int getNumReached()
+	{
+		return m_nNumReached;
+	}
+}
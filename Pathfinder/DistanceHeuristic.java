@@ -0,0 +1,165 @@
+/**
+ * The DistanceHeuristic estimates the cost between two nodes from how far apart they are,
+ * as if there were no obstacles in the way. It works with any graph whose nodes have x and
+ * y values, and the distance is measured one of four ways:
+ * <ul>
+ * <li>		MANHATTAN - the x distance plus the y distance, for graphs that can only step
+ * 			straight up, down, left or right
+ * <li>		OCTILE - straight steps until the nodes line up diagonally, then diagonal steps,
+ * 			for graphs where a diagonal step costs more than a straight step
+ * <li>		CHEBYSHEV - the larger of the x and y distances, for graphs where a diagonal step
+ * 			costs the same as a straight step, such as GridGraph
+ * <li>		ZERO - no estimate at all, which turns A* into Dijkstra's routine
+ * </ul>
+ * Every step is counted at the cost of the cheapest step in the graph. A grid where every
+ * cell costs at least 3 can use a straight cost of 3 and still be admissible, and expands
+ * far fewer nodes than with the default cost of one. <code>forGrid</code> works this cost
+ * out from the cells of a grid.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+public class DistanceHeuristic implements Heuristic
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * Measures the x distance plus the y distance
+	 */
+	public static final int MANHATTAN = 0;
+
+	/**
+	 * Measures straight steps then diagonal steps
+	 */
+	public static final int OCTILE = 1;
+
+	/**
+	 * Measures the larger of the x and y distances
+	 */
+	public static final int CHEBYSHEV = 2;
+
+	/**
+	 * Doesn't measure anything
+	 */
+	public static final int ZERO = 3;
+
+	/**
+	 * The Chebyshev distance with steps costing one, the heuristic Astar uses by default
+	 */
+	public static final DistanceHeuristic DEFAULT = new DistanceHeuristic(CHEBYSHEV, 1, 1);
+
+	/**
+	 * The way the distance is measured
+	 */
+	private final int m_nType;
+
+	/**
+	 * The cost of the cheapest straight step
+	 */
+	private final int m_nStraightCost;
+
+	/**
+	 * The cost of the cheapest diagonal step
+	 */
+	private final int m_nDiagonalCost;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates a heuristic where every step costs one
+	 *
+	 * @param nType				The way the distance is measured, <code>MANHATTAN</code>,
+	 * 							<code>OCTILE</code>, <code>CHEBYSHEV</code> or <code>ZERO</code>
+	 */
+	public DistanceHeuristic(int nType)
+	{
+		this(nType, 1, 1);
+	}
+
+	/**
+	 * Creates a heuristic with the given step costs
+	 *
+	 * @param nType				The way the distance is measured
+	 * @param nStraightCost		The cost of the cheapest straight step
+	 * @param nDiagonalCost		The cost of the cheapest diagonal step, only used by OCTILE
+	 */
+	public DistanceHeuristic(int nType, int nStraightCost, int nDiagonalCost)
+	{
+		if ((nType < MANHATTAN) || (nType > ZERO))
+		{
+			throw new IllegalArgumentException("Unknown heuristic type " + nType);
+		}
+		if ((nStraightCost < 0) || (nDiagonalCost < nStraightCost))
+		{
+			throw new IllegalArgumentException("The diagonal cost can't be less than the straight cost");
+		}
+
+		m_nType = nType;
+		m_nStraightCost = nStraightCost;
+		m_nDiagonalCost = nDiagonalCost;
+	}
+
+	/**
+	 * Creates the Chebyshev heuristic for a grid, counting each step at the cost of the
+	 * cheapest cell in the grid. If a cell is later made cheaper than that the heuristic
+	 * has to be made again or it may overestimate.
+	 *
+	 * @param grid				The grid
+	 * @return					The heuristic
+	 */
+	public static DistanceHeuristic forGrid(GridGraph grid)
+	{
+		int nMinCost = getMinCost(grid.getCellCosts());
+		return new DistanceHeuristic(CHEBYSHEV, nMinCost, nMinCost);
+	}
+
+	/**
+	 * Finds the cost of the cheapest cell that can be moved into
+	 *
+	 * @param costs				The cell costs
+	 * @return					The cheapest cost, or one if no cell can be moved into
+	 */
+	public static int getMinCost(CellCosts costs)
+	{
+		// a tiled map keeps track of its cheapest cost so every chunk doesn't have to be read
+		if (costs instanceof ChunkedCellCosts)
+		{
+			int nMinCost = ((ChunkedCellCosts)costs).getMinCost();
+			return (nMinCost > 0) ? nMinCost : 1;
+		}
+
+		int nMinCost = Integer.MAX_VALUE;
+		for (int i = 0; (i < costs.getNumCells()) && (nMinCost > 1); i++)
+		{
+			int nCost = costs.getCost(i);
+			if ((nCost > 0) && (nCost < nMinCost))
+			{
+				nMinCost = nCost;
+			}
+		}
+
+		return (nMinCost == Integer.MAX_VALUE) ? 1 : nMinCost;
+	}
+
+	public int getEstimate(SearchGraph searchGraph, int nFromNodeID, int nToNodeID)
+	{
+		int nDistX = Math.abs(searchGraph.getNodeX(nFromNodeID) - searchGraph.getNodeX(nToNodeID));
+		int nDistY = Math.abs(searchGraph.getNodeY(nFromNodeID) - searchGraph.getNodeY(nToNodeID));
+
+		switch (m_nType)
+		{
+		case MANHATTAN:
+			return (nDistX + nDistY) * m_nStraightCost;
+		case OCTILE:
+			return (Math.max(nDistX, nDistY) * m_nStraightCost)
+					+ (Math.min(nDistX, nDistY) * (m_nDiagonalCost - m_nStraightCost));
+		case CHEBYSHEV:
+			return Math.max(nDistX, nDistY) * m_nStraightCost;
+		default:
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,345 @@
+/**
+ * The FlowFieldCache keeps the DistanceFields of the goals in a GridMap that were asked for
+ * most recently, so every agent heading for the same goal shares one field and finds its
+ * path by following the field rather than searching. The first agent to ask for a goal pays
+ * for a search over the whole map and the rest only walk the field.
+ * <p>
+ * The cache holds at most a set number of fields, each of which takes five bytes a cell of
+ * the map. When it is full the field that was used longest ago is dropped. The whole cache
+ * is emptied as soon as the map version changes, so a field is never handed out after the
+ * map data under it has changed.
+ * <p>
+ * The cache can be used from many threads at once, the fields are worked out outside of its
+ * lock. When several threads ask for the same goal before its field is ready, only the first
+ * works it out and the rest wait for it.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.util.*;
+import java.util.concurrent.*;
+
+public class FlowFieldCache
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The map the fields are over
+	 */
+	private final GridMap m_gridMap;
+
+	/**
+	 * The most fields the cache will hold
+	 */
+	private final int m_nMaxFields;
+
+	/**
+	 * The cached fields by their goal cell, kept in order from the least to the most
+	 * recently used
+	 */
+	private final LinkedHashMap m_mapFields;
+
+	/**
+	 * The fields being worked out by their goal cell, as the tasks working them out, so
+	 * threads asking for the same goal wait for the one field
+	 */
+	private final HashMap m_mapPending = new HashMap();
+
+	/**
+	 * The map version the cached fields were worked out on
+	 */
+	private int m_nVersion;
+
+	/**
+	 * The number of fields handed out from the cache
+	 */
+	private long m_lHits;
+
+	/**
+	 * The number of fields that had to be worked out
+	 */
+	private long m_lMisses;
+
+	/**
+	 * The number of fields dropped to make room
+	 */
+	private long m_lEvictions;
+
+	/**
+	 * The number of times the cache was emptied because the map changed
+	 */
+	private long m_lInvalidations;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates a cache for the fields of a map
+	 *
+	 * @param gridMap			The map the fields are over
+	 * @param nMaxFields		The most fields the cache will hold
+	 */
+	public FlowFieldCache(GridMap gridMap, int nMaxFields)
+	{
+		m_gridMap = gridMap;
+		m_nMaxFields = Math.max(nMaxFields, 1);
+		m_mapFields = new LinkedHashMap(16, 0.75f, true);
+		m_nVersion = gridMap.getVersion();
+	}
+
+	/**
+	 * Provides the field of a goal, from the cache if it can be, otherwise it is worked out
+	 * and added to the cache
+	 *
+	 * @param nGoalCellID		The ID of the goal cell (y * width + x)
+	 * @return					The field of the goal, or <code>null</code> if the map hasn't
+	 * 							been initialized
+	 * @throws IllegalArgumentException	If the goal isn't in the map
+	 */
+	public DistanceField getField(int nGoalCellID)
+	{
+		final GridGraph gridGraph = m_gridMap.getGridGraph();
+		if (gridGraph == null)
+		{
+			return null;
+		}
+
+		final int nGoal = nGoalCellID;
+		Integer goalKey = Integer.valueOf(nGoalCellID);
+		FutureTask fieldTask;
+		boolean bWorkOut = false;
+		int nVersion;
+
+		synchronized (this)
+		{
+			nVersion = checkVersion();
+
+			DistanceField field = (DistanceField)m_mapFields.get(goalKey);
+			if (field != null)
+			{
+				m_lHits++;
+				return field;
+			}
+
+			// wait for the field if another thread is already working it out
+			fieldTask = (FutureTask)m_mapPending.get(goalKey);
+			if (fieldTask != null)
+			{
+				m_lHits++;
+			}
+			else
+			{
+				// the map costs are small integers so a bucket open list is the quickest to
+				// keep in order
+				fieldTask = new FutureTask(new Callable()
+				{
+					public Object call()
+					{
+						return new DistanceField(gridGraph, nGoal,
+												new BucketOpenList(gridGraph.getNodeCapacity(), 64));
+					}
+				});
+				m_mapPending.put(goalKey, fieldTask);
+				m_lMisses++;
+				bWorkOut = true;
+			}
+		}
+
+		if (!bWorkOut)
+		{
+			return waitForField(fieldTask);
+		}
+
+		// work the field out without holding the lock
+		fieldTask.run();
+
+		synchronized (this)
+		{
+			if (m_mapPending.get(goalKey) == fieldTask)
+			{
+				m_mapPending.remove(goalKey);
+			}
+
+			// only keep it if it was worked out and the map didn't change while it was
+			DistanceField field = (DistanceField)getDone(fieldTask);
+			if ((field != null) && (nVersion == checkVersion()) && !m_mapFields.containsKey(goalKey))
+			{
+				m_mapFields.put(goalKey, field);
+
+				// drop the least recently used fields until it fits
+				Iterator iter = m_mapFields.values().iterator();
+				while ((m_mapFields.size() > m_nMaxFields) && iter.hasNext())
+				{
+					iter.next();
+					iter.remove();
+					m_lEvictions++;
+				}
+			}
+		}
+
+		return waitForField(fieldTask);
+	}
+
+	/**
+	 * Waits for a field being worked out by another thread
+	 *
+	 * @param fieldTask			The task working out the field
+	 * @return					The field
+	 * @throws IllegalArgumentException	If the goal isn't in the map
+	 */
+	private static DistanceField waitForField(FutureTask fieldTask)
+	{
+		boolean bInterrupted = false;
+
+		try
+		{
+			while (true)
+			{
+				try
+				{
+					return (DistanceField)fieldTask.get();
+				}
+				catch (InterruptedException e)
+				{
+					// the field will be ready soon, so finish waiting and pass the interrupt on
+					bInterrupted = true;
+				}
+				catch (ExecutionException e)
+				{
+					if (e.getCause() instanceof RuntimeException)
+					{
+						throw (RuntimeException)e.getCause();
+					}
+					throw new IllegalStateException("The field couldn't be worked out", e.getCause());
+				}
+			}
+		}
+		finally
+		{
+			if (bInterrupted)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Provides the result of a task that has finished
+	 *
+	 * @param fieldTask			The finished task
+	 * @return					The field it worked out, or <code>null</code> if it failed
+	 */
+	private static Object getDone(FutureTask fieldTask)
+	{
+		try
+		{
+			return fieldTask.get();
+		}
+		catch (Exception e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Finds the best path from a cell to a goal by following the field of the goal
+	 *
+	 * @param nStartCellID		The ID of the start cell
+	 * @param nGoalCellID		The ID of the goal cell
+	 * @return					The path from the start to the goal, empty if none exists or the
+	 * 							map hasn't been initialized
+	 */
+	public int [] findPath(int nStartCellID, int nGoalCellID)
+	{
+		DistanceField field = getField(nGoalCellID);
+		if (field == null)
+		{
+			return SearchContext.noPath();
+		}
+
+		return field.getPath(nStartCellID);
+	}
+
+	/**
+	 * Empties the cache
+	 */
+	public synchronized void clear()
+	{
+		// fields still being worked out are handed to the threads waiting for them, but
+		// aren't cached
+		m_mapFields.clear();
+		m_mapPending.clear();
+	}
+
+	/**
+	 * The number of fields in the cache
+	 *
+	 * @return			The number of cached fields
+	 */
+	public synchronized int size()
+	{
+		return m_mapFields.size();
+	}
+
+	/**
+	 * The number of fields handed out from the cache
+	 *
+	 * @return			The number of hits
+	 */
+	public synchronized long getHits()
+	{
+		return m_lHits;
+	}
+
+	/**
+	 * The number of fields that had to be worked out
+	 *
+	 * @return			The number of misses
+	 */
+	public synchronized long getMisses()
+	{
+		return m_lMisses;
+	}
+
+	/**
+	 * The number of fields dropped to make room for newer ones
+	 *
+	 * @return			The number of evictions
+	 */
+	public synchronized long getEvictions()
+	{
+		return m_lEvictions;
+	}
+
+	/**
+	 * The number of times the cache was emptied because the map changed
+	 *
+	 * @return			The number of invalidations
+	 */
+	public synchronized long getInvalidations()
+	{
+		return m_lInvalidations;
+	}
+
+	/**
+	 * Empties the cache if the map has changed since the cached fields were worked out
+	 *
+	 * @return			The current version of the map
+	 */
+	private int checkVersion()
+	{
+		int nVersion = m_gridMap.getVersion();
+
+		if (nVersion != m_nVersion)
+		{
+			clear();
+			m_nVersion = nVersion;
+			m_lInvalidations++;
+		}
+
+		return nVersion;
+	}
+}
@@ -4,15 +4,17 @@
  * may have a cost associated with traversing it.
  * <p>
  * Any cost of zero is assumed to be an untravelable direction along this node connection
+ * <p>
+ * Nodes only know the connections leaving them, so the connections arriving at each node
+ * are gathered into an index the first time they are asked for. The index is kept until
+ * the graph is changed through <code>addNode</code> or <code>addConnection</code>.
  * 
  * @author Jonathan Hanks (jonhanks@gmail.com)
  * @version 1.0
  * 
  */
 
-import java.util.*;
-
-public class Graph 
+public class Graph implements ReverseSearchGraph
 {
 	/*
 	 * Members
@@ -23,9 +25,27 @@ public class Graph
 	private int m_nNumNodes;
 	
 	/**
-	 * The vector holding all the nodes in the graph
+	 * The array holding all the nodes in the graph, each node is kept at the position of
+	 * its id number so it can be found directly
+	 */
+	private Node [] m_nodes;
+	
+	/**
+	 * The index of the first connection arriving at each node, with one extra entry at the
+	 * end. This is <code>null</code> until the reverse connections are first asked for and
+	 * whenever the graph has changed since.
+	 */
+	private volatile int [] m_nReverseOffsets;
+	
+	/**
+	 * The start node of each arriving connection
+	 */
+	private int [] m_nReverseSources;
+	
+	/**
+	 * The cost of each arriving connection
 	 */
-	private Vector m_vNodes;
+	private int [] m_nReverseCosts;
 	
 	/*
 	 * Functions
@@ -35,11 +55,24 @@ public class Graph
 	 */
 	Graph()
 	{
-		m_vNodes = new Vector();
+		this(16);
 	}
 	
 	/**
-	 * This adds a new node to the graph and returns the id number of the node
+	 * Creates the graph with room for the given number of nodes, it will still grow past
+	 * this if more are added
+	 * 
+	 * @param nNodeCapacity		The number of nodes to make room for
+	 */
+	Graph(int nNodeCapacity)
+	{
+		m_nodes = new Node[Math.max(nNodeCapacity, 1)];
+	}
+	
+	/**
+	 * This adds a new node to the graph and returns the id number of the node. Node ids
+	 * belong to the graph, the first node added is zero and each one after is the next
+	 * number up.
 	 * 
 	 * @return The id number of the node added
 	 * @param nXPos 	The x position in the world of the node
@@ -47,14 +80,22 @@ public class Graph
 	 */
 	public int addNode(int nXPos, int nYPos)
 	{
-		// create the node
-		Node newNode = new Node(nXPos, nYPos);
-		int nNodeID = newNode.getID();
+		// the next id is the number of nodes so far
+		int nNodeID = m_nNumNodes;
 		
-		// add the node to the vector
-		m_vNodes.add(newNode);
+		// make sure there is room for it
+		if (nNodeID == m_nodes.length)
+		{
+			Node [] newNodes = new Node[m_nodes.length * 2];
+			System.arraycopy(m_nodes, 0, newNodes, 0, m_nodes.length);
+			m_nodes = newNodes;
+		}
+		
+		// create the node and add it to the array
+		m_nodes[nNodeID] = new Node(nNodeID, nXPos, nYPos);
 		// increment the number of nodes in the graph
 		m_nNumNodes++;
+		m_nReverseOffsets = null;
 		
 		// return the nodes id number
 		return nNodeID;
@@ -71,23 +112,9 @@ public class Graph
 	 */
 	public boolean addConnection(int nStartNodeID, int nDestNodeID, int nTravelCost)
 	{
-		// Seach for the two nodes in the node vector
-		//  (this isn't all that efficient, some sort of hash based on the ID would be
-		//		much faster for node access, this is a place to look for a speed boost if needed)
-		Node nodeStart = null;
-		Node nodeDest = null;
-		
-		for (int i = 0; i < m_vNodes.size(); i++)
-		{
-			if (((Node)m_vNodes.get(i)).getID() == nStartNodeID)
-			{
-				nodeStart = ((Node)m_vNodes.get(i));
-			}
-			if (((Node)m_vNodes.get(i)).getID() == nDestNodeID)
-			{
-				nodeDest = ((Node)m_vNodes.get(i));
-			}
-		}
+		// look up the two nodes by their ids
+		Node nodeStart = getNode(nStartNodeID);
+		Node nodeDest = getNode(nDestNodeID);
 		
 		if ((nodeStart == null) || (nodeDest == null))
 		{
@@ -97,6 +124,7 @@ public class Graph
 		
 		// add the connection
 		nodeStart.addConnection(nodeDest, nTravelCost);
+		m_nReverseOffsets = null;
 		
 		return true;
 	}
@@ -108,17 +136,139 @@ public class Graph
 	 */
 	public Node getNode(int nNodeID)
 	{
-		// find the node that corresponds to this id and return it
-		for (int i = 0; i < m_vNodes.size(); i++)
+		// the id is the position of the node in the array
+		if ((nNodeID < 0) || (nNodeID >= m_nNumNodes))
+		{
+			// couldn't find the node
+			return null;
+		}
+		
+		return m_nodes[nNodeID];
+	}
+	
+	/**
+	 * The number of nodes in the graph
+	 * 
+	 * @return			The number of nodes
+	 */
+	public int getNumNodes()
+	{
+		return m_nNumNodes;
+	}
+	
+	public int getNodeCapacity()
+	{
+		return m_nNumNodes;
+	}
+	
+	public int getNodeX(int nNodeID)
+	{
+		return getNode(nNodeID).getX();
+	}
+	
+	public int getNodeY(int nNodeID)
+	{
+		return getNode(nNodeID).getY();
+	}
+	
+	public int getConnectionCount(int nNodeID)
+	{
+		return getNode(nNodeID).getConnectionCount();
+	}
+	
+	public int getConnectedNodeID(int nNodeID, int nConnection)
+	{
+		return getNode(nNodeID).getConnection(nConnection).getLinkedNode().getID();
+	}
+	
+	public int getConnectionCost(int nNodeID, int nConnection)
+	{
+		return getNode(nNodeID).getConnection(nConnection).getCost();
+	}
+	
+	public int getReverseConnectionCount(int nNodeID)
+	{
+		int [] nOffsets = getReverseOffsets();
+		return nOffsets[nNodeID + 1] - nOffsets[nNodeID];
+	}
+	
+	public int getReverseConnectedNodeID(int nNodeID, int nConnection)
+	{
+		// read the offsets first, they are set last so the rest of the index is in place
+		int [] nOffsets = getReverseOffsets();
+		return m_nReverseSources[nOffsets[nNodeID] + nConnection];
+	}
+	
+	public int getReverseConnectionCost(int nNodeID, int nConnection)
+	{
+		int [] nOffsets = getReverseOffsets();
+		return m_nReverseCosts[nOffsets[nNodeID] + nConnection];
+	}
+	
+	/**
+	 * Provides the offsets of the reverse connection index, building the index if the graph
+	 * has changed since it was last built
+	 * 
+	 * @return			The index of the first connection arriving at each node
+	 */
+	private int [] getReverseOffsets()
+	{
+		int [] nOffsets = m_nReverseOffsets;
+		if (nOffsets == null)
+		{
+			nOffsets = buildReverseIndex();
+		}
+		
+		return nOffsets;
+	}
+	
+	/**
+	 * Gathers the connections arriving at each node into the reverse connection index
+	 * 
+	 * @return			The index of the first connection arriving at each node
+	 */
+	private synchronized int [] buildReverseIndex()
+	{
+		// another thread may have built it while this one waited
+		if (m_nReverseOffsets != null)
 		{
-			if (((Node)m_vNodes.get(i)).getID() == nNodeID)
+			return m_nReverseOffsets;
+		}
+		
+		// count the connections arriving at each node, shifted up by one like CSRGraph
+		int [] nOffsets = new int[m_nNumNodes + 1];
+		for (int n = 0; n < m_nNumNodes; n++)
+		{
+			for (int i = 0; i < m_nodes[n].getConnectionCount(); i++)
 			{
-				return ((Node)m_vNodes.get(i));
+				nOffsets[getConnectedNodeID(n, i) + 1]++;
 			}
 		}
+		for (int n = 0; n < m_nNumNodes; n++)
+		{
+			nOffsets[n + 1] += nOffsets[n];
+		}
 		
-		// couldn't find the node
-		return null;
+		int [] nSources = new int[nOffsets[m_nNumNodes]];
+		int [] nCosts = new int[nSources.length];
+		int [] nNextSlot = new int[m_nNumNodes];
+		System.arraycopy(nOffsets, 0, nNextSlot, 0, m_nNumNodes);
+		
+		for (int n = 0; n < m_nNumNodes; n++)
+		{
+			for (int i = 0; i < m_nodes[n].getConnectionCount(); i++)
+			{
+				int nSlot = nNextSlot[getConnectedNodeID(n, i)]++;
+				nSources[nSlot] = n;
+				nCosts[nSlot] = getConnectionCost(n, i);
+			}
+		}
+		
+		// the offsets go last so a thread that sees them sees the rest too
+		m_nReverseSources = nSources;
+		m_nReverseCosts = nCosts;
+		m_nReverseOffsets = nOffsets;
+		
+		return nOffsets;
 	}
-	
 }
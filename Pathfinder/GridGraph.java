@@ -0,0 +1,212 @@
+/**
+ * The GridGraph class lets a grid of cell costs be searched as a graph without building
+ * any nodes or connections. Every cell of the grid is a node, the node id of the cell at
+ * (x, y) is <code>y * width + x</code>, and the connections of a cell are worked out from
+ * the cell costs when they are asked for. The costs can be kept in an int array or packed
+ * into a buffer, see CellCosts.
+ * <p>
+ * Each cell connects to the 8 cells around it. The cost to travel a connection is the cost
+ * of the cell being moved into, and a cost of zero is a cell that can not be moved into,
+ * the same as the graph GridMap used to generate. Connections that would leave the grid
+ * also have a cost of zero.
+ * <p>
+ * The connections arriving at a cell are the same 8 directions walked backwards, so the
+ * reverse connections need no index. Each one costs the cell it arrives at.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+public class GridGraph implements ReverseSearchGraph
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The x step of each of the 8 connections of a cell
+	 */
+	private static final int [] DIR_X = { 1, 1, 0, -1, -1, -1, 0, 1 };
+
+	/**
+	 * The y step of each of the 8 connections of a cell
+	 */
+	private static final int [] DIR_Y = { 0, 1, 1, 1, 0, -1, -1, -1 };
+
+	/**
+	 * The width of the grid
+	 */
+	private final int m_nWidth;
+
+	/**
+	 * The height of the grid
+	 */
+	private final int m_nHeight;
+
+	/**
+	 * The cost of moving into each cell, stored a row at a time
+	 */
+	private final CellCosts m_costs;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates the graph over a cost array. The array is used as is and not copied.
+	 *
+	 * @param nWidth		The width of the grid
+	 * @param nHeight		The height of the grid
+	 * @param nCosts		The cost of each cell, the cell at (x, y) is at y * width + x
+	 */
+	public GridGraph(int nWidth, int nHeight, int [] nCosts)
+	{
+		this(nWidth, nHeight, new ArrayCellCosts(nCosts));
+	}
+
+	/**
+	 * Creates the graph over the cell costs it is given. The costs are used as they are
+	 * and not copied.
+	 *
+	 * @param nWidth		The width of the grid
+	 * @param nHeight		The height of the grid
+	 * @param costs			The cost of each cell, the cell at (x, y) is at y * width + x
+	 */
+	public GridGraph(int nWidth, int nHeight, CellCosts costs)
+	{
+		m_nWidth = nWidth;
+		m_nHeight = nHeight;
+		m_costs = costs;
+	}
+
+	/**
+	 * Get the width of the grid
+	 * @return	the width of the grid
+	 */
+	public int getWidth()
+	{
+		return m_nWidth;
+	}
+
+	/**
+	 * Get the height of the grid
+	 * @return	the height of the grid
+	 */
+	public int getHeight()
+	{
+		return m_nHeight;
+	}
+
+	/**
+	 * Provides the storage of the cell costs
+	 *
+	 * @return			The cell costs
+	 */
+	public CellCosts getCellCosts()
+	{
+		return m_costs;
+	}
+
+	/**
+	 * Provides the node id of the cell at a position
+	 *
+	 * @param nX		The x position of the cell
+	 * @param nY		The y position of the cell
+	 * @return			The id of the cell
+	 */
+	public int getCellID(int nX, int nY)
+	{
+		return (nY * m_nWidth) + nX;
+	}
+
+	/**
+	 * Whether a position is inside the grid
+	 *
+	 * @param nX		The x position to check
+	 * @param nY		The y position to check
+	 * @return			<code>true</code> if it is in the grid <code>false</code> otherwise
+	 */
+	public boolean isInGrid(int nX, int nY)
+	{
+		return (nX >= 0) && (nX < m_nWidth) && (nY >= 0) && (nY < m_nHeight);
+	}
+
+	/**
+	 * Provides the cost of moving into a cell
+	 *
+	 * @param nCellID	The id of the cell
+	 * @return			The cost of the cell, zero if it can not be moved into
+	 */
+	public int getCellCost(int nCellID)
+	{
+		return m_costs.getCost(nCellID);
+	}
+
+	/**
+	 * Provides the cost of moving into the cell at a position, positions outside the grid
+	 * can not be moved into
+	 *
+	 * @param nX		The x position of the cell
+	 * @param nY		The y position of the cell
+	 * @return			The cost of the cell, zero if it can not be moved into
+	 */
+	public int getCellCost(int nX, int nY)
+	{
+		if (!isInGrid(nX, nY))
+		{
+			return 0;
+		}
+
+		return m_costs.getCost((nY * m_nWidth) + nX);
+	}
+
+	public int getNodeCapacity()
+	{
+		return m_nWidth * m_nHeight;
+	}
+
+	public int getNodeX(int nNodeID)
+	{
+		return nNodeID % m_nWidth;
+	}
+
+	public int getNodeY(int nNodeID)
+	{
+		return nNodeID / m_nWidth;
+	}
+
+	public int getConnectionCount(int nNodeID)
+	{
+		return DIR_X.length;
+	}
+
+	public int getConnectedNodeID(int nNodeID, int nConnection)
+	{
+		return nNodeID + (DIR_Y[nConnection] * m_nWidth) + DIR_X[nConnection];
+	}
+
+	public int getConnectionCost(int nNodeID, int nConnection)
+	{
+		return getCellCost(getNodeX(nNodeID) + DIR_X[nConnection],
+							getNodeY(nNodeID) + DIR_Y[nConnection]);
+	}
+
+	public int getReverseConnectionCount(int nNodeID)
+	{
+		return DIR_X.length;
+	}
+
+	public int getReverseConnectedNodeID(int nNodeID, int nConnection)
+	{
+		return getConnectedNodeID(nNodeID, nConnection);
+	}
+
+	public int getReverseConnectionCost(int nNodeID, int nConnection)
+	{
+		// any cell in the grid can move into this one, even one that can't be moved into
+		if (!isInGrid(getNodeX(nNodeID) + DIR_X[nConnection], getNodeY(nNodeID) + DIR_Y[nConnection]))
+		{
+			return 0;
+		}
+
+		return m_costs.getCost(nNodeID);
+	}
+}
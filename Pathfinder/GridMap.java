@@ -3,17 +3,25 @@
  * grid squares. Each square may be traversable or not and it may also have a cost
  * associated with moving into the square.
  * <p>
- * GridMap provides functionality for converting itself into a graph for use with
- * pathfinding routines, functionality to turn the resultant path back into a gridmap,
+ * GridMap provides functionality for searching itself directly as an implicit grid graph,
+ * converting itself into an explicit graph for use with other pathfinding routines, functionality to turn the resultant path back into a gridmap,
  * functionality to read the the map in from a file, write it out to a file and write
- * a path returned from a pathfinding routine to a file for inspection.
+ * a path returned from a pathfinding routine to a file for inspection. Maps can be read
+ * from the text format or from the binary format of MapFile, which loads much faster.
+ * <p>
+ * Once the map has been read in the cost of single squares can be changed, for example
+ * to close a door or to open it again. Listeners added to the map are told about each
+ * change so they can update what they have worked out from the map.
  * 
  * @author Jonathan Hanks (jonhanks@gmail.com)
  * @version 1.0
  */
 
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class GridMap 
 {
@@ -52,26 +60,45 @@ public class GridMap
 	private int m_nGoalPointY;
 	
 	/**
-	 * A 2d array that contains the costs for moving between the points on the map
-	 * any 0 cost is assumed to be a position you can't move into.
+	 * The costs for moving between the points on the map, any 0 cost is assumed to be 
+	 * a position you can't move into. The data is stored a row at a time so the point 
+	 * (x, y) is at y * width + x, which is also the id of the point in the graphs of 
+	 * the map.
 	 */
-	private int [][] m_nMapData;
+	private CellCosts m_mapCosts;
 	
 	/**
-	 * A 2d array of the map that corresponds with the nodes in the graph
-	 * this is used to determine what the resultant path from the pathfinder means
+	 * Whether or not the grid map has been initialized
 	 */
-	private int [][] m_nNodeIDs;
+	private boolean m_bInitialized;
 	
 	/**
-	 * Whether or not the grid map has been initialized
+	 * The implicit graph that searches the map data in place
 	 */
-	private boolean m_bInitialized;
+	private GridGraph m_gridMapGraph;
+	
+	/**
+	 * The jump point search over the map, this is <code>null</code> until it is first used
+	 * and is only set up through <code>getJumpPointSearch</code> so threads can share it
+	 */
+	private JumpPointSearch m_jumpPointSearch;
+	
+	/**
+	 * The connected regions of the map, this is <code>null</code> until it is first used and
+	 * is kept up to date as squares change from then on
+	 */
+	private ComponentIndex m_componentIndex;
+	
+	/**
+	 * The version of the map data, this goes up every time the map data changes so that
+	 * anything worked out from the old data (like cached paths) knows it is out of date
+	 */
+	private volatile int m_nVersion;
 	
 	/**
-	 * The graph that represents the gridmap
+	 * The listeners told about each change to the cost of a square
 	 */
-	private Graph m_gridMapGraph;
+	private Vector m_vListeners = new Vector();
 	
 	/*
 	 * Functions
@@ -79,7 +106,8 @@ public class GridMap
 	
 	/**
 	 * Initializes the grid map. It will read the gridmap data from a properly formatted text file.
-	 * Very little error checking is done here, this is a good thing to add later.
+	 * The file is read in large chunks and decoded straight into the map data, and any
+	 * problem with the format is reported with the line and column it was found at.
 	 * 
 	 * @param zGridMapFileName		The name of the file that contains the gridmap definition
 	 * 								The format for the file is as follows
@@ -92,82 +120,22 @@ public class GridMap
 	 * <li>								Line 6 - Y coordinate of goal point
 	 * <li>								Line 7 to Line Height + 6 - Data of the map
 	 * 										Each line should have width numbers seperated by 
-	 * 										a single space with each number being the cost to
+	 * 										spaces with each number being the cost to
 	 *										move into that particular position and zero being
-	 *										a point that can not be moved into (note that cost
-	 *										data can only be single digit)
+	 *										a point that can not be moved into (costs can have
+	 *										any number of digits and any spaces, tabs or line
+	 *										breaks can separate the numbers)
 	 *</ul>
 	 *@return 						<code>true</code> If the map file was read in with no errors
 	 *								<code>false</code> If the map file had any read errors
 	 */
 	public boolean Init(String zGridMapFileName)
 	{
-		m_bInitialized = false;
-		
-		// create the graph
-		m_gridMapGraph = new Graph();
+		prepareForNewMap();
 		
 		try	// beware input file exceptions
 		{
-			// create a new file reader
-			BufferedReader mapFR = new BufferedReader(new FileReader(zGridMapFileName));	
-
-			String zCurrLine = "";
-			
-			// read each line individually and parse it
-			
-			try // beware the number format exceptions
-			{
-				// read the width
-				zCurrLine = mapFR.readLine();
-				m_nWidth = Integer.parseInt(zCurrLine);
-				
-				// read the height
-				zCurrLine = mapFR.readLine();
-				m_nHeight = Integer.parseInt(zCurrLine);
-				
-				// create the array to hold the data and node ids
-				m_nMapData = new int[m_nWidth][m_nHeight];
-				m_nNodeIDs = new int[m_nWidth][m_nHeight];
-				
-				// read the start point
-				zCurrLine = mapFR.readLine();
-				m_nStartPointX = Integer.parseInt(zCurrLine);
-				zCurrLine = mapFR.readLine();
-				m_nStartPointY = Integer.parseInt(zCurrLine);
-				
-				// read the goal point
-				zCurrLine = mapFR.readLine();
-				m_nGoalPointX = Integer.parseInt(zCurrLine);
-				zCurrLine = mapFR.readLine();
-				m_nGoalPointY = Integer.parseInt(zCurrLine);
-				
-				// read in height number of lines
-				for (int y = 0; y < m_nHeight; y++)
-				{
-					// read the map line
-					zCurrLine = mapFR.readLine();
-					
-					// parse width numbers from it
-					for (int x = 0; x < m_nWidth; x++)
-					{
-						// convert each character plus its trailing space to a new string
-						String zCurrNum = zCurrLine.substring(2*x, (2*x) + 1);
-						// convert that string to the cost number for that tile
-						m_nMapData[x][y] = Integer.parseInt(zCurrNum);
-					}
-				}
-				
-				// close the stream
-				mapFR.close();
-			}
-			catch (NumberFormatException e)
-			{
-				System.err.println("Invalid file format...exiting!");
-				return false;
-			}
-			
-			m_bInitialized = true;
+			setMap(MapTextParser.parse(zGridMapFileName));
 		}
 		catch (FileNotFoundException e)
 		{
@@ -175,6 +143,12 @@ public class GridMap
 			System.err.println("Map file not found...exiting!");
 			return false;
 		}
+		catch (MapFormatException e)
+		{
+			// say where the file went wrong
+			System.err.println("Invalid file format...exiting! " + e.getMessage());
+			return false;
+		}
 		catch (IOException e)
 		{
 			// io exception so tell the error stream
@@ -186,29 +160,363 @@ public class GridMap
 	}
 	
 	/**
-	 * This will generate the graph that represents the gridmap
+	 * Initializes the grid map from a binary map file written by MapFile. The file is 
+	 * mapped into memory rather than read, so the costs are searched straight out of the 
+	 * file and nothing is parsed. Changing the cost of a point doesn't change the file.
+	 * 
+	 * @param zBinaryFileName		The name of the file that contains the binary map
+	 * @return 						<code>true</code> If the map file was read in with no errors
+	 *								<code>false</code> If the map file had any read errors
+	 */
+	public boolean InitBinary(String zBinaryFileName)
+	{
+		prepareForNewMap();
+		
+		try
+		{
+			setMap(MapFile.load(zBinaryFileName));
+		}
+		catch (FileNotFoundException e)
+		{
+			System.err.println("Map file not found...exiting!");
+			return false;
+		}
+		catch (IOException e)
+		{
+			System.err.println("Invalid binary map: " + e.getMessage());
+			return false;
+		}
+		
+		return m_bInitialized;
+	}
+	
+	/**
+	 * Initializes the grid map from a Moving AI benchmark map (.map) file. Every cell that
+	 * can be moved into costs one, and the start and goal points are both put at the top 
+	 * left corner since the map file doesn't give them, the queries come from the matching
+	 * scenario file (see MovingAiLoader).
+	 * 
+	 * @param zMovingAiFileName		The name of the Moving AI map file
+	 * @return 						<code>true</code> If the map file was read in with no errors
+	 *								<code>false</code> If the map file had any read errors
+	 */
+	public boolean InitMovingAi(String zMovingAiFileName)
+	{
+		prepareForNewMap();
+		
+		try
+		{
+			setMap(MovingAiLoader.loadMap(zMovingAiFileName));
+		}
+		catch (FileNotFoundException e)
+		{
+			System.err.println("Map file not found...exiting!");
+			return false;
+		}
+		catch (IOException e)
+		{
+			System.err.println("Invalid Moving AI map: " + e.getMessage());
+			return false;
+		}
+		
+		return m_bInitialized;
+	}
+	
+	/**
+	 * Initializes the grid map from a tiled map file written by TiledMapFile. Nothing but
+	 * the header is read, the costs are read a chunk at a time as the searches reach them
+	 * and only a set number of chunks are kept in memory, so only the part of the map being
+	 * searched has to fit in memory. Changing the cost of a point changes the file.
+	 * <p>
+	 * The A* search over a tiled map doesn't check the connected regions of the map first
+	 * since labelling them reads every chunk, and the jump point search reads every chunk
+	 * the first time it is used. Reading in chunks can only be done from one thread at a
+	 * time so a tiled map can't be searched in batches.
+	 * 
+	 * @param zTiledFileName		The name of the file that contains the tiled map
+	 * @param nMaxResidentChunks	The most chunks to keep in memory at once
+	 * @return 						<code>true</code> If the map file was read in with no errors
+	 *								<code>false</code> If the map file had any read errors
+	 */
+	public boolean InitTiled(String zTiledFileName, int nMaxResidentChunks)
+	{
+		prepareForNewMap();
+		
+		try
+		{
+			setMap(TiledMapFile.load(zTiledFileName, nMaxResidentChunks));
+		}
+		catch (FileNotFoundException e)
+		{
+			System.err.println("Map file not found...exiting!");
+			return false;
+		}
+		catch (IOException e)
+		{
+			System.err.println("Invalid tiled map: " + e.getMessage());
+			return false;
+		}
+		
+		return m_bInitialized;
+	}
+	
+	/**
+	 * Provides the map in the form MapFile writes out, sharing the cell costs of this map
+	 * 
+	 * @return The map or <code>null</code> if it hasn't been initialized
+	 */
+	public MapFile toMapFile()
+	{
+		if (!m_bInitialized)
+		{
+			return null;
+		}
+		
+		return new MapFile(m_nWidth, m_nHeight, m_nStartPointX, m_nStartPointY,
+							m_nGoalPointX, m_nGoalPointY, m_mapCosts);
+	}
+	
+	/**
+	 * Takes on a map that has been read in
+	 * 
+	 * @param mapFile		The map
+	 */
+	private void setMap(MapFile mapFile)
+	{
+		m_nWidth = mapFile.getWidth();
+		m_nHeight = mapFile.getHeight();
+		m_nStartPointX = mapFile.getStartPointX();
+		m_nStartPointY = mapFile.getStartPointY();
+		m_nGoalPointX = mapFile.getGoalPointX();
+		m_nGoalPointY = mapFile.getGoalPointY();
+		m_mapCosts = mapFile.getCellCosts();
+		
+		// the graph just looks at the map data so it is ready to search straight away
+		m_gridMapGraph = new GridGraph(m_nWidth, m_nHeight, m_mapCosts);
+		
+		m_bInitialized = true;
+	}
+	
+	/**
+	 * Moves the costs of the map out of the Java heap into a direct buffer, packed into one
+	 * byte a square if every cost fits or two if not. A big map then takes a quarter or half
+	 * of the memory, none of it on the heap where the garbage collector has to scan it. A
+	 * binary map read in with <code>InitBinary</code> is already outside the heap, mapped
+	 * straight from its file, and is left as it is.
+	 * <p>
+	 * Anything worked out from the old storage, like the jump distances, is worked out again
+	 * when it is next used, and the map version goes up.
+	 * 
+	 * @return		<code>true</code> if the costs are now outside the heap <code>false</code> if
+	 * 				the map hasn't been initialized or a cost is too big to pack
+	 */
+	public boolean storeOffHeap()
+	{
+		if (!m_bInitialized)
+		{
+			return false;
+		}
+		
+		if ((m_mapCosts instanceof PackedCellCosts) && ((PackedCellCosts)m_mapCosts).isDirect())
+		{
+			// nothing to move
+			return true;
+		}
+		
+		PackedCellCosts packedCosts;
+		try
+		{
+			packedCosts = PackedCellCosts.pack(m_mapCosts);
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.err.println("Cannot move the map off the heap: " + e.getMessage());
+			return false;
+		}
+		
+		// the graph and anything worked out from it have to move over to the new costs
+		prepareForNewMap();
+		m_mapCosts = packedCosts;
+		m_gridMapGraph = new GridGraph(m_nWidth, m_nHeight, m_mapCosts);
+		m_bInitialized = true;
+		
+		return true;
+	}
+	
+	/**
+	 * Gets ready to read in a new map, anything worked out from the old map is out of date
+	 */
+	private void prepareForNewMap()
+	{
+		m_bInitialized = false;
+		
+		// the chunks of a tiled map that have been changed still have to be written back
+		if (m_mapCosts instanceof ChunkedCellCosts)
+		{
+			try
+			{
+				((ChunkedCellCosts)m_mapCosts).close();
+			}
+			catch (IOException e)
+			{
+				System.err.println("Cannot write the changes to the tiled map: " + e.getMessage());
+			}
+			m_mapCosts = null;
+		}
+		
+		// the map data is about to change
+		m_nVersion++;
+		
+		// any jump point search or regions were for the old map
+		synchronized (this)
+		{
+			m_jumpPointSearch = null;
+			m_componentIndex = null;
+		}
+	}
+	
+	/**
+	 * Provides the version of the map data. It is different every time the map data has
+	 * changed so anything worked out from the map can check whether it is still current.
+	 * 
+	 * @return The version of the map data
+	 */
+	public int getVersion()
+	{
+		return m_nVersion;
+	}
+	
+	/**
+	 * Provides the cost of moving into a square of the map
+	 * 
+	 * @param nX		The x position of the square
+	 * @param nY		The y position of the square
+	 * @return			The cost of the square, zero if it can't be moved into or isn't in the map
+	 */
+	public int getCellCost(int nX, int nY)
+	{
+		if (!m_bInitialized)
+		{
+			return 0;
+		}
+		
+		return m_gridMapGraph.getCellCost(nX, nY);
+	}
+	
+	/**
+	 * Changes the cost of moving into a square of the map. A cost of zero makes the square
+	 * impassable and any higher cost makes it passable again. The searches of the map
+	 * search the new cost straight away so this must not be called while they are running.
+	 * Every listener is told about the change once it has been made.
+	 * 
+	 * @param nX		The x position of the square
+	 * @param nY		The y position of the square
+	 * @param nCost		The new cost of the square
+	 * @return			<code>true</code> if the cost was changed <code>false</code> if the map
+	 * 					hasn't been initialized, the square isn't in the map or the cost is negative
+	 * 					or too big for the map's storage, or the map is read only
+	 */
+	public boolean setCellCost(int nX, int nY, int nCost)
+	{
+		if (	!m_bInitialized || !m_gridMapGraph.isInGrid(nX, nY) 
+				|| (nCost < 0) || (nCost > m_mapCosts.getMaxCost()) || m_mapCosts.isReadOnly()
+			)
+		{
+			return false;
+		}
+		
+		int nCellID = m_gridMapGraph.getCellID(nX, nY);
+		int nOldCost = m_mapCosts.getCost(nCellID);
+		if (nOldCost == nCost)
+		{
+			// nothing to change
+			return true;
+		}
+		
+		m_mapCosts.setCost(nCellID, nCost);
+		m_nVersion++;
+		
+		// the precomputed jump distances no longer match the map, but the regions can be
+		// brought up to date for just this square
+		synchronized (this)
+		{
+			m_jumpPointSearch = null;
+			
+			if (m_componentIndex != null)
+			{
+				m_componentIndex.cellCostChanged(nCellID, nOldCost, nCost);
+			}
+		}
+		
+		// let the listeners know, a copy is walked so a listener can remove itself
+		Object [] listeners = m_vListeners.toArray();
+		for (int i = 0; i < listeners.length; i++)
+		{
+			((GridMapListener)listeners[i]).cellCostChanged(nCellID, nOldCost, nCost);
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Adds a listener to be told about each change to the cost of a square. Initializing
+	 * the map again replaces every square without telling the listeners.
 	 * 
-	 * @return A boolean indicating whether the graph generation succeeded
+	 * @param listener		The listener to add
 	 */
-	private boolean generateGraph()
+	public void addListener(GridMapListener listener)
+	{
+		m_vListeners.add(listener);
+	}
+	
+	/**
+	 * Stops a listener being told about changes
+	 * 
+	 * @param listener		The listener to remove
+	 */
+	public void removeListener(GridMapListener listener)
+	{
+		m_vListeners.remove(listener);
+	}
+	
+	/**
+	 * Provides the implicit graph of the gridmap. The node id of the point (x, y) is
+	 * y * width + x.
+	 * 
+	 * @return The graph of the gridmap or <code>null</code> if it hasn't been initialized
+	 */
+	public GridGraph getGridGraph()
+	{
+		return m_gridMapGraph;
+	}
+	
+	/**
+	 * This will generate an explicit graph that represents the gridmap. Every point in the
+	 * map gets a node, with the node id of the point (x, y) being y * width + x the same as
+	 * in the implicit graph, but only the points that can be moved into have connections.
+	 * <p>
+	 * Searching the gridmap doesn't need this, it is for passing the map to routines that
+	 * need a graph built ahead of time.
+	 * 
+	 * @return The frozen graph or <code>null</code> if the gridmap hasn't been initialized
+	 */
+	public CSRGraph generateGraph()
 	{
 		// make sure we've initialized the gridmap
 		if ( !m_bInitialized )
 		{
-			return false;
+			return null;
 		}
 		
-		// create a node for each accessable point in the map
+		// create the graph with room for a node in every cell, the connections grow as needed
+		CSRGraph gridMapGraph = new CSRGraph(m_nWidth * m_nHeight, m_nWidth * m_nHeight);
+		
+		// create a node for each point in the map so the ids match the cell positions
 		for (int y = 0; y < m_nHeight; y++)
 		{
 			for (int x = 0; x < m_nWidth; x++)
 			{
-				// if this is a valid node create it
-				if (m_nMapData[x][y] > 0)
-				{
-					m_nNodeIDs[x][y] = m_gridMapGraph.addNode(x, y);
-					
-				}
+				gridMapGraph.addNode(x, y);
 			}
 		}
 		
@@ -219,7 +527,7 @@ public class GridMap
 			for (int x = 0; x < m_nWidth; x++)
 			{
 				// if this is a valid node check its connections
-				if (m_nMapData[x][y] > 0)
+				if (m_mapCosts.getCost((y * m_nWidth) + x) > 0)
 				{
 					// check all 8 posible directions while making sure they are in the grid
 					for (int i = x - 1; i <= x + 1; i++)
@@ -236,12 +544,12 @@ public class GridMap
 							{
 								// this point is in the grid 
 								// is it a valid node to travel to?
-								if (m_nMapData[i][j] > 0)
+								if (m_mapCosts.getCost((j * m_nWidth) + i) > 0)
 								{
-									m_gridMapGraph.addConnection(
-											m_nNodeIDs[x][y], 
-											m_nNodeIDs[i][j], 
-											m_nMapData[i][j]);
+									gridMapGraph.addConnection(
+											(y * m_nWidth) + x, 
+											(j * m_nWidth) + i, 
+											m_mapCosts.getCost((j * m_nWidth) + i));
 								}
 							}
 						}
@@ -251,13 +559,14 @@ public class GridMap
 			
 		}
 		
-		// we succeeded so return true
-		return true;		
+		// pack the connections now that they have all been added
+		return gridMapGraph.freeze();
 	}
 	
 	/**
 	 * This function will perform the A star search on the gridmap and output the data
-	 * to the specified file
+	 * to the specified file. The search runs directly over the map data so no graph
+	 * has to be built first.
 	 * 
 	 * @param outputFile		The name of the output file to output the results to
 	 * @return					A boolean indicating success or failure
@@ -270,13 +579,24 @@ public class GridMap
 			return false;
 		}
 		
-		// generate the graph that corresponds to the gridmap
-		generateGraph();
+		// perform the search, the map costs are small integers so a bucket open list 
+		// is the quickest to keep in order, and every step costs at least as much as the
+		// cheapest cell so the heuristic counts each step at that cost
+		int nStartCellID = m_gridMapGraph.getCellID(m_nStartPointX, m_nStartPointY);
+		int nGoalCellID = m_gridMapGraph.getCellID(m_nGoalPointX, m_nGoalPointY);
+		int [] nPath = SearchContext.noPath();
 		
-		// perform the search
-		Vector vSearchResults = Astar.performSearch(m_gridMapGraph,
-													m_nNodeIDs[m_nStartPointX][m_nStartPointY],
-													m_nNodeIDs[m_nGoalPointX][m_nGoalPointY]);
+		// there's no need to search if the goal is cut off from the start, unless it would
+		// take reading in every chunk of a tiled map to find out
+		if (	(m_mapCosts instanceof ChunkedCellCosts)
+				|| getComponentIndex().isReachable(nStartCellID, nGoalCellID)
+			)
+		{
+			nPath = Astar.findPath(m_gridMapGraph, nStartCellID, nGoalCellID,
+									new SearchContext(new BucketOpenList()),
+									DistanceHeuristic.forGrid(m_gridMapGraph));
+		}
+		Vector vSearchResults = Astar.toVector(nPath);
 		
 		// output the results
 		boolean bSuccess = outputResults(outputFile, vSearchResults);	
@@ -287,6 +607,188 @@ public class GridMap
 		
 	}
 	
+	/**
+	 * Provides the jump point search over the gridmap, its jump distances are precomputed
+	 * the first time it is asked for. It is safe to ask for it from many threads at once.
+	 * 
+	 * @return The jump point search or <code>null</code> if the map hasn't been initialized
+	 */
+	public synchronized JumpPointSearch getJumpPointSearch()
+	{
+		if (!m_bInitialized)
+		{
+			return null;
+		}
+		
+		// set up the jump point search the first time it's needed
+		if (m_jumpPointSearch == null)
+		{
+			m_jumpPointSearch = new JumpPointSearch(m_gridMapGraph, true);
+		}
+		
+		return m_jumpPointSearch;
+	}
+	
+	/**
+	 * Provides the connected regions of the gridmap, which tell whether a path exists between
+	 * two squares without searching for it. The map is labelled the first time this is asked
+	 * for and after that only the squares changed through <code>setCellCost</code> are
+	 * relabelled. It is safe to ask for it from many threads at once.
+	 * 
+	 * @return The connected regions or <code>null</code> if the map hasn't been initialized
+	 */
+	public synchronized ComponentIndex getComponentIndex()
+	{
+		if (!m_bInitialized)
+		{
+			return null;
+		}
+		
+		// label the map the first time it's needed
+		if (m_componentIndex == null)
+		{
+			m_componentIndex = new ComponentIndex(m_gridMapGraph);
+		}
+		
+		return m_componentIndex;
+	}
+	
+	/**
+	 * Works out whether there is a path between two squares of the map without searching
+	 * for it. A square that can't be moved into can still be started from.
+	 * 
+	 * @param nStartX		The x position of the start square
+	 * @param nStartY		The y position of the start square
+	 * @param nGoalX		The x position of the goal square
+	 * @param nGoalY		The y position of the goal square
+	 * @return				<code>true</code> if there is a path from the start to the goal,
+	 * 						<code>false</code> if there isn't, either square isn't in the map
+	 * 						or the map hasn't been initialized
+	 */
+	public boolean isReachable(int nStartX, int nStartY, int nGoalX, int nGoalY)
+	{
+		if (	!m_bInitialized || !m_gridMapGraph.isInGrid(nStartX, nStartY)
+				|| !m_gridMapGraph.isInGrid(nGoalX, nGoalY)
+			)
+		{
+			return false;
+		}
+		
+		return getComponentIndex().isReachable(m_gridMapGraph.getCellID(nStartX, nStartY),
+												m_gridMapGraph.getCellID(nGoalX, nGoalY));
+	}
+	
+	/**
+	 * Finds paths for a batch of queries across all the processors. The query at each index
+	 * goes from the start point to the goal point at that index of the arrays, and the
+	 * points are given as the ids of their cells (y * width + x). The map must not be
+	 * initialized again while the batch is running.
+	 * 
+	 * @param nStartCellIDs		The start point of each query
+	 * @param nGoalCellIDs		The goal point of each query
+	 * @return					The result of each query in the same order as the queries, or
+	 * 							<code>null</code> if the map hasn't been initialized or is a
+	 * 							tiled map
+	 */
+	public PathResult [] performBatchSearch(int [] nStartCellIDs, int [] nGoalCellIDs)
+	{
+		// make sure the gridmap has been initialized
+		if (!m_bInitialized)
+		{
+			return null;
+		}
+		
+		// the chunks of a tiled map can only be read in by one thread at a time
+		if (m_mapCosts instanceof ChunkedCellCosts)
+		{
+			System.err.println("A tiled map can't be searched in batches");
+			return null;
+		}
+		
+		BatchPathfinder batchPathfinder = new BatchPathfinder(m_gridMapGraph, 
+																getJumpPointSearch(), 
+																ForkJoinPool.commonPool(),
+																getComponentIndex());
+		
+		return batchPathfinder.findPaths(nStartCellIDs, nGoalCellIDs);
+	}
+	
+	/**
+	 * This function will perform a jump point search on the gridmap and output the data
+	 * to the specified file. On maps where every open square has the same cost this finds
+	 * a path of the same cost as the A* search while expanding far fewer nodes, on other
+	 * maps it performs the A* search. The jump distances of the map are precomputed the
+	 * first time this is called.
+	 * 
+	 * @param outputFile		The name of the output file to output the results to
+	 * @return					A boolean indicating success or failure
+	 */
+	public boolean performJumpPointSearch(String outputFile)
+	{
+		// make sure the gridmap has been initialized
+		if (!m_bInitialized)
+		{
+			return false;
+		}
+		
+		// perform the search, unless the goal is cut off from the start
+		int nStartCellID = m_gridMapGraph.getCellID(m_nStartPointX, m_nStartPointY);
+		int nGoalCellID = m_gridMapGraph.getCellID(m_nGoalPointX, m_nGoalPointY);
+		Vector vSearchResults = new Vector();
+		if (getComponentIndex().isReachable(nStartCellID, nGoalCellID))
+		{
+			vSearchResults = getJumpPointSearch().performSearch(nStartCellID, nGoalCellID);
+		}
+		
+		// output the results
+		boolean bSuccess = outputResults(outputFile, vSearchResults);	
+		
+		System.out.println("Completed!");
+		
+		return bSuccess;
+	}
+	
+	/**
+	 * Writes a path through the map to a file in one of the forms of PathWriter. The GRID
+	 * form draws the whole map the same as the searches do, the others only write the path.
+	 * 
+	 * @param zOutputFile		The name of the output file
+	 * @param nPath				The path from the start to the goal
+	 * @param nFormat			The form to write, one of the PathWriter formats
+	 * @return					Whether the output succeeded or not
+	 */
+	public boolean outputPath(String zOutputFile, int [] nPath, int nFormat)
+	{
+		// make sure the gridmap has been initialized
+		if (!m_bInitialized)
+		{
+			return false;
+		}
+		
+		if (nFormat == PathWriter.GRID)
+		{
+			BitSet pathCells = new BitSet(m_nWidth * m_nHeight);
+			for (int i = 0; i < nPath.length; i++)
+			{
+				pathCells.set(nPath[i]);
+			}
+			
+			return renderPath(zOutputFile, pathCells);
+		}
+		
+		try
+		{
+			PathWriter.write(zOutputFile, m_gridMapGraph, nPath, nFormat);
+		}
+		catch (IOException e)
+		{
+			System.err.println("Cannot output to file...");
+			return false;
+		}
+		
+		return true;
+	}
+	
 	/**
 	 * This function does the output logic for the results of the search
 	 * 
@@ -296,57 +798,94 @@ public class GridMap
 	 */
 	private boolean outputResults(String zOutputFile, Vector vResults)
 	{
+		// mark the cells of the path so each one is found straight away
+		BitSet pathCells = new BitSet(m_nWidth * m_nHeight);
+		for (int i = 0; i < vResults.size(); i++)
+		{
+			pathCells.set(((Integer)vResults.get(i)).intValue());
+		}
+		
+		return renderPath(zOutputFile, pathCells);
+	}
+	
+	/**
+	 * Draws the map with the path marked on it. The output is built up a chunk at a time
+	 * and written through one channel, so drawing takes time in line with the size of the map.
+	 * 
+	 * @param zOutputFile		The name of the output file
+	 * @param pathCells			The cells of the path
+	 * @return					Whether the output succeeded or not
+	 */
+	private boolean renderPath(String zOutputFile, BitSet pathCells)
+	{
+		byte [] lineSeparator = System.getProperty("line.separator").getBytes();
+		
+		// a chunk holds at least one whole row
+		int nRowSize = (2 * m_nWidth) + lineSeparator.length;
+		ByteBuffer chunk = ByteBuffer.allocate(Math.max(nRowSize, 1 << 16));
+		
 		try
 		{
 			// create the output stream
-			BufferedWriter outWriter = new BufferedWriter(new FileWriter(zOutputFile));
+			FileOutputStream outStream = new FileOutputStream(zOutputFile);
 			
-			// go through each point in the grid and diagram the path
-			// Use X for obstacle squares o for clear squares that aren't in the path
-			// and v for squares in the path
-			for (int y = 0; y < m_nHeight; y++)
+			try
 			{
-				for (int x = 0; x < m_nWidth; x++)
+				FileChannel outChannel = outStream.getChannel();
+				
+				// go through each point in the grid and diagram the path
+				// Use X for obstacle squares o for clear squares that aren't in the path
+				// and v for squares in the path
+				for (int y = 0; y < m_nHeight; y++)
 				{
-					
-					// start and goal squares
-					if ((x == m_nStartPointX) && (y == m_nStartPointY))
-					{
-						outWriter.write("S");
-					}
-					else if ((x == m_nGoalPointX) && (y == m_nGoalPointY))
-					{
-						outWriter.write("G");
-					}
-					// obstacle squares
-					else if (m_nMapData[x][y] == 0)
+					// write out the chunk when the next row won't fit
+					if (chunk.remaining() < nRowSize)
 					{
-						outWriter.write("X");
+						writeChunk(outChannel, chunk);
 					}
-					else
+					
+					for (int x = 0; x < m_nWidth; x++)
 					{
-						if (isInList(vResults, m_nNodeIDs[x][y]))
+						int nCellID = (y * m_nWidth) + x;
+						
+						// start and goal squares
+						if ((x == m_nStartPointX) && (y == m_nStartPointY))
 						{
-							// this is in the list so output a v
-							outWriter.write("v");
+							chunk.put((byte)'S');
+						}
+						else if ((x == m_nGoalPointX) && (y == m_nGoalPointY))
+						{
+							chunk.put((byte)'G');
+						}
+						// obstacle squares
+						else if (m_mapCosts.getCost(nCellID) == 0)
+						{
+							chunk.put((byte)'X');
+						}
+						else if (pathCells.get(nCellID))
+						{
+							// this is in the path so output a v
+							chunk.put((byte)'v');
 						}
 						else
 						{
-							// not in the results list
-							outWriter.write("o");
+							// not in the path
+							chunk.put((byte)'o');
 						}
+						// output a space
+						chunk.put((byte)' ');
 					}
-					// output a space
-					outWriter.write(" ");
+					// place a return in the file
+					chunk.put(lineSeparator);
 				}
-				// place a return in the file
-				outWriter.newLine();
+				
+				writeChunk(outChannel, chunk);
+			}
+			finally
+			{
+				// close the stream
+				outStream.close();
 			}
-			
-			// flush the stream
-			outWriter.flush();
-			// close the stream
-			outWriter.close();
 		}
 		catch (IOException e)
 		{
@@ -358,25 +897,19 @@ public class GridMap
 	}
 	
 	/**
-	 * Whether the requested int is in the list
+	 * Writes out everything in a chunk and empties it
 	 * 
-	 * @param vList			The list to check
-	 * @param nNum			The number to check
-	 * @return				True if it is in the list and false otherwise
+	 * @param outChannel		The channel to write to
+	 * @param chunk				The chunk to write
+	 * @throws IOException		If the chunk can't be written
 	 */
-	private boolean isInList(Vector vList, int nNum)
+	private static void writeChunk(FileChannel outChannel, ByteBuffer chunk) throws IOException
 	{
-		Integer nToCheck = new Integer(nNum);
-		for (int i = 0; i < vList.size(); i++)
+		chunk.flip();
+		while (chunk.hasRemaining())
 		{
-			if (vList.contains(nToCheck))
-			{
-				// found in the list
-				return true;
-			}
+			outChannel.write(chunk);
 		}
-		
-		// not found in the list
-		return false;
+		chunk.clear();
 	}
 }
@@ -0,0 +1,23 @@
+/**
+ * The GridMapListener interface is told about every change made to the cells of a GridMap
+ * once the map has been set up, so anything worked out from the map data can be brought up
+ * to date for just the cells that changed instead of being worked out again from scratch.
+ * <p>
+ * Listeners are called on the thread that changed the map, after the new cost has been
+ * stored, so the map already holds the new cost when they run.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+public interface GridMapListener
+{
+	/**
+	 * Called when the cost of moving into a cell has changed
+	 *
+	 * @param nCellID		The id of the cell (y * width + x)
+	 * @param nOldCost		The cost the cell had, zero if it couldn't be moved into
+	 * @param nNewCost		The cost the cell has now, zero if it can't be moved into
+	 */
+	public void cellCostChanged(int nCellID, int nOldCost, int nNewCost);
+}
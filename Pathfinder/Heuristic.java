@@ -0,0 +1,26 @@
+/**
+ * The Heuristic interface estimates the cost of the best path between two nodes of a
+ * graph. A* uses it to decide which nodes to expand first, and finds the best path as long
+ * as the estimate is never more than the real cost (the heuristic is admissible). The closer
+ * the estimate is to the real cost the fewer nodes need to be expanded, and an estimate of
+ * zero expands nodes in the same order as Dijkstra's routine.
+ * <p>
+ * A heuristic can be chosen for each search, see <code>Astar.findPath</code>. Heuristics
+ * should be safe to use from many searches at once.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+public interface Heuristic
+{
+	/**
+	 * Estimates the cost of the best path from one node to another
+	 *
+	 * @param searchGraph		The graph being searched
+	 * @param nFromNodeID		The id of the node the path starts at
+	 * @param nToNodeID			The id of the node the path ends at
+	 * @return					The estimated cost, never more than the cost of the best path
+	 */
+	public int getEstimate(SearchGraph searchGraph, int nFromNodeID, int nToNodeID);
+}
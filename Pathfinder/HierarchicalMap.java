@@ -0,0 +1,1332 @@
+/**
+ * The HierarchicalMap implements hierarchical pathfinding (HPA*) over a grid graph. The grid
+ * is split into square clusters and the places where a path can cross from one cluster into
+ * the next (the entrances) are found. The entrances become the nodes of a much smaller
+ * abstract graph, joined across each cluster border and, inside each cluster, by the cost
+ * of the best path between them that stays in the cluster.
+ * <p>
+ * A query links its start and goal into the abstract graph, searches the abstract graph for
+ * the route from cluster to cluster, and then only refines the pieces of that route into
+ * cells with searches that stay inside a single cluster. This expands far fewer nodes than
+ * searching the whole grid at once. The paths found are close to optimal but not always
+ * optimal, since paths are only allowed to cross between clusters at the entrances. If the
+ * abstract graph can't link the start and goal the whole grid is searched instead, so a path
+ * is never missed.
+ * <p>
+ * When cells of the grid change, <code>updateCells</code> rebuilds only the clusters that
+ * hold them and their borders, not the whole hierarchy. Added as a listener of a GridMap it
+ * does this for each cell changed through the map. Queries can run from many threads at
+ * once, but updates must not run while a query is running.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.util.*;
+
+public class HierarchicalMap implements PathSearch, GridMapListener
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * Border runs at least this long get an entrance at each end instead of one in the middle
+	 */
+	private static final int LONG_ENTRANCE = 6;
+
+	/**
+	 * The grid being searched
+	 */
+	private final GridGraph m_grid;
+
+	/**
+	 * The width and height of each cluster in cells
+	 */
+	private final int m_nClusterSize;
+
+	/**
+	 * The number of clusters across the grid
+	 */
+	private final int m_nClustersX;
+
+	/**
+	 * The number of clusters down the grid
+	 */
+	private final int m_nClustersY;
+
+	/**
+	 * The entrances across the east border of each cluster, as pairs of cells with the
+	 * cell in the cluster first and the cell in the cluster to the east second
+	 */
+	private final int [][] m_nEastEntrances;
+
+	/**
+	 * The entrances across the south border of each cluster, as pairs of cells with the
+	 * cell in the cluster first and the cell in the cluster to the south second
+	 */
+	private final int [][] m_nSouthEntrances;
+
+	/**
+	 * The paths inside each cluster between its entrance cells, as triples of the cell
+	 * the path starts at, the cell it ends at and its cost
+	 */
+	private final int [][] m_nClusterPaths;
+
+	/**
+	 * The number of bits of an abstract node id that give the index of the entrance in its
+	 * cluster, enough for an entrance at every cell around its edge. The abstract node id of
+	 * the entrance at index i of cluster c is c shifted up by this plus i, so a cluster's
+	 * nodes don't move when another cluster changes.
+	 */
+	private final int m_nNodeIndexBits;
+
+	/**
+	 * The mask that picks the index of the entrance out of an abstract node id
+	 */
+	private final int m_nNodeIndexMask;
+
+	/**
+	 * The abstract graph that queries search, replaced whenever clusters are rebuilt
+	 */
+	private volatile Abstraction m_abstraction;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates the hierarchy over a grid, finding every entrance and the paths between them
+	 *
+	 * @param grid				The grid to search
+	 * @param nClusterSize		The width and height of each cluster in cells
+	 */
+	public HierarchicalMap(GridGraph grid, int nClusterSize)
+	{
+		m_grid = grid;
+		m_nClusterSize = Math.max(nClusterSize, 2);
+		m_nClustersX = (grid.getWidth() + m_nClusterSize - 1) / m_nClusterSize;
+		m_nClustersY = (grid.getHeight() + m_nClusterSize - 1) / m_nClusterSize;
+		m_nNodeIndexBits = 32 - Integer.numberOfLeadingZeros((4 * m_nClusterSize) - 1);
+		m_nNodeIndexMask = (1 << m_nNodeIndexBits) - 1;
+
+		int nNumClusters = m_nClustersX * m_nClustersY;
+		m_nEastEntrances = new int[nNumClusters][];
+		m_nSouthEntrances = new int[nNumClusters][];
+		m_nClusterPaths = new int[nNumClusters][];
+
+		// find the entrances first since the paths inside a cluster join them up
+		for (int nCluster = 0; nCluster < nNumClusters; nCluster++)
+		{
+			findEntrances(nCluster);
+		}
+
+		SearchContext context = new SearchContext();
+		for (int nCluster = 0; nCluster < nNumClusters; nCluster++)
+		{
+			findClusterPaths(nCluster, context);
+		}
+
+		m_abstraction = buildAbstraction();
+	}
+
+	/**
+	 * The width and height of each cluster in cells
+	 *
+	 * @return				The cluster size
+	 */
+	public int getClusterSize()
+	{
+		return m_nClusterSize;
+	}
+
+	/**
+	 * The number of nodes in the abstract graph, one for each entrance cell
+	 *
+	 * @return				The number of abstract nodes
+	 */
+	public int getNumAbstractNodes()
+	{
+		return m_abstraction.m_nNumNodes;
+	}
+
+	/**
+	 * Rebuilds the parts of the hierarchy affected by a change to the cells in a rectangle of
+	 * the grid. Only the clusters holding the changed cells are rebuilt, along with any
+	 * neighbouring cluster whose shared border changed.
+	 *
+	 * @param nX				The x position of the first changed cell
+	 * @param nY				The y position of the first changed cell
+	 * @param nWidth			The width of the changed rectangle
+	 * @param nHeight			The height of the changed rectangle
+	 */
+	public void updateCells(int nX, int nY, int nWidth, int nHeight)
+	{
+		int nFirstX = Math.max(nX / m_nClusterSize, 0);
+		int nFirstY = Math.max(nY / m_nClusterSize, 0);
+		int nLastX = Math.min((nX + nWidth - 1) / m_nClusterSize, m_nClustersX - 1);
+		int nLastY = Math.min((nY + nHeight - 1) / m_nClusterSize, m_nClustersY - 1);
+
+		// the clusters whose paths have to be worked out again
+		boolean [] bDirty = new boolean[m_nClustersX * m_nClustersY];
+
+		for (int cy = nFirstY; cy <= nLastY; cy++)
+		{
+			for (int cx = nFirstX; cx <= nLastX; cx++)
+			{
+				int nCluster = (cy * m_nClustersX) + cx;
+				bDirty[nCluster] = true;
+
+				// the borders to the east and south belong to this cluster, the ones to the
+				// west and north belong to the neighbours
+				updateBorders(nCluster, bDirty);
+				if (cx > 0)
+				{
+					updateBorders(nCluster - 1, bDirty);
+				}
+				if (cy > 0)
+				{
+					updateBorders(nCluster - m_nClustersX, bDirty);
+				}
+			}
+		}
+
+		// the context of the thread is reused so an update doesn't allocate arrays for the
+		// whole grid
+		SearchContext context = SearchContext.getThreadContext();
+		for (int nCluster = 0; nCluster < bDirty.length; nCluster++)
+		{
+			if (bDirty[nCluster])
+			{
+				findClusterPaths(nCluster, context);
+			}
+		}
+
+		m_abstraction = patchAbstraction(m_abstraction, bDirty);
+	}
+
+	public void cellCostChanged(int nCellID, int nOldCost, int nNewCost)
+	{
+		updateCells(m_grid.getNodeX(nCellID), m_grid.getNodeY(nCellID), 1, 1);
+	}
+
+	/**
+	 * Finds a path between two cells. If the context has a SearchListener the searches the
+	 * query runs inside are added up and it is told about them as one search.
+	 */
+	public int [] findPath(int nStartCellID, int nGoalCellID, SearchContext context)
+	{
+		// only time the query if someone is listening for it
+		SearchListener listener = context.getListener();
+		if (listener == null)
+		{
+			return findPath(nStartCellID, nGoalCellID, context, null);
+		}
+
+		long lStartTime = System.nanoTime();
+		QueryStats queryStats = new QueryStats();
+		int [] nPath = findPath(nStartCellID, nGoalCellID, context, queryStats);
+
+		SearchStats stats = context.getStats();
+		stats.set(nStartCellID, nGoalCellID, queryStats.m_nNumExpanded, queryStats.m_nNumGenerated,
+					queryStats.m_nNumReopened, queryStats.m_nPeakOpenSize, nPath.length,
+					getPathCost(nPath), System.nanoTime() - lStartTime);
+		listener.searchFinished(stats);
+
+		return nPath;
+	}
+
+	/**
+	 * Finds a path between two cells, adding up the searches it runs
+	 *
+	 * @param nStartCellID		The ID of the start cell
+	 * @param nGoalCellID		The ID of the goal cell
+	 * @param context			The context to search in
+	 * @param queryStats		The totals to add the searches to, or null not to count them
+	 * @return					The path of cells from the start to the goal, empty if there
+	 * 							is none
+	 */
+	private int [] findPath(int nStartCellID, int nGoalCellID, SearchContext context, QueryStats queryStats)
+	{
+		Abstraction abstraction = m_abstraction;
+
+		int nStartCluster = getCluster(nStartCellID);
+		int nGoalCluster = getCluster(nGoalCellID);
+
+		// link the start to the entrances of its cluster and those of the goal's cluster to
+		// the goal, along with the direct path if they share a cluster
+		int [] nStartCosts = getEntranceCosts(abstraction, nStartCellID, nStartCluster, false, context);
+		int nNumExpanded = context.getNumClosed();
+		int [] nGoalCosts = getEntranceCosts(abstraction, nGoalCellID, nGoalCluster, true, context);
+		nNumExpanded += context.getNumClosed();
+		int nDirectCost = 0;
+		if (nStartCluster == nGoalCluster)
+		{
+			nDirectCost = getClusterDistance(nStartCellID, nGoalCellID, nStartCluster, context);
+			nNumExpanded += context.getNumClosed();
+		}
+		if (queryStats != null)
+		{
+			queryStats.m_nNumExpanded += nNumExpanded;
+		}
+
+		QueryGraph queryGraph = new QueryGraph(abstraction, nStartCellID, nGoalCellID,
+												nStartCluster, nGoalCluster,
+												nStartCosts, nGoalCosts, nDirectCost);
+
+		// search the abstract graph for the route
+		int [] nRoute = Astar.findPath(queryGraph, queryGraph.getStartNodeID(), queryGraph.getGoalNodeID(),
+										context, DistanceHeuristic.DEFAULT, queryStats);
+
+		if (nRoute.length == 0)
+		{
+			// the entrances don't link them up so search the whole grid to be sure
+			return Astar.findPath(m_grid, nStartCellID, nGoalCellID, context,
+									DistanceHeuristic.DEFAULT, queryStats);
+		}
+
+		return refineRoute(queryGraph, nRoute, context, queryStats);
+	}
+
+	/**
+	 * Turns a route through the abstract graph into a path of cells. Steps across a border
+	 * are already a single move, every other step is searched for inside its cluster.
+	 *
+	 * @param queryGraph		The graph the route was found in
+	 * @param nRoute			The route as abstract node ids
+	 * @param context			The context to search in
+	 * @param queryStats		The totals to add the searches to, or null not to count them
+	 * @return					The path of cells from the start to the goal
+	 */
+	private int [] refineRoute(QueryGraph queryGraph, int [] nRoute, SearchContext context, QueryStats queryStats)
+	{
+		// the pieces of the path, each piece starts with the cell after the last piece
+		int [][] nPieces = new int[nRoute.length][];
+		int nLength = 1;
+
+		int nFromCell = queryGraph.getCellID(nRoute[0]);
+		nPieces[0] = new int[] { nFromCell };
+
+		for (int i = 1; i < nRoute.length; i++)
+		{
+			int nToCell = queryGraph.getCellID(nRoute[i]);
+			int nFromCluster = getCluster(nFromCell);
+
+			if (nFromCluster != getCluster(nToCell))
+			{
+				// a step across a border
+				nPieces[i] = new int[] { nToCell };
+			}
+			else
+			{
+				// search inside the cluster and drop the first cell, the last piece ended on it
+				int [] nPath = Astar.findPath(new ClusterView(nFromCluster), nFromCell, nToCell, context,
+												DistanceHeuristic.DEFAULT, queryStats);
+				nPieces[i] = Arrays.copyOfRange(nPath, 1, nPath.length);
+			}
+
+			nLength += nPieces[i].length;
+			nFromCell = nToCell;
+		}
+
+		// join the pieces up
+		int [] nPath = new int[nLength];
+		int nIndex = 0;
+		for (int i = 0; i < nPieces.length; i++)
+		{
+			System.arraycopy(nPieces[i], 0, nPath, nIndex, nPieces[i].length);
+			nIndex += nPieces[i].length;
+		}
+
+		return nPath;
+	}
+
+	/**
+	 * Adds up the cost of a path of cells, each step costing the cell it moves into
+	 *
+	 * @param nPath				The path from the start to the goal
+	 * @return					The cost of the path, -1 if it is empty
+	 */
+	private int getPathCost(int [] nPath)
+	{
+		if (nPath.length == 0)
+		{
+			return -1;
+		}
+
+		int nCost = 0;
+		for (int i = 1; i < nPath.length; i++)
+		{
+			nCost += m_grid.getCellCost(nPath[i]);
+		}
+
+		return nCost;
+	}
+
+	/**
+	 * Works out the cost between a cell and every entrance node of its cluster without
+	 * leaving the cluster
+	 *
+	 * @param abstraction		The abstract graph
+	 * @param nCellID			The ID of the cell
+	 * @param nCluster			The cluster the cell is in
+	 * @param bToCell			<code>true</code> for the costs from the entrances to the cell,
+	 * 							<code>false</code> for the costs from the cell to the entrances
+	 * @param context			The context to search in
+	 * @return					The cost for each entrance of the cluster in the same order as
+	 * 							the cluster's entrance cells, zero where there is no path
+	 */
+	private int [] getEntranceCosts(Abstraction abstraction, int nCellID, int nCluster,
+			boolean bToCell, SearchContext context)
+	{
+		int [] nEntranceCells = abstraction.m_nClusterCells[nCluster];
+		int [] nCosts = new int[nEntranceCells.length];
+
+		searchCluster(nCellID, nCluster, bToCell, context);
+
+		for (int i = 0; i < nEntranceCells.length; i++)
+		{
+			int nEntranceCell = nEntranceCells[i];
+
+			if (nEntranceCell == nCellID)
+			{
+				// the cell is the entrance itself, marked apart from no path at all
+				nCosts[i] = -1;
+			}
+			else if (context.isReached(nEntranceCell))
+			{
+				nCosts[i] = context.getCost(nEntranceCell);
+			}
+		}
+
+		return nCosts;
+	}
+
+	/**
+	 * The cost of the best path between two cells of a cluster that stays inside it
+	 *
+	 * @param nFromCellID		The ID of the cell to start from
+	 * @param nToCellID			The ID of the cell to end at
+	 * @param nCluster			The cluster both cells are in
+	 * @param context			The context to search in
+	 * @return					The cost of the path, zero if there is none
+	 */
+	private int getClusterDistance(int nFromCellID, int nToCellID, int nCluster, SearchContext context)
+	{
+		if (nFromCellID == nToCellID)
+		{
+			return -1;
+		}
+
+		searchCluster(nFromCellID, nCluster, false, context);
+
+		return context.isReached(nToCellID) ? context.getCost(nToCellID) : 0;
+	}
+
+	/**
+	 * Works out the cost from a cell to every cell of its cluster (or from every cell of the
+	 * cluster to it) without leaving the cluster. The costs are left in the context.
+	 *
+	 * @param nCellID			The ID of the cell
+	 * @param nCluster			The cluster the cell is in
+	 * @param bReverse			<code>true</code> for the costs to the cell, <code>false</code>
+	 * 							for the costs from the cell
+	 * @param context			The context to search in
+	 */
+	private void searchCluster(int nCellID, int nCluster, boolean bReverse, SearchContext context)
+	{
+		ClusterView clusterView = new ClusterView(nCluster);
+
+		context.begin(m_grid);
+		OpenList openList = context.getOpenList();
+
+		context.setReached(nCellID, 0, -1);
+		openList.insert(nCellID, 0);
+
+		while (!openList.isEmpty())
+		{
+			int nCurrCellID = openList.removeLowest();
+			context.setClosed(nCurrCellID);
+			int nCurrCost = context.getCost(nCurrCellID);
+
+			// going backwards the move from a neighbour into this cell costs this cell's cost,
+			// and nothing can move into a cell that can't be moved into
+			int nReverseCost = m_grid.getCellCost(nCurrCellID);
+			if (bReverse && (nReverseCost <= 0))
+			{
+				continue;
+			}
+
+			for (int i = 0; i < clusterView.getConnectionCount(nCurrCellID); i++)
+			{
+				int nTravelCost = clusterView.getConnectionCost(nCurrCellID, i);
+				if (nTravelCost <= 0)
+				{
+					continue;
+				}
+
+				int nAdjCellID = clusterView.getConnectedNodeID(nCurrCellID, i);
+				int nCost = nCurrCost + (bReverse ? nReverseCost : nTravelCost);
+
+				if (!context.isReached(nAdjCellID))
+				{
+					context.setReached(nAdjCellID, nCost, nCurrCellID);
+					openList.insert(nAdjCellID, nCost);
+				}
+				else if (!context.isClosed(nAdjCellID) && (nCost < context.getCost(nAdjCellID)))
+				{
+					context.setReached(nAdjCellID, nCost, nCurrCellID);
+					openList.decreaseScore(nAdjCellID, nCost);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the entrances across the east and south borders of a cluster
+	 *
+	 * @param nCluster			The cluster
+	 */
+	private void findEntrances(int nCluster)
+	{
+		int cx = nCluster % m_nClustersX;
+		int cy = nCluster / m_nClustersX;
+		int nX0 = cx * m_nClusterSize;
+		int nY0 = cy * m_nClusterSize;
+		int nX1 = Math.min(nX0 + m_nClusterSize, m_grid.getWidth());
+		int nY1 = Math.min(nY0 + m_nClusterSize, m_grid.getHeight());
+
+		// the east border runs down between the last column and the next cluster's first
+		m_nEastEntrances[nCluster] = (cx + 1 < m_nClustersX)
+			? findBorderEntrances(nX1 - 1, nY0, 0, 1, 1, 0, nY1 - nY0)
+			: new int[0];
+
+		// the south border runs across between the last row and the next cluster's first
+		m_nSouthEntrances[nCluster] = (cy + 1 < m_nClustersY)
+			? findBorderEntrances(nX0, nY1 - 1, 1, 0, 0, 1, nX1 - nX0)
+			: new int[0];
+	}
+
+	/**
+	 * Finds the entrances along one border. Each run of cells where both sides of the border
+	 * can be moved into gets an entrance where it is cheapest to cross, and a long run gets
+	 * one at each end as well.
+	 *
+	 * @param nX				The x position of the first cell on the near side
+	 * @param nY				The y position of the first cell on the near side
+	 * @param nStepX			The x step along the border
+	 * @param nStepY			The y step along the border
+	 * @param nAcrossX			The x step across the border
+	 * @param nAcrossY			The y step across the border
+	 * @param nLength			The length of the border
+	 * @return					The entrances as pairs of near and far cells
+	 */
+	private int [] findBorderEntrances(int nX, int nY, int nStepX, int nStepY,
+			int nAcrossX, int nAcrossY, int nLength)
+	{
+		int [] nEntrances = new int[6 * nLength];
+		int nNumEntrances = 0;
+		int nRunStart = -1;
+
+		// one extra step closes off a run that reaches the end of the border
+		for (int i = 0; i <= nLength; i++)
+		{
+			int nNearX = nX + (i * nStepX);
+			int nNearY = nY + (i * nStepY);
+			boolean bOpen = (i < nLength)
+							&& (m_grid.getCellCost(nNearX, nNearY) > 0)
+							&& (m_grid.getCellCost(nNearX + nAcrossX, nNearY + nAcrossY) > 0);
+
+			if (bOpen && (nRunStart < 0))
+			{
+				nRunStart = i;
+			}
+			else if (!bOpen && (nRunStart >= 0))
+			{
+				int nRunEnd = i - 1;
+				int nCheapest = findCheapestCrossing(nX, nY, nStepX, nStepY, nAcrossX, nAcrossY,
+														nRunStart, nRunEnd);
+
+				if (nRunEnd - nRunStart + 1 >= LONG_ENTRANCE)
+				{
+					nNumEntrances = addEntrance(nEntrances, nNumEntrances, nX, nY, nStepX, nStepY,
+												nAcrossX, nAcrossY, nRunStart);
+					if ((nCheapest != nRunStart) && (nCheapest != nRunEnd))
+					{
+						nNumEntrances = addEntrance(nEntrances, nNumEntrances, nX, nY, nStepX, nStepY,
+													nAcrossX, nAcrossY, nCheapest);
+					}
+					nNumEntrances = addEntrance(nEntrances, nNumEntrances, nX, nY, nStepX, nStepY,
+												nAcrossX, nAcrossY, nRunEnd);
+				}
+				else
+				{
+					nNumEntrances = addEntrance(nEntrances, nNumEntrances, nX, nY, nStepX, nStepY,
+												nAcrossX, nAcrossY, nCheapest);
+				}
+
+				nRunStart = -1;
+			}
+		}
+
+		return Arrays.copyOf(nEntrances, nNumEntrances);
+	}
+
+	/**
+	 * Finds where a run along a border is cheapest to cross, the one nearest the middle of
+	 * the run if there are several
+	 *
+	 * @param nX				The x position of the first cell on the near side
+	 * @param nY				The y position of the first cell on the near side
+	 * @param nStepX			The x step along the border
+	 * @param nStepY			The y step along the border
+	 * @param nAcrossX			The x step across the border
+	 * @param nAcrossY			The y step across the border
+	 * @param nRunStart			The position the run starts at
+	 * @param nRunEnd			The position the run ends at
+	 * @return					The position of the cheapest crossing
+	 */
+	private int findCheapestCrossing(int nX, int nY, int nStepX, int nStepY, int nAcrossX,
+			int nAcrossY, int nRunStart, int nRunEnd)
+	{
+		int nMiddle = (nRunStart + nRunEnd) / 2;
+		int nBest = nMiddle;
+		int nBestCost = Integer.MAX_VALUE;
+
+		for (int nPos = nRunStart; nPos <= nRunEnd; nPos++)
+		{
+			int nNearX = nX + (nPos * nStepX);
+			int nNearY = nY + (nPos * nStepY);
+			int nCost = m_grid.getCellCost(nNearX, nNearY)
+						+ m_grid.getCellCost(nNearX + nAcrossX, nNearY + nAcrossY);
+
+			if (	(nCost < nBestCost)
+					|| ((nCost == nBestCost) && (Math.abs(nPos - nMiddle) < Math.abs(nBest - nMiddle)))
+				)
+			{
+				nBest = nPos;
+				nBestCost = nCost;
+			}
+		}
+
+		return nBest;
+	}
+
+	/**
+	 * Adds the entrance at a position along a border to the entrance list
+	 *
+	 * @param nEntrances		The entrance list
+	 * @param nNumEntrances		The number of values in the list so far
+	 * @param nX				The x position of the first cell on the near side
+	 * @param nY				The y position of the first cell on the near side
+	 * @param nStepX			The x step along the border
+	 * @param nStepY			The y step along the border
+	 * @param nAcrossX			The x step across the border
+	 * @param nAcrossY			The y step across the border
+	 * @param nPos				The position of the entrance along the border
+	 * @return					The number of values in the list now
+	 */
+	private int addEntrance(int [] nEntrances, int nNumEntrances, int nX, int nY, int nStepX,
+			int nStepY, int nAcrossX, int nAcrossY, int nPos)
+	{
+		int nNearX = nX + (nPos * nStepX);
+		int nNearY = nY + (nPos * nStepY);
+
+		nEntrances[nNumEntrances++] = m_grid.getCellID(nNearX, nNearY);
+		nEntrances[nNumEntrances++] = m_grid.getCellID(nNearX + nAcrossX, nNearY + nAcrossY);
+
+		return nNumEntrances;
+	}
+
+	/**
+	 * Finds the entrances of a cluster's east and south borders again, and marks the clusters
+	 * on the far side of any border that changed as needing their paths worked out again
+	 *
+	 * @param nCluster			The cluster whose borders to update
+	 * @param bDirty			The clusters whose paths need working out again
+	 */
+	private void updateBorders(int nCluster, boolean [] bDirty)
+	{
+		int [] nOldEast = m_nEastEntrances[nCluster];
+		int [] nOldSouth = m_nSouthEntrances[nCluster];
+
+		findEntrances(nCluster);
+
+		if (!Arrays.equals(nOldEast, m_nEastEntrances[nCluster]))
+		{
+			bDirty[nCluster] = true;
+			bDirty[nCluster + 1] = true;
+		}
+		if (!Arrays.equals(nOldSouth, m_nSouthEntrances[nCluster]))
+		{
+			bDirty[nCluster] = true;
+			bDirty[nCluster + m_nClustersX] = true;
+		}
+	}
+
+	/**
+	 * Works out the best path inside a cluster between every pair of its entrance cells
+	 *
+	 * @param nCluster			The cluster
+	 * @param context			The context to search in
+	 */
+	private void findClusterPaths(int nCluster, SearchContext context)
+	{
+		int [] nCells = getEntranceCells(nCluster);
+		int [] nPaths = new int[3 * nCells.length * nCells.length];
+		int nNumValues = 0;
+
+		for (int i = 0; i < nCells.length; i++)
+		{
+			searchCluster(nCells[i], nCluster, false, context);
+
+			for (int j = 0; j < nCells.length; j++)
+			{
+				if ((i != j) && context.isReached(nCells[j]))
+				{
+					nPaths[nNumValues++] = nCells[i];
+					nPaths[nNumValues++] = nCells[j];
+					nPaths[nNumValues++] = context.getCost(nCells[j]);
+				}
+			}
+		}
+
+		m_nClusterPaths[nCluster] = Arrays.copyOf(nPaths, nNumValues);
+	}
+
+	/**
+	 * Finds the cells of a cluster that are entrances on any of its four borders
+	 *
+	 * @param nCluster			The cluster
+	 * @return					The entrance cells with no repeats
+	 */
+	private int [] getEntranceCells(int nCluster)
+	{
+		int cx = nCluster % m_nClustersX;
+		int cy = nCluster / m_nClustersX;
+
+		// near cells of its own borders and far cells of its neighbours' borders
+		int [] nEast = m_nEastEntrances[nCluster];
+		int [] nSouth = m_nSouthEntrances[nCluster];
+		int [] nWest = (cx > 0) ? m_nEastEntrances[nCluster - 1] : new int[0];
+		int [] nNorth = (cy > 0) ? m_nSouthEntrances[nCluster - m_nClustersX] : new int[0];
+
+		int [] nCells = new int[(nEast.length + nSouth.length + nWest.length + nNorth.length) / 2];
+		int nNumCells = 0;
+		for (int i = 0; i < nEast.length; i += 2)
+		{
+			nCells[nNumCells++] = nEast[i];
+		}
+		for (int i = 0; i < nSouth.length; i += 2)
+		{
+			nCells[nNumCells++] = nSouth[i];
+		}
+		for (int i = 1; i < nWest.length; i += 2)
+		{
+			nCells[nNumCells++] = nWest[i];
+		}
+		for (int i = 1; i < nNorth.length; i += 2)
+		{
+			nCells[nNumCells++] = nNorth[i];
+		}
+
+		// a corner cell can be an entrance on two borders
+		Arrays.sort(nCells);
+		int nUnique = 0;
+		for (int i = 0; i < nCells.length; i++)
+		{
+			if ((nUnique == 0) || (nCells[i] != nCells[nUnique - 1]))
+			{
+				nCells[nUnique++] = nCells[i];
+			}
+		}
+
+		return Arrays.copyOf(nCells, nUnique);
+	}
+
+	/**
+	 * Builds the abstract graph from the entrances and the paths inside each cluster
+	 *
+	 * @return					The new abstract graph
+	 */
+	private Abstraction buildAbstraction()
+	{
+		int nNumClusters = m_nClustersX * m_nClustersY;
+		Abstraction abstraction = new Abstraction(nNumClusters);
+
+		// every cluster's entrances have to be in place before any are linked to them
+		for (int nCluster = 0; nCluster < nNumClusters; nCluster++)
+		{
+			abstraction.m_nClusterCells[nCluster] = getEntranceCells(nCluster);
+			abstraction.m_nNumNodes += abstraction.m_nClusterCells[nCluster].length;
+		}
+
+		for (int nCluster = 0; nCluster < nNumClusters; nCluster++)
+		{
+			linkCluster(abstraction, nCluster);
+		}
+
+		return abstraction;
+	}
+
+	/**
+	 * Makes a new abstract graph from an old one with the clusters that were rebuilt
+	 * replaced. Only the tables of clusters are copied, the entrances and connections of the
+	 * clusters that didn't change are shared with the old graph.
+	 *
+	 * @param oldAbstraction	The abstract graph before the clusters were rebuilt
+	 * @param bDirty			The clusters that were rebuilt
+	 * @return					The new abstract graph
+	 */
+	private Abstraction patchAbstraction(Abstraction oldAbstraction, boolean [] bDirty)
+	{
+		Abstraction abstraction = oldAbstraction.copy();
+
+		// the connections of a cluster point at the entrances of its neighbours, so those are
+		// linked again as well in case the entrances of a rebuilt cluster moved
+		boolean [] bRelink = new boolean[bDirty.length];
+		for (int nCluster = 0; nCluster < bDirty.length; nCluster++)
+		{
+			if (!bDirty[nCluster])
+			{
+				continue;
+			}
+
+			int [] nCells = getEntranceCells(nCluster);
+			abstraction.m_nNumNodes += nCells.length - abstraction.m_nClusterCells[nCluster].length;
+			abstraction.m_nClusterCells[nCluster] = nCells;
+
+			int cx = nCluster % m_nClustersX;
+			int cy = nCluster / m_nClustersX;
+			bRelink[nCluster] = true;
+			bRelink[nCluster - ((cx > 0) ? 1 : 0)] = true;
+			bRelink[nCluster + ((cx + 1 < m_nClustersX) ? 1 : 0)] = true;
+			bRelink[nCluster - ((cy > 0) ? m_nClustersX : 0)] = true;
+			bRelink[nCluster + ((cy + 1 < m_nClustersY) ? m_nClustersX : 0)] = true;
+		}
+
+		for (int nCluster = 0; nCluster < bRelink.length; nCluster++)
+		{
+			if (bRelink[nCluster])
+			{
+				linkCluster(abstraction, nCluster);
+			}
+		}
+
+		return abstraction;
+	}
+
+	/**
+	 * Works out the connections out of every entrance of a cluster, the paths inside the
+	 * cluster and the moves across its four borders. The entrances of the cluster and its
+	 * neighbours must already be in the abstract graph.
+	 *
+	 * @param abstraction		The abstract graph
+	 * @param nCluster			The cluster
+	 */
+	private void linkCluster(Abstraction abstraction, int nCluster)
+	{
+		int cx = nCluster % m_nClustersX;
+		int cy = nCluster / m_nClustersX;
+		int [] nCells = abstraction.m_nClusterCells[nCluster];
+		int [] nPaths = m_nClusterPaths[nCluster];
+		int [] nEast = m_nEastEntrances[nCluster];
+		int [] nSouth = m_nSouthEntrances[nCluster];
+		int [] nWest = (cx > 0) ? m_nEastEntrances[nCluster - 1] : new int[0];
+		int [] nNorth = (cy > 0) ? m_nSouthEntrances[nCluster - m_nClustersX] : new int[0];
+
+		// gather the connections as the entrance they leave, the node they go to and the cost
+		int nMaxEdges = (nPaths.length / 3) + ((nEast.length + nSouth.length + nWest.length + nNorth.length) / 2);
+		int [] nFrom = new int[nMaxEdges];
+		int [] nTargets = new int[nMaxEdges];
+		int [] nCosts = new int[nMaxEdges];
+		int nNumEdges = 0;
+
+		for (int i = 0; i < nPaths.length; i += 3)
+		{
+			nFrom[nNumEdges] = Arrays.binarySearch(nCells, nPaths[i]);
+			nTargets[nNumEdges] = getNodeID(abstraction, nCluster, nPaths[i + 1]);
+			nCosts[nNumEdges++] = nPaths[i + 2];
+		}
+
+		// the moves across the borders, each way costs the cell moved into
+		for (int i = 0; i < nEast.length; i += 2)
+		{
+			nFrom[nNumEdges] = Arrays.binarySearch(nCells, nEast[i]);
+			nTargets[nNumEdges] = getNodeID(abstraction, nCluster + 1, nEast[i + 1]);
+			nCosts[nNumEdges++] = m_grid.getCellCost(nEast[i + 1]);
+		}
+		for (int i = 0; i < nSouth.length; i += 2)
+		{
+			nFrom[nNumEdges] = Arrays.binarySearch(nCells, nSouth[i]);
+			nTargets[nNumEdges] = getNodeID(abstraction, nCluster + m_nClustersX, nSouth[i + 1]);
+			nCosts[nNumEdges++] = m_grid.getCellCost(nSouth[i + 1]);
+		}
+		for (int i = 0; i < nWest.length; i += 2)
+		{
+			nFrom[nNumEdges] = Arrays.binarySearch(nCells, nWest[i + 1]);
+			nTargets[nNumEdges] = getNodeID(abstraction, nCluster - 1, nWest[i]);
+			nCosts[nNumEdges++] = m_grid.getCellCost(nWest[i]);
+		}
+		for (int i = 0; i < nNorth.length; i += 2)
+		{
+			nFrom[nNumEdges] = Arrays.binarySearch(nCells, nNorth[i + 1]);
+			nTargets[nNumEdges] = getNodeID(abstraction, nCluster - m_nClustersX, nNorth[i]);
+			nCosts[nNumEdges++] = m_grid.getCellCost(nNorth[i]);
+		}
+
+		// sort them by the entrance they leave so each entrance's connections are together
+		int [] nOffsets = new int[nCells.length + 1];
+		for (int i = 0; i < nNumEdges; i++)
+		{
+			nOffsets[nFrom[i] + 1]++;
+		}
+		for (int i = 0; i < nCells.length; i++)
+		{
+			nOffsets[i + 1] += nOffsets[i];
+		}
+
+		int [] nNext = Arrays.copyOf(nOffsets, nCells.length);
+		int [] nEdgeTargets = new int[nNumEdges];
+		int [] nEdgeCosts = new int[nNumEdges];
+		for (int i = 0; i < nNumEdges; i++)
+		{
+			int nIndex = nNext[nFrom[i]]++;
+			nEdgeTargets[nIndex] = nTargets[i];
+			nEdgeCosts[nIndex] = nCosts[i];
+		}
+
+		abstraction.m_nEdgeOffsets[nCluster] = nOffsets;
+		abstraction.m_nEdgeTargets[nCluster] = nEdgeTargets;
+		abstraction.m_nEdgeCosts[nCluster] = nEdgeCosts;
+	}
+
+	/**
+	 * Finds the abstract node of an entrance cell
+	 *
+	 * @param abstraction		The abstract graph
+	 * @param nCluster			The cluster the cell is in
+	 * @param nCellID			The ID of the entrance cell
+	 * @return					The abstract node id of the entrance
+	 */
+	private int getNodeID(Abstraction abstraction, int nCluster, int nCellID)
+	{
+		return (nCluster << m_nNodeIndexBits) + Arrays.binarySearch(abstraction.m_nClusterCells[nCluster], nCellID);
+	}
+
+	/**
+	 * Finds the cluster a cell is in
+	 *
+	 * @param nCellID			The ID of the cell
+	 * @return					The cluster of the cell
+	 */
+	private int getCluster(int nCellID)
+	{
+		int cx = m_grid.getNodeX(nCellID) / m_nClusterSize;
+		int cy = m_grid.getNodeY(nCellID) / m_nClusterSize;
+
+		return (cy * m_nClustersX) + cx;
+	}
+
+	/**
+	 * A private class holding the abstract graph, swapped in whole so a query always sees a
+	 * complete one. The graph is kept a cluster at a time, with one node for each entrance
+	 * cell, so rebuilding a cluster only replaces the arrays of that cluster.
+	 *
+	 * @author Jonathan Hanks (jonhanks@gmail.com)
+	 * @version 1.0
+	 */
+	private static class Abstraction
+	{
+		/**
+		 * The entrance cells of each cluster in order, the index of a cell is the index of
+		 * its node in the cluster
+		 */
+		public int [][] m_nClusterCells;
+		/**
+		 * Where the connections of each node of each cluster start in its connection arrays,
+		 * with one more at the end for where they finish
+		 */
+		public int [][] m_nEdgeOffsets;
+		/**
+		 * The node each connection of each cluster goes to
+		 */
+		public int [][] m_nEdgeTargets;
+		/**
+		 * The cost of each connection of each cluster
+		 */
+		public int [][] m_nEdgeCosts;
+		/**
+		 * The number of entrance cells in all the clusters
+		 */
+		public int m_nNumNodes;
+
+		/**
+		 * Creates an empty abstract graph
+		 *
+		 * @param nNumClusters	The number of clusters
+		 */
+		Abstraction(int nNumClusters)
+		{
+			m_nClusterCells = new int[nNumClusters][];
+			m_nEdgeOffsets = new int[nNumClusters][];
+			m_nEdgeTargets = new int[nNumClusters][];
+			m_nEdgeCosts = new int[nNumClusters][];
+		}
+
+		/**
+		 * Makes a copy of the graph that shares the arrays of every cluster, so clusters of
+		 * the copy can be replaced without changing this graph
+		 *
+		 * @return				The copy
+		 */
+		Abstraction copy()
+		{
+			Abstraction abstraction = new Abstraction(0);
+			abstraction.m_nClusterCells = m_nClusterCells.clone();
+			abstraction.m_nEdgeOffsets = m_nEdgeOffsets.clone();
+			abstraction.m_nEdgeTargets = m_nEdgeTargets.clone();
+			abstraction.m_nEdgeCosts = m_nEdgeCosts.clone();
+			abstraction.m_nNumNodes = m_nNumNodes;
+
+			return abstraction;
+		}
+	}
+
+	/**
+	 * A private listener that adds up the statistics of the searches run for one query, so
+	 * the query can be reported as a single search
+	 *
+	 * @author Jonathan Hanks (jonhanks@gmail.com)
+	 * @version 1.0
+	 */
+	private static class QueryStats implements SearchListener
+	{
+		/**
+		 * The nodes expanded by all the searches
+		 */
+		public int m_nNumExpanded;
+		/**
+		 * The nodes generated by all the searches
+		 */
+		public int m_nNumGenerated;
+		/**
+		 * The cheaper routes found by all the searches
+		 */
+		public int m_nNumReopened;
+		/**
+		 * The most nodes the open list of any of the searches held at once
+		 */
+		public int m_nPeakOpenSize;
+
+		public void searchFinished(SearchStats stats)
+		{
+			m_nNumExpanded += stats.getNumExpanded();
+			m_nNumGenerated += stats.getNumGenerated();
+			m_nNumReopened += stats.getNumReopened();
+			m_nPeakOpenSize = Math.max(m_nPeakOpenSize, stats.getPeakOpenSize());
+		}
+	}
+
+	/**
+	 * A private view of the grid that only lets moves be made inside one cluster
+	 *
+	 * @author Jonathan Hanks (jonhanks@gmail.com)
+	 * @version 1.0
+	 */
+	private class ClusterView implements SearchGraph
+	{
+		/**
+		 * The first column of the cluster
+		 */
+		private final int m_nX0;
+		/**
+		 * The first row of the cluster
+		 */
+		private final int m_nY0;
+		/**
+		 * One past the last column of the cluster
+		 */
+		private final int m_nX1;
+		/**
+		 * One past the last row of the cluster
+		 */
+		private final int m_nY1;
+
+		/**
+		 * Creates the view of a cluster
+		 *
+		 * @param nCluster		The cluster
+		 */
+		ClusterView(int nCluster)
+		{
+			m_nX0 = (nCluster % m_nClustersX) * m_nClusterSize;
+			m_nY0 = (nCluster / m_nClustersX) * m_nClusterSize;
+			m_nX1 = Math.min(m_nX0 + m_nClusterSize, m_grid.getWidth());
+			m_nY1 = Math.min(m_nY0 + m_nClusterSize, m_grid.getHeight());
+		}
+
+		public int getNodeCapacity()
+		{
+			return m_grid.getNodeCapacity();
+		}
+
+		public int getNodeX(int nNodeID)
+		{
+			return m_grid.getNodeX(nNodeID);
+		}
+
+		public int getNodeY(int nNodeID)
+		{
+			return m_grid.getNodeY(nNodeID);
+		}
+
+		public int getConnectionCount(int nNodeID)
+		{
+			return m_grid.getConnectionCount(nNodeID);
+		}
+
+		public int getConnectedNodeID(int nNodeID, int nConnection)
+		{
+			return m_grid.getConnectedNodeID(nNodeID, nConnection);
+		}
+
+		public int getConnectionCost(int nNodeID, int nConnection)
+		{
+			int nCost = m_grid.getConnectionCost(nNodeID, nConnection);
+			if (nCost <= 0)
+			{
+				return 0;
+			}
+
+			// moves that leave the cluster can't be made
+			int nAdjNodeID = m_grid.getConnectedNodeID(nNodeID, nConnection);
+			int nX = m_grid.getNodeX(nAdjNodeID);
+			int nY = m_grid.getNodeY(nAdjNodeID);
+			if ((nX < m_nX0) || (nX >= m_nX1) || (nY < m_nY0) || (nY >= m_nY1))
+			{
+				return 0;
+			}
+
+			return nCost;
+		}
+	}
+
+	/**
+	 * A private graph for one query, the abstract graph with the start and goal linked into
+	 * it. The start and goal are the two node ids after the abstract nodes. The start gets
+	 * a connection to each entrance of its cluster, and each entrance of the goal's cluster
+	 * gets an extra last connection to the goal.
+	 *
+	 * @author Jonathan Hanks (jonhanks@gmail.com)
+	 * @version 1.0
+	 */
+	private class QueryGraph implements SearchGraph
+	{
+		/**
+		 * The abstract graph
+		 */
+		private final Abstraction m_queryAbstraction;
+		/**
+		 * The cell of the start
+		 */
+		private final int m_nStartCellID;
+		/**
+		 * The cell of the goal
+		 */
+		private final int m_nGoalCellID;
+		/**
+		 * The cluster of the goal
+		 */
+		private final int m_nGoalCluster;
+		/**
+		 * The nodes the start links to, the entrances of its cluster then the goal
+		 */
+		private final int [] m_nStartLinks;
+		/**
+		 * The cost of each link from the start, zero for no link
+		 */
+		private final int [] m_nStartLinkCosts;
+		/**
+		 * The cost of the link from each entrance of the goal's cluster to the goal, zero
+		 * for no link
+		 */
+		private final int [] m_nGoalLinkCosts;
+
+		/**
+		 * Creates the graph for a query
+		 *
+		 * @param abstraction		The abstract graph
+		 * @param nStartCellID		The cell of the start
+		 * @param nGoalCellID		The cell of the goal
+		 * @param nStartCluster		The cluster of the start
+		 * @param nGoalCluster		The cluster of the goal
+		 * @param nStartCosts		The cost from the start to each entrance of its cluster
+		 * @param nGoalCosts		The cost from each entrance of the goal's cluster to the goal
+		 * @param nDirectCost		The cost from the start to the goal inside their cluster
+		 */
+		QueryGraph(Abstraction abstraction, int nStartCellID, int nGoalCellID, int nStartCluster,
+				int nGoalCluster, int [] nStartCosts, int [] nGoalCosts, int nDirectCost)
+		{
+			m_queryAbstraction = abstraction;
+			m_nStartCellID = nStartCellID;
+			m_nGoalCellID = nGoalCellID;
+			m_nGoalCluster = nGoalCluster;
+
+			m_nStartLinks = new int[nStartCosts.length + 1];
+			m_nStartLinkCosts = new int[nStartCosts.length + 1];
+			for (int i = 0; i < nStartCosts.length; i++)
+			{
+				m_nStartLinks[i] = (nStartCluster << m_nNodeIndexBits) + i;
+				m_nStartLinkCosts[i] = getLinkCost(nStartCosts[i]);
+			}
+			m_nStartLinks[nStartCosts.length] = getGoalNodeID();
+			m_nStartLinkCosts[nStartCosts.length] = getLinkCost(nDirectCost);
+
+			m_nGoalLinkCosts = new int[nGoalCosts.length];
+			for (int i = 0; i < nGoalCosts.length; i++)
+			{
+				m_nGoalLinkCosts[i] = getLinkCost(nGoalCosts[i]);
+			}
+		}
+
+		/**
+		 * Turns the costs worked out for the links into connection costs. A cost of -1 is
+		 * a link between a cell and itself, it is given the smallest travelable cost since
+		 * a cost of zero can't be travelled. The refined path doesn't step twice on the
+		 * cell so only the route's cost is out by one.
+		 *
+		 * @param nCost			The cost of the link
+		 * @return				The connection cost
+		 */
+		private int getLinkCost(int nCost)
+		{
+			return (nCost < 0) ? 1 : nCost;
+		}
+
+		/**
+		 * The node id of the start
+		 *
+		 * @return			The start node id
+		 */
+		public int getStartNodeID()
+		{
+			return (m_nClustersX * m_nClustersY) << m_nNodeIndexBits;
+		}
+
+		/**
+		 * The node id of the goal
+		 *
+		 * @return			The goal node id
+		 */
+		public int getGoalNodeID()
+		{
+			return getStartNodeID() + 1;
+		}
+
+		/**
+		 * The cell of a node of the query graph
+		 *
+		 * @param nNodeID	The node id
+		 * @return			The cell id
+		 */
+		public int getCellID(int nNodeID)
+		{
+			if (nNodeID == getStartNodeID())
+			{
+				return m_nStartCellID;
+			}
+			if (nNodeID == getGoalNodeID())
+			{
+				return m_nGoalCellID;
+			}
+
+			return m_queryAbstraction.m_nClusterCells[nNodeID >> m_nNodeIndexBits][nNodeID & m_nNodeIndexMask];
+		}
+
+		/**
+		 * The number of connections of an abstract node, not counting the link to the goal
+		 *
+		 * @param nNodeID	The abstract node id
+		 * @return			The number of connections
+		 */
+		private int getEdgeCount(int nNodeID)
+		{
+			int [] nOffsets = m_queryAbstraction.m_nEdgeOffsets[nNodeID >> m_nNodeIndexBits];
+			int nIndex = nNodeID & m_nNodeIndexMask;
+
+			return nOffsets[nIndex + 1] - nOffsets[nIndex];
+		}
+
+		/**
+		 * Where a connection of an abstract node is in its cluster's connection arrays
+		 *
+		 * @param nNodeID		The abstract node id
+		 * @param nConnection	The connection
+		 * @return				The index of the connection
+		 */
+		private int getEdgeIndex(int nNodeID, int nConnection)
+		{
+			return m_queryAbstraction.m_nEdgeOffsets[nNodeID >> m_nNodeIndexBits][nNodeID & m_nNodeIndexMask]
+					+ nConnection;
+		}
+
+		public int getNodeCapacity()
+		{
+			return getStartNodeID() + 2;
+		}
+
+		public int getNodeX(int nNodeID)
+		{
+			return m_grid.getNodeX(getCellID(nNodeID));
+		}
+
+		public int getNodeY(int nNodeID)
+		{
+			return m_grid.getNodeY(getCellID(nNodeID));
+		}
+
+		public int getConnectionCount(int nNodeID)
+		{
+			if (nNodeID == getStartNodeID())
+			{
+				return m_nStartLinks.length;
+			}
+			if (nNodeID == getGoalNodeID())
+			{
+				return 0;
+			}
+
+			return getEdgeCount(nNodeID) + 1;
+		}
+
+		public int getConnectedNodeID(int nNodeID, int nConnection)
+		{
+			if (nNodeID == getStartNodeID())
+			{
+				return m_nStartLinks[nConnection];
+			}
+			if (nConnection == getEdgeCount(nNodeID))
+			{
+				return getGoalNodeID();
+			}
+
+			return m_queryAbstraction.m_nEdgeTargets[nNodeID >> m_nNodeIndexBits][getEdgeIndex(nNodeID, nConnection)];
+		}
+
+		public int getConnectionCost(int nNodeID, int nConnection)
+		{
+			if (nNodeID == getStartNodeID())
+			{
+				return m_nStartLinkCosts[nConnection];
+			}
+			if (nConnection == getEdgeCount(nNodeID))
+			{
+				return ((nNodeID >> m_nNodeIndexBits) == m_nGoalCluster)
+						? m_nGoalLinkCosts[nNodeID & m_nNodeIndexMask]
+						: 0;
+			}
+
+			return m_queryAbstraction.m_nEdgeCosts[nNodeID >> m_nNodeIndexBits][getEdgeIndex(nNodeID, nConnection)];
+		}
+	}
+}
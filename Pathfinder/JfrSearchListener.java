@@ -0,0 +1,37 @@
+/**
+ * The JfrSearchListener writes a SearchEvent to the JDK Flight Recorder for every search it
+ * hears about. While no recording has the event turned on the listener only checks that and
+ * returns, so it can be left set as the default listener (see
+ * <code>SearchContext.setDefaultListener</code>) and a recording started whenever searches
+ * need looking at, for example with
+ * <code>jcmd &lt;pid&gt; JFR.start name=search</code>.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+public class JfrSearchListener implements SearchListener
+{
+	/*
+	 * Functions
+	 */
+	public void searchFinished(SearchStats stats)
+	{
+		SearchEvent event = new SearchEvent();
+		if (!event.isEnabled())
+		{
+			return;
+		}
+
+		event.startNode = stats.getStartNodeID();
+		event.goalNode = stats.getGoalNodeID();
+		event.nodesExpanded = stats.getNumExpanded();
+		event.nodesGenerated = stats.getNumGenerated();
+		event.nodesReopened = stats.getNumReopened();
+		event.peakOpenSize = stats.getPeakOpenSize();
+		event.pathLength = stats.getPathLength();
+		event.pathCost = stats.getPathCost();
+		event.wallTime = stats.getWallTime();
+		event.commit();
+	}
+}
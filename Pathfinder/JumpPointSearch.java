@@ -0,0 +1,737 @@
+/**
+ * This class implements Jump Point Search over a grid graph. On a grid where every cell that
+ * can be moved into has the same cost there are many equally short paths between two cells,
+ * and plain A* expands the cells along all of them. Jump Point Search only expands the cells
+ * where an optimal path may have to turn (the jump points) and skips over the straight and
+ * diagonal runs in between, so far fewer nodes go through the open list.
+ * <p>
+ * The jumps can either be worked out while searching, or the distance to the next jump point
+ * (or wall) from every cell in all 8 directions can be precomputed once when the search is
+ * created, in the style of JPS+. The precomputed tables make each jump a single lookup at the
+ * cost of 16 bytes per cell.
+ * <p>
+ * Jump Point Search needs a single cost for every cell that can be moved into. If the grid
+ * has cells of different costs the search falls back to the regular A* routine over the grid,
+ * so either way the path found is an optimal one with the same cost <code>Astar</code> finds.
+ * The grid is assumed not to change while the search is in use. Nothing changes in the
+ * search itself once it is created so it can be shared by any number of threads.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.util.*;
+
+public class JumpPointSearch implements PathSearch
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The x step of each of the 8 directions, in the same order as the GridGraph connections
+	 */
+	private static final int [] DIR_X = { 1, 1, 0, -1, -1, -1, 0, 1 };
+
+	/**
+	 * The y step of each of the 8 directions, in the same order as the GridGraph connections
+	 */
+	private static final int [] DIR_Y = { 0, 1, 1, 1, 0, -1, -1, -1 };
+
+	/**
+	 * The grid being searched
+	 */
+	private final GridGraph m_grid;
+
+	/**
+	 * The width of the grid
+	 */
+	private final int m_nWidth;
+
+	/**
+	 * The height of the grid
+	 */
+	private final int m_nHeight;
+
+	/**
+	 * The cost shared by every cell that can be moved into, or zero if the cells have
+	 * different costs and jumping can't be used
+	 */
+	private final int m_nUniformCost;
+
+	/**
+	 * The precomputed jumps, 8 entries per cell in direction order. A positive entry is the
+	 * number of steps to the next jump point in that direction, any other entry is the
+	 * number of steps that can be taken before a wall as a negative number. This is
+	 * <code>null</code> if the jumps are worked out while searching.
+	 */
+	private final short [] m_nJumpDistances;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates the search for a grid, working the jumps out while searching
+	 *
+	 * @param grid				The grid to search
+	 */
+	public JumpPointSearch(GridGraph grid)
+	{
+		this(grid, false);
+	}
+
+	/**
+	 * Creates the search for a grid
+	 *
+	 * @param grid				The grid to search
+	 * @param bPrecompute		Whether to precompute the jump distances of every cell
+	 */
+	public JumpPointSearch(GridGraph grid, boolean bPrecompute)
+	{
+		m_grid = grid;
+		m_nWidth = grid.getWidth();
+		m_nHeight = grid.getHeight();
+		m_nUniformCost = findUniformCost();
+
+		// the distances are stored as shorts so the grid can't be too big for those
+		if (	bPrecompute
+				&& (m_nUniformCost > 0)
+				&& (Math.max(m_nWidth, m_nHeight) <= Short.MAX_VALUE)
+			)
+		{
+			m_nJumpDistances = precomputeJumps();
+		}
+		else
+		{
+			m_nJumpDistances = null;
+		}
+	}
+
+	/**
+	 * Whether every cell that can be moved into has the same cost, if not all searches are
+	 * handed to the regular A* routine
+	 *
+	 * @return			<code>true</code> if jumping is used <code>false</code> otherwise
+	 */
+	public boolean isUniformCost()
+	{
+		return m_nUniformCost > 0;
+	}
+
+	/**
+	 * Whether the jump distances have been precomputed
+	 *
+	 * @return			<code>true</code> if precomputed <code>false</code> otherwise
+	 */
+	public boolean isPrecomputed()
+	{
+		return m_nJumpDistances != null;
+	}
+
+	/**
+	 * This function performs the search between two cells of the grid. The results are in
+	 * the same form as <code>Astar.performSearch</code>: a vector of the ids of every cell
+	 * in the path, from the goal back to the start, which is empty if no path exists.
+	 *
+	 * @param nStartCellID		The ID of the start cell
+	 * @param nGoalCellID		The ID of the goal cell
+	 * @return					The path that was found as a vector of cell ids
+	 */
+	public Vector performSearch(int nStartCellID, int nGoalCellID)
+	{
+		return Astar.toVector(findPath(nStartCellID, nGoalCellID, SearchContext.getThreadContext()));
+	}
+
+	/**
+	 * This function performs the search between two cells of the grid, keeping track of the
+	 * search in the context that it is given. If the context has a SearchListener the
+	 * statistics of the search are recorded and handed to it once the search finishes, the
+	 * nodes counted being the jump points.
+	 *
+	 * @param nStartCellID		The ID of the start cell
+	 * @param nGoalCellID		The ID of the goal cell
+	 * @param context			The context to keep track of the search in
+	 * @return					The ids of every cell in the path from the start to the goal,
+	 * 							this is empty if no path exists
+	 */
+	public int [] findPath(int nStartCellID, int nGoalCellID, SearchContext context)
+	{
+		// cells with different costs can't be jumped over so use the regular search, which
+		// tells the listener about itself
+		if (m_nUniformCost == 0)
+		{
+			return Astar.findPath(m_grid, nStartCellID, nGoalCellID, context);
+		}
+
+		// only time the search if someone is listening for it
+		SearchListener listener = context.getListener();
+		long lStartTime = (listener != null) ? System.nanoTime() : 0;
+		int nNumGenerated = 0;
+		int nNumReopened = 0;
+		int nPeakOpenSize = 0;
+
+		int nGoalX = nGoalCellID % m_nWidth;
+		int nGoalY = nGoalCellID / m_nWidth;
+
+		// the context keeps the parent jump point of each jump point, the direction a jump
+		// point was reached in is the direction from its parent
+		context.begin(m_grid);
+		OpenList openList = context.getOpenList();
+
+		// there's no way into a goal that can't be moved into, so don't even start
+		if ((nStartCellID == nGoalCellID) || isWalkable(nGoalX, nGoalY))
+		{
+			context.setReached(nStartCellID, 0, -1);
+			openList.insert(nStartCellID, getHeuristic(nStartCellID, nGoalX, nGoalY));
+			nNumGenerated = 1;
+			nPeakOpenSize = 1;
+		}
+
+		int [] nPath = SearchContext.noPath();
+		while (!openList.isEmpty())
+		{
+			int nCurrCellID = openList.removeLowest();
+
+			if (nCurrCellID == nGoalCellID)
+			{
+				nPath = tracePath(context, nGoalCellID);
+				break;
+			}
+
+			context.setClosed(nCurrCellID);
+			int nCurrCost = context.getCost(nCurrCellID);
+
+			int nX = nCurrCellID % m_nWidth;
+			int nY = nCurrCellID / m_nWidth;
+
+			// jump in each direction that could be on an optimal path through this cell
+			int nDirections = getSearchDirections(nX, nY, getArrivalDirection(context, nCurrCellID));
+			for (int nDir = 0; nDir < 8; nDir++)
+			{
+				if ((nDirections & (1 << nDir)) == 0)
+				{
+					continue;
+				}
+
+				int nJumpCellID;
+				if (m_nJumpDistances != null)
+				{
+					nJumpCellID = jumpPrecomputed(nX, nY, nDir, nGoalX, nGoalY);
+				}
+				else
+				{
+					nJumpCellID = jump(nX, nY, DIR_X[nDir], DIR_Y[nDir], nGoalX, nGoalY);
+				}
+
+				if (nJumpCellID < 0)
+				{
+					continue;
+				}
+
+				// every step of a jump is a straight or diagonal move into a cell of the same cost
+				int nCost = nCurrCost + (getSteps(nCurrCellID, nJumpCellID) * m_nUniformCost);
+
+				if (!context.isReached(nJumpCellID))
+				{
+					// a new jump point so put it in the open list
+					context.setReached(nJumpCellID, nCost, nCurrCellID);
+					openList.insert(nJumpCellID, nCost + getHeuristic(nJumpCellID, nGoalX, nGoalY));
+					nNumGenerated++;
+				}
+				else if (!context.isClosed(nJumpCellID) && (nCost < context.getCost(nJumpCellID)))
+				{
+					// a cheaper way to a jump point that is already open
+					context.setReached(nJumpCellID, nCost, nCurrCellID);
+					openList.decreaseScore(nJumpCellID, nCost + getHeuristic(nJumpCellID, nGoalX, nGoalY));
+					nNumReopened++;
+				}
+			}
+
+			nPeakOpenSize = Math.max(nPeakOpenSize, openList.size());
+		}
+
+		// if we ran out of jump points there is no path, either way tell the listener how
+		// the search went
+		if (listener != null)
+		{
+			recordSearch(listener, context, nStartCellID, nGoalCellID, nNumGenerated, nNumReopened,
+							nPeakOpenSize, nPath, lStartTime);
+		}
+
+		return nPath;
+	}
+
+	/**
+	 * Fills in the statistics of a finished search and hands them to the listener, kept
+	 * out of the search itself so it doesn't grow the loop the compiler has to fit in
+	 *
+	 * @param listener			The listener to tell
+	 * @param context			The context the search ran in
+	 * @param nStartCellID		The ID of the start cell
+	 * @param nGoalCellID		The ID of the goal cell
+	 * @param nNumGenerated		The number of jump points generated
+	 * @param nNumReopened		The number of cheaper routes found to open jump points
+	 * @param nPeakOpenSize		The most jump points the open list held at once
+	 * @param nPath				The path found
+	 * @param lStartTime		When the search started, as given by <code>System.nanoTime</code>
+	 */
+	private static void recordSearch(SearchListener listener, SearchContext context, int nStartCellID,
+			int nGoalCellID, int nNumGenerated, int nNumReopened, int nPeakOpenSize, int [] nPath,
+			long lStartTime)
+	{
+		SearchStats stats = context.getStats();
+		stats.set(nStartCellID, nGoalCellID, context.getNumClosed(), nNumGenerated, nNumReopened,
+					nPeakOpenSize, nPath.length, (nPath.length > 0) ? context.getCost(nGoalCellID) : -1,
+					System.nanoTime() - lStartTime);
+		listener.searchFinished(stats);
+	}
+
+	/**
+	 * Traces the jump points back from the goal to the start and fills in the cells between
+	 * them, each jump is a straight or diagonal line so it is walked one cell at a time
+	 *
+	 * @param context			The context of the finished search
+	 * @param nGoalCellID		The ID of the goal cell
+	 * @return					The ids of every cell in the path from the start to the goal
+	 */
+	private int [] tracePath(SearchContext context, int nGoalCellID)
+	{
+		// the jump points themselves
+		int [] nJumpPoints = context.tracePath(nGoalCellID);
+
+		// count the cells the jumps pass through
+		int nLength = 1;
+		for (int i = 1; i < nJumpPoints.length; i++)
+		{
+			nLength += getSteps(nJumpPoints[i - 1], nJumpPoints[i]);
+		}
+
+		int [] nPath = new int[nLength];
+		int nIndex = 0;
+		nPath[nIndex++] = nJumpPoints[0];
+
+		for (int i = 1; i < nJumpPoints.length; i++)
+		{
+			int nX = nJumpPoints[i - 1] % m_nWidth;
+			int nY = nJumpPoints[i - 1] / m_nWidth;
+			int nDX = Integer.signum((nJumpPoints[i] % m_nWidth) - nX);
+			int nDY = Integer.signum((nJumpPoints[i] / m_nWidth) - nY);
+
+			for (int nStep = getSteps(nJumpPoints[i - 1], nJumpPoints[i]); nStep > 0; nStep--)
+			{
+				nX += nDX;
+				nY += nDY;
+				nPath[nIndex++] = (nY * m_nWidth) + nX;
+			}
+		}
+
+		return nPath;
+	}
+
+	/**
+	 * The number of moves along a straight or diagonal line between two cells
+	 *
+	 * @param nFromCellID		The ID of the cell at one end
+	 * @param nToCellID			The ID of the cell at the other end
+	 * @return					The number of moves between them
+	 */
+	private int getSteps(int nFromCellID, int nToCellID)
+	{
+		return Math.max(	Math.abs((nToCellID % m_nWidth) - (nFromCellID % m_nWidth)),
+							Math.abs((nToCellID / m_nWidth) - (nFromCellID / m_nWidth)));
+	}
+
+	/**
+	 * Works out the direction a jump point was reached in from where its parent is
+	 *
+	 * @param context			The context of the search
+	 * @param nCellID			The ID of the jump point
+	 * @return					The direction it was reached in, -1 for the start
+	 */
+	private int getArrivalDirection(SearchContext context, int nCellID)
+	{
+		int nParentID = context.getParent(nCellID);
+
+		if (nParentID < 0)
+		{
+			return -1;
+		}
+
+		return getDirection(	Integer.signum((nCellID % m_nWidth) - (nParentID % m_nWidth)),
+								Integer.signum((nCellID / m_nWidth) - (nParentID / m_nWidth)));
+	}
+
+	/**
+	 * Works out which directions need to be searched from a jump point. Arriving in a straight
+	 * line only the way ahead needs to be searched, arriving diagonally the way ahead and its
+	 * two straight parts do. On top of these the diagonals past any wall beside the cell are
+	 * searched (the forced neighbours) since the only short way to them is through this cell.
+	 *
+	 * @param nX			The x position of the jump point
+	 * @param nY			The y position of the jump point
+	 * @param nDir			The direction the jump point was reached in, -1 for the start
+	 * @return				The directions to search with one bit set for each direction
+	 */
+	private int getSearchDirections(int nX, int nY, int nDir)
+	{
+		// the start searches everywhere
+		if (nDir < 0)
+		{
+			return 0xFF;
+		}
+
+		int nDX = DIR_X[nDir];
+		int nDY = DIR_Y[nDir];
+		int nDirections = 1 << nDir;
+
+		if ((nDX != 0) && (nDY != 0))
+		{
+			// the straight parts of the diagonal
+			nDirections |= 1 << getDirection(nDX, 0);
+			nDirections |= 1 << getDirection(0, nDY);
+
+			// forced neighbours
+			if (!isWalkable(nX - nDX, nY))
+			{
+				nDirections |= 1 << getDirection(-nDX, nDY);
+			}
+			if (!isWalkable(nX, nY - nDY))
+			{
+				nDirections |= 1 << getDirection(nDX, -nDY);
+			}
+		}
+		else if (nDX != 0)
+		{
+			// forced neighbours of a horizontal move
+			if (!isWalkable(nX, nY + 1))
+			{
+				nDirections |= 1 << getDirection(nDX, 1);
+			}
+			if (!isWalkable(nX, nY - 1))
+			{
+				nDirections |= 1 << getDirection(nDX, -1);
+			}
+		}
+		else
+		{
+			// forced neighbours of a vertical move
+			if (!isWalkable(nX + 1, nY))
+			{
+				nDirections |= 1 << getDirection(1, nDY);
+			}
+			if (!isWalkable(nX - 1, nY))
+			{
+				nDirections |= 1 << getDirection(-1, nDY);
+			}
+		}
+
+		return nDirections;
+	}
+
+	/**
+	 * Moves from a cell in a direction until it reaches a jump point, the goal, or a wall
+	 *
+	 * @param nX			The x position to jump from
+	 * @param nY			The y position to jump from
+	 * @param nDX			The x step of the direction
+	 * @param nDY			The y step of the direction
+	 * @param nGoalX		The x position of the goal
+	 * @param nGoalY		The y position of the goal
+	 * @return				The id of the cell jumped to, or -1 if a wall was reached first
+	 */
+	private int jump(int nX, int nY, int nDX, int nDY, int nGoalX, int nGoalY)
+	{
+		while (true)
+		{
+			nX += nDX;
+			nY += nDY;
+
+			if (!isWalkable(nX, nY))
+			{
+				return -1;
+			}
+
+			if ((nX == nGoalX) && (nY == nGoalY))
+			{
+				return (nY * m_nWidth) + nX;
+			}
+
+			if ((nDX != 0) && (nDY != 0))
+			{
+				// a diagonal stops where it has a forced neighbour or where either of its
+				// straight parts would reach a jump point
+				if (	hasForcedNeighbour(nX, nY, nDX, nDY)
+						|| (jump(nX, nY, nDX, 0, nGoalX, nGoalY) >= 0)
+						|| (jump(nX, nY, 0, nDY, nGoalX, nGoalY) >= 0)
+					)
+				{
+					return (nY * m_nWidth) + nX;
+				}
+			}
+			else if (hasForcedNeighbour(nX, nY, nDX, nDY))
+			{
+				return (nY * m_nWidth) + nX;
+			}
+		}
+	}
+
+	/**
+	 * Makes a jump using the precomputed distances. The tables don't know about the goal so
+	 * they are checked against where the goal is to stop the jump at the goal when it, or a
+	 * straight jump to it, comes before the precomputed jump point.
+	 *
+	 * @param nX			The x position to jump from
+	 * @param nY			The y position to jump from
+	 * @param nDir			The direction to jump in
+	 * @param nGoalX		The x position of the goal
+	 * @param nGoalY		The y position of the goal
+	 * @return				The id of the cell jumped to, or -1 if a wall was reached first
+	 */
+	private int jumpPrecomputed(int nX, int nY, int nDir, int nGoalX, int nGoalY)
+	{
+		int nDX = DIR_X[nDir];
+		int nDY = DIR_Y[nDir];
+		int nDist = m_nJumpDistances[(((nY * m_nWidth) + nX) << 3) + nDir];
+		int nReach = Math.abs(nDist);
+
+		// the number of steps to reach the goal's column and row in this direction
+		int nStepsX = (nGoalX - nX) * nDX;
+		int nStepsY = (nGoalY - nY) * nDY;
+
+		if ((nDX == 0) || (nDY == 0))
+		{
+			// a straight jump stops at the goal if it is on the line and can be reached
+			int nGoalSteps = (nDX != 0) ? nStepsX : nStepsY;
+			boolean bOnLine = (nDX != 0) ? (nGoalY == nY) : (nGoalX == nX);
+
+			if (bOnLine && (nGoalSteps > 0) && (nGoalSteps <= nReach))
+			{
+				return (nGoalY * m_nWidth) + nGoalX;
+			}
+		}
+		else if ((nStepsX > 0) && (nStepsY > 0))
+		{
+			// a diagonal jump can only reach the goal's row or column once, at the nearer of
+			// the two, and stops there if a straight jump from there reaches the goal
+			int nSteps = Math.min(nStepsX, nStepsY);
+
+			if ((nSteps <= nReach) && ((nDist <= 0) || (nSteps < nDist)))
+			{
+				int nCellX = nX + (nSteps * nDX);
+				int nCellY = nY + (nSteps * nDY);
+				int nCellID = (nCellY * m_nWidth) + nCellX;
+
+				if (nStepsX == nStepsY)
+				{
+					// the goal itself
+					return nCellID;
+				}
+
+				// the straight direction from there towards the goal
+				int nStraightDir = (nStepsX < nStepsY) ? getDirection(0, nDY) : getDirection(nDX, 0);
+				int nStraightReach = Math.abs(m_nJumpDistances[(nCellID << 3) + nStraightDir]);
+
+				if (Math.abs(nStepsX - nStepsY) <= nStraightReach)
+				{
+					return nCellID;
+				}
+			}
+		}
+
+		if (nDist > 0)
+		{
+			return ((nY + (nDist * nDY)) * m_nWidth) + nX + (nDist * nDX);
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Fills in the jump distance tables for every cell. Each direction is worked through
+	 * from the far side of the grid so the entry for the next cell along is always ready,
+	 * and the straight directions are done first since the diagonals need them.
+	 *
+	 * @return				The jump distance tables
+	 */
+	private short [] precomputeJumps()
+	{
+		short [] nJumpDistances = new short[m_nWidth * m_nHeight * 8];
+
+		// the straight directions first then the diagonals
+		for (int nPass = 0; nPass < 2; nPass++)
+		{
+			for (int nDir = nPass; nDir < 8; nDir += 2)
+			{
+				int nDX = DIR_X[nDir];
+				int nDY = DIR_Y[nDir];
+
+				// go against the direction so the next cell along is always done first
+				for (int j = 0; j < m_nHeight; j++)
+				{
+					int y = (nDY > 0) ? (m_nHeight - 1 - j) : j;
+
+					for (int i = 0; i < m_nWidth; i++)
+					{
+						int x = (nDX > 0) ? (m_nWidth - 1 - i) : i;
+						nJumpDistances[(((y * m_nWidth) + x) << 3) + nDir] =
+							(short)getJumpDistance(nJumpDistances, x, y, nDir);
+					}
+				}
+			}
+		}
+
+		return nJumpDistances;
+	}
+
+	/**
+	 * Works out the jump table entry for one cell and direction from the entries of the next
+	 * cell along
+	 *
+	 * @param nJumpDistances	The tables being filled in
+	 * @param nX			The x position of the cell
+	 * @param nY			The y position of the cell
+	 * @param nDir			The direction
+	 * @return				The jump distance for the table
+	 */
+	private int getJumpDistance(short [] nJumpDistances, int nX, int nY, int nDir)
+	{
+		int nDX = DIR_X[nDir];
+		int nDY = DIR_Y[nDir];
+		int nNextX = nX + nDX;
+		int nNextY = nY + nDY;
+
+		// a wall straight away means not even one step can be taken
+		if (!isWalkable(nNextX, nNextY))
+		{
+			return 0;
+		}
+
+		int nNextEntry = ((nNextY * m_nWidth) + nNextX) << 3;
+
+		// is the next cell a jump point itself?
+		boolean bJumpPoint = hasForcedNeighbour(nNextX, nNextY, nDX, nDY);
+		if ((nDX != 0) && (nDY != 0))
+		{
+			bJumpPoint = bJumpPoint
+						|| (nJumpDistances[nNextEntry + getDirection(nDX, 0)] > 0)
+						|| (nJumpDistances[nNextEntry + getDirection(0, nDY)] > 0);
+		}
+
+		if (bJumpPoint)
+		{
+			return 1;
+		}
+
+		// otherwise it's one step further than from the next cell
+		int nNextDist = nJumpDistances[nNextEntry + nDir];
+		return (nNextDist > 0) ? (nNextDist + 1) : (nNextDist - 1);
+	}
+
+	/**
+	 * Whether a cell reached by moving in a direction has a forced neighbour, a cell next to
+	 * it that can only be reached by an optimal path through it because of a wall
+	 *
+	 * @param nX			The x position of the cell
+	 * @param nY			The y position of the cell
+	 * @param nDX			The x step of the direction
+	 * @param nDY			The y step of the direction
+	 * @return				<code>true</code> if it has a forced neighbour <code>false</code> otherwise
+	 */
+	private boolean hasForcedNeighbour(int nX, int nY, int nDX, int nDY)
+	{
+		if ((nDX != 0) && (nDY != 0))
+		{
+			return	(isWalkable(nX - nDX, nY + nDY) && !isWalkable(nX - nDX, nY))
+					|| (isWalkable(nX + nDX, nY - nDY) && !isWalkable(nX, nY - nDY));
+		}
+		else if (nDX != 0)
+		{
+			return	(isWalkable(nX + nDX, nY + 1) && !isWalkable(nX, nY + 1))
+					|| (isWalkable(nX + nDX, nY - 1) && !isWalkable(nX, nY - 1));
+		}
+		else
+		{
+			return	(isWalkable(nX + 1, nY + nDY) && !isWalkable(nX + 1, nY))
+					|| (isWalkable(nX - 1, nY + nDY) && !isWalkable(nX - 1, nY));
+		}
+	}
+
+	/**
+	 * Whether a position is in the grid and can be moved into
+	 *
+	 * @param nX			The x position
+	 * @param nY			The y position
+	 * @return				<code>true</code> if it can be moved into <code>false</code> otherwise
+	 */
+	private boolean isWalkable(int nX, int nY)
+	{
+		return m_grid.getCellCost(nX, nY) > 0;
+	}
+
+	/**
+	 * The estimated cost from a cell to the goal, the number of moves if there were nothing
+	 * in the way times the cost of each move
+	 *
+	 * @param nCellID		The id of the cell
+	 * @param nGoalX		The x position of the goal
+	 * @param nGoalY		The y position of the goal
+	 * @return				The estimated cost to the goal
+	 */
+	private int getHeuristic(int nCellID, int nGoalX, int nGoalY)
+	{
+		int nDistX = Math.abs((nCellID % m_nWidth) - nGoalX);
+		int nDistY = Math.abs((nCellID / m_nWidth) - nGoalY);
+
+		return Math.max(nDistX, nDistY) * m_nUniformCost;
+	}
+
+	/**
+	 * Finds the cost shared by every cell that can be moved into
+	 *
+	 * @return				The shared cost, or zero if the costs differ
+	 */
+	private int findUniformCost()
+	{
+		int nUniformCost = 0;
+
+		for (int i = 0; i < m_nWidth * m_nHeight; i++)
+		{
+			int nCost = m_grid.getCellCost(i);
+
+			if (nCost > 0)
+			{
+				if (nUniformCost == 0)
+				{
+					nUniformCost = nCost;
+				}
+				else if (nCost != nUniformCost)
+				{
+					return 0;
+				}
+			}
+		}
+
+		// a grid with nothing to move into is uniform enough
+		return (nUniformCost == 0) ? 1 : nUniformCost;
+	}
+
+	/**
+	 * Finds the index of a direction from its steps
+	 *
+	 * @param nDX			The x step of the direction
+	 * @param nDY			The y step of the direction
+	 * @return				The index of the direction
+	 */
+	private static int getDirection(int nDX, int nDY)
+	{
+		for (int nDir = 0; nDir < 8; nDir++)
+		{
+			if ((DIR_X[nDir] == nDX) && (DIR_Y[nDir] == nDY))
+			{
+				return nDir;
+			}
+		}
+
+		return -1;
+	}
+}
@@ -0,0 +1,604 @@
+/**
+ * The LandmarkHeuristic is the ALT heuristic (A*, landmarks and the triangle inequality).
+ * A few nodes of the graph are picked as landmarks, and the exact cost of the best path
+ * from each landmark to every node and from every node back to each landmark is worked out
+ * ahead of time. The cost from a node to the goal can't be less than how much further the
+ * goal is from a landmark than the node is, so the largest of these differences over all
+ * the landmarks is an estimate that never overestimates. On weighted maps it is usually far
+ * closer to the real cost than any distance measure, so far fewer nodes are expanded.
+ * <p>
+ * The landmarks are picked one at a time, each being the node furthest from the landmarks
+ * already picked, so they end up spread around the edges of the graph where they give the
+ * best estimates. A node no landmark so far can reach counts as furthest of all, so every
+ * region of the graph cut off from the others gets a landmark of its own, biggest region
+ * first, as long as it holds at least an even share of the nodes for each landmark. Smaller
+ * regions only get one once every other node has been picked. The costs are kept in two int arrays with the costs of each node to all
+ * the landmarks next to each other, so an estimate reads a few neighbouring ints.
+ * <p>
+ * Working out the costs takes two Dijkstra searches over the whole graph for each landmark,
+ * so the tables can be saved to a file and loaded again instead. The file holds a 16 byte
+ * little endian header and then the tables:
+ * <ul>
+ * <li>		Bytes 0 to 3 - The letters LMRK
+ * <li>		Bytes 4 to 7 - The format version, currently 1
+ * <li>		Bytes 8 to 11 - The number of nodes
+ * <li>		Bytes 12 to 15 - The number of landmarks
+ * <li>		Then the node id of each landmark, the costs from the landmarks to each node and
+ * 			then the costs from each node to the landmarks, -1 where there is no path
+ * </ul>
+ * The costs only stay a true lower bound while no connection in the graph gets cheaper.
+ * Connections getting more expensive are fine, but if one gets cheaper the tables have to
+ * be worked out again.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+public class LandmarkHeuristic implements Heuristic
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The first four bytes of every landmark file, the letters LMRK read as a little endian int
+	 */
+	public static final int MAGIC = 0x4B524D4C;
+
+	/**
+	 * The version of the format that is written
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * The size of the header at the start of a landmark file
+	 */
+	private static final int HEADER_SIZE = 16;
+
+	/**
+	 * The cost stored for a node that has no path to or from a landmark
+	 */
+	private static final int UNREACHABLE = -1;
+
+	/**
+	 * The number of nodes the tables were worked out for
+	 */
+	private final int m_nNumNodes;
+
+	/**
+	 * The node id of each landmark
+	 */
+	private final int [] m_nLandmarks;
+
+	/**
+	 * The cost from each landmark to each node, the costs of node n start at n * landmarks
+	 */
+	private final int [] m_nFromLandmarks;
+
+	/**
+	 * The cost from each node to each landmark, laid out the same way
+	 */
+	private final int [] m_nToLandmarks;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates the heuristic from tables that have already been worked out
+	 *
+	 * @param nNumNodes			The number of nodes
+	 * @param nLandmarks		The node id of each landmark
+	 * @param nFromLandmarks	The cost from each landmark to each node
+	 * @param nToLandmarks		The cost from each node to each landmark
+	 */
+	private LandmarkHeuristic(int nNumNodes, int [] nLandmarks, int [] nFromLandmarks, int [] nToLandmarks)
+	{
+		m_nNumNodes = nNumNodes;
+		m_nLandmarks = nLandmarks;
+		m_nFromLandmarks = nFromLandmarks;
+		m_nToLandmarks = nToLandmarks;
+	}
+
+	/**
+	 * Picks the landmarks of a graph and works out the costs to and from them
+	 *
+	 * @param searchGraph		The graph, the costs to the landmarks are found by searching
+	 * 							its reverse connections
+	 * @param nNumLandmarks		The number of landmarks to pick, 8 to 16 is usually plenty
+	 * @return					The heuristic
+	 */
+	public static LandmarkHeuristic create(ReverseSearchGraph searchGraph, int nNumLandmarks)
+	{
+		if (nNumLandmarks < 1)
+		{
+			throw new IllegalArgumentException("At least one landmark is needed");
+		}
+
+		int nNumNodes = searchGraph.getNodeCapacity();
+		if ((long)nNumNodes * nNumLandmarks > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("Too many landmarks for a graph of " + nNumNodes + " nodes");
+		}
+
+		int [] nLandmarks = new int[nNumLandmarks];
+		int [] nFromLandmarks = new int[nNumNodes * nNumLandmarks];
+		int [] nToLandmarks = new int[nNumNodes * nNumLandmarks];
+		int [] nCosts = new int[nNumNodes];
+		OpenList openList = new BinaryHeapOpenList(nNumNodes);
+
+		// the region each node is in, and the number of nodes in each region
+		int [] nRegions = new int[nNumNodes];
+		int [] nRegionSizes = findRegions(searchGraph, nRegions);
+		if (nRegionSizes.length == 0)
+		{
+			throw new IllegalArgumentException("The graph has no connections to search");
+		}
+		int nNumUsable = 0;
+		int nLargestRegion = 0;
+		for (int r = 0; r < nRegionSizes.length; r++)
+		{
+			nNumUsable += nRegionSizes[r];
+			if (nRegionSizes[r] > nRegionSizes[nLargestRegion])
+			{
+				nLargestRegion = r;
+			}
+		}
+		if (nNumUsable < nNumLandmarks)
+		{
+			throw new IllegalArgumentException("The graph only has " + nNumUsable + " nodes that can be landmarks");
+		}
+		int nShareSize = nNumUsable / nNumLandmarks;
+
+		// the lowest cost from any landmark picked so far to each node, the first landmark is
+		// the node furthest from somewhere in the biggest region
+		int [] nNearestCosts = new int[nNumNodes];
+		int nSeedNodeID = 0;
+		while (nRegions[nSeedNodeID] != nLargestRegion)
+		{
+			nSeedNodeID++;
+		}
+		searchAll(searchGraph, nSeedNodeID, false, nCosts, openList);
+		for (int n = 0; n < nNumNodes; n++)
+		{
+			nNearestCosts[n] = (nCosts[n] == UNREACHABLE) ? Integer.MAX_VALUE : nCosts[n];
+		}
+
+		boolean [] bLandmarks = new boolean[nNumNodes];
+		for (int k = 0; k < nNumLandmarks; k++)
+		{
+			// the next landmark is the node that scores highest, see getLandmarkScore
+			int nLandmarkNodeID = -1;
+			long lBestScore = -1;
+			for (int n = 0; n < nNumNodes; n++)
+			{
+				if ((nRegions[n] == -1) || bLandmarks[n])
+				{
+					continue;
+				}
+
+				long lScore = getLandmarkScore(nNearestCosts[n], nRegionSizes[nRegions[n]], nShareSize);
+				if (lScore > lBestScore)
+				{
+					nLandmarkNodeID = n;
+					lBestScore = lScore;
+				}
+			}
+			nLandmarks[k] = nLandmarkNodeID;
+			bLandmarks[nLandmarkNodeID] = true;
+
+			searchAll(searchGraph, nLandmarkNodeID, false, nCosts, openList);
+			for (int n = 0; n < nNumNodes; n++)
+			{
+				nFromLandmarks[(n * nNumLandmarks) + k] = nCosts[n];
+				if ((nCosts[n] != UNREACHABLE) && (nCosts[n] < nNearestCosts[n]))
+				{
+					nNearestCosts[n] = nCosts[n];
+				}
+			}
+
+			searchAll(searchGraph, nLandmarkNodeID, true, nCosts, openList);
+			for (int n = 0; n < nNumNodes; n++)
+			{
+				nToLandmarks[(n * nNumLandmarks) + k] = nCosts[n];
+			}
+		}
+
+		return new LandmarkHeuristic(nNumNodes, nLandmarks, nFromLandmarks, nToLandmarks);
+	}
+
+	/**
+	 * Scores a node as the next landmark, the node with the highest score is picked. Nodes
+	 * no landmark can reach yet come first if their region holds at least a share of the
+	 * nodes, biggest region first, then the other nodes by how far they are from the
+	 * nearest landmark, then the nodes of the smaller regions, biggest region first.
+	 *
+	 * @param nNearestCost		The cost from the nearest landmark to the node, or
+	 * 							<code>Integer.MAX_VALUE</code> if no landmark reaches it
+	 * @param nRegionSize		The number of nodes in the region of the node
+	 * @param nShareSize		The number of nodes in a share for each landmark
+	 * @return					The score
+	 */
+	private static long getLandmarkScore(int nNearestCost, int nRegionSize, int nShareSize)
+	{
+		if (nNearestCost != Integer.MAX_VALUE)
+		{
+			return (1L << 32) + nNearestCost;
+		}
+
+		return (nRegionSize >= nShareSize) ? (2L << 32) + nRegionSize : nRegionSize;
+	}
+
+	/**
+	 * Splits the nodes that can be both left and reached into regions, two nodes being in
+	 * the same region if there is a way between them following the connections either way
+	 *
+	 * @param searchGraph		The graph
+	 * @param nRegions			Filled in with the region of each node, -1 for the nodes
+	 * 							that can't be left or can't be reached
+	 * @return					The number of nodes in each region
+	 */
+	private static int [] findRegions(ReverseSearchGraph searchGraph, int [] nRegions)
+	{
+		int nNumNodes = searchGraph.getNodeCapacity();
+		int [] nQueue = new int[nNumNodes];
+		int [] nRegionSizes = new int[16];
+		int nNumRegions = 0;
+
+		Arrays.fill(nRegions, -1);
+		for (int n = 0; n < nNumNodes; n++)
+		{
+			if ((nRegions[n] != -1) || !isUsable(searchGraph, n))
+			{
+				continue;
+			}
+
+			// flood the region of this node, both ways along the connections
+			int nQueueSize = 0;
+			nQueue[nQueueSize++] = n;
+			nRegions[n] = nNumRegions;
+			for (int q = 0; q < nQueueSize; q++)
+			{
+				int nCurrNodeID = nQueue[q];
+				int nNumConnections = searchGraph.getConnectionCount(nCurrNodeID);
+				int nNumReverse = searchGraph.getReverseConnectionCount(nCurrNodeID);
+				for (int i = 0; i < nNumConnections + nNumReverse; i++)
+				{
+					boolean bReverse = (i >= nNumConnections);
+					int nTravelCost = bReverse
+										? searchGraph.getReverseConnectionCost(nCurrNodeID, i - nNumConnections)
+										: searchGraph.getConnectionCost(nCurrNodeID, i);
+					if (nTravelCost <= 0)
+					{
+						continue;
+					}
+
+					int nAdjNodeID = bReverse
+										? searchGraph.getReverseConnectedNodeID(nCurrNodeID, i - nNumConnections)
+										: searchGraph.getConnectedNodeID(nCurrNodeID, i);
+					if ((nRegions[nAdjNodeID] == -1) && isUsable(searchGraph, nAdjNodeID))
+					{
+						nRegions[nAdjNodeID] = nNumRegions;
+						nQueue[nQueueSize++] = nAdjNodeID;
+					}
+				}
+			}
+
+			if (nNumRegions == nRegionSizes.length)
+			{
+				nRegionSizes = Arrays.copyOf(nRegionSizes, nNumRegions * 2);
+			}
+			nRegionSizes[nNumRegions++] = nQueueSize;
+		}
+
+		return Arrays.copyOf(nRegionSizes, nNumRegions);
+	}
+
+	/**
+	 * Checks whether a node can be both left and reached, only those nodes are landmarks
+	 *
+	 * @param searchGraph		The graph
+	 * @param nNodeID			The node
+	 * @return					Whether the node can be left and reached
+	 */
+	private static boolean isUsable(ReverseSearchGraph searchGraph, int nNodeID)
+	{
+		boolean bLeaves = false;
+		boolean bArrives = false;
+
+		for (int i = 0; i < searchGraph.getConnectionCount(nNodeID); i++)
+		{
+			bLeaves |= (searchGraph.getConnectionCost(nNodeID, i) > 0);
+		}
+		for (int i = 0; i < searchGraph.getReverseConnectionCount(nNodeID); i++)
+		{
+			bArrives |= (searchGraph.getReverseConnectionCost(nNodeID, i) > 0);
+		}
+
+		return bLeaves && bArrives;
+	}
+
+	/**
+	 * Finds the cost of the best path between a node and every other node with Dijkstra's
+	 * routine, either from the node or, following the connections backwards, to it
+	 *
+	 * @param searchGraph		The graph
+	 * @param nSourceNodeID		The node the costs are measured from or to
+	 * @param bReverse			Whether to measure the costs to the node
+	 * @param nCosts			Filled in with the cost for each node, UNREACHABLE if none
+	 * @param openList			The open list to search with
+	 */
+	private static void searchAll(ReverseSearchGraph searchGraph, int nSourceNodeID, boolean bReverse,
+			int [] nCosts, OpenList openList)
+	{
+		Arrays.fill(nCosts, UNREACHABLE);
+		openList.clear();
+
+		nCosts[nSourceNodeID] = 0;
+		openList.insert(nSourceNodeID, 0);
+
+		while (!openList.isEmpty())
+		{
+			int nCurrNodeID = openList.removeLowest();
+			int nCurrCost = nCosts[nCurrNodeID];
+
+			int nNumConnections = bReverse
+									? searchGraph.getReverseConnectionCount(nCurrNodeID)
+									: searchGraph.getConnectionCount(nCurrNodeID);
+			for (int i = 0; i < nNumConnections; i++)
+			{
+				int nTravelCost = bReverse
+									? searchGraph.getReverseConnectionCost(nCurrNodeID, i)
+									: searchGraph.getConnectionCost(nCurrNodeID, i);
+				if (nTravelCost <= 0)
+				{
+					continue;
+				}
+
+				int nAdjNodeID = bReverse
+									? searchGraph.getReverseConnectedNodeID(nCurrNodeID, i)
+									: searchGraph.getConnectedNodeID(nCurrNodeID, i);
+				int nCost = nCurrCost + nTravelCost;
+
+				if (nCosts[nAdjNodeID] == UNREACHABLE)
+				{
+					nCosts[nAdjNodeID] = nCost;
+					openList.insert(nAdjNodeID, nCost);
+				}
+				else if (nCost < nCosts[nAdjNodeID])
+				{
+					// closed nodes can't get cheaper so this one is still open
+					nCosts[nAdjNodeID] = nCost;
+					openList.decreaseScore(nAdjNodeID, nCost);
+				}
+			}
+		}
+	}
+
+	public int getEstimate(SearchGraph searchGraph, int nFromNodeID, int nToNodeID)
+	{
+		int nNumLandmarks = m_nLandmarks.length;
+		int nFromIndex = nFromNodeID * nNumLandmarks;
+		int nToIndex = nToNodeID * nNumLandmarks;
+		int nEstimate = 0;
+
+		for (int k = 0; k < nNumLandmarks; k++)
+		{
+			// landmark -> from -> to can't beat the best path from the landmark to the goal
+			int nLandmarkToFrom = m_nFromLandmarks[nFromIndex + k];
+			int nLandmarkToTo = m_nFromLandmarks[nToIndex + k];
+			if ((nLandmarkToFrom != UNREACHABLE) && (nLandmarkToTo != UNREACHABLE))
+			{
+				nEstimate = Math.max(nEstimate, nLandmarkToTo - nLandmarkToFrom);
+			}
+
+			// and from -> to -> landmark can't beat the best path from the node to the landmark
+			int nFromToLandmark = m_nToLandmarks[nFromIndex + k];
+			int nToToLandmark = m_nToLandmarks[nToIndex + k];
+			if ((nFromToLandmark != UNREACHABLE) && (nToToLandmark != UNREACHABLE))
+			{
+				nEstimate = Math.max(nEstimate, nFromToLandmark - nToToLandmark);
+			}
+		}
+
+		return nEstimate;
+	}
+
+	/**
+	 * The number of landmarks
+	 *
+	 * @return					The number of landmarks
+	 */
+	public int getNumLandmarks()
+	{
+		return m_nLandmarks.length;
+	}
+
+	/**
+	 * Provides the node id of a landmark
+	 *
+	 * @param nLandmark			The index of the landmark
+	 * @return					The node id of the landmark
+	 */
+	public int getLandmarkNodeID(int nLandmark)
+	{
+		return m_nLandmarks[nLandmark];
+	}
+
+	/**
+	 * The number of nodes the tables were worked out for
+	 *
+	 * @return					The number of nodes
+	 */
+	public int getNumNodes()
+	{
+		return m_nNumNodes;
+	}
+
+	/**
+	 * Writes the tables to a file so they can be loaded instead of worked out again
+	 *
+	 * @param zFileName			The name of the file to write
+	 * @throws IOException		If the file can't be written
+	 */
+	public void save(String zFileName) throws IOException
+	{
+		FileOutputStream outStream = new FileOutputStream(zFileName);
+		try
+		{
+			FileChannel channel = outStream.getChannel();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putInt(m_nNumNodes).putInt(m_nLandmarks.length);
+			header.flip();
+			writeFully(channel, header);
+
+			writeInts(channel, m_nLandmarks);
+			writeInts(channel, m_nFromLandmarks);
+			writeInts(channel, m_nToLandmarks);
+		}
+		finally
+		{
+			outStream.close();
+		}
+	}
+
+	/**
+	 * Loads tables written by <code>save</code>
+	 *
+	 * @param zFileName			The name of the file to read
+	 * @param searchGraph		The graph the tables are for, only used to check the number of
+	 * 							nodes matches
+	 * @return					The heuristic
+	 * @throws IOException		If the file can't be read, isn't a landmark file or is for a
+	 * 							graph with a different number of nodes
+	 */
+	public static LandmarkHeuristic load(String zFileName, SearchGraph searchGraph) throws IOException
+	{
+		FileInputStream inStream = new FileInputStream(zFileName);
+		try
+		{
+			FileChannel channel = inStream.getChannel();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			readFully(channel, header, zFileName);
+			if (header.getInt(0) != MAGIC)
+			{
+				throw new IOException(zFileName + " is not a landmark file");
+			}
+			if (header.getInt(4) != VERSION)
+			{
+				throw new IOException(zFileName + " is version " + header.getInt(4) + " of the format, only version " + VERSION + " can be read");
+			}
+
+			int nNumNodes = header.getInt(8);
+			int nNumLandmarks = header.getInt(12);
+			if (nNumNodes != searchGraph.getNodeCapacity())
+			{
+				throw new IOException(zFileName + " is for a graph of " + nNumNodes + " nodes not " + searchGraph.getNodeCapacity());
+			}
+			if ((nNumLandmarks < 1) || (channel.size() != HEADER_SIZE + (4L * nNumLandmarks * ((2L * nNumNodes) + 1))))
+			{
+				throw new IOException(zFileName + " is the wrong size for " + nNumLandmarks + " landmarks");
+			}
+
+			int [] nLandmarks = readInts(channel, nNumLandmarks, zFileName);
+			int [] nFromLandmarks = readInts(channel, nNumNodes * nNumLandmarks, zFileName);
+			int [] nToLandmarks = readInts(channel, nNumNodes * nNumLandmarks, zFileName);
+
+			return new LandmarkHeuristic(nNumNodes, nLandmarks, nFromLandmarks, nToLandmarks);
+		}
+		finally
+		{
+			inStream.close();
+		}
+	}
+
+	/**
+	 * Writes an array of ints to a channel a block at a time
+	 *
+	 * @param channel			The channel to write to
+	 * @param nValues			The ints to write
+	 * @throws IOException		If the channel can't be written
+	 */
+	private static void writeInts(FileChannel channel, int [] nValues) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+		IntBuffer intBuffer = buffer.asIntBuffer();
+
+		for (int i = 0; i < nValues.length; i += intBuffer.capacity())
+		{
+			int nCount = Math.min(intBuffer.capacity(), nValues.length - i);
+			intBuffer.clear();
+			intBuffer.put(nValues, i, nCount);
+
+			buffer.clear();
+			buffer.limit(nCount * 4);
+			writeFully(channel, buffer);
+		}
+	}
+
+	/**
+	 * Reads an array of ints from a channel a block at a time
+	 *
+	 * @param channel			The channel to read from
+	 * @param nCount			The number of ints to read
+	 * @param zFileName			The name of the file, for the error message
+	 * @return					The ints
+	 * @throws IOException		If the channel can't be read or ends too soon
+	 */
+	private static int [] readInts(FileChannel channel, int nCount, String zFileName) throws IOException
+	{
+		int [] nValues = new int[nCount];
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+		for (int i = 0; i < nCount; i += buffer.capacity() / 4)
+		{
+			buffer.clear();
+			buffer.limit(Math.min(buffer.capacity() / 4, nCount - i) * 4);
+			readFully(channel, buffer, zFileName);
+			buffer.asIntBuffer().get(nValues, i, buffer.limit() / 4);
+		}
+
+		return nValues;
+	}
+
+	/**
+	 * Writes everything left in a buffer to a channel
+	 *
+	 * @param channel			The channel to write to
+	 * @param buffer			The buffer to write
+	 * @throws IOException		If the channel can't be written
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Fills the rest of a buffer from a channel
+	 *
+	 * @param channel			The channel to read from
+	 * @param buffer			The buffer to fill, it is flipped ready to read once full
+	 * @param zFileName			The name of the file, for the error message
+	 * @throws IOException		If the channel can't be read or ends too soon
+	 */
+	private static void readFully(FileChannel channel, ByteBuffer buffer, String zFileName) throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			if (channel.read(buffer) < 0)
+			{
+				throw new EOFException(zFileName + " ends too soon");
+			}
+		}
+		buffer.flip();
+	}
+}
@@ -0,0 +1,174 @@
+/**
+ * The LatencyHistogram counts how long things took in buckets that grow with the size of
+ * the times, so percentiles can be read off it at any point without keeping every time.
+ * Each power of two is split into 16 buckets, so a percentile is within about 6% of the
+ * true time however wide the spread of times is.
+ * <p>
+ * Times can be recorded from many threads at once without locking.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.util.concurrent.atomic.*;
+
+public class LatencyHistogram
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The number of bits of each time kept below its highest bit, there are two to the
+	 * power of this buckets for each power of two
+	 */
+	private static final int SUB_BUCKET_BITS = 4;
+
+	/**
+	 * The number of buckets for each power of two
+	 */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * The number of times in each bucket
+	 */
+	private final AtomicLongArray m_lCounts = new AtomicLongArray((64 - SUB_BUCKET_BITS) * SUB_BUCKETS);
+
+	/**
+	 * The number of times recorded
+	 */
+	private final AtomicLong m_lCount = new AtomicLong();
+
+	/**
+	 * The sum of the times recorded
+	 */
+	private final AtomicLong m_lTotal = new AtomicLong();
+
+	/**
+	 * The longest time recorded
+	 */
+	private final AtomicLong m_lMax = new AtomicLong();
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Records a time
+	 *
+	 * @param lNanos		The time in nanoseconds, negative times count as zero
+	 */
+	public void record(long lNanos)
+	{
+		lNanos = Math.max(lNanos, 0);
+
+		m_lCounts.incrementAndGet(getBucket(lNanos));
+		m_lCount.incrementAndGet();
+		m_lTotal.addAndGet(lNanos);
+
+		long lMax = m_lMax.get();
+		while ((lNanos > lMax) && !m_lMax.compareAndSet(lMax, lNanos))
+		{
+			lMax = m_lMax.get();
+		}
+	}
+
+	/**
+	 * Finds the bucket a time is counted in
+	 *
+	 * @param lNanos		The time
+	 * @return				The index of its bucket
+	 */
+	private static int getBucket(long lNanos)
+	{
+		if (lNanos < SUB_BUCKETS)
+		{
+			return (int)lNanos;
+		}
+
+		int nHighBit = 63 - Long.numberOfLeadingZeros(lNanos);
+		int nSubBucket = (int)(lNanos >> (nHighBit - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+		return ((nHighBit - SUB_BUCKET_BITS + 1) * SUB_BUCKETS) + nSubBucket;
+	}
+
+	/**
+	 * Finds the longest time counted in a bucket
+	 *
+	 * @param nBucket		The index of the bucket
+	 * @return				The longest time in the bucket
+	 */
+	private static long getBucketMax(int nBucket)
+	{
+		if (nBucket < SUB_BUCKETS)
+		{
+			return nBucket;
+		}
+
+		int nShift = (nBucket / SUB_BUCKETS) - 1;
+		long lLowest = (long)(SUB_BUCKETS + (nBucket % SUB_BUCKETS)) << nShift;
+
+		return lLowest + (1L << nShift) - 1;
+	}
+
+	/**
+	 * Provides the time that a share of the recorded times are no longer than
+	 *
+	 * @param dPercentile	The share of times, from 0 to 100
+	 * @return				The time in nanoseconds, or zero if nothing has been recorded
+	 */
+	public long getPercentile(double dPercentile)
+	{
+		long lCount = 0;
+		for (int i = 0; i < m_lCounts.length(); i++)
+		{
+			lCount += m_lCounts.get(i);
+		}
+		if (lCount == 0)
+		{
+			return 0;
+		}
+
+		long lRank = Math.max((long)Math.ceil((dPercentile / 100) * lCount), 1);
+		long lSeen = 0;
+		for (int i = 0; i < m_lCounts.length(); i++)
+		{
+			lSeen += m_lCounts.get(i);
+			if (lSeen >= lRank)
+			{
+				// the end of a bucket can be past the longest time really recorded
+				return Math.min(getBucketMax(i), m_lMax.get());
+			}
+		}
+
+		return m_lMax.get();
+	}
+
+	/**
+	 * Get the number of times recorded
+	 * @return	the number of times
+	 */
+	public long getCount()
+	{
+		return m_lCount.get();
+	}
+
+	/**
+	 * Get the mean of the times recorded
+	 * @return	the mean time in nanoseconds, or zero if nothing has been recorded
+	 */
+	public double getMean()
+	{
+		long lCount = m_lCount.get();
+
+		return (lCount == 0) ? 0 : (double)m_lTotal.get() / lCount;
+	}
+
+	/**
+	 * Get the longest time recorded
+	 * @return	the longest time in nanoseconds
+	 */
+	public long getMax()
+	{
+		return m_lMax.get();
+	}
+}
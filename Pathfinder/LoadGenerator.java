@@ -0,0 +1,365 @@
+/**
+ * The LoadGenerator sends path queries to a PathServer from many threads at once and
+ * reports how quickly they were answered. The start and goal of each query are picked at
+ * random on the map, so some have no path the same as in a real game. Queries the server
+ * turns away because it is busy are counted and not sent again, and the thread that was
+ * turned away waits a moment before its next query.
+ * <p>
+ * Running the class sends the queries and prints the results of the run then the
+ * statistics of the server:
+ * <pre>
+ * java LoadGenerator [-port n] [-map name] [-threads n] [-requests n] [-seed n]
+ * </pre>
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.io.*;
+import java.net.*;
+import java.net.http.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+public class LoadGenerator
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * How long a thread waits after being turned away before its next query
+	 */
+	private static final long BACKOFF_MILLIS = 1;
+
+	/**
+	 * The client the queries are sent with
+	 */
+	private final HttpClient m_httpClient = HttpClient.newBuilder()
+												.version(HttpClient.Version.HTTP_1_1)
+												.build();
+
+	/**
+	 * The address of the server
+	 */
+	private final String m_zServerURL;
+
+	/**
+	 * The name of the map queried
+	 */
+	private final String m_zMapName;
+
+	/**
+	 * The width of the map queried
+	 */
+	private final int m_nWidth;
+
+	/**
+	 * The height of the map queried
+	 */
+	private final int m_nHeight;
+
+	/**
+	 * The times from sending each answered query to getting its answer
+	 */
+	private final LatencyHistogram m_latency = new LatencyHistogram();
+
+	/**
+	 * The number of queries answered with a path
+	 */
+	private final AtomicLong m_lNumFound = new AtomicLong();
+
+	/**
+	 * The number of queries answered without a path
+	 */
+	private final AtomicLong m_lNumNotFound = new AtomicLong();
+
+	/**
+	 * The number of queries turned away because the server was busy
+	 */
+	private final AtomicLong m_lNumRejected = new AtomicLong();
+
+	/**
+	 * The number of queries that failed for any other reason
+	 */
+	private final AtomicLong m_lNumErrors = new AtomicLong();
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates the load generator and asks the server for the size of the map
+	 *
+	 * @param nPort				The port of the server on the loopback address
+	 * @param zMapName			The name of the map to query, or <code>null</code> for the
+	 * 							first map of the server
+	 * @throws IOException		If the server can't be reached or doesn't have the map
+	 */
+	public LoadGenerator(int nPort, String zMapName) throws IOException
+	{
+		m_zServerURL = "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + nPort;
+
+		String [] zLines = get("/maps").split("\n");
+		for (int i = 0; i < zLines.length; i++)
+		{
+			String [] zFields = zLines[i].split(" ");
+			if ((zFields.length == 3) && ((zMapName == null) || zMapName.equals(zFields[0])))
+			{
+				m_zMapName = zFields[0];
+				m_nWidth = Integer.parseInt(zFields[1]);
+				m_nHeight = Integer.parseInt(zFields[2]);
+				return;
+			}
+		}
+
+		throw new IOException("The server has no map called " + zMapName);
+	}
+
+	/**
+	 * Sends a request to the server and reads the answer
+	 *
+	 * @param zPath				The path and query of the request
+	 * @return					The answer
+	 * @throws IOException		If the request fails or isn't answered with a 200
+	 */
+	private String get(String zPath) throws IOException
+	{
+		HttpResponse response = send(zPath);
+		if (response.statusCode() != 200)
+		{
+			throw new IOException(zPath + " was answered with " + response.statusCode());
+		}
+
+		return (String)response.body();
+	}
+
+	/**
+	 * Sends a request to the server
+	 *
+	 * @param zPath				The path and query of the request
+	 * @return					The response
+	 * @throws IOException		If the request fails
+	 */
+	private HttpResponse send(String zPath) throws IOException
+	{
+		HttpRequest request = HttpRequest.newBuilder(URI.create(m_zServerURL + zPath)).GET().build();
+		try
+		{
+			return m_httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("The request was interrupted");
+		}
+	}
+
+	/**
+	 * Sends queries from a number of threads until all have been sent
+	 *
+	 * @param nThreads			The number of threads sending queries, each waits for the
+	 * 							answer to its query before sending the next
+	 * @param nRequests			The number of queries to send in all
+	 * @param lSeed				The seed of the random squares
+	 * @return					The seconds the run took
+	 */
+	public double run(int nThreads, int nRequests, long lSeed)
+	{
+		final AtomicInteger nextRequest = new AtomicInteger();
+		final int nTotal = nRequests;
+		Thread [] threads = new Thread[nThreads];
+
+		long lStartTime = System.nanoTime();
+		for (int i = 0; i < nThreads; i++)
+		{
+			final Random random = new Random(lSeed + i);
+			threads[i] = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					while (nextRequest.getAndIncrement() < nTotal)
+					{
+						sendQuery(random);
+					}
+				}
+			}, "LoadGenerator " + i);
+			threads[i].start();
+		}
+
+		for (int i = 0; i < nThreads; i++)
+		{
+			try
+			{
+				threads[i].join();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+
+		return (System.nanoTime() - lStartTime) / 1e9;
+	}
+
+	/**
+	 * Sends a query between two random squares and counts its answer
+	 *
+	 * @param random			The random numbers of the thread
+	 */
+	private void sendQuery(Random random)
+	{
+		String zPath = "/path?map=" + URLEncoder.encode(m_zMapName, StandardCharsets.UTF_8)
+						+ "&sx=" + random.nextInt(m_nWidth) + "&sy=" + random.nextInt(m_nHeight)
+						+ "&gx=" + random.nextInt(m_nWidth) + "&gy=" + random.nextInt(m_nHeight);
+
+		long lSendTime = System.nanoTime();
+		try
+		{
+			HttpResponse response = send(zPath);
+			long lTime = System.nanoTime() - lSendTime;
+
+			if (response.statusCode() == 503)
+			{
+				m_lNumRejected.incrementAndGet();
+				Thread.sleep(BACKOFF_MILLIS);
+			}
+			else if (response.statusCode() != 200)
+			{
+				m_lNumErrors.incrementAndGet();
+			}
+			else
+			{
+				m_latency.record(lTime);
+				if (((String)response.body()).startsWith("FOUND"))
+				{
+					m_lNumFound.incrementAndGet();
+				}
+				else
+				{
+					m_lNumNotFound.incrementAndGet();
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			m_lNumErrors.incrementAndGet();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Writes out the results of a run
+	 *
+	 * @param dSeconds			The seconds the run took
+	 * @return					The results, a name and a value on each line
+	 */
+	public String getReport(double dSeconds)
+	{
+		long lNumAnswered = m_latency.getCount();
+
+		StringBuilder report = new StringBuilder();
+		report.append("map ").append(m_zMapName).append('\n');
+		report.append("seconds ").append(String.format("%.3f", dSeconds)).append('\n');
+		report.append("answered ").append(lNumAnswered).append('\n');
+		report.append("found ").append(m_lNumFound.get()).append('\n');
+		report.append("not_found ").append(m_lNumNotFound.get()).append('\n');
+		report.append("rejected ").append(m_lNumRejected.get()).append('\n');
+		report.append("errors ").append(m_lNumErrors.get()).append('\n');
+		report.append("throughput_qps ").append(String.format("%.1f", lNumAnswered / dSeconds)).append('\n');
+		report.append("latency_mean_us ").append(String.format("%.1f", m_latency.getMean() / 1000)).append('\n');
+		report.append("latency_p50_us ").append(m_latency.getPercentile(50) / 1000).append('\n');
+		report.append("latency_p90_us ").append(m_latency.getPercentile(90) / 1000).append('\n');
+		report.append("latency_p99_us ").append(m_latency.getPercentile(99) / 1000).append('\n');
+		report.append("latency_max_us ").append(m_latency.getMax() / 1000).append('\n');
+
+		return report.toString();
+	}
+
+	/**
+	 * Get the number of queries that failed other than by being turned away
+	 * @return	the number of failed queries
+	 */
+	public long getNumErrors()
+	{
+		return m_lNumErrors.get();
+	}
+
+	/**
+	 * Runs the load generator against a server on this machine
+	 *
+	 * @param args		The options
+	 */
+	public static void main(String[] args)
+	{
+		int nPort = PathServer.DEFAULT_PORT;
+		String zMapName = null;
+		int nThreads = 32;
+		int nRequests = 100000;
+		long lSeed = 1;
+
+		try
+		{
+			for (int i = 0; i < args.length; i++)
+			{
+				if (args[i].equals("-port") && (i + 1 < args.length))
+				{
+					nPort = Integer.parseInt(args[++i]);
+				}
+				else if (args[i].equals("-map") && (i + 1 < args.length))
+				{
+					zMapName = args[++i];
+				}
+				else if (args[i].equals("-threads") && (i + 1 < args.length))
+				{
+					nThreads = Integer.parseInt(args[++i]);
+				}
+				else if (args[i].equals("-requests") && (i + 1 < args.length))
+				{
+					nRequests = Integer.parseInt(args[++i]);
+				}
+				else if (args[i].equals("-seed") && (i + 1 < args.length))
+				{
+					lSeed = Long.parseLong(args[++i]);
+				}
+				else
+				{
+					throw new IllegalArgumentException("Unknown option " + args[i]);
+				}
+			}
+
+			if ((nThreads < 1) || (nRequests < 0))
+			{
+				throw new IllegalArgumentException("There must be at least one thread");
+			}
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.err.println("Usage: java LoadGenerator [-port n] [-map name] [-threads n] "
+								+ "[-requests n] [-seed n]");
+			System.exit(2);
+			return;
+		}
+
+		try
+		{
+			LoadGenerator loadGenerator = new LoadGenerator(nPort, zMapName);
+			double dSeconds = loadGenerator.run(nThreads, nRequests, lSeed);
+
+			System.out.print(loadGenerator.getReport(dSeconds));
+			System.out.println();
+			System.out.print(loadGenerator.get("/stats"));
+
+			System.exit((loadGenerator.getNumErrors() == 0) ? 0 : 1);
+		}
+		catch (IOException e)
+		{
+			System.err.println("Cannot reach the server: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,374 @@
+/**
+ * The MapFile class reads and writes gridmaps in a compact binary format. A binary map is
+ * loaded by mapping the file into memory, so the costs are searched straight out of the
+ * file without being parsed or copied and loading takes about as long as mapping the file.
+ * <p>
+ * The file starts with a 32 byte header and then holds the cost of every cell a row at
+ * a time, with every number stored little endian.
+ * <ul>
+ * <li>		Bytes 0 to 3 - The letters GMAP
+ * <li>		Bytes 4 and 5 - The format version, currently 1
+ * <li>		Bytes 6 and 7 - The bits used for each cell, 8 or 16
+ * <li>		Bytes 8 to 15 - The width then the height of the map
+ * <li>		Bytes 16 to 23 - The x then the y coordinate of the start point
+ * <li>		Bytes 24 to 31 - The x then the y coordinate of the goal point
+ * <li>		Byte 32 on - The cost of each cell as an unsigned number, zero being a point that
+ * 			can not be moved into
+ * </ul>
+ * A map is limited to the 2GB a single mapped buffer can hold.
+ * <p>
+ * Running the class converts a map from the text format read by <code>GridMap.Init</code>:
+ * <pre>
+ * java MapFile Map.txt Map.gmap
+ * </pre>
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+public class MapFile
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The first four bytes of every binary map, the letters GMAP read as a little endian int
+	 */
+	public static final int MAGIC = 0x50414D47;
+
+	/**
+	 * The version of the format written
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * The size of the header in bytes, the costs start straight after it
+	 */
+	public static final int HEADER_SIZE = 32;
+
+	/**
+	 * The width of the map
+	 */
+	private final int m_nWidth;
+
+	/**
+	 * The height of the map
+	 */
+	private final int m_nHeight;
+
+	/**
+	 * The x value of the start point
+	 */
+	private final int m_nStartPointX;
+
+	/**
+	 * The y value of the start point
+	 */
+	private final int m_nStartPointY;
+
+	/**
+	 * The x value of the goal point
+	 */
+	private final int m_nGoalPointX;
+
+	/**
+	 * The y value of the goal point
+	 */
+	private final int m_nGoalPointY;
+
+	/**
+	 * The cost of each cell
+	 */
+	private final CellCosts m_costs;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates a map from its parts
+	 *
+	 * @param nWidth			The width of the map
+	 * @param nHeight			The height of the map
+	 * @param nStartPointX		The x value of the start point
+	 * @param nStartPointY		The y value of the start point
+	 * @param nGoalPointX		The x value of the goal point
+	 * @param nGoalPointY		The y value of the goal point
+	 * @param costs				The cost of each cell
+	 */
+	public MapFile(int nWidth, int nHeight, int nStartPointX, int nStartPointY,
+			int nGoalPointX, int nGoalPointY, CellCosts costs)
+	{
+		m_nWidth = nWidth;
+		m_nHeight = nHeight;
+		m_nStartPointX = nStartPointX;
+		m_nStartPointY = nStartPointY;
+		m_nGoalPointX = nGoalPointX;
+		m_nGoalPointY = nGoalPointY;
+		m_costs = costs;
+	}
+
+	/**
+	 * Loads a binary map by mapping it into memory. The costs are read out of the file
+	 * as they are needed. Changing a cost changes the copy in memory only, never the file,
+	 * and if the file can only be opened for reading the costs can't be changed at all.
+	 *
+	 * @param zFileName			The name of the binary map file
+	 * @return					The map
+	 * @throws IOException		If the file can't be read or isn't a binary map
+	 */
+	public static MapFile load(String zFileName) throws IOException
+	{
+		// a private mapping lets costs be changed without writing to the file but it needs
+		// the file open for writing as well
+		File file = new File(zFileName);
+		boolean bWritable = file.canWrite();
+		RandomAccessFile mapFile = new RandomAccessFile(file, bWritable ? "rw" : "r");
+
+		try
+		{
+			FileChannel channel = mapFile.getChannel();
+			long lSize = channel.size();
+			if (lSize < HEADER_SIZE)
+			{
+				throw new IOException(zFileName + " is too short to be a binary map");
+			}
+			if (lSize > Integer.MAX_VALUE)
+			{
+				throw new IOException(zFileName + " is too big to be mapped");
+			}
+
+			// the mapping stays valid after the file is closed
+			MappedByteBuffer buffer = channel.map(bWritable ? FileChannel.MapMode.PRIVATE
+															: FileChannel.MapMode.READ_ONLY, 0, lSize);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+			if (buffer.getInt(0) != MAGIC)
+			{
+				throw new IOException(zFileName + " is not a binary map");
+			}
+			if (buffer.getShort(4) != VERSION)
+			{
+				throw new IOException(zFileName + " is version " + buffer.getShort(4) + " of the format, only version " + VERSION + " can be read");
+			}
+
+			int nBitsPerCell = buffer.getShort(6);
+			int nWidth = buffer.getInt(8);
+			int nHeight = buffer.getInt(12);
+			long lNumCells = (long)nWidth * nHeight;
+
+			if ((nBitsPerCell != 8) && (nBitsPerCell != 16))
+			{
+				throw new IOException(zFileName + " has " + nBitsPerCell + " bits a cell, only 8 or 16 can be read");
+			}
+			if ((nWidth <= 0) || (nHeight <= 0) || (lSize < HEADER_SIZE + (lNumCells * (nBitsPerCell / 8))))
+			{
+				throw new IOException(zFileName + " is too short for a " + nWidth + " by " + nHeight + " map");
+			}
+
+			checkPoint(zFileName, "start", buffer.getInt(16), buffer.getInt(20), nWidth, nHeight);
+			checkPoint(zFileName, "goal", buffer.getInt(24), buffer.getInt(28), nWidth, nHeight);
+
+			buffer.position(HEADER_SIZE);
+			return new MapFile(nWidth, nHeight, buffer.getInt(16), buffer.getInt(20),
+								buffer.getInt(24), buffer.getInt(28),
+								new PackedCellCosts(buffer, nBitsPerCell, (int)lNumCells));
+		}
+		finally
+		{
+			mapFile.close();
+		}
+	}
+
+	/**
+	 * Makes sure a point read from the header of a map file is inside the map, a point
+	 * outside it would be read as a cell of another row
+	 *
+	 * @param zFileName			The name of the file the point was read from
+	 * @param zName				What the point is, the start or the goal
+	 * @param nX				The x coordinate of the point
+	 * @param nY				The y coordinate of the point
+	 * @param nWidth			The width of the map
+	 * @param nHeight			The height of the map
+	 * @throws IOException		If the point is outside the map
+	 */
+	static void checkPoint(String zFileName, String zName, int nX, int nY, int nWidth, int nHeight)
+			throws IOException
+	{
+		if ((nX < 0) || (nX >= nWidth) || (nY < 0) || (nY >= nHeight))
+		{
+			throw new IOException("The " + zName + " point (" + nX + ", " + nY + ") of " + zFileName
+									+ " is outside the " + nWidth + " by " + nHeight + " map");
+		}
+	}
+
+	/**
+	 * Writes the map to a binary map file, packing the costs into as few bits as they fit in
+	 *
+	 * @param zFileName			The name of the file to write
+	 * @throws IOException		If the file can't be written
+	 * @throws IllegalArgumentException	If a cost is too big to fit in 16 bits
+	 */
+	public void save(String zFileName) throws IOException
+	{
+		int nNumCells = m_nWidth * m_nHeight;
+
+		// find the fewest bits the costs fit in
+		int nMaxCost = 0;
+		for (int i = 0; i < nNumCells; i++)
+		{
+			nMaxCost = Math.max(nMaxCost, m_costs.getCost(i));
+		}
+		if (nMaxCost > 0xFFFF)
+		{
+			throw new IllegalArgumentException("A cost of " + nMaxCost + " is too big for a binary map");
+		}
+		int nBitsPerCell = (nMaxCost > 0xFF) ? 16 : 8;
+		long lSize = HEADER_SIZE + ((long)nNumCells * (nBitsPerCell / 8));
+
+		RandomAccessFile mapFile = new RandomAccessFile(zFileName, "rw");
+
+		try
+		{
+			mapFile.setLength(lSize);
+			MappedByteBuffer buffer = mapFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, lSize);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+			buffer.putInt(MAGIC);
+			buffer.putShort((short)VERSION);
+			buffer.putShort((short)nBitsPerCell);
+			buffer.putInt(m_nWidth);
+			buffer.putInt(m_nHeight);
+			buffer.putInt(m_nStartPointX);
+			buffer.putInt(m_nStartPointY);
+			buffer.putInt(m_nGoalPointX);
+			buffer.putInt(m_nGoalPointY);
+
+			PackedCellCosts packedCosts = new PackedCellCosts(buffer, nBitsPerCell, nNumCells);
+			for (int i = 0; i < nNumCells; i++)
+			{
+				packedCosts.setCost(i, m_costs.getCost(i));
+			}
+
+			buffer.force();
+		}
+		finally
+		{
+			mapFile.close();
+		}
+	}
+
+	/**
+	 * Converts a map in the text format read by <code>GridMap.Init</code> to a binary map
+	 *
+	 * @param zTextFileName		The name of the text map to read
+	 * @param zBinaryFileName	The name of the binary map to write
+	 * @return					<code>true</code> if the map was converted <code>false</code>
+	 * 							if the text map couldn't be read
+	 * @throws IOException		If the binary map can't be written
+	 */
+	public static boolean convert(String zTextFileName, String zBinaryFileName) throws IOException
+	{
+		GridMap gridMap = new GridMap();
+		if (!gridMap.Init(zTextFileName))
+		{
+			return false;
+		}
+
+		gridMap.toMapFile().save(zBinaryFileName);
+		return true;
+	}
+
+	/**
+	 * Converts the text map named by the first argument to the binary map named by the second
+	 *
+	 * @param args		The text map then the binary map
+	 */
+	public static void main(String[] args)
+	{
+		if (args.length != 2)
+		{
+			System.err.println("Usage: java MapFile <text map> <binary map>");
+			return;
+		}
+
+		try
+		{
+			if (convert(args[0], args[1]))
+			{
+				System.out.println("Completed!");
+			}
+		}
+		catch (IOException e)
+		{
+			System.err.println("Cannot write the binary map: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Get the width of the map
+	 * @return	the width of the map
+	 */
+	public int getWidth()
+	{
+		return m_nWidth;
+	}
+
+	/**
+	 * Get the height of the map
+	 * @return	the height of the map
+	 */
+	public int getHeight()
+	{
+		return m_nHeight;
+	}
+
+	/**
+	 * Get the x value of the start point
+	 * @return	the x value of the start point
+	 */
+	public int getStartPointX()
+	{
+		return m_nStartPointX;
+	}
+
+	/**
+	 * Get the y value of the start point
+	 * @return	the y value of the start point
+	 */
+	public int getStartPointY()
+	{
+		return m_nStartPointY;
+	}
+
+	/**
+	 * Get the x value of the goal point
+	 * @return	the x value of the goal point
+	 */
+	public int getGoalPointX()
+	{
+		return m_nGoalPointX;
+	}
+
+	/**
+	 * Get the y value of the goal point
+	 * @return	the y value of the goal point
+	 */
+	public int getGoalPointY()
+	{
+		return m_nGoalPointY;
+	}
+
+	/**
+	 * Provides the cost of each cell
+	 * @return	the cell costs
+	 */
+	public CellCosts getCellCosts()
+	{
+		return m_costs;
+	}
+}
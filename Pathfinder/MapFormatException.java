@@ -0,0 +1,69 @@
+/**
+ * Thrown when a map file isn't in the format it should be in. The message says what was
+ * wrong and where in the file it was found.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.io.*;
+
+public class MapFormatException extends IOException
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The version of the serialized form of the exception
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The line the problem was found on, starting from 1
+	 */
+	private final int m_nLine;
+
+	/**
+	 * The column the problem was found at, starting from 1
+	 */
+	private final int m_nColumn;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates the exception for a problem at a place in a file
+	 *
+	 * @param zSourceName	The name of the file
+	 * @param nLine			The line the problem was found on
+	 * @param nColumn		The column the problem was found at
+	 * @param zProblem		What was wrong
+	 */
+	public MapFormatException(String zSourceName, int nLine, int nColumn, String zProblem)
+	{
+		super(zSourceName + ":" + nLine + ":" + nColumn + ": " + zProblem);
+		m_nLine = nLine;
+		m_nColumn = nColumn;
+	}
+
+	/**
+	 * The line the problem was found on
+	 *
+	 * @return				The line, starting from 1
+	 */
+	public int getLine()
+	{
+		return m_nLine;
+	}
+
+	/**
+	 * The column the problem was found at
+	 *
+	 * @return				The column, starting from 1
+	 */
+	public int getColumn()
+	{
+		return m_nColumn;
+	}
+}
@@ -0,0 +1,275 @@
+/**
+ * The MapTextParser reads maps in the text format of <code>GridMap.Init</code>. It reads
+ * the file through a channel a large chunk at a time and decodes the numbers straight from
+ * the bytes into the cost array, so it doesn't build a string for each line or each cell
+ * and the memory it uses doesn't depend on how long the lines are.
+ * <p>
+ * The file is read as a list of whole numbers that can be separated by any amount of
+ * spaces, tabs and line breaks: the width, the height, the x and y of the start point, the
+ * x and y of the goal point and then the cost of every cell a row at a time. Costs can have
+ * any number of digits. Anything else in the file is reported with the line and column it
+ * was found at.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+public class MapTextParser
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The number of bytes read from the channel at a time
+	 */
+	private static final int CHUNK_SIZE = 1 << 18;
+
+	/**
+	 * The number of numbers before the cell costs
+	 */
+	private static final int HEADER_NUMBERS = 6;
+
+	/**
+	 * The name of the file being read, for error messages
+	 */
+	private final String m_zSourceName;
+
+	/**
+	 * The numbers before the cell costs
+	 */
+	private final int [] m_nHeader = new int[HEADER_NUMBERS];
+
+	/**
+	 * The cost of each cell, made once the width and height are known
+	 */
+	private int [] m_nCosts;
+
+	/**
+	 * The number of numbers read so far
+	 */
+	private long m_lNumbersRead;
+
+	/**
+	 * The line being read, starting from 1
+	 */
+	private int m_nLine = 1;
+
+	/**
+	 * The position in the file of the first byte of the line being read
+	 */
+	private long m_lLineStart;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates a parser for one file
+	 *
+	 * @param zSourceName		The name of the file, for error messages
+	 */
+	private MapTextParser(String zSourceName)
+	{
+		m_zSourceName = zSourceName;
+	}
+
+	/**
+	 * Reads a text map from a file
+	 *
+	 * @param zFileName			The name of the file
+	 * @return					The map, with its costs in an int array
+	 * @throws MapFormatException	If the file isn't a text map
+	 * @throws IOException		If the file can't be read
+	 */
+	public static MapFile parse(String zFileName) throws IOException
+	{
+		FileInputStream mapStream = new FileInputStream(zFileName);
+
+		try
+		{
+			return parse(mapStream.getChannel(), zFileName);
+		}
+		finally
+		{
+			mapStream.close();
+		}
+	}
+
+	/**
+	 * Reads a text map from a channel, reading until the end of the channel
+	 *
+	 * @param channel			The channel to read
+	 * @param zSourceName		The name of where the channel comes from, for error messages
+	 * @return					The map, with its costs in an int array
+	 * @throws MapFormatException	If what is read isn't a text map
+	 * @throws IOException		If the channel can't be read
+	 */
+	public static MapFile parse(ReadableByteChannel channel, String zSourceName) throws IOException
+	{
+		return new MapTextParser(zSourceName).read(channel);
+	}
+
+	/**
+	 * Reads the whole channel a chunk at a time
+	 *
+	 * @param channel			The channel to read
+	 * @return					The map
+	 * @throws IOException		If the channel can't be read or isn't a text map
+	 */
+	private MapFile read(ReadableByteChannel channel) throws IOException
+	{
+		ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+		byte [] bytes = chunk.array();
+
+		// the number being read, it can run across the end of a chunk
+		int nValue = 0;
+		boolean bInNumber = false;
+		int nNumberLine = 0;
+		int nNumberColumn = 0;
+
+		// the position in the file of the first byte of the chunk
+		long lChunkStart = 0;
+
+		while (true)
+		{
+			chunk.clear();
+			int nRead = channel.read(chunk);
+			if (nRead < 0)
+			{
+				break;
+			}
+
+			for (int i = 0; i < nRead; i++)
+			{
+				int nByte = bytes[i];
+
+				if ((nByte >= '0') && (nByte <= '9'))
+				{
+					if (!bInNumber)
+					{
+						bInNumber = true;
+						nValue = 0;
+						nNumberLine = m_nLine;
+						nNumberColumn = (int)(lChunkStart + i - m_lLineStart) + 1;
+					}
+
+					// only numbers near the limit need checking before they grow
+					int nDigit = nByte - '0';
+					if (	(nValue >= Integer.MAX_VALUE / 10)
+							&& ((nValue > Integer.MAX_VALUE / 10) || (nDigit > Integer.MAX_VALUE % 10))
+						)
+					{
+						throw error(nNumberLine, nNumberColumn, "The number is too big");
+					}
+					nValue = (nValue * 10) + nDigit;
+				}
+				else if ((nByte == ' ') || (nByte == '\t') || (nByte == '\r') || (nByte == '\n'))
+				{
+					if (bInNumber)
+					{
+						addNumber(nValue, nNumberLine, nNumberColumn);
+						bInNumber = false;
+					}
+
+					if (nByte == '\n')
+					{
+						m_nLine++;
+						m_lLineStart = lChunkStart + i + 1;
+					}
+				}
+				else
+				{
+					throw error(m_nLine, (int)(lChunkStart + i - m_lLineStart) + 1,
+								"Unexpected character '" + (char)(nByte & 0xFF) + "'");
+				}
+			}
+
+			lChunkStart += nRead;
+		}
+
+		// the last number might run right up to the end of the file
+		if (bInNumber)
+		{
+			addNumber(nValue, nNumberLine, nNumberColumn);
+		}
+
+		int nEndColumn = (int)(lChunkStart - m_lLineStart) + 1;
+		if (m_lNumbersRead < HEADER_NUMBERS)
+		{
+			throw error(m_nLine, nEndColumn, "The file ends before the width, height, start and goal are given");
+		}
+		if (m_lNumbersRead < HEADER_NUMBERS + m_nCosts.length)
+		{
+			throw error(m_nLine, nEndColumn, "The file ends after " + (m_lNumbersRead - HEADER_NUMBERS) + " of the " + m_nCosts.length + " cells");
+		}
+
+		return new MapFile(m_nHeader[0], m_nHeader[1], m_nHeader[2], m_nHeader[3],
+							m_nHeader[4], m_nHeader[5], new ArrayCellCosts(m_nCosts));
+	}
+
+	/**
+	 * Stores the next number read from the file
+	 *
+	 * @param nValue			The number
+	 * @param nLine				The line it started on
+	 * @param nColumn			The column it started at
+	 * @throws MapFormatException	If the number isn't allowed where it is
+	 */
+	private void addNumber(int nValue, int nLine, int nColumn) throws MapFormatException
+	{
+		if (m_lNumbersRead >= HEADER_NUMBERS)
+		{
+			// the common case, a cell cost
+			int nCell = (int)(m_lNumbersRead - HEADER_NUMBERS);
+			if (nCell >= m_nCosts.length)
+			{
+				throw error(nLine, nColumn, "There are more than the " + m_nCosts.length + " cells the map has");
+			}
+
+			m_nCosts[nCell] = nValue;
+			m_lNumbersRead++;
+			return;
+		}
+
+		m_nHeader[(int)m_lNumbersRead++] = nValue;
+
+		if ((m_lNumbersRead == 2) && ((nValue == 0) || (m_nHeader[0] == 0)))
+		{
+			throw error(nLine, nColumn, "The map must be at least 1 by 1");
+		}
+		if ((m_lNumbersRead == 2) && ((long)m_nHeader[0] * m_nHeader[1] > Integer.MAX_VALUE - 8))
+		{
+			throw error(nLine, nColumn, "A " + m_nHeader[0] + " by " + nValue + " map is too big");
+		}
+		if (((m_lNumbersRead == 3) || (m_lNumbersRead == 5)) && (nValue >= m_nHeader[0]))
+		{
+			throw error(nLine, nColumn, "The x coordinate " + nValue + " is outside the map");
+		}
+		if (((m_lNumbersRead == 4) || (m_lNumbersRead == 6)) && (nValue >= m_nHeader[1]))
+		{
+			throw error(nLine, nColumn, "The y coordinate " + nValue + " is outside the map");
+		}
+
+		if (m_lNumbersRead == HEADER_NUMBERS)
+		{
+			m_nCosts = new int[m_nHeader[0] * m_nHeader[1]];
+		}
+	}
+
+	/**
+	 * Creates the exception for a problem at a place in the file
+	 *
+	 * @param nLine				The line of the problem
+	 * @param nColumn			The column of the problem
+	 * @param zProblem			What was wrong
+	 * @return					The exception to throw
+	 */
+	private MapFormatException error(int nLine, int nColumn, String zProblem)
+	{
+		return new MapFormatException(m_zSourceName, nLine, nColumn, zProblem);
+	}
+}
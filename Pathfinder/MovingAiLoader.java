@@ -0,0 +1,215 @@
+/**
+ * The MovingAiLoader reads the map (.map) and scenario (.scen) files of the Moving AI grid
+ * benchmarks.
+ * <p>
+ * A map file starts with a header giving its type, height and width, then the word
+ * <code>map</code>, then a line of characters for each row of the map:
+ * <ul>
+ * <li>		'.' and 'G' are ground that can be moved into
+ * <li>		'S' is swamp, which can be moved into as well
+ * <li>		'@' and 'O' are out of bounds, 'T' is trees and 'W' is water, none of which can be
+ * 			moved into
+ * </ul>
+ * Every cell that can be moved into costs one, so the map is read in as a grid of ones
+ * and zeros the same as a text map with no weights.
+ * <p>
+ * A scenario file starts with a <code>version</code> line, then has a line for each
+ * query giving its bucket, map name, map width and height, start x and y, goal x and y,
+ * and the length of its best path, all separated by tabs.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.io.*;
+import java.util.*;
+
+public class MovingAiLoader
+{
+	/*
+	 * Functions
+	 */
+	/**
+	 * Reads a map file. A map file has no start or goal point of its own, so both are put
+	 * at the top left corner.
+	 *
+	 * @param zFileName				The name of the map file
+	 * @return						The map
+	 * @throws MapFormatException	If the file isn't a map file
+	 * @throws IOException			If the file can't be read
+	 */
+	public static MapFile loadMap(String zFileName) throws IOException
+	{
+		BufferedReader inReader = new BufferedReader(new FileReader(zFileName));
+		try
+		{
+			int nWidth = -1;
+			int nHeight = -1;
+			int nLine = 0;
+
+			// read the header up to the map line
+			String zLine;
+			while (true)
+			{
+				zLine = inReader.readLine();
+				nLine++;
+				if (zLine == null)
+				{
+					throw new MapFormatException(zFileName, nLine, 1, "the file ends before the map");
+				}
+
+				String [] zFields = zLine.trim().split("\\s+");
+				if (zFields[0].equals("map"))
+				{
+					break;
+				}
+				else if (zFields[0].equals("height") && (zFields.length == 2))
+				{
+					nHeight = parseNumber(zFields[1], zFileName, nLine);
+				}
+				else if (zFields[0].equals("width") && (zFields.length == 2))
+				{
+					nWidth = parseNumber(zFields[1], zFileName, nLine);
+				}
+				else if (!zFields[0].equals("type"))
+				{
+					throw new MapFormatException(zFileName, nLine, 1, "unknown header line '" + zLine + "'");
+				}
+			}
+
+			if ((nWidth < 1) || (nHeight < 1) || ((long)nWidth * nHeight > Integer.MAX_VALUE))
+			{
+				throw new MapFormatException(zFileName, nLine, 1, "the map needs a width and height");
+			}
+
+			// then a row of cells on each line
+			int [] nCosts = new int[nWidth * nHeight];
+			for (int y = 0; y < nHeight; y++)
+			{
+				zLine = inReader.readLine();
+				nLine++;
+				if ((zLine == null) || (zLine.length() < nWidth))
+				{
+					throw new MapFormatException(zFileName, nLine, 1, "row " + y + " has less than " + nWidth + " cells");
+				}
+
+				for (int x = 0; x < nWidth; x++)
+				{
+					switch (zLine.charAt(x))
+					{
+					case '.':
+					case 'G':
+					case 'S':
+						nCosts[(y * nWidth) + x] = 1;
+						break;
+					case '@':
+					case 'O':
+					case 'T':
+					case 'W':
+						break;
+					default:
+						throw new MapFormatException(zFileName, nLine, x + 1,
+								"unknown terrain '" + zLine.charAt(x) + "'");
+					}
+				}
+			}
+
+			return new MapFile(nWidth, nHeight, 0, 0, 0, 0, new ArrayCellCosts(nCosts));
+		}
+		finally
+		{
+			inReader.close();
+		}
+	}
+
+	/**
+	 * Reads a scenario file
+	 *
+	 * @param zFileName				The name of the scenario file
+	 * @return						The scenarios in the order they are in the file
+	 * @throws MapFormatException	If the file isn't a scenario file
+	 * @throws IOException			If the file can't be read
+	 */
+	public static MovingAiScenario [] loadScenarios(String zFileName) throws IOException
+	{
+		BufferedReader inReader = new BufferedReader(new FileReader(zFileName));
+		try
+		{
+			Vector vScenarios = new Vector();
+			int nLine = 0;
+
+			String zLine;
+			while ((zLine = inReader.readLine()) != null)
+			{
+				nLine++;
+
+				// skip the version line and any blank lines
+				if ((zLine.trim().length() == 0) || zLine.startsWith("version"))
+				{
+					continue;
+				}
+
+				String [] zFields = zLine.split("\t");
+				if (zFields.length != 9)
+				{
+					throw new MapFormatException(zFileName, nLine, 1,
+							"expected 9 fields separated by tabs but found " + zFields.length);
+				}
+
+				double dOptimalLength;
+				try
+				{
+					dOptimalLength = Double.parseDouble(zFields[8].trim());
+				}
+				catch (NumberFormatException e)
+				{
+					throw new MapFormatException(zFileName, nLine, 1, "'" + zFields[8] + "' is not a length");
+				}
+
+				vScenarios.add(new MovingAiScenario(parseNumber(zFields[0], zFileName, nLine),
+													zFields[1].trim(),
+													parseNumber(zFields[2], zFileName, nLine),
+													parseNumber(zFields[3], zFileName, nLine),
+													parseNumber(zFields[4], zFileName, nLine),
+													parseNumber(zFields[5], zFileName, nLine),
+													parseNumber(zFields[6], zFileName, nLine),
+													parseNumber(zFields[7], zFileName, nLine),
+													dOptimalLength));
+			}
+
+			return (MovingAiScenario [])vScenarios.toArray(new MovingAiScenario[vScenarios.size()]);
+		}
+		finally
+		{
+			inReader.close();
+		}
+	}
+
+	/**
+	 * Reads a whole number that can't be negative
+	 *
+	 * @param zNumber				The text of the number
+	 * @param zFileName				The name of the file it came from
+	 * @param nLine					The line it came from
+	 * @return						The number
+	 * @throws MapFormatException	If the text isn't a number
+	 */
+	private static int parseNumber(String zNumber, String zFileName, int nLine) throws MapFormatException
+	{
+		try
+		{
+			int nNumber = Integer.parseInt(zNumber.trim());
+			if (nNumber >= 0)
+			{
+				return nNumber;
+			}
+		}
+		catch (NumberFormatException e)
+		{
+			// it's reported below
+		}
+
+		throw new MapFormatException(zFileName, nLine, 1, "'" + zNumber + "' is not a number");
+	}
+}
@@ -0,0 +1,174 @@
+/**
+ * A MovingAiScenario is one query from a Moving AI scenario (.scen) file: the map it is
+ * on, the start and goal cells, and the length of the best path between them.
+ * <p>
+ * Scenarios are put into buckets by the length of their best path, each bucket holding
+ * paths about four steps longer than the bucket before, so results can be compared for
+ * short and long paths.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+public class MovingAiScenario
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The bucket of the scenario
+	 */
+	private final int m_nBucket;
+
+	/**
+	 * The name of the map file, as written in the scenario file
+	 */
+	private final String m_zMapName;
+
+	/**
+	 * The width of the map
+	 */
+	private final int m_nMapWidth;
+
+	/**
+	 * The height of the map
+	 */
+	private final int m_nMapHeight;
+
+	/**
+	 * The x value of the start point
+	 */
+	private final int m_nStartPointX;
+
+	/**
+	 * The y value of the start point
+	 */
+	private final int m_nStartPointY;
+
+	/**
+	 * The x value of the goal point
+	 */
+	private final int m_nGoalPointX;
+
+	/**
+	 * The y value of the goal point
+	 */
+	private final int m_nGoalPointY;
+
+	/**
+	 * The length of the best path, with diagonal steps the square root of two long
+	 */
+	private final double m_dOptimalLength;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates a scenario
+	 *
+	 * @param nBucket			The bucket of the scenario
+	 * @param zMapName			The name of the map file
+	 * @param nMapWidth			The width of the map
+	 * @param nMapHeight		The height of the map
+	 * @param nStartPointX		The x value of the start point
+	 * @param nStartPointY		The y value of the start point
+	 * @param nGoalPointX		The x value of the goal point
+	 * @param nGoalPointY		The y value of the goal point
+	 * @param dOptimalLength	The length of the best path
+	 */
+	public MovingAiScenario(int nBucket, String zMapName, int nMapWidth, int nMapHeight,
+			int nStartPointX, int nStartPointY, int nGoalPointX, int nGoalPointY,
+			double dOptimalLength)
+	{
+		m_nBucket = nBucket;
+		m_zMapName = zMapName;
+		m_nMapWidth = nMapWidth;
+		m_nMapHeight = nMapHeight;
+		m_nStartPointX = nStartPointX;
+		m_nStartPointY = nStartPointY;
+		m_nGoalPointX = nGoalPointX;
+		m_nGoalPointY = nGoalPointY;
+		m_dOptimalLength = dOptimalLength;
+	}
+
+	/**
+	 * Get the bucket of the scenario
+	 * @return	the bucket of the scenario
+	 */
+	public int getBucket()
+	{
+		return m_nBucket;
+	}
+
+	/**
+	 * Get the name of the map file, as written in the scenario file
+	 * @return	the name of the map file
+	 */
+	public String getMapName()
+	{
+		return m_zMapName;
+	}
+
+	/**
+	 * Get the width of the map
+	 * @return	the width of the map
+	 */
+	public int getMapWidth()
+	{
+		return m_nMapWidth;
+	}
+
+	/**
+	 * Get the height of the map
+	 * @return	the height of the map
+	 */
+	public int getMapHeight()
+	{
+		return m_nMapHeight;
+	}
+
+	/**
+	 * Get the x value of the start point
+	 * @return	the x value of the start point
+	 */
+	public int getStartPointX()
+	{
+		return m_nStartPointX;
+	}
+
+	/**
+	 * Get the y value of the start point
+	 * @return	the y value of the start point
+	 */
+	public int getStartPointY()
+	{
+		return m_nStartPointY;
+	}
+
+	/**
+	 * Get the x value of the goal point
+	 * @return	the x value of the goal point
+	 */
+	public int getGoalPointX()
+	{
+		return m_nGoalPointX;
+	}
+
+	/**
+	 * Get the y value of the goal point
+	 * @return	the y value of the goal point
+	 */
+	public int getGoalPointY()
+	{
+		return m_nGoalPointY;
+	}
+
+	/**
+	 * Get the length of the best path
+	 * @return	the length of the best path
+	 */
+	public double getOptimalLength()
+	{
+		return m_dOptimalLength;
+	}
+}
@@ -18,13 +18,8 @@ public class Node
 	 * Members
 	 */
 	/**
-	 * A counter to keep track of how many nodes have been created, this will be used
-	 * to set the id number as well
-	 */
-	private static int m_nNodeCounter;
-	
-	/**
-	 * The id number of the node, they must be identified somehow and this is how.
+	 * The id number of the node, they must be identified somehow and this is how. The
+	 * graph that owns the node hands out the id numbers.
 	 */
 	private int m_nNodeID;
 	
@@ -50,13 +45,10 @@ public class Node
 	/**
 	 * This constructor creates the node and sets its ID number
 	 */
-	Node(int xPos, int yPos)
+	Node(int nNodeID, int xPos, int yPos)
 	{
-		// increment the number of nodes created
-		m_nNodeCounter++;
-		
 		// set the id number
-		m_nNodeID = m_nNodeCounter;
+		m_nNodeID = nNodeID;
 				
 		// set the position
 		m_nPosX = xPos;
@@ -130,6 +122,27 @@ public class Node
 		return m_nPosY;
 	}
 	
+	/**
+	 * The number of connections leaving this node, including any with a zero cost
+	 * 
+	 * @return 			the number of connections
+	 */
+	public int getConnectionCount()
+	{
+		return m_vConnectedNodes.size();
+	}
+	
+	/**
+	 * Provides one of the connections leaving this node
+	 * 
+	 * @param nIndex 	the index of the connection, from zero to the connection count
+	 * @return 			the connection
+	 */
+	public NodeConnection getConnection(int nIndex)
+	{
+		return (NodeConnection)m_vConnectedNodes.get(nIndex);
+	}
+	
 	/**
 	 * This provides a vector filled with all the nodes that can be travelled to from this node
 	 * 
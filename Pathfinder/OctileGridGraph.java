@@ -0,0 +1,238 @@
+/**
+ * The OctileGridGraph class searches a grid of cell costs the way the Moving AI grid
+ * benchmarks do. It is laid out the same as GridGraph, every cell is a node and the node
+ * id of the cell at (x, y) is <code>y * width + x</code>, but a diagonal step costs the
+ * square root of two times a straight step, and a diagonal step can only be taken when
+ * both of the cells beside it can be moved into, so paths never cut across a corner.
+ * <p>
+ * The costs of the connections have to be whole numbers, so a straight step costs
+ * <code>STRAIGHT_COST</code> times the cost of the cell moved into and a diagonal step
+ * <code>DIAGONAL_COST</code> times it. <code>getOctileCost</code> works out the exact
+ * length of a path to compare with the lengths listed in a scenario file, and
+ * <code>getHeuristic</code> gives the octile distance at the same scale.
+ * <p>
+ * The connections arriving at a cell are the same 8 directions walked backwards, the same
+ * as in GridGraph, with a diagonal blocked by the same two cells either way.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+public class OctileGridGraph implements ReverseSearchGraph
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The cost of a straight step into a cell with a cost of one
+	 */
+	public static final int STRAIGHT_COST = 10000;
+
+	/**
+	 * The cost of a diagonal step into a cell with a cost of one, the square root of two
+	 * times a straight step rounded to the nearest whole number
+	 */
+	public static final int DIAGONAL_COST = 14142;
+
+	/**
+	 * The x step of each of the 8 connections of a cell
+	 */
+	private static final int [] DIR_X = { 1, 1, 0, -1, -1, -1, 0, 1 };
+
+	/**
+	 * The y step of each of the 8 connections of a cell
+	 */
+	private static final int [] DIR_Y = { 0, 1, 1, 1, 0, -1, -1, -1 };
+
+	/**
+	 * The width of the grid
+	 */
+	private final int m_nWidth;
+
+	/**
+	 * The height of the grid
+	 */
+	private final int m_nHeight;
+
+	/**
+	 * The cost of moving into each cell, stored a row at a time
+	 */
+	private final CellCosts m_costs;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates the graph over the costs of a grid. The costs are used as they are and not
+	 * copied.
+	 *
+	 * @param nWidth		The width of the grid
+	 * @param nHeight		The height of the grid
+	 * @param costs			The cost of each cell, the cell at (x, y) is at y * width + x
+	 */
+	public OctileGridGraph(int nWidth, int nHeight, CellCosts costs)
+	{
+		m_nWidth = nWidth;
+		m_nHeight = nHeight;
+		m_costs = costs;
+	}
+
+	/**
+	 * Provides the width of the grid
+	 *
+	 * @return				The width of the grid
+	 */
+	public int getWidth()
+	{
+		return m_nWidth;
+	}
+
+	/**
+	 * Provides the height of the grid
+	 *
+	 * @return				The height of the grid
+	 */
+	public int getHeight()
+	{
+		return m_nHeight;
+	}
+
+	/**
+	 * Provides the cost of moving into a cell, cells outside the grid can't be moved into
+	 *
+	 * @param nX			The x value of the cell
+	 * @param nY			The y value of the cell
+	 * @return				The cost of the cell, zero if it can't be moved into
+	 */
+	public int getCellCost(int nX, int nY)
+	{
+		if ((nX < 0) || (nY < 0) || (nX >= m_nWidth) || (nY >= m_nHeight))
+		{
+			return 0;
+		}
+
+		return m_costs.getCost((nY * m_nWidth) + nX);
+	}
+
+	/**
+	 * Provides the octile distance heuristic at the scale of the connection costs, counting
+	 * every step at the cost of the cheapest cell in the grid
+	 *
+	 * @return				The heuristic
+	 */
+	public DistanceHeuristic getHeuristic()
+	{
+		int nMinCost = DistanceHeuristic.getMinCost(m_costs);
+		return new DistanceHeuristic(DistanceHeuristic.OCTILE, nMinCost * STRAIGHT_COST, nMinCost * DIAGONAL_COST);
+	}
+
+	/**
+	 * Works out the exact length of a path, counting a diagonal step as the square root of
+	 * two times the cost of the cell it moves into
+	 *
+	 * @param nPath			The path from the start to the goal
+	 * @return				The length of the path, or -1 if it is empty
+	 */
+	public double getOctileCost(int [] nPath)
+	{
+		if (nPath.length == 0)
+		{
+			return -1;
+		}
+
+		double dCost = 0;
+		for (int i = 1; i < nPath.length; i++)
+		{
+			int nCellCost = m_costs.getCost(nPath[i]);
+			boolean bDiagonal = (getNodeX(nPath[i]) != getNodeX(nPath[i - 1]))
+								&& (getNodeY(nPath[i]) != getNodeY(nPath[i - 1]));
+
+			dCost += bDiagonal ? nCellCost * Math.sqrt(2) : nCellCost;
+		}
+
+		return dCost;
+	}
+
+	public int getNodeCapacity()
+	{
+		return m_nWidth * m_nHeight;
+	}
+
+	public int getNodeX(int nNodeID)
+	{
+		return nNodeID % m_nWidth;
+	}
+
+	public int getNodeY(int nNodeID)
+	{
+		return nNodeID / m_nWidth;
+	}
+
+	public int getConnectionCount(int nNodeID)
+	{
+		return DIR_X.length;
+	}
+
+	public int getConnectedNodeID(int nNodeID, int nConnection)
+	{
+		return nNodeID + (DIR_Y[nConnection] * m_nWidth) + DIR_X[nConnection];
+	}
+
+	public int getConnectionCost(int nNodeID, int nConnection)
+	{
+		int nX = getNodeX(nNodeID);
+		int nY = getNodeY(nNodeID);
+		int nCellCost = getCellCost(nX + DIR_X[nConnection], nY + DIR_Y[nConnection]);
+
+		// the odd connections are the diagonals
+		if ((nConnection & 1) == 0)
+		{
+			return nCellCost * STRAIGHT_COST;
+		}
+
+		// a diagonal can't squeeze past a blocked cell on either side
+		if ((getCellCost(nX + DIR_X[nConnection], nY) == 0) || (getCellCost(nX, nY + DIR_Y[nConnection]) == 0))
+		{
+			return 0;
+		}
+
+		return nCellCost * DIAGONAL_COST;
+	}
+
+	public int getReverseConnectionCount(int nNodeID)
+	{
+		return DIR_X.length;
+	}
+
+	public int getReverseConnectedNodeID(int nNodeID, int nConnection)
+	{
+		return getConnectedNodeID(nNodeID, nConnection);
+	}
+
+	public int getReverseConnectionCost(int nNodeID, int nConnection)
+	{
+		int nX = getNodeX(nNodeID);
+		int nY = getNodeY(nNodeID);
+
+		// any cell in the grid can move into this one, even one that can't be moved into
+		if ((nX + DIR_X[nConnection] < 0) || (nY + DIR_Y[nConnection] < 0)
+				|| (nX + DIR_X[nConnection] >= m_nWidth) || (nY + DIR_Y[nConnection] >= m_nHeight))
+		{
+			return 0;
+		}
+
+		int nCellCost = m_costs.getCost(nNodeID);
+		if ((nConnection & 1) == 0)
+		{
+			return nCellCost * STRAIGHT_COST;
+		}
+
+		// the cells beside the diagonal are the same walking it either way
+		if ((getCellCost(nX + DIR_X[nConnection], nY) == 0) || (getCellCost(nX, nY + DIR_Y[nConnection]) == 0))
+		{
+			return 0;
+		}
+
+		return nCellCost * DIAGONAL_COST;
+	}
+}
@@ -0,0 +1,165 @@
+/**
+ * A SearchContext that keeps the cost, parent and stamp of each node in a direct buffer
+ * outside of the Java heap rather than in three int arrays on it. The three numbers of a
+ * node sit next to each other so looking at a node touches a single cache line. The buffer
+ * is never scanned or moved by the garbage collector, which suits contexts for graphs with
+ * tens of millions of nodes that are kept for the life of the program.
+ * <p>
+ * A single buffer holds at most 2GB, so a context can hold up to about 178 million nodes.
+ * Only the per node arrays of the context move off the heap, the open list keeps its own.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.nio.*;
+
+public class OffHeapSearchContext extends SearchContext
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The number of bytes kept for each node, its stamp, cost and parent
+	 */
+	private static final int NODE_SIZE = 12;
+
+	/**
+	 * The offset of the cost of a node from its stamp
+	 */
+	private static final int COST_OFFSET = 4;
+
+	/**
+	 * The offset of the parent of a node from its stamp
+	 */
+	private static final int PARENT_OFFSET = 8;
+
+	/**
+	 * The stamp, cost and parent of each node in turn
+	 */
+	private ByteBuffer m_nodeBuffer;
+
+	/**
+	 * The number of nodes the buffer has room for
+	 */
+	private int m_nNodeCapacity;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Default constructor to create the variables for this class, the context uses a
+	 * binary heap for its open list
+	 */
+	public OffHeapSearchContext()
+	{
+		this(new BinaryHeapOpenList());
+	}
+
+	/**
+	 * Creates the context with the given open list
+	 *
+	 * @param openList			The open list the searches should use
+	 */
+	public OffHeapSearchContext(OpenList openList)
+	{
+		super(openList);
+
+		m_nodeBuffer = ByteBuffer.allocateDirect(0).order(ByteOrder.nativeOrder());
+		m_nNodeCapacity = 0;
+	}
+
+	/**
+	 * Makes sure the buffer has room for the given number of node ids
+	 *
+	 * @param nNodeCapacity		The number of node ids needed
+	 * @throws IllegalArgumentException	If the nodes won't fit in a single buffer
+	 */
+	public void ensureCapacity(int nNodeCapacity)
+	{
+		if (nNodeCapacity > m_nNodeCapacity)
+		{
+			if ((long)nNodeCapacity * NODE_SIZE > Integer.MAX_VALUE)
+			{
+				throw new IllegalArgumentException(nNodeCapacity + " nodes are too many for an off heap context");
+			}
+
+			// nothing in the buffer needs to be kept, a new buffer starts out as zeros so its
+			// stamps are all out of date
+			m_nodeBuffer = ByteBuffer.allocateDirect(nNodeCapacity * NODE_SIZE).order(ByteOrder.nativeOrder());
+			m_nNodeCapacity = nNodeCapacity;
+		}
+	}
+
+	protected void clearStamps()
+	{
+		for (int i = 0; i < m_nNodeCapacity; i++)
+		{
+			m_nodeBuffer.putInt(i * NODE_SIZE, 0);
+		}
+	}
+
+	public boolean isReached(int nNodeID)
+	{
+		int nStampAge = m_nodeBuffer.getInt(nNodeID * NODE_SIZE) - getOpenStamp();
+		return (nStampAge == 0) || (nStampAge == 1);
+	}
+
+	public boolean isClosed(int nNodeID)
+	{
+		return m_nodeBuffer.getInt(nNodeID * NODE_SIZE) == getOpenStamp() + 1;
+	}
+
+	public void setReached(int nNodeID, int nCost, int nParentID)
+	{
+		int nOffset = nNodeID * NODE_SIZE;
+		m_nodeBuffer.putInt(nOffset, getOpenStamp());
+		m_nodeBuffer.putInt(nOffset + COST_OFFSET, nCost);
+		m_nodeBuffer.putInt(nOffset + PARENT_OFFSET, nParentID);
+	}
+
+	public void setClosed(int nNodeID)
+	{
+		m_nodeBuffer.putInt(nNodeID * NODE_SIZE, getOpenStamp() + 1);
+		countClosed();
+	}
+
+	public int getCost(int nNodeID)
+	{
+		return m_nodeBuffer.getInt((nNodeID * NODE_SIZE) + COST_OFFSET);
+	}
+
+	public int getParent(int nNodeID)
+	{
+		return m_nodeBuffer.getInt((nNodeID * NODE_SIZE) + PARENT_OFFSET);
+	}
+
+	public int [] tracePath(int nNodeID)
+	{
+		// count the nodes first so the path can be made the right size
+		int nLength = 0;
+		for (int n = nNodeID; n != -1; n = getParent(n))
+		{
+			nLength++;
+		}
+
+		// then fill it in from the end
+		int [] nPath = new int[nLength];
+		for (int n = nNodeID; n != -1; n = getParent(n))
+		{
+			nPath[--nLength] = n;
+		}
+
+		return nPath;
+	}
+
+	/**
+	 * Get the number of bytes the context keeps outside of the heap
+	 * @return	the size of the buffer in bytes
+	 */
+	public long getOffHeapSize()
+	{
+		return (long)m_nNodeCapacity * NODE_SIZE;
+	}
+}
@@ -0,0 +1,75 @@
+/**
+ * The OpenList interface is the priority queue used by the A* routine to keep track of the
+ * nodes that have been reached but not yet expanded.
+ * <p>
+ * Nodes are identified only by their id number and are ordered by their score (the cost to
+ * reach the node plus its heuristic). A node may only be in the list once, if a cheaper route
+ * to a node that is already in the list is found its score is lowered in place with
+ * <code>decreaseScore</code> rather than adding it a second time.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+public interface OpenList
+{
+	/**
+	 * Removes every node from the list so it can be used for another search
+	 */
+	public void clear();
+
+	/**
+	 * Whether there are any nodes left in the list
+	 *
+	 * @return			<code>true</code> if the list is empty <code>false</code> otherwise
+	 */
+	public boolean isEmpty();
+
+	/**
+	 * The number of nodes in the list
+	 *
+	 * @return			the number of nodes currently in the list
+	 */
+	public int size();
+
+	/**
+	 * Checks whether the node is in the list
+	 *
+	 * @param nNodeID	The id of the node to check
+	 * @return			<code>true</code> if in the list <code>false</code> otherwise
+	 */
+	public boolean contains(int nNodeID);
+
+	/**
+	 * Adds a node that is not already in the list
+	 *
+	 * @param nNodeID	The id of the node to add
+	 * @param nScore	The score of the node (the total estimated cost through it)
+	 */
+	public void insert(int nNodeID, int nScore);
+
+	/**
+	 * Lowers the score of a node that is already in the list, this is used when a cheaper
+	 * route to the node has been found. Scores that are not lower than the current one
+	 * are ignored.
+	 *
+	 * @param nNodeID	The id of the node to update
+	 * @param nScore	The new score of the node
+	 */
+	public void decreaseScore(int nNodeID, int nScore);
+
+	/**
+	 * The lowest score of any node in the list, this is the score of the node that
+	 * <code>removeLowest</code> would return. The list must not be empty.
+	 *
+	 * @return			The lowest score in the list
+	 */
+	public int getLowestScore();
+
+	/**
+	 * Removes the node with the lowest score from the list and returns it
+	 *
+	 * @return			The id of the node with the lowest score
+	 */
+	public int removeLowest();
+}
@@ -0,0 +1,196 @@
+/**
+ * Cell costs packed into a buffer of bytes with 8 or 16 bits for each cell, read as
+ * unsigned numbers. The buffer can be a file mapped into memory, in which case the costs
+ * are read straight out of the file without ever being copied.
+ * <p>
+ * With 8 bits a cell the costs run from 0 to 255, with 16 bits from 0 to 65535. The
+ * 16 bit costs are read in the byte order of the buffer.
+ * <p>
+ * Costs can also be packed into a direct buffer allocated outside of the Java heap with
+ * <code>pack</code> or <code>allocateDirect</code>. A map stored that way takes one or two
+ * bytes a cell, is never copied or scanned by the garbage collector and can be shared read
+ * only between threads with <code>asReadOnly</code>.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.nio.*;
+
+public class PackedCellCosts implements CellCosts
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The buffer holding the costs, the first cell is at position zero
+	 */
+	private final ByteBuffer m_costBuffer;
+
+	/**
+	 * The number of bits used for each cell, 8 or 16
+	 */
+	private final int m_nBitsPerCell;
+
+	/**
+	 * The number of cells stored
+	 */
+	private final int m_nNumCells;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates the storage over a buffer. The buffer is used as is and not copied, the costs
+	 * start at its current position and it must hold every cell.
+	 *
+	 * @param costBuffer		The buffer holding the costs
+	 * @param nBitsPerCell		The number of bits used for each cell, 8 or 16
+	 * @param nNumCells			The number of cells stored
+	 */
+	public PackedCellCosts(ByteBuffer costBuffer, int nBitsPerCell, int nNumCells)
+	{
+		if ((nBitsPerCell != 8) && (nBitsPerCell != 16))
+		{
+			throw new IllegalArgumentException("Cells must be packed into 8 or 16 bits, not " + nBitsPerCell);
+		}
+		if (costBuffer.remaining() < ((long)nNumCells * (nBitsPerCell / 8)))
+		{
+			throw new IllegalArgumentException("The buffer is too small for " + nNumCells + " cells");
+		}
+
+		// slicing keeps the byte order of the buffer and puts the first cell at zero
+		m_costBuffer = costBuffer.slice().order(costBuffer.order());
+		m_nBitsPerCell = nBitsPerCell;
+		m_nNumCells = nNumCells;
+	}
+
+	/**
+	 * Creates storage for a number of cells in a direct buffer outside of the Java heap, all
+	 * of them starting with a cost of zero
+	 *
+	 * @param nNumCells			The number of cells
+	 * @param nBitsPerCell		The number of bits used for each cell, 8 or 16
+	 * @return					The storage
+	 */
+	public static PackedCellCosts allocateDirect(int nNumCells, int nBitsPerCell)
+	{
+		if ((long)nNumCells * (nBitsPerCell / 8) > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException(nNumCells + " cells are too many for a single buffer");
+		}
+
+		ByteBuffer costBuffer = ByteBuffer.allocateDirect(nNumCells * (nBitsPerCell / 8));
+		costBuffer.order(ByteOrder.nativeOrder());
+
+		return new PackedCellCosts(costBuffer, nBitsPerCell, nNumCells);
+	}
+
+	/**
+	 * Copies costs into a direct buffer outside of the Java heap, packing them into as few
+	 * bits as they fit in
+	 *
+	 * @param costs				The costs to copy
+	 * @return					The packed copy of the costs
+	 * @throws IllegalArgumentException	If a cost is too big to fit in 16 bits
+	 */
+	public static PackedCellCosts pack(CellCosts costs)
+	{
+		int nNumCells = costs.getNumCells();
+
+		// find the fewest bits the costs fit in
+		int nMaxCost = 0;
+		for (int i = 0; i < nNumCells; i++)
+		{
+			nMaxCost = Math.max(nMaxCost, costs.getCost(i));
+		}
+		if (nMaxCost > 0xFFFF)
+		{
+			throw new IllegalArgumentException("A cost of " + nMaxCost + " is too big to pack into 16 bits");
+		}
+
+		PackedCellCosts packedCosts = allocateDirect(nNumCells, (nMaxCost > 0xFF) ? 16 : 8);
+		for (int i = 0; i < nNumCells; i++)
+		{
+			packedCosts.setCost(i, costs.getCost(i));
+		}
+
+		return packedCosts;
+	}
+
+	/**
+	 * Provides a read only view of the costs that shares the same memory, so the costs can be
+	 * handed to other threads without them being able to change them
+	 *
+	 * @return				The read only costs
+	 */
+	public PackedCellCosts asReadOnly()
+	{
+		return new PackedCellCosts(m_costBuffer.asReadOnlyBuffer().order(m_costBuffer.order()),
+									m_nBitsPerCell, m_nNumCells);
+	}
+
+	/**
+	 * Whether the costs are kept outside of the Java heap, in a direct buffer or a file
+	 * mapped into memory
+	 *
+	 * @return				<code>true</code> if off the heap <code>false</code> otherwise
+	 */
+	public boolean isDirect()
+	{
+		return m_costBuffer.isDirect();
+	}
+
+	/**
+	 * Provides the number of bits used for each cell
+	 *
+	 * @return				8 or 16
+	 */
+	public int getBitsPerCell()
+	{
+		return m_nBitsPerCell;
+	}
+
+	public int getNumCells()
+	{
+		return m_nNumCells;
+	}
+
+	public int getMaxCost()
+	{
+		return (m_nBitsPerCell == 8) ? 0xFF : 0xFFFF;
+	}
+
+	public boolean isReadOnly()
+	{
+		return m_costBuffer.isReadOnly();
+	}
+
+	public int getCost(int nCellID)
+	{
+		if (m_nBitsPerCell == 8)
+		{
+			return m_costBuffer.get(nCellID) & 0xFF;
+		}
+
+		return m_costBuffer.getShort(nCellID << 1) & 0xFFFF;
+	}
+
+	public void setCost(int nCellID, int nCost)
+	{
+		if ((nCost < 0) || (nCost > getMaxCost()))
+		{
+			throw new IllegalArgumentException("A cost of " + nCost + " doesn't fit in " + m_nBitsPerCell + " bits");
+		}
+
+		if (m_nBitsPerCell == 8)
+		{
+			m_costBuffer.put(nCellID, (byte)nCost);
+		}
+		else
+		{
+			m_costBuffer.putShort(nCellID << 1, (short)nCost);
+		}
+	}
+}
@@ -0,0 +1,442 @@
+/**
+ * The PathCache sits in front of the searches over a GridMap and remembers the paths they
+ * find, so a query that has been asked before is answered without searching again. Paths
+ * are cached by their start, goal and the search that found them, so paths from different
+ * searches (such as A* and jump point search) are kept apart.
+ * <p>
+ * The cache holds at most a set number of path cells. When it is full the path that was
+ * used longest ago is dropped. Every path is tagged with the version of the map it was found
+ * on and the whole cache is emptied as soon as the map version changes, so a path is never
+ * handed out after the map data under it has changed.
+ * <p>
+ * A cached optimal path from A to G also holds the optimal path to G from every node along
+ * it, so with sub-path reuse turned on a query from any of those nodes to G is answered from
+ * the cached path as well. This relies on the searches finding optimal paths and should be
+ * turned off for searches that don't.
+ * <p>
+ * The cache can be used from many threads at once, the searches themselves run outside of
+ * its lock.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.util.*;
+
+public class PathCache
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The map the paths are in
+	 */
+	private final GridMap m_gridMap;
+
+	/**
+	 * The most path cells the cache will hold
+	 */
+	private final int m_nMaxCells;
+
+	/**
+	 * Whether queries can be answered from the end of a longer cached path
+	 */
+	private final boolean m_bSubPathReuse;
+
+	/**
+	 * The cached paths by their key, kept in order from the least to the most recently used
+	 */
+	private final LinkedHashMap m_mapEntries;
+
+	/**
+	 * For every node on a cached path the entry and position it can be found at, by the key
+	 * of the query from that node to the goal of the path
+	 */
+	private final HashMap m_mapSubPaths;
+
+	/**
+	 * The map version the cached paths were found on
+	 */
+	private int m_nVersion;
+
+	/**
+	 * The number of path cells held in the cache
+	 */
+	private int m_nNumCells;
+
+	/**
+	 * The number of queries answered by a cached path with the same start
+	 */
+	private long m_lHits;
+
+	/**
+	 * The number of queries answered from the end of a longer cached path
+	 */
+	private long m_lSubPathHits;
+
+	/**
+	 * The number of queries that had to be searched
+	 */
+	private long m_lMisses;
+
+	/**
+	 * The number of paths dropped to make room
+	 */
+	private long m_lEvictions;
+
+	/**
+	 * The number of times the cache was emptied because the map changed
+	 */
+	private long m_lInvalidations;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates a cache for the paths in a map
+	 *
+	 * @param gridMap			The map the paths are in
+	 * @param nMaxCells			The most path cells the cache will hold
+	 * @param bSubPathReuse		Whether queries can be answered from the end of a longer path
+	 */
+	public PathCache(GridMap gridMap, int nMaxCells, boolean bSubPathReuse)
+	{
+		m_gridMap = gridMap;
+		m_nMaxCells = nMaxCells;
+		m_bSubPathReuse = bSubPathReuse;
+		m_mapEntries = new LinkedHashMap(16, 0.75f, true);
+		m_mapSubPaths = new HashMap();
+		m_nVersion = gridMap.getVersion();
+	}
+
+	/**
+	 * Finds the best path between two cells, from the cache if it can be, otherwise with the
+	 * search that it is given. A searched path is added to the cache.
+	 *
+	 * @param pathSearch		The search to use, it must search the map of the cache
+	 * @param nStartCellID		The ID of the start cell
+	 * @param nGoalCellID		The ID of the goal cell
+	 * @param context			The context to search in if the path isn't cached
+	 * @return					The path from the start to the goal, empty if none exists
+	 */
+	public int [] findPath(PathSearch pathSearch, int nStartCellID, int nGoalCellID,
+			SearchContext context)
+	{
+		PathKey key = new PathKey(nStartCellID, nGoalCellID, pathSearch);
+		int nVersion;
+
+		synchronized (this)
+		{
+			nVersion = checkVersion();
+
+			// is the exact query cached?
+			CacheEntry entry = (CacheEntry)m_mapEntries.get(key);
+			if (entry != null)
+			{
+				m_lHits++;
+				return entry.m_nPath.clone();
+			}
+
+			// or is it the end of a longer path?
+			if (m_bSubPathReuse)
+			{
+				SubPath subPath = (SubPath)m_mapSubPaths.get(key);
+				if (subPath != null)
+				{
+					// touch the longer path so it counts as used
+					m_mapEntries.get(subPath.m_entry.m_key);
+					m_lSubPathHits++;
+
+					int [] nPath = subPath.m_entry.m_nPath;
+					return Arrays.copyOfRange(nPath, subPath.m_nOffset, nPath.length);
+				}
+			}
+
+			m_lMisses++;
+		}
+
+		// search without holding the lock
+		int [] nPath = pathSearch.findPath(nStartCellID, nGoalCellID, context);
+
+		synchronized (this)
+		{
+			// only keep it if the map didn't change while searching
+			if (nVersion == checkVersion())
+			{
+				add(key, nPath.clone());
+			}
+		}
+
+		return nPath;
+	}
+
+	/**
+	 * Empties the cache
+	 */
+	public synchronized void clear()
+	{
+		m_mapEntries.clear();
+		m_mapSubPaths.clear();
+		m_nNumCells = 0;
+	}
+
+	/**
+	 * The number of paths in the cache
+	 *
+	 * @return			The number of cached paths
+	 */
+	public synchronized int size()
+	{
+		return m_mapEntries.size();
+	}
+
+	/**
+	 * The number of queries answered by a cached path with the same start
+	 *
+	 * @return			The number of hits
+	 */
+	public synchronized long getHits()
+	{
+		return m_lHits;
+	}
+
+	/**
+	 * The number of queries answered from the end of a longer cached path
+	 *
+	 * @return			The number of sub-path hits
+	 */
+	public synchronized long getSubPathHits()
+	{
+		return m_lSubPathHits;
+	}
+
+	/**
+	 * The number of queries that had to be searched
+	 *
+	 * @return			The number of misses
+	 */
+	public synchronized long getMisses()
+	{
+		return m_lMisses;
+	}
+
+	/**
+	 * The number of paths dropped to make room for newer ones
+	 *
+	 * @return			The number of evictions
+	 */
+	public synchronized long getEvictions()
+	{
+		return m_lEvictions;
+	}
+
+	/**
+	 * The number of times the cache was emptied because the map changed
+	 *
+	 * @return			The number of invalidations
+	 */
+	public synchronized long getInvalidations()
+	{
+		return m_lInvalidations;
+	}
+
+	/**
+	 * Empties the cache if the map has changed since the cached paths were found
+	 *
+	 * @return			The current version of the map
+	 */
+	private int checkVersion()
+	{
+		int nVersion = m_gridMap.getVersion();
+
+		if (nVersion != m_nVersion)
+		{
+			clear();
+			m_nVersion = nVersion;
+			m_lInvalidations++;
+		}
+
+		return nVersion;
+	}
+
+	/**
+	 * Adds a path to the cache and drops the least recently used paths until it fits
+	 *
+	 * @param key			The key of the query
+	 * @param nPath			The path found for the query
+	 */
+	private void add(PathKey key, int [] nPath)
+	{
+		// a path bigger than the whole cache isn't worth keeping
+		if ((nPath.length > m_nMaxCells) || m_mapEntries.containsKey(key))
+		{
+			return;
+		}
+
+		CacheEntry entry = new CacheEntry(key, nPath);
+		m_mapEntries.put(key, entry);
+		m_nNumCells += Math.max(nPath.length, 1);
+
+		// every node but the start can now reach the goal along this path
+		if (m_bSubPathReuse)
+		{
+			for (int i = 1; i < nPath.length - 1; i++)
+			{
+				PathKey subKey = new PathKey(nPath[i], key.m_nGoalCellID, key.m_pathSearch);
+				if (!m_mapSubPaths.containsKey(subKey))
+				{
+					m_mapSubPaths.put(subKey, new SubPath(entry, i));
+				}
+			}
+		}
+
+		// drop the least recently used paths until it fits
+		Iterator iter = m_mapEntries.values().iterator();
+		while ((m_nNumCells > m_nMaxCells) && iter.hasNext())
+		{
+			CacheEntry oldest = (CacheEntry)iter.next();
+			iter.remove();
+			remove(oldest);
+			m_lEvictions++;
+		}
+	}
+
+	/**
+	 * Forgets the sub-paths of a path that has been taken out of the cache
+	 *
+	 * @param entry			The entry that was taken out
+	 */
+	private void remove(CacheEntry entry)
+	{
+		m_nNumCells -= Math.max(entry.m_nPath.length, 1);
+
+		if (m_bSubPathReuse)
+		{
+			int [] nPath = entry.m_nPath;
+			for (int i = 1; i < nPath.length - 1; i++)
+			{
+				PathKey subKey = new PathKey(nPath[i], entry.m_key.m_nGoalCellID, entry.m_key.m_pathSearch);
+				SubPath subPath = (SubPath)m_mapSubPaths.get(subKey);
+				if ((subPath != null) && (subPath.m_entry == entry))
+				{
+					m_mapSubPaths.remove(subKey);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A private class for the key of a query, its start, goal and the search answering it
+	 *
+	 * @author Jonathan Hanks (jonhanks@gmail.com)
+	 * @version 1.0
+	 */
+	private static class PathKey
+	{
+		/**
+		 * The start of the query
+		 */
+		public final int m_nStartCellID;
+		/**
+		 * The goal of the query
+		 */
+		public final int m_nGoalCellID;
+		/**
+		 * The search answering the query
+		 */
+		public final PathSearch m_pathSearch;
+
+		/**
+		 * Creates the key of a query
+		 *
+		 * @param nStartCellID		The start of the query
+		 * @param nGoalCellID		The goal of the query
+		 * @param pathSearch		The search answering the query
+		 */
+		PathKey(int nStartCellID, int nGoalCellID, PathSearch pathSearch)
+		{
+			m_nStartCellID = nStartCellID;
+			m_nGoalCellID = nGoalCellID;
+			m_pathSearch = pathSearch;
+		}
+
+		public boolean equals(Object other)
+		{
+			if (!(other instanceof PathKey))
+			{
+				return false;
+			}
+
+			PathKey otherKey = (PathKey)other;
+			return	(m_nStartCellID == otherKey.m_nStartCellID)
+					&& (m_nGoalCellID == otherKey.m_nGoalCellID)
+					&& (m_pathSearch == otherKey.m_pathSearch);
+		}
+
+		public int hashCode()
+		{
+			return (((m_nStartCellID * 31) + m_nGoalCellID) * 31) + System.identityHashCode(m_pathSearch);
+		}
+	}
+
+	/**
+	 * A private class for a cached path
+	 *
+	 * @author Jonathan Hanks (jonhanks@gmail.com)
+	 * @version 1.0
+	 */
+	private static class CacheEntry
+	{
+		/**
+		 * The key of the query the path answers
+		 */
+		public final PathKey m_key;
+		/**
+		 * The path from the start to the goal, empty if none exists
+		 */
+		public final int [] m_nPath;
+
+		/**
+		 * Creates a cached path
+		 *
+		 * @param key			The key of the query the path answers
+		 * @param nPath			The path from the start to the goal
+		 */
+		CacheEntry(PathKey key, int [] nPath)
+		{
+			m_key = key;
+			m_nPath = nPath;
+		}
+	}
+
+	/**
+	 * A private class for where the path from a node to a goal can be found in a longer path
+	 *
+	 * @author Jonathan Hanks (jonhanks@gmail.com)
+	 * @version 1.0
+	 */
+	private static class SubPath
+	{
+		/**
+		 * The cached path that passes through the node
+		 */
+		public final CacheEntry m_entry;
+		/**
+		 * The position of the node in the path
+		 */
+		public final int m_nOffset;
+
+		/**
+		 * Creates the location of a sub-path
+		 *
+		 * @param entry			The cached path that passes through the node
+		 * @param nOffset		The position of the node in the path
+		 */
+		SubPath(CacheEntry entry, int nOffset)
+		{
+			m_entry = entry;
+			m_nOffset = nOffset;
+		}
+	}
+}
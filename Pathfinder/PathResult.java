@@ -0,0 +1,106 @@
+/**
+ * A PathResult is the outcome of one query in a batch of queries. It records whether a path
+ * was found, and if so the path and what it costs to travel.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+public class PathResult
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The status of a query that found a path
+	 */
+	public static final int FOUND = 0;
+
+	/**
+	 * The status of a query where no path exists
+	 */
+	public static final int NO_PATH = 1;
+
+	/**
+	 * The status of a query whose start or goal is not a node in the graph
+	 */
+	public static final int INVALID = 2;
+
+	/**
+	 * The status of a query whose search failed with an exception
+	 */
+	public static final int FAILED = 3;
+
+	/**
+	 * The status of the query
+	 */
+	private int m_nStatus;
+
+	/**
+	 * The path that was found from the start to the goal, empty if none was found
+	 */
+	private int [] m_nPath;
+
+	/**
+	 * The cost to travel the path, -1 if no path was found
+	 */
+	private int m_nCost;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates the result of a query
+	 *
+	 * @param nStatus		The status of the query
+	 * @param nPath			The path from the start to the goal, empty if none was found
+	 * @param nCost			The cost to travel the path, -1 if none was found
+	 */
+	public PathResult(int nStatus, int [] nPath, int nCost)
+	{
+		m_nStatus = nStatus;
+		m_nPath = nPath;
+		m_nCost = nCost;
+	}
+
+	/**
+	 * The status of the query, one of <code>FOUND</code>, <code>NO_PATH</code>,
+	 * <code>INVALID</code> or <code>FAILED</code>
+	 *
+	 * @return				The status of the query
+	 */
+	public int getStatus()
+	{
+		return m_nStatus;
+	}
+
+	/**
+	 * Whether the query found a path
+	 *
+	 * @return				<code>true</code> if found <code>false</code> otherwise
+	 */
+	public boolean isFound()
+	{
+		return m_nStatus == FOUND;
+	}
+
+	/**
+	 * The path that was found
+	 *
+	 * @return				The node ids of the path from the start to the goal
+	 */
+	public int [] getPath()
+	{
+		return m_nPath;
+	}
+
+	/**
+	 * The cost to travel the path that was found
+	 *
+	 * @return				The cost of the path, -1 if no path was found
+	 */
+	public int getCost()
+	{
+		return m_nCost;
+	}
+}
@@ -0,0 +1,27 @@
+/**
+ * The PathSearch interface is a search that has been set up over a particular graph and
+ * can be asked for paths between any two of its nodes. Astar and JumpPointSearch are both
+ * path searches, which lets code that runs many queries (such as BatchPathfinder) work with
+ * any of them.
+ * <p>
+ * A path search doesn't keep any state between queries, everything a query needs is kept
+ * in the context it is given, so one path search can be used from many threads at once as
+ * long as each thread has its own context.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+public interface PathSearch
+{
+	/**
+	 * Finds the best path between two nodes
+	 *
+	 * @param nStartNodeID		The ID of the start node
+	 * @param nGoalNodeID		The ID of the goal node
+	 * @param context			The context to keep track of the search in
+	 * @return					The path found as an array of node ids from the start to the
+	 * 							goal, this is empty if no path exists
+	 */
+	public int [] findPath(int nStartNodeID, int nGoalNodeID, SearchContext context);
+}
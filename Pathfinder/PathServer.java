@@ -0,0 +1,507 @@
+/**
+ * The PathServer keeps a PathService running and answers path queries sent to it over HTTP,
+ * so the maps are read in and set up once rather than every time a path is wanted. It only
+ * listens on the loopback address, so only programs on the same machine can reach it.
+ * <p>
+ * It answers three requests, each with plain text.
+ * <ul>
+ * <li>		GET /path?map=name&amp;sx=x&amp;sy=y&amp;gx=x&amp;gy=y - Finds a path on the named map
+ * 			(the map can be left out if only one is served). A path is answered with the line
+ * 			"FOUND cost length" followed by a line of the "x,y" squares of the path, otherwise
+ * 			with "NO_PATH" or "INVALID". If the queue of the service is full the answer is 503
+ * 			and the query should be sent again later.
+ * <li>		GET /maps - A line for each map of its name, width and height
+ * <li>		GET /stats - The statistics of the service, a name and a value on each line
+ * </ul>
+ * Requests are read on the thread of the server and never wait for a search. A query is
+ * handed to the service and its answer is written by one of a few answer threads once it
+ * has been searched, so the queue of the service is the only place queries wait, a full
+ * queue is answered with 503 straight away and /maps and /stats are never held up behind
+ * queries.
+ * <p>
+ * Running the class starts a server:
+ * <pre>
+ * java PathServer [-port n] [-queue n] [-batch n] [-wait us] [-threads n] [name=]map ...
+ * </pre>
+ * The maps are read in the same as by Pathfinder, and a map given without a name is named
+ * after its file without the extension.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import com.sun.net.httpserver.*;
+
+public class PathServer
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The port listened on when no port is given
+	 */
+	public static final int DEFAULT_PORT = 8642;
+
+	/**
+	 * The most queries that wait to be searched when no queue size is given
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+	/**
+	 * The most queries searched in one batch when no batch size is given
+	 */
+	public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+	/**
+	 * The microseconds waited to fill a batch when no wait is given
+	 */
+	public static final int DEFAULT_MAX_WAIT_MICROS = 200;
+
+	/**
+	 * The number of threads writing answers when no number is given
+	 */
+	public static final int DEFAULT_THREADS = 8;
+
+	/**
+	 * The service that searches the queries
+	 */
+	private final PathService m_pathService;
+
+	/**
+	 * The server the requests come in through
+	 */
+	private final HttpServer m_httpServer;
+
+	/**
+	 * The threads that write the answers to queries once they have been searched
+	 */
+	private final ExecutorService m_answerThreads;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates the server and binds it to the loopback address, it doesn't answer anything
+	 * until it has been started
+	 *
+	 * @param pathService		The service that searches the queries
+	 * @param nPort				The port to listen on, zero for any free port
+	 * @param nThreads			The number of threads writing answers
+	 * @throws IOException		If the port can't be listened on
+	 */
+	public PathServer(PathService pathService, int nPort, int nThreads) throws IOException
+	{
+		// the headers and body of a response are written separately, so without this each
+		// answer on a kept alive connection waits for the client to acknowledge the headers
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+
+		m_pathService = pathService;
+		m_httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), nPort), 0);
+		m_answerThreads = Executors.newFixedThreadPool(nThreads);
+
+		// no handler ever waits, so they are all run on the thread of the server
+		m_httpServer.setExecutor(null);
+		m_httpServer.createContext("/path", new HttpHandler()
+		{
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				handlePath(exchange);
+			}
+		});
+		m_httpServer.createContext("/maps", new HttpHandler()
+		{
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				handleMaps(exchange);
+			}
+		});
+		m_httpServer.createContext("/stats", new HttpHandler()
+		{
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				respond(exchange, 200, m_pathService.getStatsText());
+			}
+		});
+	}
+
+	/**
+	 * Starts the service and starts answering requests
+	 */
+	public void start()
+	{
+		m_pathService.start();
+		m_httpServer.start();
+	}
+
+	/**
+	 * Stops answering requests and stops the service
+	 */
+	public void stop()
+	{
+		m_httpServer.stop(0);
+		m_pathService.stop();
+		m_answerThreads.shutdown();
+	}
+
+	/**
+	 * Get the port the server is listening on
+	 * @return	the port
+	 */
+	public int getPort()
+	{
+		return m_httpServer.getAddress().getPort();
+	}
+
+	/**
+	 * Hands a path query to the service, it is answered once it has been searched
+	 *
+	 * @param exchange			The request and its response
+	 * @throws IOException		If the response can't be sent
+	 */
+	private void handlePath(HttpExchange exchange) throws IOException
+	{
+		Map parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+		String zMapName = (String)parameters.get("map");
+		if (zMapName == null)
+		{
+			String [] zMapNames = m_pathService.getMapNames();
+			zMapName = (zMapNames.length == 1) ? zMapNames[0] : null;
+		}
+
+		CompletableFuture future;
+		try
+		{
+			if ((zMapName == null) || (m_pathService.getMap(zMapName) == null))
+			{
+				respond(exchange, 404, "There is no map called " + zMapName + "\n");
+				return;
+			}
+
+			future = m_pathService.submit(zMapName,
+											getIntParameter(parameters, "sx"), getIntParameter(parameters, "sy"),
+											getIntParameter(parameters, "gx"), getIntParameter(parameters, "gy"));
+		}
+		catch (IllegalArgumentException e)
+		{
+			respond(exchange, 400, e.getMessage() + "\n");
+			return;
+		}
+
+		// the queue is full so tell the client to back off and try again
+		if (future == null)
+		{
+			exchange.getResponseHeaders().set("Retry-After", "1");
+			respond(exchange, 503, "BUSY\n");
+			return;
+		}
+
+		final HttpExchange queryExchange = exchange;
+		final GridGraph gridGraph = m_pathService.getMap(zMapName).getGridGraph();
+		future.whenCompleteAsync(new BiConsumer()
+		{
+			public void accept(Object result, Object error)
+			{
+				answerPath(queryExchange, (PathResult)result, (Throwable)error, gridGraph);
+			}
+		}, m_answerThreads);
+	}
+
+	/**
+	 * Writes the answer to a path query once it has been searched
+	 *
+	 * @param exchange			The request and its response
+	 * @param result			The result of the query, or <code>null</code> if it failed
+	 * @param error				Why the query failed, or <code>null</code> if it didn't
+	 * @param gridGraph			The graph of the map searched
+	 */
+	private static void answerPath(HttpExchange exchange, PathResult result, Throwable error, GridGraph gridGraph)
+	{
+		try
+		{
+			if (error != null)
+			{
+				respond(exchange, 500, "The query couldn't be answered: " + error + "\n");
+			}
+			else
+			{
+				respond(exchange, 200, formatResult(result, gridGraph));
+			}
+		}
+		catch (IOException e)
+		{
+			// the client has gone, there is no one left to answer
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Lists the maps that can be searched
+	 *
+	 * @param exchange			The request and its response
+	 * @throws IOException		If the response can't be sent
+	 */
+	private void handleMaps(HttpExchange exchange) throws IOException
+	{
+		StringBuilder mapsText = new StringBuilder();
+		String [] zMapNames = m_pathService.getMapNames();
+		for (int i = 0; i < zMapNames.length; i++)
+		{
+			GridGraph gridGraph = m_pathService.getMap(zMapNames[i]).getGridGraph();
+			mapsText.append(zMapNames[i]).append(' ').append(gridGraph.getWidth())
+					.append(' ').append(gridGraph.getHeight()).append('\n');
+		}
+
+		respond(exchange, 200, mapsText.toString());
+	}
+
+	/**
+	 * Writes the result of a query as text
+	 *
+	 * @param result			The result
+	 * @param gridGraph			The graph of the map searched
+	 * @return					The text of the result
+	 */
+	private static String formatResult(PathResult result, GridGraph gridGraph)
+	{
+		if (!result.isFound())
+		{
+			return ((result.getStatus() == PathResult.NO_PATH) ? "NO_PATH" :
+					(result.getStatus() == PathResult.INVALID) ? "INVALID" : "FAILED") + "\n";
+		}
+
+		int [] nPath = result.getPath();
+		StringBuilder resultText = new StringBuilder(16 + (nPath.length * 8));
+		resultText.append("FOUND ").append(result.getCost()).append(' ').append(nPath.length).append('\n');
+		for (int i = 0; i < nPath.length; i++)
+		{
+			if (i > 0)
+			{
+				resultText.append(' ');
+			}
+			resultText.append(gridGraph.getNodeX(nPath[i])).append(',').append(gridGraph.getNodeY(nPath[i]));
+		}
+		resultText.append('\n');
+
+		return resultText.toString();
+	}
+
+	/**
+	 * Sends a plain text response and ends the exchange
+	 *
+	 * @param exchange			The request and its response
+	 * @param nStatus			The HTTP status
+	 * @param zBody				The text of the response
+	 * @throws IOException		If the response can't be sent
+	 */
+	private static void respond(HttpExchange exchange, int nStatus, String zBody) throws IOException
+	{
+		byte [] body = zBody.getBytes(StandardCharsets.UTF_8);
+
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(nStatus, body.length);
+		OutputStream responseStream = exchange.getResponseBody();
+		try
+		{
+			responseStream.write(body);
+		}
+		finally
+		{
+			responseStream.close();
+		}
+	}
+
+	/**
+	 * Splits the query string of a request into its names and values
+	 *
+	 * @param zQuery			The query string, it may be <code>null</code>
+	 * @return					The value of each name
+	 */
+	private static Map parseQuery(String zQuery)
+	{
+		Map parameters = new HashMap();
+		if (zQuery == null)
+		{
+			return parameters;
+		}
+
+		String [] zPairs = zQuery.split("&");
+		for (int i = 0; i < zPairs.length; i++)
+		{
+			int nEquals = zPairs[i].indexOf('=');
+			if (nEquals > 0)
+			{
+				parameters.put(URLDecoder.decode(zPairs[i].substring(0, nEquals), StandardCharsets.UTF_8),
+								URLDecoder.decode(zPairs[i].substring(nEquals + 1), StandardCharsets.UTF_8));
+			}
+		}
+
+		return parameters;
+	}
+
+	/**
+	 * Reads a whole number out of the parameters of a request
+	 *
+	 * @param parameters		The parameters
+	 * @param zName				The name of the number
+	 * @return					The number
+	 * @throws IllegalArgumentException	If the number is missing or isn't a whole number
+	 */
+	private static int getIntParameter(Map parameters, String zName)
+	{
+		String zValue = (String)parameters.get(zName);
+		if (zValue == null)
+		{
+			throw new IllegalArgumentException("The query is missing " + zName);
+		}
+
+		try
+		{
+			return Integer.parseInt(zValue);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException(zName + " must be a whole number, not " + zValue);
+		}
+	}
+
+	/**
+	 * Reads a map in by the ending of its file name, the same as Pathfinder does
+	 *
+	 * @param zMapFile			The name of the map file
+	 * @return					The map or <code>null</code> if it couldn't be read
+	 */
+	private static GridMap loadMap(String zMapFile)
+	{
+		GridMap gridMap = new GridMap();
+		boolean bInitialized;
+		if (zMapFile.endsWith(".gmap"))
+		{
+			bInitialized = gridMap.InitBinary(zMapFile);
+		}
+		else if (zMapFile.endsWith(".map"))
+		{
+			bInitialized = gridMap.InitMovingAi(zMapFile);
+		}
+		else
+		{
+			bInitialized = gridMap.Init(zMapFile);
+		}
+
+		return bInitialized ? gridMap : null;
+	}
+
+	/**
+	 * Starts a server for the maps named on the command line and runs until the program is
+	 * stopped
+	 *
+	 * @param args		The options then the maps
+	 */
+	public static void main(String[] args)
+	{
+		int nPort = DEFAULT_PORT;
+		int nQueueCapacity = DEFAULT_QUEUE_CAPACITY;
+		int nMaxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+		int nMaxWaitMicros = DEFAULT_MAX_WAIT_MICROS;
+		int nThreads = DEFAULT_THREADS;
+		Vector vMapArgs = new Vector();
+		PathService pathService;
+
+		try
+		{
+			for (int i = 0; i < args.length; i++)
+			{
+				if (args[i].equals("-port") && (i + 1 < args.length))
+				{
+					nPort = Integer.parseInt(args[++i]);
+				}
+				else if (args[i].equals("-queue") && (i + 1 < args.length))
+				{
+					nQueueCapacity = Integer.parseInt(args[++i]);
+				}
+				else if (args[i].equals("-batch") && (i + 1 < args.length))
+				{
+					nMaxBatchSize = Integer.parseInt(args[++i]);
+				}
+				else if (args[i].equals("-wait") && (i + 1 < args.length))
+				{
+					nMaxWaitMicros = Integer.parseInt(args[++i]);
+				}
+				else if (args[i].equals("-threads") && (i + 1 < args.length))
+				{
+					nThreads = Integer.parseInt(args[++i]);
+				}
+				else if (args[i].startsWith("-"))
+				{
+					throw new IllegalArgumentException("Unknown option " + args[i]);
+				}
+				else
+				{
+					vMapArgs.add(args[i]);
+				}
+			}
+
+			if (vMapArgs.isEmpty() || (nThreads < 1))
+			{
+				throw new IllegalArgumentException("No maps given");
+			}
+
+			pathService = new PathService(nQueueCapacity, nMaxBatchSize, nMaxWaitMicros * 1000L);
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.err.println("Usage: java PathServer [-port n] [-queue n] [-batch n] [-wait us] "
+								+ "[-threads n] [name=]map ...");
+			System.exit(2);
+			return;
+		}
+
+		for (int i = 0; i < vMapArgs.size(); i++)
+		{
+			String zMapArg = (String)vMapArgs.get(i);
+			int nEquals = zMapArg.indexOf('=');
+			String zMapFile = (nEquals >= 0) ? zMapArg.substring(nEquals + 1) : zMapArg;
+			String zName = (nEquals >= 0) ? zMapArg.substring(0, nEquals) : new File(zMapFile).getName();
+			if ((nEquals < 0) && (zName.lastIndexOf('.') > 0))
+			{
+				zName = zName.substring(0, zName.lastIndexOf('.'));
+			}
+
+			GridMap gridMap = loadMap(zMapFile);
+			if (gridMap == null)
+			{
+				System.exit(1);
+				return;
+			}
+
+			try
+			{
+				pathService.addMap(zName, gridMap);
+			}
+			catch (IllegalArgumentException e)
+			{
+				System.err.println(e.getMessage());
+				System.exit(1);
+				return;
+			}
+		}
+
+		try
+		{
+			PathServer pathServer = new PathServer(pathService, nPort, nThreads);
+			pathServer.start();
+			System.out.println("Serving " + vMapArgs.size() + " map(s) on http://localhost:" + pathServer.getPort() + "/");
+		}
+		catch (IOException e)
+		{
+			System.err.println("Cannot start the server: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,575 @@
+/**
+ * The PathService answers path queries over maps that are loaded once and kept in memory,
+ * for programs that ask for many paths over the life of the program. Queries can be sent
+ * from any number of threads. They wait in a queue of a fixed size, and a single dispatch
+ * thread takes everything waiting in the queue (up to the batch size) and searches it as
+ * one batch across the processors. The busier the service is, the bigger the batches get.
+ * <p>
+ * When the queue is full new queries are turned away straight away rather than waiting,
+ * so a caller sending more than the service can keep up with finds out at once and the
+ * time a query waits is kept bounded.
+ * <p>
+ * The maps must not be changed while the service is running. Tiled maps can't be searched
+ * in batches so they can't be served.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+public class PathService
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * How long the dispatch thread waits for a query before checking whether it should stop
+	 */
+	private static final long IDLE_POLL_NANOS = 100000000L;
+
+	/**
+	 * The maps that can be searched, by name
+	 */
+	private final Map m_maps = new LinkedHashMap();
+
+	/**
+	 * The queries waiting to be searched
+	 */
+	private final BlockingQueue m_queryQueue;
+
+	/**
+	 * The most queries searched in one batch
+	 */
+	private final int m_nMaxBatchSize;
+
+	/**
+	 * How long the dispatch thread waits for more queries to fill a batch after the first
+	 * has arrived, zero to search whatever is waiting at once
+	 */
+	private final long m_lMaxWaitNanos;
+
+	/**
+	 * The thread that takes the queries off the queue and searches them, or
+	 * <code>null</code> if the service isn't running
+	 */
+	private Thread m_dispatchThread;
+
+	/**
+	 * Whether the dispatch thread should keep running
+	 */
+	private volatile boolean m_bRunning;
+
+	/**
+	 * The time the service was started
+	 */
+	private volatile long m_lStartTime;
+
+	/**
+	 * The number of queries taken into the queue
+	 */
+	private final AtomicLong m_lNumAccepted = new AtomicLong();
+
+	/**
+	 * The number of queries turned away because the queue was full
+	 */
+	private final AtomicLong m_lNumRejected = new AtomicLong();
+
+	/**
+	 * The number of queries answered with a path
+	 */
+	private final AtomicLong m_lNumFound = new AtomicLong();
+
+	/**
+	 * The number of queries answered without a path, for any reason
+	 */
+	private final AtomicLong m_lNumNotFound = new AtomicLong();
+
+	/**
+	 * The number of batches searched
+	 */
+	private final AtomicLong m_lNumBatches = new AtomicLong();
+
+	/**
+	 * The number of queries searched in batches
+	 */
+	private final AtomicLong m_lNumBatched = new AtomicLong();
+
+	/**
+	 * The times from when each query was taken in to when it was answered
+	 */
+	private final LatencyHistogram m_latency = new LatencyHistogram();
+
+	/**
+	 * The times each batch took to search
+	 */
+	private final LatencyHistogram m_batchTimes = new LatencyHistogram();
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates the service, it doesn't take queries until it has been started
+	 *
+	 * @param nQueueCapacity	The most queries that can wait to be searched at once
+	 * @param nMaxBatchSize		The most queries searched in one batch
+	 * @param lMaxWaitNanos		How long to wait for more queries to fill a batch after the
+	 * 							first has arrived, zero to search whatever is waiting at once
+	 * @throws IllegalArgumentException	If the queue or batches would be empty or the wait
+	 * 							is negative
+	 */
+	public PathService(int nQueueCapacity, int nMaxBatchSize, long lMaxWaitNanos)
+	{
+		if ((nQueueCapacity < 1) || (nMaxBatchSize < 1) || (lMaxWaitNanos < 0))
+		{
+			throw new IllegalArgumentException("The queue and batches must hold at least one query "
+												+ "and the wait can't be negative");
+		}
+
+		m_queryQueue = new ArrayBlockingQueue(nQueueCapacity);
+		m_nMaxBatchSize = nMaxBatchSize;
+		m_lMaxWaitNanos = lMaxWaitNanos;
+	}
+
+	/**
+	 * Adds a map that queries can be sent to
+	 *
+	 * @param zName				The name queries use for the map
+	 * @param gridMap			The map, it must already be initialized
+	 * @throws IllegalArgumentException	If the map hasn't been initialized or is a tiled map
+	 */
+	public synchronized void addMap(String zName, GridMap gridMap)
+	{
+		GridGraph gridGraph = gridMap.getGridGraph();
+		if (gridGraph == null)
+		{
+			throw new IllegalArgumentException("The map " + zName + " hasn't been initialized");
+		}
+		if (gridGraph.getCellCosts() instanceof ChunkedCellCosts)
+		{
+			throw new IllegalArgumentException("The tiled map " + zName + " can't be searched in batches");
+		}
+
+		// set up the searches now so the first queries don't pay for it
+		gridMap.getJumpPointSearch();
+		gridMap.getComponentIndex();
+
+		m_maps.put(zName, gridMap);
+	}
+
+	/**
+	 * Provides a map that queries can be sent to
+	 *
+	 * @param zName				The name of the map
+	 * @return					The map or <code>null</code> if there's no map of that name
+	 */
+	public synchronized GridMap getMap(String zName)
+	{
+		return (GridMap)m_maps.get(zName);
+	}
+
+	/**
+	 * Get the names of the maps that queries can be sent to
+	 * @return	the names in the order the maps were added
+	 */
+	public synchronized String [] getMapNames()
+	{
+		return (String [])m_maps.keySet().toArray(new String[m_maps.size()]);
+	}
+
+	/**
+	 * Starts the thread that searches the queries, nothing happens if it's already running
+	 */
+	public synchronized void start()
+	{
+		if (m_dispatchThread != null)
+		{
+			return;
+		}
+
+		m_bRunning = true;
+		m_lStartTime = System.nanoTime();
+		m_dispatchThread = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				dispatch();
+			}
+		}, "PathService dispatch");
+		m_dispatchThread.setDaemon(true);
+		m_dispatchThread.start();
+	}
+
+	/**
+	 * Stops the service. The batch being searched is finished, and every query still waiting
+	 * is answered as failed.
+	 */
+	public void stop()
+	{
+		Thread dispatchThread;
+		synchronized (this)
+		{
+			dispatchThread = m_dispatchThread;
+			m_dispatchThread = null;
+			m_bRunning = false;
+		}
+		if (dispatchThread == null)
+		{
+			return;
+		}
+
+		try
+		{
+			dispatchThread.join();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		// anything sent while the service was stopping won't be searched
+		Query query;
+		while ((query = (Query)m_queryQueue.poll()) != null)
+		{
+			answer(query, new PathResult(PathResult.FAILED, SearchContext.noPath(), -1));
+		}
+	}
+
+	/**
+	 * Sends a query to the service. The query is checked straight away and then waits in the
+	 * queue to be searched in the next batch.
+	 *
+	 * @param zMapName			The name of the map to search
+	 * @param nStartX			The x position of the start square
+	 * @param nStartY			The y position of the start square
+	 * @param nGoalX			The x position of the goal square
+	 * @param nGoalY			The y position of the goal square
+	 * @return					A future that is completed with the PathResult of the query,
+	 * 							or <code>null</code> if the queue was full and the query has
+	 * 							been turned away
+	 * @throws IllegalArgumentException	If there's no map of that name
+	 * @throws IllegalStateException	If the service isn't running
+	 */
+	public CompletableFuture submit(String zMapName, int nStartX, int nStartY, int nGoalX, int nGoalY)
+	{
+		GridMap gridMap = getMap(zMapName);
+		if (gridMap == null)
+		{
+			throw new IllegalArgumentException("There is no map called " + zMapName);
+		}
+		if (!m_bRunning)
+		{
+			throw new IllegalStateException("The service isn't running");
+		}
+
+		Query query = new Query(gridMap, nStartX, nStartY, nGoalX, nGoalY);
+
+		// squares off the map are answered without troubling the dispatch thread
+		GridGraph gridGraph = gridMap.getGridGraph();
+		if (!gridGraph.isInGrid(nStartX, nStartY) || !gridGraph.isInGrid(nGoalX, nGoalY))
+		{
+			m_lNumAccepted.incrementAndGet();
+			answer(query, new PathResult(PathResult.INVALID, SearchContext.noPath(), -1));
+			return query.m_future;
+		}
+
+		// stop() clears the running flag under the same lock before it drains the queue, so a
+		// query offered here is always either searched or drained, never left waiting
+		synchronized (this)
+		{
+			if (!m_bRunning)
+			{
+				throw new IllegalStateException("The service isn't running");
+			}
+			if (!m_queryQueue.offer(query))
+			{
+				m_lNumRejected.incrementAndGet();
+				return null;
+			}
+		}
+
+		m_lNumAccepted.incrementAndGet();
+		return query.m_future;
+	}
+
+	/**
+	 * Takes the queries off the queue a batch at a time and searches them until the
+	 * service is stopped
+	 */
+	private void dispatch()
+	{
+		ArrayList vBatch = new ArrayList(m_nMaxBatchSize);
+
+		while (m_bRunning)
+		{
+			try
+			{
+				Query first = (Query)m_queryQueue.poll(IDLE_POLL_NANOS, TimeUnit.NANOSECONDS);
+				if (first == null)
+				{
+					continue;
+				}
+				vBatch.add(first);
+
+				// take everything else that's waiting, then wait a little for more if the
+				// batch isn't full
+				m_queryQueue.drainTo(vBatch, m_nMaxBatchSize - vBatch.size());
+				long lDeadline = System.nanoTime() + m_lMaxWaitNanos;
+				while (vBatch.size() < m_nMaxBatchSize)
+				{
+					long lRemaining = lDeadline - System.nanoTime();
+					Query next = (lRemaining > 0)
+									? (Query)m_queryQueue.poll(lRemaining, TimeUnit.NANOSECONDS)
+									: null;
+					if (next == null)
+					{
+						break;
+					}
+					vBatch.add(next);
+					m_queryQueue.drainTo(vBatch, m_nMaxBatchSize - vBatch.size());
+				}
+			}
+			catch (InterruptedException e)
+			{
+				// search what has been taken so far, the loop ends if the service is stopping
+			}
+
+			if (!vBatch.isEmpty())
+			{
+				searchBatch(vBatch);
+				vBatch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Searches a batch of queries, the queries of each map are searched together
+	 *
+	 * @param vBatch			The queries to search
+	 */
+	private void searchBatch(ArrayList vBatch)
+	{
+		long lStartTime = System.nanoTime();
+
+		// most batches are all on one map, so pull out the queries of a map at a time
+		ArrayList vRemaining = vBatch;
+		while (!vRemaining.isEmpty())
+		{
+			GridMap gridMap = ((Query)vRemaining.get(0)).m_gridMap;
+			ArrayList vMapQueries = new ArrayList(vRemaining.size());
+			ArrayList vOtherQueries = new ArrayList();
+			for (int i = 0; i < vRemaining.size(); i++)
+			{
+				Query query = (Query)vRemaining.get(i);
+				if (query.m_gridMap == gridMap)
+				{
+					vMapQueries.add(query);
+				}
+				else
+				{
+					vOtherQueries.add(query);
+				}
+			}
+
+			GridGraph gridGraph = gridMap.getGridGraph();
+			int [] nStartCellIDs = new int[vMapQueries.size()];
+			int [] nGoalCellIDs = new int[vMapQueries.size()];
+			for (int i = 0; i < nStartCellIDs.length; i++)
+			{
+				Query query = (Query)vMapQueries.get(i);
+				nStartCellIDs[i] = gridGraph.getCellID(query.m_nStartX, query.m_nStartY);
+				nGoalCellIDs[i] = gridGraph.getCellID(query.m_nGoalX, query.m_nGoalY);
+			}
+
+			PathResult [] results = null;
+			try
+			{
+				results = gridMap.performBatchSearch(nStartCellIDs, nGoalCellIDs);
+			}
+			catch (RuntimeException e)
+			{
+				System.err.println("A batch of " + nStartCellIDs.length + " queries failed: " + e);
+			}
+
+			for (int i = 0; i < nStartCellIDs.length; i++)
+			{
+				PathResult result = (results != null)
+										? results[i]
+										: new PathResult(PathResult.FAILED, SearchContext.noPath(), -1);
+				answer((Query)vMapQueries.get(i), result);
+			}
+
+			vRemaining = vOtherQueries;
+		}
+
+		m_lNumBatches.incrementAndGet();
+		m_lNumBatched.addAndGet(vBatch.size());
+		m_batchTimes.record(System.nanoTime() - lStartTime);
+	}
+
+	/**
+	 * Answers a query and counts it in the statistics
+	 *
+	 * @param query				The query
+	 * @param result			The result of the query
+	 */
+	private void answer(Query query, PathResult result)
+	{
+		if (result.isFound())
+		{
+			m_lNumFound.incrementAndGet();
+		}
+		else
+		{
+			m_lNumNotFound.incrementAndGet();
+		}
+		m_latency.record(System.nanoTime() - query.m_lSubmitTime);
+
+		query.m_future.complete(result);
+	}
+
+	/**
+	 * Get the number of queries taken in, including those answered without being queued
+	 * @return	the number of queries taken in
+	 */
+	public long getNumAccepted()
+	{
+		return m_lNumAccepted.get();
+	}
+
+	/**
+	 * Get the number of queries turned away because the queue was full
+	 * @return	the number of queries turned away
+	 */
+	public long getNumRejected()
+	{
+		return m_lNumRejected.get();
+	}
+
+	/**
+	 * Get the number of queries answered, with or without a path
+	 * @return	the number of queries answered
+	 */
+	public long getNumCompleted()
+	{
+		return m_lNumFound.get() + m_lNumNotFound.get();
+	}
+
+	/**
+	 * Get the number of batches searched
+	 * @return	the number of batches
+	 */
+	public long getNumBatches()
+	{
+		return m_lNumBatches.get();
+	}
+
+	/**
+	 * Get the number of queries waiting to be searched
+	 * @return	the number of queries in the queue
+	 */
+	public int getQueueSize()
+	{
+		return m_queryQueue.size();
+	}
+
+	/**
+	 * Get the times from when each query was taken in to when it was answered
+	 * @return	the histogram of the times
+	 */
+	public LatencyHistogram getLatency()
+	{
+		return m_latency;
+	}
+
+	/**
+	 * Provides the statistics of the service, one to a line as a name and a value separated
+	 * by a space. Times are in microseconds and the throughput is the queries answered per
+	 * second since the service was started.
+	 *
+	 * @return					The statistics
+	 */
+	public String getStatsText()
+	{
+		double dSeconds = m_bRunning ? (System.nanoTime() - m_lStartTime) / 1e9 : 0;
+		long lNumCompleted = getNumCompleted();
+		long lNumBatches = getNumBatches();
+
+		StringBuilder statsText = new StringBuilder();
+		appendStat(statsText, "uptime_seconds", String.format("%.3f", dSeconds));
+		appendStat(statsText, "queries_accepted", Long.toString(getNumAccepted()));
+		appendStat(statsText, "queries_rejected", Long.toString(getNumRejected()));
+		appendStat(statsText, "queries_found", Long.toString(m_lNumFound.get()));
+		appendStat(statsText, "queries_not_found", Long.toString(m_lNumNotFound.get()));
+		appendStat(statsText, "queue_size", Integer.toString(getQueueSize()));
+		appendStat(statsText, "batches", Long.toString(lNumBatches));
+		appendStat(statsText, "batch_size_mean",
+					String.format("%.2f", (lNumBatches == 0) ? 0.0 : (double)m_lNumBatched.get() / lNumBatches));
+		appendStat(statsText, "batch_time_mean_us", String.format("%.1f", m_batchTimes.getMean() / 1000));
+		appendStat(statsText, "throughput_qps", String.format("%.1f", (dSeconds > 0) ? lNumCompleted / dSeconds : 0.0));
+		appendStat(statsText, "latency_mean_us", String.format("%.1f", m_latency.getMean() / 1000));
+		appendStat(statsText, "latency_p50_us", Long.toString(m_latency.getPercentile(50) / 1000));
+		appendStat(statsText, "latency_p90_us", Long.toString(m_latency.getPercentile(90) / 1000));
+		appendStat(statsText, "latency_p99_us", Long.toString(m_latency.getPercentile(99) / 1000));
+		appendStat(statsText, "latency_max_us", Long.toString(m_latency.getMax() / 1000));
+
+		return statsText.toString();
+	}
+
+	/**
+	 * Adds a line of statistics
+	 *
+	 * @param statsText			The statistics so far
+	 * @param zName				The name of the statistic
+	 * @param zValue			The value of the statistic
+	 */
+	private static void appendStat(StringBuilder statsText, String zName, String zValue)
+	{
+		statsText.append(zName).append(' ').append(zValue).append('\n');
+	}
+
+	/**
+	 * A query waiting to be searched and the future its result is given to
+	 */
+	private static class Query
+	{
+		/**
+		 * The map to search
+		 */
+		final GridMap m_gridMap;
+
+		/**
+		 * The start square
+		 */
+		final int m_nStartX;
+		final int m_nStartY;
+
+		/**
+		 * The goal square
+		 */
+		final int m_nGoalX;
+		final int m_nGoalY;
+
+		/**
+		 * The time the query was taken in
+		 */
+		final long m_lSubmitTime = System.nanoTime();
+
+		/**
+		 * The future completed with the result of the query
+		 */
+		final CompletableFuture m_future = new CompletableFuture();
+
+		Query(GridMap gridMap, int nStartX, int nStartY, int nGoalX, int nGoalY)
+		{
+			m_gridMap = gridMap;
+			m_nStartX = nStartX;
+			m_nStartY = nStartY;
+			m_nGoalX = nGoalX;
+			m_nGoalY = nGoalY;
+		}
+	}
+}
@@ -0,0 +1,395 @@
+/**
+ * The PathWriter turns paths through a grid into compact forms that can be sent or stored
+ * without drawing the whole grid, and reads them back again.
+ * <ul>
+ * <li>		Coordinates - one "x y" line for each cell of the path
+ * <li>		Directions - the start cell then each straight run of the path as its length and
+ * 			compass direction, such as "3 4:5E2SE1S". North is towards y = 0.
+ * <li>		Binary - the x and y of the start cell and the number of steps as little endian
+ * 			ints, then the direction of each step in four bits, two steps to a byte with the
+ * 			first step in the low bits
+ * </ul>
+ * An empty path is written as nothing at all in the coordinate and direction forms and as
+ * a step count of -1 in the binary form.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+public class PathWriter
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * Draws the whole grid with the path marked on it
+	 */
+	public static final int GRID = 0;
+
+	/**
+	 * Lists the coordinates of each cell of the path
+	 */
+	public static final int COORDINATES = 1;
+
+	/**
+	 * Lists the straight runs of the path as lengths and directions
+	 */
+	public static final int DIRECTIONS = 2;
+
+	/**
+	 * Packs the direction of each step into four bits
+	 */
+	public static final int BINARY = 3;
+
+	/**
+	 * The size of the header of the binary form in bytes
+	 */
+	public static final int BINARY_HEADER_SIZE = 12;
+
+	/**
+	 * The x step of each direction
+	 */
+	private static final int [] DIR_X = { 1, 1, 0, -1, -1, -1, 0, 1 };
+
+	/**
+	 * The y step of each direction
+	 */
+	private static final int [] DIR_Y = { 0, 1, 1, 1, 0, -1, -1, -1 };
+
+	/**
+	 * The name of each direction
+	 */
+	private static final String [] DIR_NAMES = { "E", "SE", "S", "SW", "W", "NW", "N", "NE" };
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Lists the coordinates of each cell of a path, one "x y" line for each cell
+	 *
+	 * @param grid				The grid the path is in
+	 * @param nPath				The path from the start to the goal
+	 * @return					The coordinate list
+	 */
+	public static String toCoordinates(GridGraph grid, int [] nPath)
+	{
+		StringBuilder coordinates = new StringBuilder(nPath.length * 8);
+
+		for (int i = 0; i < nPath.length; i++)
+		{
+			coordinates.append(grid.getNodeX(nPath[i])).append(' ')
+						.append(grid.getNodeY(nPath[i])).append('\n');
+		}
+
+		return coordinates.toString();
+	}
+
+	/**
+	 * Writes a path as the start cell and the length and direction of each straight run
+	 *
+	 * @param grid				The grid the path is in
+	 * @param nPath				The path from the start to the goal
+	 * @return					The direction form of the path
+	 * @throws IllegalArgumentException	If two cells of the path aren't next to each other
+	 */
+	public static String toDirections(GridGraph grid, int [] nPath)
+	{
+		if (nPath.length == 0)
+		{
+			return "";
+		}
+
+		StringBuilder directions = new StringBuilder();
+		directions.append(grid.getNodeX(nPath[0])).append(' ').append(grid.getNodeY(nPath[0])).append(':');
+
+		int nRunDirection = -1;
+		int nRunLength = 0;
+
+		for (int i = 1; i < nPath.length; i++)
+		{
+			int nDirection = getDirection(grid, nPath[i - 1], nPath[i]);
+
+			if ((nDirection != nRunDirection) && (nRunLength > 0))
+			{
+				directions.append(nRunLength).append(DIR_NAMES[nRunDirection]);
+				nRunLength = 0;
+			}
+
+			nRunDirection = nDirection;
+			nRunLength++;
+		}
+
+		if (nRunLength > 0)
+		{
+			directions.append(nRunLength).append(DIR_NAMES[nRunDirection]);
+		}
+
+		return directions.toString();
+	}
+
+	/**
+	 * Reads a path back from its direction form
+	 *
+	 * @param grid				The grid the path is in
+	 * @param zDirections		The direction form of the path
+	 * @return					The path from the start to the goal
+	 * @throws IllegalArgumentException	If the text isn't a path in the direction form
+	 */
+	public static int [] fromDirections(GridGraph grid, String zDirections)
+	{
+		if (zDirections.length() == 0)
+		{
+			return SearchContext.noPath();
+		}
+
+		int nColon = zDirections.indexOf(':');
+		int nSpace = zDirections.indexOf(' ');
+		if ((nColon < 0) || (nSpace < 0) || (nSpace > nColon))
+		{
+			throw new IllegalArgumentException("The path must start with the x and y of its first cell");
+		}
+
+		int nX = Integer.parseInt(zDirections.substring(0, nSpace));
+		int nY = Integer.parseInt(zDirections.substring(nSpace + 1, nColon));
+
+		// count the steps first so the path can be made the right size
+		int nNumSteps = 0;
+		for (int nPos = nColon + 1; nPos < zDirections.length(); )
+		{
+			int nNameStart = skipDigits(zDirections, nPos);
+			nNumSteps += Integer.parseInt(zDirections.substring(nPos, nNameStart));
+			nPos = nNameStart + DIR_NAMES[findDirection(zDirections, nNameStart)].length();
+		}
+
+		int [] nPath = new int[nNumSteps + 1];
+		int nIndex = 0;
+		nPath[nIndex++] = grid.getCellID(nX, nY);
+
+		for (int nPos = nColon + 1; nPos < zDirections.length(); )
+		{
+			int nNameStart = skipDigits(zDirections, nPos);
+			int nRunLength = Integer.parseInt(zDirections.substring(nPos, nNameStart));
+			int nDirection = findDirection(zDirections, nNameStart);
+
+			for (int i = 0; i < nRunLength; i++)
+			{
+				nX += DIR_X[nDirection];
+				nY += DIR_Y[nDirection];
+				nPath[nIndex++] = grid.getCellID(nX, nY);
+			}
+
+			nPos = nNameStart + DIR_NAMES[nDirection].length();
+		}
+
+		return nPath;
+	}
+
+	/**
+	 * Packs a path into the binary form
+	 *
+	 * @param grid				The grid the path is in
+	 * @param nPath				The path from the start to the goal
+	 * @return					The binary form of the path, ready to be read from the start
+	 * @throws IllegalArgumentException	If two cells of the path aren't next to each other
+	 */
+	public static ByteBuffer toBinary(GridGraph grid, int [] nPath)
+	{
+		int nNumSteps = nPath.length - 1;
+		ByteBuffer binary = ByteBuffer.allocate(BINARY_HEADER_SIZE + ((Math.max(nNumSteps, 0) + 1) / 2));
+		binary.order(ByteOrder.LITTLE_ENDIAN);
+
+		if (nPath.length == 0)
+		{
+			binary.putInt(0).putInt(0).putInt(-1);
+			binary.flip();
+			return binary;
+		}
+
+		binary.putInt(grid.getNodeX(nPath[0]));
+		binary.putInt(grid.getNodeY(nPath[0]));
+		binary.putInt(nNumSteps);
+
+		for (int i = 0; i < nNumSteps; i += 2)
+		{
+			int nPacked = getDirection(grid, nPath[i], nPath[i + 1]);
+			if (i + 2 < nPath.length)
+			{
+				nPacked |= getDirection(grid, nPath[i + 1], nPath[i + 2]) << 4;
+			}
+			binary.put((byte)nPacked);
+		}
+
+		binary.flip();
+		return binary;
+	}
+
+	/**
+	 * Reads a path back from its binary form
+	 *
+	 * @param grid				The grid the path is in
+	 * @param binary			The binary form of the path, read from its position on
+	 * @return					The path from the start to the goal
+	 * @throws BufferUnderflowException	If the buffer is too short for the path
+	 */
+	public static int [] fromBinary(GridGraph grid, ByteBuffer binary)
+	{
+		ByteOrder oldOrder = binary.order();
+		binary.order(ByteOrder.LITTLE_ENDIAN);
+
+		int nX = binary.getInt();
+		int nY = binary.getInt();
+		int nNumSteps = binary.getInt();
+		if (nNumSteps < 0)
+		{
+			binary.order(oldOrder);
+			return SearchContext.noPath();
+		}
+
+		int [] nPath = new int[nNumSteps + 1];
+		nPath[0] = grid.getCellID(nX, nY);
+
+		int nPacked = 0;
+		for (int i = 0; i < nNumSteps; i++)
+		{
+			// each byte holds two steps, low bits first
+			if ((i & 1) == 0)
+			{
+				nPacked = binary.get();
+			}
+			int nDirection = (nPacked >> ((i & 1) * 4)) & 0x7;
+
+			nX += DIR_X[nDirection];
+			nY += DIR_Y[nDirection];
+			nPath[i + 1] = grid.getCellID(nX, nY);
+		}
+
+		binary.order(oldOrder);
+		return nPath;
+	}
+
+	/**
+	 * Writes a path to a file in one of the compact forms
+	 *
+	 * @param zOutputFile		The name of the file
+	 * @param grid				The grid the path is in
+	 * @param nPath				The path from the start to the goal
+	 * @param nFormat			COORDINATES, DIRECTIONS or BINARY
+	 * @throws IOException		If the file can't be written
+	 * @throws IllegalArgumentException	If the format isn't one of the compact forms
+	 */
+	public static void write(String zOutputFile, GridGraph grid, int [] nPath, int nFormat) throws IOException
+	{
+		ByteBuffer output;
+
+		switch (nFormat)
+		{
+			case COORDINATES:
+				output = ByteBuffer.wrap(toCoordinates(grid, nPath).getBytes("US-ASCII"));
+				break;
+			case DIRECTIONS:
+				output = ByteBuffer.wrap(toDirections(grid, nPath).getBytes("US-ASCII"));
+				break;
+			case BINARY:
+				output = toBinary(grid, nPath);
+				break;
+			default:
+				throw new IllegalArgumentException("Not a compact path format: " + nFormat);
+		}
+
+		FileOutputStream outStream = new FileOutputStream(zOutputFile);
+		try
+		{
+			FileChannel channel = outStream.getChannel();
+			while (output.hasRemaining())
+			{
+				channel.write(output);
+			}
+		}
+		finally
+		{
+			outStream.close();
+		}
+	}
+
+	/**
+	 * Finds the direction of a step between two cells next to each other
+	 *
+	 * @param grid				The grid the cells are in
+	 * @param nFromCellID		The cell the step starts at
+	 * @param nToCellID			The cell the step ends at
+	 * @return					The direction of the step
+	 */
+	private static int getDirection(GridGraph grid, int nFromCellID, int nToCellID)
+	{
+		int nStepX = grid.getNodeX(nToCellID) - grid.getNodeX(nFromCellID);
+		int nStepY = grid.getNodeY(nToCellID) - grid.getNodeY(nFromCellID);
+
+		for (int nDirection = 0; nDirection < DIR_X.length; nDirection++)
+		{
+			if ((DIR_X[nDirection] == nStepX) && (DIR_Y[nDirection] == nStepY))
+			{
+				return nDirection;
+			}
+		}
+
+		throw new IllegalArgumentException("Cells " + nFromCellID + " and " + nToCellID + " are not next to each other");
+	}
+
+	/**
+	 * Finds the end of the digits that start at a position
+	 *
+	 * @param zText				The text
+	 * @param nPos				The position of the first digit
+	 * @return					The position after the last digit
+	 */
+	private static int skipDigits(String zText, int nPos)
+	{
+		int nEnd = nPos;
+		while ((nEnd < zText.length()) && Character.isDigit(zText.charAt(nEnd)))
+		{
+			nEnd++;
+		}
+
+		if (nEnd == nPos)
+		{
+			throw new IllegalArgumentException("Expected a run length at " + nPos);
+		}
+
+		return nEnd;
+	}
+
+	/**
+	 * Finds the direction whose name starts at a position, the longest name that matches
+	 * so that SE isn't read as S
+	 *
+	 * @param zText				The text
+	 * @param nPos				The position of the name
+	 * @return					The direction
+	 */
+	private static int findDirection(String zText, int nPos)
+	{
+		int nFound = -1;
+
+		for (int nDirection = 0; nDirection < DIR_NAMES.length; nDirection++)
+		{
+			if (	zText.startsWith(DIR_NAMES[nDirection], nPos)
+					&& ((nFound == -1) || (DIR_NAMES[nDirection].length() > DIR_NAMES[nFound].length()))
+				)
+			{
+				nFound = nDirection;
+			}
+		}
+
+		if (nFound == -1)
+		{
+			throw new IllegalArgumentException("Expected a direction at " + nPos);
+		}
+
+		return nFound;
+	}
+}
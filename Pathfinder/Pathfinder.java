@@ -10,17 +10,61 @@
 public class Pathfinder {
 
 	/**
-	 * @param args
+	 * The most chunks of a tiled map kept in memory at once
+	 */
+	private static final int MAX_RESIDENT_CHUNKS = 256;
+
+	/**
+	 * Runs the pathfinder. With no arguments it reads in Map.txt and writes the path to
+	 * Results.txt the same as it always has. Otherwise the first argument is the map file
+	 * to read and the second, if given, the results file to write. A map file ending in
+	 * ".gmap" is read as a binary map, one ending in ".map" as a Moving AI map and one
+	 * ending in ".tmap" as a tiled map.
+	 * <p>
+	 * If the arguments start with an option or a ".scen" file they are passed on to the
+	 * ScenarioRunner to replay Moving AI scenario files instead.
+	 * 
+	 * @param args		The map file and results file, or the arguments of the ScenarioRunner
 	 */
 	public static void main(String[] args) 
 	{
+		if ((args.length > 0) && (args[0].startsWith("-") || args[0].endsWith(".scen")))
+		{
+			ScenarioRunner.main(args);
+			return;
+		}
+		
+		String zMapFile = (args.length > 0) ? args[0] : "Map.txt";
+		String zResultsFile = (args.length > 1) ? args[1] : "Results.txt";
+		
 		GridMap myGM = new GridMap();
 		
 		// initialize the gridmap with the data from the map file
-		myGM.Init("Map.txt");
+		boolean bInitialized;
+		if (zMapFile.endsWith(".gmap"))
+		{
+			bInitialized = myGM.InitBinary(zMapFile);
+		}
+		else if (zMapFile.endsWith(".map"))
+		{
+			bInitialized = myGM.InitMovingAi(zMapFile);
+		}
+		else if (zMapFile.endsWith(".tmap"))
+		{
+			bInitialized = myGM.InitTiled(zMapFile, MAX_RESIDENT_CHUNKS);
+		}
+		else
+		{
+			bInitialized = myGM.Init(zMapFile);
+		}
+		
+		if (!bInitialized)
+		{
+			return;
+		}
 		
 		// perform the A* search over the map
-		myGM.performAStarSearch("Results.txt");
+		myGM.performAStarSearch(zResultsFile);
 	}
 
 }
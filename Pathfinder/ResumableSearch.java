@@ -0,0 +1,392 @@
+/**
+ * The ResumableSearch is an A* search that is run a piece at a time instead of all at once.
+ * The caller moves it on with <code>step</code>, which expands at most a set number of nodes,
+ * or <code>runUntil</code>, which expands nodes until a deadline, and can look at its status
+ * in between to see whether it is still going, has found the path or has shown there is no
+ * path. This lets a long query be spread across the frames of a simulation without holding
+ * up any one of them, and many queries be run side by side with a SearchScheduler.
+ * <p>
+ * Each search keeps its own SearchContext since its nodes have to stay put between steps,
+ * so a context handed to a search must not be used by anything else until it has finished.
+ * The search expands the nodes in the same order as <code>Astar.findPath</code> and finds
+ * the same path.
+ * <p>
+ * A search is moved on by one thread at a time, but can be cancelled from any thread. The
+ * cancel takes effect before the next node is expanded.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+public class ResumableSearch
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The status of a search that hasn't finished yet
+	 */
+	public static final int IN_PROGRESS = 0;
+
+	/**
+	 * The status of a search that found the path
+	 */
+	public static final int FOUND = 1;
+
+	/**
+	 * The status of a search that showed there is no path
+	 */
+	public static final int NO_PATH = 2;
+
+	/**
+	 * The status of a search that was cancelled before it finished
+	 */
+	public static final int CANCELLED = 3;
+
+	/**
+	 * The number of nodes expanded between looks at the clock in <code>runUntil</code>
+	 */
+	private static final int CLOCK_CHECK_INTERVAL = 64;
+
+	/**
+	 * The graph being searched
+	 */
+	private final SearchGraph m_searchGraph;
+
+	/**
+	 * The node the search starts from
+	 */
+	private final int m_nStartNodeID;
+
+	/**
+	 * The node the search is looking for
+	 */
+	private final int m_nGoalNodeID;
+
+	/**
+	 * The heuristic estimating the cost to the goal
+	 */
+	private final Heuristic m_heuristic;
+
+	/**
+	 * The context the search keeps track of its nodes in
+	 */
+	private final SearchContext m_context;
+
+	/**
+	 * The status of the search
+	 */
+	private volatile int m_nStatus;
+
+	/**
+	 * Whether the search has been asked to stop
+	 */
+	private volatile boolean m_bCancelled;
+
+	/**
+	 * The path found, empty until the search has found it
+	 */
+	private int [] m_nPath;
+
+	/**
+	 * The cost of the path found, -1 until the search has found it
+	 */
+	private int m_nCost;
+
+	/**
+	 * The number of nodes taken from the open list so far
+	 */
+	private int m_nNumExpanded;
+
+	/**
+	 * The number of nodes added to the open list so far
+	 */
+	private int m_nNumGenerated;
+
+	/**
+	 * The number of times a cheaper way to a node in the open list has been found so far
+	 */
+	private int m_nNumReopened;
+
+	/**
+	 * The most nodes there have been in the open list so far
+	 */
+	private int m_nPeakOpenSize;
+
+	/**
+	 * The time spent in the steps of the search so far in nanoseconds, only kept if there is
+	 * a listener to tell
+	 */
+	private long m_lSearchTime;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Starts a search between two nodes of a graph with the default heuristic and a context
+	 * of its own
+	 *
+	 * @param searchGraph		The graph to search
+	 * @param nStartNodeID		The ID of the start node
+	 * @param nGoalNodeID		The ID of the goal node
+	 */
+	public ResumableSearch(SearchGraph searchGraph, int nStartNodeID, int nGoalNodeID)
+	{
+		this(searchGraph, nStartNodeID, nGoalNodeID, DistanceHeuristic.DEFAULT, new SearchContext());
+	}
+
+	/**
+	 * Starts a search between two nodes of a graph. Nothing is expanded until the search is
+	 * moved on, only the start node is put in the open list.
+	 *
+	 * @param searchGraph		The graph to search
+	 * @param nStartNodeID		The ID of the start node
+	 * @param nGoalNodeID		The ID of the goal node
+	 * @param heuristic			The heuristic to estimate the cost to the goal with
+	 * @param context			The context to keep track of the search in, it belongs to the
+	 * 							search until the search has finished
+	 * @throws IllegalArgumentException	If the start or goal isn't in the graph
+	 */
+	public ResumableSearch(SearchGraph searchGraph, int nStartNodeID, int nGoalNodeID,
+			Heuristic heuristic, SearchContext context)
+	{
+		int nNodeCapacity = searchGraph.getNodeCapacity();
+		if (	(nStartNodeID < 0) || (nStartNodeID >= nNodeCapacity)
+				|| (nGoalNodeID < 0) || (nGoalNodeID >= nNodeCapacity)
+			)
+		{
+			throw new IllegalArgumentException("The start and goal must both be in the graph");
+		}
+
+		m_searchGraph = searchGraph;
+		m_nStartNodeID = nStartNodeID;
+		m_nGoalNodeID = nGoalNodeID;
+		m_heuristic = heuristic;
+		m_context = context;
+		m_nPath = SearchContext.noPath();
+		m_nCost = -1;
+		m_nStatus = IN_PROGRESS;
+
+		// add the start node to the open list
+		context.begin(searchGraph);
+		context.setReached(nStartNodeID, 0, -1);
+		context.getOpenList().insert(nStartNodeID, heuristic.getEstimate(searchGraph, nStartNodeID, nGoalNodeID));
+		m_nNumGenerated = 1;
+		m_nPeakOpenSize = 1;
+	}
+
+	/**
+	 * Moves the search on by expanding at most a set number of nodes. Once the search has
+	 * finished this does nothing.
+	 *
+	 * @param nMaxExpansions	The most nodes to expand
+	 * @return					The status of the search afterwards
+	 */
+	public int step(int nMaxExpansions)
+	{
+		if (m_nStatus != IN_PROGRESS)
+		{
+			return m_nStatus;
+		}
+
+		// only time the search if someone is listening for it
+		SearchListener listener = m_context.getListener();
+		long lStartTime = (listener != null) ? System.nanoTime() : 0;
+
+		for (int i = 0; (i < nMaxExpansions) && (m_nStatus == IN_PROGRESS); i++)
+		{
+			expandNext();
+		}
+
+		if (listener != null)
+		{
+			m_lSearchTime += System.nanoTime() - lStartTime;
+
+			// tell the listener how the search went once it has finished
+			if ((m_nStatus == FOUND) || (m_nStatus == NO_PATH))
+			{
+				SearchStats stats = m_context.getStats();
+				stats.set(m_nStartNodeID, m_nGoalNodeID, m_context.getNumClosed(), m_nNumGenerated,
+							m_nNumReopened, m_nPeakOpenSize, m_nPath.length, getCost(), m_lSearchTime);
+				listener.searchFinished(stats);
+			}
+		}
+
+		return m_nStatus;
+	}
+
+	/**
+	 * Moves the search on until it finishes or a deadline passes. The clock is looked at
+	 * every few nodes so the search can run a little past the deadline.
+	 *
+	 * @param lDeadlineNanos	The time to stop by, as given by <code>System.nanoTime</code>
+	 * @return					The status of the search afterwards
+	 */
+	public int runUntil(long lDeadlineNanos)
+	{
+		while ((m_nStatus == IN_PROGRESS) && (System.nanoTime() - lDeadlineNanos < 0))
+		{
+			step(CLOCK_CHECK_INTERVAL);
+		}
+
+		return m_nStatus;
+	}
+
+	/**
+	 * Runs the search until it finishes
+	 *
+	 * @return					The status of the search afterwards
+	 */
+	public int run()
+	{
+		return step(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Asks the search to stop. It stops before it expands another node and its status
+	 * becomes CANCELLED, unless it has already finished.
+	 */
+	public void cancel()
+	{
+		m_bCancelled = true;
+	}
+
+	/**
+	 * Expands the node at the top of the open list, finishing the search if it is the goal
+	 * or the open list has run out
+	 */
+	private void expandNext()
+	{
+		OpenList openList = m_context.getOpenList();
+
+		if (m_bCancelled)
+		{
+			m_nStatus = CANCELLED;
+			return;
+		}
+
+		if (openList.isEmpty())
+		{
+			// we ran out of nodes to check so there is no path
+			m_nStatus = NO_PATH;
+			return;
+		}
+
+		// Pick the current node to be the node in the open list with the lowest score
+		int nCurrNodeID = openList.removeLowest();
+		m_nNumExpanded++;
+
+		// if we found the goal node then we're done
+		if (nCurrNodeID == m_nGoalNodeID)
+		{
+			m_nPath = m_context.tracePath(m_nGoalNodeID);
+			m_nCost = m_context.getCost(m_nGoalNodeID);
+			m_nStatus = FOUND;
+			return;
+		}
+
+		// otherwise this isn't the right one so move it to the closed list
+		m_context.setClosed(nCurrNodeID);
+		int nCurrCost = m_context.getCost(nCurrNodeID);
+
+		// examine each adjacent node to it
+		int nNumConnections = m_searchGraph.getConnectionCount(nCurrNodeID);
+		for (int i = 0; i < nNumConnections; i++)
+		{
+			// zero cost connections can't be travelled
+			int nTravelCost = m_searchGraph.getConnectionCost(nCurrNodeID, i);
+			if (nTravelCost <= 0)
+			{
+				continue;
+			}
+
+			int nAdjNodeID = m_searchGraph.getConnectedNodeID(nCurrNodeID, i);
+			int nCost = nCurrCost + nTravelCost;
+
+			if (!m_context.isReached(nAdjNodeID))
+			{
+				m_context.setReached(nAdjNodeID, nCost, nCurrNodeID);
+				openList.insert(nAdjNodeID,
+						nCost + m_heuristic.getEstimate(m_searchGraph, nAdjNodeID, m_nGoalNodeID));
+				m_nNumGenerated++;
+			}
+			else if (!m_context.isClosed(nAdjNodeID) && (nCost < m_context.getCost(nAdjNodeID)))
+			{
+				m_context.setReached(nAdjNodeID, nCost, nCurrNodeID);
+				openList.decreaseScore(nAdjNodeID,
+						nCost + m_heuristic.getEstimate(m_searchGraph, nAdjNodeID, m_nGoalNodeID));
+				m_nNumReopened++;
+			}
+		}
+
+		m_nPeakOpenSize = Math.max(m_nPeakOpenSize, openList.size());
+	}
+
+	/**
+	 * Get the status of the search, one of IN_PROGRESS, FOUND, NO_PATH or CANCELLED
+	 * @return	the status of the search
+	 */
+	public int getStatus()
+	{
+		// a search cancelled between steps is finished straight away
+		int nStatus = m_nStatus;
+
+		return ((nStatus == IN_PROGRESS) && m_bCancelled) ? CANCELLED : nStatus;
+	}
+
+	/**
+	 * Whether the search has stopped, for any reason
+	 * @return	<code>true</code> if the search won't go any further
+	 */
+	public boolean isFinished()
+	{
+		return getStatus() != IN_PROGRESS;
+	}
+
+	/**
+	 * Get the path found
+	 * @return	the path as an array of node ids from the start to the goal, this is empty
+	 * 			unless the status is FOUND
+	 */
+	public int [] getPath()
+	{
+		return m_nPath;
+	}
+
+	/**
+	 * Get the cost of the path found
+	 * @return	the cost of the path, or -1 unless the status is FOUND
+	 */
+	public int getCost()
+	{
+		return m_nCost;
+	}
+
+	/**
+	 * Get the node the search starts from
+	 * @return	the id of the start node
+	 */
+	public int getStartNodeID()
+	{
+		return m_nStartNodeID;
+	}
+
+	/**
+	 * Get the node the search is looking for
+	 * @return	the id of the goal node
+	 */
+	public int getGoalNodeID()
+	{
+		return m_nGoalNodeID;
+	}
+
+	/**
+	 * Get the number of nodes taken from the open list so far, this is what the budgets
+	 * of <code>step</code> count
+	 * @return	the number of nodes expanded
+	 */
+	public int getNumExpanded()
+	{
+		return m_nNumExpanded;
+	}
+}
@@ -0,0 +1,42 @@
+/**
+ * The ReverseSearchGraph interface is a SearchGraph that can also walk its connections
+ * backwards. Connections are directed, so a search that works back from the goal has to
+ * find the connections arriving at a node rather than the ones leaving it. Graphs that
+ * store their connections keep an index of the arriving connections, built once and not
+ * worked out again for every search.
+ * <p>
+ * Any connection with a cost of zero is assumed to be untravelable, the same as in Graph.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+public interface ReverseSearchGraph extends SearchGraph
+{
+	/**
+	 * The number of connections arriving at a node
+	 *
+	 * @param nNodeID		The id of the node
+	 * @return				The number of connections to the node
+	 */
+	public int getReverseConnectionCount(int nNodeID);
+
+	/**
+	 * Provides the node at the start of one of the connections arriving at a node
+	 *
+	 * @param nNodeID		The id of the node
+	 * @param nConnection	The index of the connection, from zero to the reverse connection count
+	 * @return				The id of the node the connection leaves from
+	 */
+	public int getReverseConnectedNodeID(int nNodeID, int nConnection);
+
+	/**
+	 * Provides the cost to travel one of the connections arriving at a node, in the direction
+	 * it was added
+	 *
+	 * @param nNodeID		The id of the node
+	 * @param nConnection	The index of the connection, from zero to the reverse connection count
+	 * @return				The cost to travel the connection, zero if it can't be travelled
+	 */
+	public int getReverseConnectionCost(int nNodeID, int nConnection);
+}
@@ -0,0 +1,587 @@
+/**
+ * The ScenarioRunner replays Moving AI benchmark scenario files. Every query of every
+ * scenario file is searched for with A* over the map it names, the length of the path
+ * found is checked against the best length listed for it, and the times and the number of
+ * nodes expanded are put together for each bucket of the scenarios.
+ * <p>
+ * The maps are searched the way the benchmarks were made, with diagonal steps costing the
+ * square root of two and no cutting across corners (see OctileGridGraph). A path counts as
+ * the best path if its length is within one part in ten thousand of the listed length,
+ * which allows for the rounding of the listed lengths and of the diagonal cost.
+ * <p>
+ * The report is written as CSV or JSON with a row for each bucket and a last row for all
+ * the scenarios together. Each row gives the number of queries, the number that failed,
+ * the 50th, 90th and 99th percentile and the longest search time in microseconds, the
+ * average number of nodes expanded and the number of queries searched per second. The
+ * runner exits with a status of 1 if any query failed.
+ * <p>
+ * Usage: <code>java ScenarioRunner [-maps dir] [-format csv|json] [-out file] [-warmup n]
+ * [-heuristic octile|zero|alt] scenario files...</code>
+ * <ul>
+ * <li>		-maps is where the map files are, by default the directory of each scenario file
+ * <li>		-format is the form of the report, csv by default
+ * <li>		-out is the file to write the report to, by default it goes to the console
+ * <li>		-warmup is the number of times to run each map's queries before timing them
+ * <li>		-heuristic is the heuristic A* uses, the octile distance by default, zero for
+ * 			Dijkstra's routine, or alt for landmarks worked out for each map before its
+ * 			queries are timed
+ * </ul>
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.io.*;
+import java.util.*;
+
+public class ScenarioRunner
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * How far a path's length can be from the listed length, as a part of the listed length
+	 */
+	private static final double TOLERANCE = 1e-4;
+
+	/**
+	 * Where the map files are, null to look beside each scenario file
+	 */
+	private String m_zMapDir;
+
+	/**
+	 * The number of times to run each map's queries before timing them
+	 */
+	private int m_nWarmups;
+
+	/**
+	 * The heuristic to search with, "octile", "zero" or "alt"
+	 */
+	private String m_zHeuristic;
+
+	/**
+	 * The results of each bucket, by bucket number
+	 */
+	private TreeMap m_bucketResults;
+
+	/**
+	 * The results of all the buckets together
+	 */
+	private BucketResults m_totalResults;
+
+	/**
+	 * The context every search is run in
+	 */
+	private SearchContext m_context;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates a runner with no results yet
+	 *
+	 * @param zMapDir		Where the map files are, null to look beside each scenario file
+	 * @param nWarmups		The number of times to run each map's queries before timing them
+	 * @param zHeuristic	The heuristic to search with, "octile", "zero" or "alt"
+	 */
+	public ScenarioRunner(String zMapDir, int nWarmups, String zHeuristic)
+	{
+		if (!(zHeuristic.equals("octile") || zHeuristic.equals("zero") || zHeuristic.equals("alt")))
+		{
+			throw new IllegalArgumentException("Unknown heuristic " + zHeuristic);
+		}
+
+		m_zMapDir = zMapDir;
+		m_nWarmups = nWarmups;
+		m_zHeuristic = zHeuristic;
+		m_bucketResults = new TreeMap();
+		m_totalResults = new BucketResults();
+		m_context = new SearchContext();
+	}
+
+	/**
+	 * Runs the scenario files named on the command line and writes out the report
+	 *
+	 * @param args		The options then the scenario files
+	 */
+	public static void main(String[] args)
+	{
+		String zMapDir = null;
+		String zFormat = "csv";
+		String zOutputFile = null;
+		int nWarmups = 0;
+		String zHeuristic = "octile";
+		Vector vScenarioFiles = new Vector();
+		ScenarioRunner runner;
+
+		try
+		{
+			for (int i = 0; i < args.length; i++)
+			{
+				if (args[i].equals("-maps") && (i + 1 < args.length))
+				{
+					zMapDir = args[++i];
+				}
+				else if (args[i].equals("-format") && (i + 1 < args.length))
+				{
+					zFormat = args[++i];
+				}
+				else if (args[i].equals("-out") && (i + 1 < args.length))
+				{
+					zOutputFile = args[++i];
+				}
+				else if (args[i].equals("-warmup") && (i + 1 < args.length))
+				{
+					nWarmups = Integer.parseInt(args[++i]);
+				}
+				else if (args[i].equals("-heuristic") && (i + 1 < args.length))
+				{
+					zHeuristic = args[++i];
+				}
+				else if (args[i].startsWith("-"))
+				{
+					throw new IllegalArgumentException("Unknown option " + args[i]);
+				}
+				else
+				{
+					vScenarioFiles.add(args[i]);
+				}
+			}
+
+			if (vScenarioFiles.isEmpty() || !(zFormat.equals("csv") || zFormat.equals("json")))
+			{
+				throw new IllegalArgumentException("No scenario files given");
+			}
+
+			runner = new ScenarioRunner(zMapDir, nWarmups, zHeuristic);
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.err.println("Usage: java ScenarioRunner [-maps dir] [-format csv|json] "
+								+ "[-out file] [-warmup n] [-heuristic octile|zero|alt] <scenario file>...");
+			System.exit(2);
+			return;
+		}
+
+		try
+		{
+			for (int i = 0; i < vScenarioFiles.size(); i++)
+			{
+				runner.runScenarioFile((String)vScenarioFiles.get(i));
+			}
+
+			Writer outWriter = (zOutputFile == null)
+								? new OutputStreamWriter(System.out)
+								: new FileWriter(zOutputFile);
+			try
+			{
+				outWriter.write(zFormat.equals("json") ? runner.toJson() : runner.toCsv());
+			}
+			finally
+			{
+				outWriter.flush();
+				if (zOutputFile != null)
+				{
+					outWriter.close();
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			System.err.println(e.getMessage());
+			System.exit(2);
+		}
+
+		System.exit((runner.getNumFailures() == 0) ? 0 : 1);
+	}
+
+	/**
+	 * Runs every query of a scenario file and adds them to the results. The queries of
+	 * each map are run together, so a map is only read once for a run of queries on it.
+	 *
+	 * @param zScenarioFile			The name of the scenario file
+	 * @throws IOException			If the scenario file or one of its maps can't be read
+	 */
+	public void runScenarioFile(String zScenarioFile) throws IOException
+	{
+		MovingAiScenario [] scenarios = MovingAiLoader.loadScenarios(zScenarioFile);
+		int nNumFailures = getNumFailures();
+
+		int nFirst = 0;
+		while (nFirst < scenarios.length)
+		{
+			// find the run of queries on the same map
+			int nEnd = nFirst + 1;
+			while ((nEnd < scenarios.length) && scenarios[nEnd].getMapName().equals(scenarios[nFirst].getMapName()))
+			{
+				nEnd++;
+			}
+
+			GridMap gridMap = new GridMap();
+			String zMapFile = findMapFile(zScenarioFile, scenarios[nFirst].getMapName());
+			if (!gridMap.InitMovingAi(zMapFile))
+			{
+				throw new FileNotFoundException("Cannot read the map " + zMapFile);
+			}
+
+			MapFile mapFile = gridMap.toMapFile();
+			OctileGridGraph octileGraph = new OctileGridGraph(mapFile.getWidth(), mapFile.getHeight(),
+																mapFile.getCellCosts());
+			Heuristic heuristic;
+			if (m_zHeuristic.equals("alt"))
+			{
+				heuristic = LandmarkHeuristic.create(octileGraph, 16);
+			}
+			else if (m_zHeuristic.equals("zero"))
+			{
+				heuristic = new DistanceHeuristic(DistanceHeuristic.ZERO);
+			}
+			else
+			{
+				heuristic = octileGraph.getHeuristic();
+			}
+
+			for (int w = 0; w < m_nWarmups; w++)
+			{
+				for (int i = nFirst; i < nEnd; i++)
+				{
+					runScenario(octileGraph, heuristic, scenarios[i], null);
+				}
+			}
+
+			for (int i = nFirst; i < nEnd; i++)
+			{
+				String zFailure = runScenario(octileGraph, heuristic, scenarios[i],
+												getBucketResults(scenarios[i].getBucket()));
+				if (zFailure != null)
+				{
+					System.err.println(zScenarioFile + ": query " + i + " on " + scenarios[i].getMapName()
+										+ ": " + zFailure);
+				}
+			}
+
+			nFirst = nEnd;
+		}
+
+		System.err.println(zScenarioFile + ": " + scenarios.length + " queries, "
+							+ (getNumFailures() - nNumFailures) + " failed");
+	}
+
+	/**
+	 * Runs one query and checks that the path found is a best path
+	 *
+	 * @param octileGraph			The graph of the map
+	 * @param heuristic				The heuristic to search with
+	 * @param scenario				The query
+	 * @param results				The results to add the query to, null if it is a warmup
+	 * @return						What was wrong with the path, or null if it was a best path
+	 */
+	private String runScenario(OctileGridGraph octileGraph, Heuristic heuristic, MovingAiScenario scenario,
+			BucketResults results)
+	{
+		if (	(scenario.getMapWidth() != octileGraph.getWidth())
+				|| (scenario.getMapHeight() != octileGraph.getHeight())
+				|| (scenario.getStartPointX() >= octileGraph.getWidth())
+				|| (scenario.getGoalPointX() >= octileGraph.getWidth())
+				|| (scenario.getStartPointY() >= octileGraph.getHeight())
+				|| (scenario.getGoalPointY() >= octileGraph.getHeight())
+			)
+		{
+			return fail(results, "the query doesn't fit the map");
+		}
+
+		int nStartCellID = (scenario.getStartPointY() * octileGraph.getWidth()) + scenario.getStartPointX();
+		int nGoalCellID = (scenario.getGoalPointY() * octileGraph.getWidth()) + scenario.getGoalPointX();
+
+		long lStartTime = System.nanoTime();
+		int [] nPath = Astar.findPath(octileGraph, nStartCellID, nGoalCellID, m_context, heuristic);
+		long lTime = System.nanoTime() - lStartTime;
+
+		if (results == null)
+		{
+			return null;
+		}
+
+		results.add(lTime, m_context.getNumClosed());
+		m_totalResults.add(lTime, m_context.getNumClosed());
+
+		// make sure the path is real before measuring it
+		if (nPath.length == 0)
+		{
+			return fail(results, "no path was found");
+		}
+		if ((nPath[0] != nStartCellID) || (nPath[nPath.length - 1] != nGoalCellID)
+				|| (Astar.getPathCost(octileGraph, nPath) < 0))
+		{
+			return fail(results, "the path found is broken");
+		}
+
+		double dLength = octileGraph.getOctileCost(nPath);
+		if (Math.abs(dLength - scenario.getOptimalLength()) > TOLERANCE * Math.max(1, scenario.getOptimalLength()))
+		{
+			return fail(results, "the path found is " + dLength + " long but the best is "
+							+ scenario.getOptimalLength());
+		}
+
+		return null;
+	}
+
+	/**
+	 * Records a failed query
+	 *
+	 * @param results				The results of the bucket of the query
+	 * @param zFailure				What went wrong
+	 * @return						What went wrong
+	 */
+	private String fail(BucketResults results, String zFailure)
+	{
+		if (results != null)
+		{
+			results.m_nNumFailures++;
+			m_totalResults.m_nNumFailures++;
+		}
+
+		return zFailure;
+	}
+
+	/**
+	 * Works out where a map named in a scenario file is. The name is tried as it is, then
+	 * as just the file name, in the map directory or beside the scenario file.
+	 *
+	 * @param zScenarioFile			The name of the scenario file
+	 * @param zMapName				The name of the map as written in the scenario file
+	 * @return						The name of the map file to read
+	 */
+	private String findMapFile(String zScenarioFile, String zMapName)
+	{
+		File mapDir = (m_zMapDir != null) ? new File(m_zMapDir) : new File(zScenarioFile).getAbsoluteFile().getParentFile();
+
+		File mapFile = new File(mapDir, zMapName);
+		if (!mapFile.exists())
+		{
+			mapFile = new File(mapDir, new File(zMapName).getName());
+		}
+
+		return mapFile.getPath();
+	}
+
+	/**
+	 * Provides the results of a bucket, creating them the first time they are asked for
+	 *
+	 * @param nBucket				The bucket number
+	 * @return						The results of the bucket
+	 */
+	private BucketResults getBucketResults(int nBucket)
+	{
+		BucketResults results = (BucketResults)m_bucketResults.get(Integer.valueOf(nBucket));
+		if (results == null)
+		{
+			results = new BucketResults();
+			m_bucketResults.put(Integer.valueOf(nBucket), results);
+		}
+
+		return results;
+	}
+
+	/**
+	 * The number of queries that have failed so far
+	 *
+	 * @return						The number of failed queries
+	 */
+	public int getNumFailures()
+	{
+		return m_totalResults.m_nNumFailures;
+	}
+
+	/**
+	 * Writes the results as CSV, a header line then a line for each bucket and a line
+	 * for all the buckets with a bucket of "all"
+	 *
+	 * @return						The results as CSV
+	 */
+	public String toCsv()
+	{
+		StringBuilder csv = new StringBuilder();
+		csv.append("bucket,queries,failures,p50_us,p90_us,p99_us,max_us,mean_expanded,queries_per_sec\n");
+
+		Iterator iBuckets = m_bucketResults.entrySet().iterator();
+		while (iBuckets.hasNext())
+		{
+			Map.Entry entry = (Map.Entry)iBuckets.next();
+			((BucketResults)entry.getValue()).appendCsv(csv, entry.getKey().toString());
+		}
+		m_totalResults.appendCsv(csv, "all");
+
+		return csv.toString();
+	}
+
+	/**
+	 * Writes the results as JSON, an object holding a list of the buckets and the results
+	 * of all the buckets together
+	 *
+	 * @return						The results as JSON
+	 */
+	public String toJson()
+	{
+		StringBuilder json = new StringBuilder();
+		json.append("{\n  \"buckets\": [");
+
+		Iterator iBuckets = m_bucketResults.entrySet().iterator();
+		while (iBuckets.hasNext())
+		{
+			Map.Entry entry = (Map.Entry)iBuckets.next();
+			json.append("\n    ");
+			((BucketResults)entry.getValue()).appendJson(json, entry.getKey().toString());
+			json.append(iBuckets.hasNext() ? "," : "\n  ");
+		}
+
+		json.append("],\n  \"all\": ");
+		m_totalResults.appendJson(json, "\"all\"");
+		json.append("\n}\n");
+
+		return json.toString();
+	}
+
+	/**
+	 * The BucketResults class keeps the search time and the nodes expanded for each query
+	 * of a bucket, and the number of queries that failed.
+	 *
+	 * @author Jonathan Hanks (jonhanks@gmail.com)
+	 * @version 1.0
+	 *
+	 */
+	private static class BucketResults
+	{
+		/**
+		 * The search time of each query in nanoseconds
+		 */
+		public long [] m_lTimes = new long[64];
+
+		/**
+		 * The number of queries
+		 */
+		public int m_nNumQueries = 0;
+
+		/**
+		 * The number of queries that failed
+		 */
+		public int m_nNumFailures = 0;
+
+		/**
+		 * The number of nodes expanded by all the queries
+		 */
+		public long m_lNumExpanded = 0;
+
+		/**
+		 * Adds a query
+		 *
+		 * @param lTime				The search time of the query in nanoseconds
+		 * @param nNumExpanded		The number of nodes the query expanded
+		 */
+		public void add(long lTime, int nNumExpanded)
+		{
+			if (m_nNumQueries == m_lTimes.length)
+			{
+				m_lTimes = Arrays.copyOf(m_lTimes, m_nNumQueries * 2);
+			}
+
+			m_lTimes[m_nNumQueries++] = lTime;
+			m_lNumExpanded += nNumExpanded;
+		}
+
+		/**
+		 * Adds the fields of the bucket to a CSV line
+		 *
+		 * @param csv				The CSV to add to
+		 * @param zBucket			The name of the bucket
+		 */
+		public void appendCsv(StringBuilder csv, String zBucket)
+		{
+			double [] dFields = getFields();
+
+			csv.append(zBucket).append(',').append(m_nNumQueries).append(',').append(m_nNumFailures);
+			for (int i = 0; i < dFields.length; i++)
+			{
+				csv.append(',').append(format(dFields[i]));
+			}
+			csv.append('\n');
+		}
+
+		/**
+		 * Adds the bucket to JSON as an object
+		 *
+		 * @param json				The JSON to add to
+		 * @param zBucket			The JSON value of the name of the bucket
+		 */
+		public void appendJson(StringBuilder json, String zBucket)
+		{
+			double [] dFields = getFields();
+
+			json.append("{\"bucket\": ").append(zBucket)
+				.append(", \"queries\": ").append(m_nNumQueries)
+				.append(", \"failures\": ").append(m_nNumFailures)
+				.append(", \"p50_us\": ").append(format(dFields[0]))
+				.append(", \"p90_us\": ").append(format(dFields[1]))
+				.append(", \"p99_us\": ").append(format(dFields[2]))
+				.append(", \"max_us\": ").append(format(dFields[3]))
+				.append(", \"mean_expanded\": ").append(format(dFields[4]))
+				.append(", \"queries_per_sec\": ").append(format(dFields[5]))
+				.append('}');
+		}
+
+		/**
+		 * Works out the percentiles, longest time, mean expansions and queries per second
+		 *
+		 * @return					The fields in that order
+		 */
+		private double [] getFields()
+		{
+			if (m_nNumQueries == 0)
+			{
+				return new double[6];
+			}
+
+			long [] lSorted = Arrays.copyOf(m_lTimes, m_nNumQueries);
+			Arrays.sort(lSorted);
+
+			long lTotalTime = 0;
+			for (int i = 0; i < lSorted.length; i++)
+			{
+				lTotalTime += lSorted[i];
+			}
+
+			return new double[] { getPercentile(lSorted, 50) / 1000.0,
+									getPercentile(lSorted, 90) / 1000.0,
+									getPercentile(lSorted, 99) / 1000.0,
+									lSorted[lSorted.length - 1] / 1000.0,
+									(double)m_lNumExpanded / m_nNumQueries,
+									m_nNumQueries / (Math.max(lTotalTime, 1) / 1e9) };
+		}
+
+		/**
+		 * Finds a percentile of sorted times, the time that that percent of the times are no
+		 * longer than
+		 *
+		 * @param lSorted			The times in order
+		 * @param nPercent			The percentile
+		 * @return					The time at the percentile
+		 */
+		private static long getPercentile(long [] lSorted, int nPercent)
+		{
+			int nRank = (int)Math.ceil((nPercent / 100.0) * lSorted.length);
+			return lSorted[Math.max(nRank, 1) - 1];
+		}
+
+		/**
+		 * Formats a number with up to three decimal places
+		 *
+		 * @param dValue			The number
+		 * @return					The number as text
+		 */
+		private static String format(double dValue)
+		{
+			return String.format(Locale.ROOT, "%.3f", dValue);
+		}
+	}
+}
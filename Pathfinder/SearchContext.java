@@ -0,0 +1,366 @@
+/**
+ * A SearchContext holds everything a search needs to keep track of per node (the cost to
+ * reach it, its parent and whether it is open or closed) in flat arrays indexed by node id,
+ * along with the open list. A context is meant to be kept and reused for query after query
+ * so that a search doesn't have to allocate anything but the path it returns.
+ * <p>
+ * Starting a new search doesn't clear the arrays. Every node has a stamp that records the
+ * search that last touched it and each search gets new stamps, so anything left over from
+ * an earlier search is simply out of date. The arrays only have to be cleared when the
+ * stamps run out, which is once every billion or so searches.
+ * <p>
+ * A context can only be used by one search at a time. <code>getThreadContext</code> hands
+ * each thread its own context for code that doesn't want to keep one itself.
+ * <p>
+ * OffHeapSearchContext keeps the same per node arrays outside of the Java heap instead, for
+ * graphs too big for the arrays to sit comfortably on the heap.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.util.*;
+
+public class SearchContext
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The contexts for each thread
+	 */
+	private static final ThreadLocal m_threadContexts = new ThreadLocal()
+	{
+		protected Object initialValue()
+		{
+			return new SearchContext();
+		}
+	};
+
+	/**
+	 * The path returned when there is no path, shared since it can't be changed
+	 */
+	private static final int [] NO_PATH = new int[0];
+
+	/**
+	 * The listener told about the searches of every context that hasn't got its own
+	 */
+	private static volatile SearchListener m_defaultListener = null;
+
+	/**
+	 * The cost to reach each node from the start
+	 */
+	private int [] m_nCosts;
+
+	/**
+	 * The parent of each node (the node it was reached from), -1 for the start
+	 */
+	private int [] m_nParents;
+
+	/**
+	 * The stamp of each node, a node is open in the current search if its stamp is the
+	 * current stamp, closed if it is one more, and hasn't been reached if it is anything else
+	 */
+	private int [] m_nStamps;
+
+	/**
+	 * The open stamp of the current search, it goes up by two for each search
+	 */
+	private int m_nStamp;
+
+	/**
+	 * The number of nodes closed in the current search
+	 */
+	private int m_nNumClosed;
+
+	/**
+	 * The listener told about the searches of this context, null to use the default
+	 */
+	private SearchListener m_listener;
+
+	/**
+	 * The statistics of the last search, filled in only when there is a listener
+	 */
+	private SearchStats m_stats;
+
+	/**
+	 * The open list used by the searches
+	 */
+	private OpenList m_openList;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Default constructor to create the variables for this class, the context uses a
+	 * binary heap for its open list
+	 */
+	public SearchContext()
+	{
+		this(new BinaryHeapOpenList());
+	}
+
+	/**
+	 * Creates the context with the given open list
+	 *
+	 * @param openList			The open list the searches should use
+	 */
+	public SearchContext(OpenList openList)
+	{
+		m_openList = openList;
+		m_nCosts = new int[0];
+		m_nParents = new int[0];
+		m_nStamps = new int[0];
+		m_nStamp = 0;
+		m_stats = new SearchStats();
+	}
+
+	/**
+	 * Provides the context belonging to the current thread, it is created the first time
+	 * the thread asks for it
+	 *
+	 * @return					The context of the current thread
+	 */
+	public static SearchContext getThreadContext()
+	{
+		return (SearchContext)m_threadContexts.get();
+	}
+
+	/**
+	 * Sets the listener told about the searches of every context that hasn't been given
+	 * its own listener, including the contexts of each thread
+	 *
+	 * @param listener			The listener, or null to stop recording searches
+	 */
+	public static void setDefaultListener(SearchListener listener)
+	{
+		m_defaultListener = listener;
+	}
+
+	/**
+	 * Sets the listener told about the searches run in this context
+	 *
+	 * @param listener			The listener, or null to use the default listener
+	 */
+	public void setListener(SearchListener listener)
+	{
+		m_listener = listener;
+	}
+
+	/**
+	 * Provides the listener to tell about the search being run. Searches ask for it once
+	 * as they start and only record their statistics if there is one.
+	 *
+	 * @return					The listener of this context, the default listener if it
+	 * 							hasn't got one, or null if there is neither
+	 */
+	public SearchListener getListener()
+	{
+		return (m_listener != null) ? m_listener : m_defaultListener;
+	}
+
+	/**
+	 * Provides the statistics the searches of this context fill in for their listener
+	 *
+	 * @return					The statistics of the last search
+	 */
+	public SearchStats getStats()
+	{
+		return m_stats;
+	}
+
+	/**
+	 * Gets the context ready for a new search over a graph. This forgets every node of the
+	 * last search and empties the open list, and only grows the arrays if the graph has
+	 * more nodes than any graph searched before.
+	 *
+	 * @param searchGraph		The graph that is about to be searched
+	 */
+	public void begin(SearchGraph searchGraph)
+	{
+		ensureCapacity(searchGraph.getNodeCapacity());
+
+		// move on to fresh stamps, clearing the stamps out if they've run out
+		if (m_nStamp >= Integer.MAX_VALUE - 2)
+		{
+			clearStamps();
+			m_nStamp = 0;
+		}
+		m_nStamp += 2;
+		m_nNumClosed = 0;
+
+		m_openList.clear();
+	}
+
+	/**
+	 * Sets the stamp of every node back to zero, so no node is left with a stamp a new search
+	 * could be given
+	 */
+	protected void clearStamps()
+	{
+		Arrays.fill(m_nStamps, 0);
+	}
+
+	/**
+	 * Provides the open stamp of the current search, a node is open if its stamp is this
+	 * and closed if its stamp is one more
+	 *
+	 * @return					The open stamp
+	 */
+	protected int getOpenStamp()
+	{
+		return m_nStamp;
+	}
+
+	/**
+	 * Adds one to the number of nodes closed in the current search
+	 */
+	protected void countClosed()
+	{
+		m_nNumClosed++;
+	}
+
+	/**
+	 * Makes sure the arrays have room for the given number of node ids
+	 *
+	 * @param nNodeCapacity		The number of node ids needed
+	 */
+	public void ensureCapacity(int nNodeCapacity)
+	{
+		if (nNodeCapacity > m_nStamps.length)
+		{
+			// nothing in the arrays needs to be kept, the new stamps are all out of date
+			m_nCosts = new int[nNodeCapacity];
+			m_nParents = new int[nNodeCapacity];
+			m_nStamps = new int[nNodeCapacity];
+		}
+	}
+
+	/**
+	 * Provides the open list of the context
+	 *
+	 * @return					The open list
+	 */
+	public OpenList getOpenList()
+	{
+		return m_openList;
+	}
+
+	/**
+	 * Whether a node has been reached in the current search, open or closed
+	 *
+	 * @param nNodeID			The id of the node
+	 * @return					<code>true</code> if reached <code>false</code> otherwise
+	 */
+	public boolean isReached(int nNodeID)
+	{
+		int nStampAge = m_nStamps[nNodeID] - m_nStamp;
+		return (nStampAge == 0) || (nStampAge == 1);
+	}
+
+	/**
+	 * Whether a node has been closed (expanded) in the current search
+	 *
+	 * @param nNodeID			The id of the node
+	 * @return					<code>true</code> if closed <code>false</code> otherwise
+	 */
+	public boolean isClosed(int nNodeID)
+	{
+		return m_nStamps[nNodeID] == m_nStamp + 1;
+	}
+
+	/**
+	 * Records that a node has been reached, or reached more cheaply, and marks it open
+	 *
+	 * @param nNodeID			The id of the node
+	 * @param nCost				The cost to reach the node from the start
+	 * @param nParentID			The node it was reached from, -1 for the start
+	 */
+	public void setReached(int nNodeID, int nCost, int nParentID)
+	{
+		m_nCosts[nNodeID] = nCost;
+		m_nParents[nNodeID] = nParentID;
+		m_nStamps[nNodeID] = m_nStamp;
+	}
+
+	/**
+	 * Marks a node that has been reached as closed
+	 *
+	 * @param nNodeID			The id of the node
+	 */
+	public void setClosed(int nNodeID)
+	{
+		m_nStamps[nNodeID] = m_nStamp + 1;
+		m_nNumClosed++;
+	}
+
+	/**
+	 * The number of nodes that have been closed (expanded) in the current search, or in the
+	 * last search once it has finished
+	 *
+	 * @return					The number of nodes closed
+	 */
+	public int getNumClosed()
+	{
+		return m_nNumClosed;
+	}
+
+	/**
+	 * The cost to reach a node in the current search, only valid if it has been reached
+	 *
+	 * @param nNodeID			The id of the node
+	 * @return					The cost to reach the node from the start
+	 */
+	public int getCost(int nNodeID)
+	{
+		return m_nCosts[nNodeID];
+	}
+
+	/**
+	 * The parent of a node in the current search, only valid if it has been reached
+	 *
+	 * @param nNodeID			The id of the node
+	 * @return					The node it was reached from, -1 for the start
+	 */
+	public int getParent(int nNodeID)
+	{
+		return m_nParents[nNodeID];
+	}
+
+	/**
+	 * Follows the parents back from a node that has been reached to the start and returns
+	 * the nodes passed through as a path, in order from the start to the node
+	 *
+	 * @param nNodeID			The id of the node at the end of the path
+	 * @return					The path as an array of node ids
+	 */
+	public int [] tracePath(int nNodeID)
+	{
+		// count the nodes first so the path can be made the right size
+		int nLength = 0;
+		for (int n = nNodeID; n != -1; n = m_nParents[n])
+		{
+			nLength++;
+		}
+
+		// then fill it in from the end
+		int [] nPath = new int[nLength];
+		for (int n = nNodeID; n != -1; n = m_nParents[n])
+		{
+			nPath[--nLength] = n;
+		}
+
+		return nPath;
+	}
+
+	/**
+	 * Provides the path returned by searches that don't find a path
+	 *
+	 * @return					An empty path
+	 */
+	public static int [] noPath()
+	{
+		return NO_PATH;
+	}
+}
@@ -0,0 +1,54 @@
+/**
+ * The SearchEvent is the JDK Flight Recorder event written for each search when a
+ * JfrSearchListener is listening. It holds the same statistics as SearchStats, so slow
+ * searches can be found in a recording alongside the garbage collections and thread
+ * activity around them.
+ * <p>
+ * The event is written once the search has finished, so the time of the search is given
+ * by its wallTime field rather than the duration of the event.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import jdk.jfr.*;
+
+@Name("pathfinder.Search")
+@Label("Path Search")
+@Category("Pathfinder")
+@Description("A path search and the work it did")
+@StackTrace(false)
+public class SearchEvent extends Event
+{
+	/*
+	 * Members
+	 */
+	@Label("Start Node")
+	public int startNode;
+
+	@Label("Goal Node")
+	public int goalNode;
+
+	@Label("Nodes Expanded")
+	public int nodesExpanded;
+
+	@Label("Nodes Generated")
+	public int nodesGenerated;
+
+	@Label("Nodes Reopened")
+	public int nodesReopened;
+
+	@Label("Peak Open List Size")
+	public int peakOpenSize;
+
+	@Label("Path Length")
+	public int pathLength;
+
+	@Label("Path Cost")
+	public int pathCost;
+
+	@Label("Wall Time")
+	@Timespan(Timespan.NANOSECONDS)
+	public long wallTime;
+}
@@ -0,0 +1,64 @@
+/**
+ * The SearchGraph interface is the view of a graph that the pathfinding routines search
+ * over. Nodes are referred to only by their id number and the connections leaving a node
+ * are walked by index, so a search can visit every neighbour of a node without creating
+ * any objects.
+ * <p>
+ * Any connection with a cost of zero is assumed to be untravelable, the same as in Graph.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+public interface SearchGraph
+{
+	/**
+	 * Provides a bound on the node ids in the graph, every node id is less than this value.
+	 * Searches use this to size any arrays they index by node id.
+	 *
+	 * @return				One more than the largest node id in the graph
+	 */
+	public int getNodeCapacity();
+
+	/**
+	 * Get the x position value of a node
+	 *
+	 * @param nNodeID		The id of the node
+	 * @return				The x position of the node
+	 */
+	public int getNodeX(int nNodeID);
+
+	/**
+	 * Get the y position value of a node
+	 *
+	 * @param nNodeID		The id of the node
+	 * @return				The y position of the node
+	 */
+	public int getNodeY(int nNodeID);
+
+	/**
+	 * The number of connections leaving a node
+	 *
+	 * @param nNodeID		The id of the node
+	 * @return				The number of connections from the node
+	 */
+	public int getConnectionCount(int nNodeID);
+
+	/**
+	 * Provides the node at the far end of one of the connections leaving a node
+	 *
+	 * @param nNodeID		The id of the node
+	 * @param nConnection	The index of the connection, from zero to the connection count
+	 * @return				The id of the connected node
+	 */
+	public int getConnectedNodeID(int nNodeID, int nConnection);
+
+	/**
+	 * Provides the cost to travel one of the connections leaving a node
+	 *
+	 * @param nNodeID		The id of the node
+	 * @param nConnection	The index of the connection, from zero to the connection count
+	 * @return				The cost to travel the connection, zero if it can't be travelled
+	 */
+	public int getConnectionCost(int nNodeID, int nConnection);
+}
@@ -0,0 +1,22 @@
+/**
+ * The SearchListener interface is told the statistics of every search run in a
+ * SearchContext it has been given to, see <code>SearchContext.setListener</code>.
+ * <p>
+ * Listeners are called on the thread that ran the search, straight after it finishes and
+ * before the path is returned, so they should be quick. Searches run in a context with no
+ * listener don't record anything.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+public interface SearchListener
+{
+	/**
+	 * Called when a search has finished
+	 *
+	 * @param stats			The statistics of the search, they belong to the context and are
+	 * 						changed by its next search so they must be copied to be kept
+	 */
+	public void searchFinished(SearchStats stats);
+}
@@ -0,0 +1,207 @@
+/**
+ * The SearchScheduler shares a fixed number of node expansions each tick between all of the
+ * ResumableSearches handed to it, so however many queries are running at once a tick never
+ * spends more than its budget on them. Each search gets an even share of the budget, and
+ * the share of a search that finishes early is handed on to the others in the same tick.
+ * Each tick carries on from the search after the last one served, so when there are more
+ * searches than the budget can reach in one tick they still all take their turn in order
+ * and the leftovers of the budget don't always go to the same searches.
+ * <p>
+ * Searches are dropped from the scheduler as soon as they find their path, show there is
+ * none or are cancelled, and the caller looks at their status to see which. A scheduler is
+ * meant to be driven from a single tick thread, but searches can be added to it from any
+ * thread.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.util.*;
+
+public class SearchScheduler
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The most node expansions shared out each tick
+	 */
+	private final int m_nTickBudget;
+
+	/**
+	 * The searches that haven't finished yet, in the order they were added
+	 */
+	private final ArrayList m_vSearches = new ArrayList();
+
+	/**
+	 * The index of the search that is served first next tick
+	 */
+	private int m_nNextSearch;
+
+	/**
+	 * The number of ticks run
+	 */
+	private long m_lNumTicks;
+
+	/**
+	 * The number of nodes expanded over every tick
+	 */
+	private long m_lNumExpanded;
+
+	/**
+	 * The number of searches that have left the scheduler
+	 */
+	private long m_lNumFinished;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates a scheduler
+	 *
+	 * @param nTickBudget		The most node expansions to share out each tick
+	 * @throws IllegalArgumentException	If the budget isn't at least one
+	 */
+	public SearchScheduler(int nTickBudget)
+	{
+		if (nTickBudget < 1)
+		{
+			throw new IllegalArgumentException("The tick budget must be at least one expansion");
+		}
+
+		m_nTickBudget = nTickBudget;
+	}
+
+	/**
+	 * Adds a search to be moved on from the next tick
+	 *
+	 * @param search		The search to add
+	 */
+	public synchronized void submit(ResumableSearch search)
+	{
+		m_vSearches.add(search);
+	}
+
+	/**
+	 * Moves the searches on by up to the tick budget of expansions in all, dropping those
+	 * that finish
+	 *
+	 * @return		The number of nodes expanded this tick
+	 */
+	public synchronized int tick()
+	{
+		int nBudgetLeft = m_nTickBudget;
+
+		// keep sharing out what's left of the budget until it runs out or every search is done
+		while ((nBudgetLeft > 0) && !m_vSearches.isEmpty())
+		{
+			int nNumSearches = m_vSearches.size();
+			int nShare = Math.max(nBudgetLeft / nNumSearches, 1);
+			int nNext = m_nNextSearch % nNumSearches;
+
+			for (int i = 0; (i < nNumSearches) && (nBudgetLeft > 0); i++)
+			{
+				ResumableSearch search = (ResumableSearch)m_vSearches.get(nNext);
+
+				int nNumExpanded = search.getNumExpanded();
+				search.step(Math.min(nShare, nBudgetLeft));
+				nBudgetLeft -= search.getNumExpanded() - nNumExpanded;
+
+				nNext = (nNext + 1) % nNumSearches;
+			}
+
+			// drop the searches that have finished, keeping the rest in order, and move the
+			// next search to be served back by the number of searches dropped before it
+			int nNumLeft = 0;
+			int nNextLeft = 0;
+			for (int i = 0; i < nNumSearches; i++)
+			{
+				ResumableSearch search = (ResumableSearch)m_vSearches.get(i);
+				if (search.isFinished())
+				{
+					m_lNumFinished++;
+				}
+				else
+				{
+					if (i < nNext)
+					{
+						nNextLeft++;
+					}
+					m_vSearches.set(nNumLeft++, search);
+				}
+			}
+			while (m_vSearches.size() > nNumLeft)
+			{
+				m_vSearches.remove(m_vSearches.size() - 1);
+			}
+
+			m_nNextSearch = (nNextLeft < nNumLeft) ? nNextLeft : 0;
+		}
+
+		m_lNumTicks++;
+		m_lNumExpanded += m_nTickBudget - nBudgetLeft;
+
+		return m_nTickBudget - nBudgetLeft;
+	}
+
+	/**
+	 * Cancels every search that hasn't finished and drops them from the scheduler
+	 */
+	public synchronized void cancelAll()
+	{
+		for (int i = 0; i < m_vSearches.size(); i++)
+		{
+			((ResumableSearch)m_vSearches.get(i)).cancel();
+			m_lNumFinished++;
+		}
+
+		m_vSearches.clear();
+	}
+
+	/**
+	 * Get the most node expansions shared out each tick
+	 * @return	the tick budget
+	 */
+	public int getTickBudget()
+	{
+		return m_nTickBudget;
+	}
+
+	/**
+	 * Get the number of searches still running
+	 * @return	the number of searches that haven't finished
+	 */
+	public synchronized int getNumActive()
+	{
+		return m_vSearches.size();
+	}
+
+	/**
+	 * Get the number of ticks run
+	 * @return	the number of ticks
+	 */
+	public synchronized long getNumTicks()
+	{
+		return m_lNumTicks;
+	}
+
+	/**
+	 * Get the number of nodes expanded over every tick
+	 * @return	the number of nodes expanded
+	 */
+	public synchronized long getNumExpanded()
+	{
+		return m_lNumExpanded;
+	}
+
+	/**
+	 * Get the number of searches that have left the scheduler because they found their path,
+	 * showed there is none or were cancelled
+	 * @return	the number of searches finished
+	 */
+	public synchronized long getNumFinished()
+	{
+		return m_lNumFinished;
+	}
+}
@@ -0,0 +1,196 @@
+/**
+ * The SearchStats of a search say how much work it did to find its path: how many nodes it
+ * expanded and generated, how large its open list grew, how many times it found a cheaper
+ * route to a node it had already reached, the path it found and how long it took.
+ * <p>
+ * Each SearchContext keeps one SearchStats that is filled in again by every search run in
+ * it, so recording the statistics allocates nothing. A SearchListener that wants to keep
+ * them past the call has to copy them.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+public class SearchStats
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The start node of the search
+	 */
+	private int m_nStartNodeID;
+
+	/**
+	 * The goal node of the search
+	 */
+	private int m_nGoalNodeID;
+
+	/**
+	 * The number of nodes expanded (closed)
+	 */
+	private int m_nNumExpanded;
+
+	/**
+	 * The number of nodes generated (added to the open list)
+	 */
+	private int m_nNumGenerated;
+
+	/**
+	 * The number of times a cheaper route was found to a node already in the open list
+	 */
+	private int m_nNumReopened;
+
+	/**
+	 * The most nodes the open list held at once
+	 */
+	private int m_nPeakOpenSize;
+
+	/**
+	 * The number of nodes in the path, zero if no path was found
+	 */
+	private int m_nPathLength;
+
+	/**
+	 * The cost of the path, -1 if no path was found
+	 */
+	private int m_nPathCost;
+
+	/**
+	 * How long the search took in nanoseconds
+	 */
+	private long m_lWallTime;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Fills in the statistics of a search
+	 *
+	 * @param nStartNodeID		The start node of the search
+	 * @param nGoalNodeID		The goal node of the search
+	 * @param nNumExpanded		The number of nodes expanded
+	 * @param nNumGenerated		The number of nodes generated
+	 * @param nNumReopened		The number of cheaper routes found to nodes in the open list
+	 * @param nPeakOpenSize		The most nodes the open list held at once
+	 * @param nPathLength		The number of nodes in the path, zero if there is no path
+	 * @param nPathCost			The cost of the path, -1 if there is no path
+	 * @param lWallTime			How long the search took in nanoseconds
+	 */
+	public void set(int nStartNodeID, int nGoalNodeID, int nNumExpanded, int nNumGenerated,
+			int nNumReopened, int nPeakOpenSize, int nPathLength, int nPathCost, long lWallTime)
+	{
+		m_nStartNodeID = nStartNodeID;
+		m_nGoalNodeID = nGoalNodeID;
+		m_nNumExpanded = nNumExpanded;
+		m_nNumGenerated = nNumGenerated;
+		m_nNumReopened = nNumReopened;
+		m_nPeakOpenSize = nPeakOpenSize;
+		m_nPathLength = nPathLength;
+		m_nPathCost = nPathCost;
+		m_lWallTime = lWallTime;
+	}
+
+	/**
+	 * Makes a copy of the statistics that later searches won't change
+	 *
+	 * @return				The copy
+	 */
+	public SearchStats copy()
+	{
+		SearchStats stats = new SearchStats();
+		stats.set(m_nStartNodeID, m_nGoalNodeID, m_nNumExpanded, m_nNumGenerated, m_nNumReopened,
+					m_nPeakOpenSize, m_nPathLength, m_nPathCost, m_lWallTime);
+		return stats;
+	}
+
+	/**
+	 * Get the start node of the search
+	 * @return	the start node of the search
+	 */
+	public int getStartNodeID()
+	{
+		return m_nStartNodeID;
+	}
+
+	/**
+	 * Get the goal node of the search
+	 * @return	the goal node of the search
+	 */
+	public int getGoalNodeID()
+	{
+		return m_nGoalNodeID;
+	}
+
+	/**
+	 * Get the number of nodes expanded
+	 * @return	the number of nodes expanded
+	 */
+	public int getNumExpanded()
+	{
+		return m_nNumExpanded;
+	}
+
+	/**
+	 * Get the number of nodes generated
+	 * @return	the number of nodes generated
+	 */
+	public int getNumGenerated()
+	{
+		return m_nNumGenerated;
+	}
+
+	/**
+	 * Get the number of cheaper routes found to nodes already in the open list
+	 * @return	the number of nodes reopened
+	 */
+	public int getNumReopened()
+	{
+		return m_nNumReopened;
+	}
+
+	/**
+	 * Get the most nodes the open list held at once
+	 * @return	the peak size of the open list
+	 */
+	public int getPeakOpenSize()
+	{
+		return m_nPeakOpenSize;
+	}
+
+	/**
+	 * Get the number of nodes in the path
+	 * @return	the length of the path, zero if no path was found
+	 */
+	public int getPathLength()
+	{
+		return m_nPathLength;
+	}
+
+	/**
+	 * Get the cost of the path
+	 * @return	the cost of the path, -1 if no path was found
+	 */
+	public int getPathCost()
+	{
+		return m_nPathCost;
+	}
+
+	/**
+	 * Get how long the search took
+	 * @return	the time the search took in nanoseconds
+	 */
+	public long getWallTime()
+	{
+		return m_lWallTime;
+	}
+
+	public String toString()
+	{
+		return "search " + m_nStartNodeID + " -> " + m_nGoalNodeID
+				+ ": expanded " + m_nNumExpanded + ", generated " + m_nNumGenerated
+				+ ", reopened " + m_nNumReopened + ", peak open " + m_nPeakOpenSize
+				+ ", path length " + m_nPathLength + ", cost " + m_nPathCost
+				+ ", " + (m_lWallTime / 1000) + " us";
+	}
+}
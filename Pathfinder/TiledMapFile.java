@@ -0,0 +1,273 @@
+/**
+ * The TiledMapFile class reads and writes gridmaps split into square chunks, for worlds too
+ * big to keep in memory all at once. A tiled map is loaded without reading any costs, the
+ * costs are read a chunk at a time by ChunkedCellCosts as the searches reach them and only
+ * a set number of chunks are kept in memory.
+ * <p>
+ * The file starts with a 40 byte header and then holds every chunk a row of chunks at a
+ * time, with every number stored little endian.
+ * <ul>
+ * <li>		Bytes 0 to 3 - The letters TMAP
+ * <li>		Bytes 4 and 5 - The format version, currently 1
+ * <li>		Bytes 6 and 7 - The bits used for each cell, 8 or 16
+ * <li>		Bytes 8 to 15 - The width then the height of the map
+ * <li>		Bytes 16 to 19 - The width and height of a chunk in cells, a power of two
+ * <li>		Bytes 20 to 27 - The x then the y coordinate of the start point
+ * <li>		Bytes 28 to 35 - The x then the y coordinate of the goal point
+ * <li>		Bytes 36 to 39 - The cost of the cheapest cell that can be moved into, zero if none
+ * <li>		Byte 40 on - The chunks, each holding the cost of its cells a row at a time as
+ * 			unsigned numbers. The chunks along the right and bottom edges are padded out to
+ * 			full size with cells that can't be moved into.
+ * </ul>
+ * Running the class converts a map read by GridMap to a tiled map:
+ * <pre>
+ * java TiledMapFile Map.txt Map.tmap 64
+ * </pre>
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+public class TiledMapFile
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The first four bytes of every tiled map, the letters TMAP read as a little endian int
+	 */
+	public static final int MAGIC = 0x50414D54;
+
+	/**
+	 * The version of the format written
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * The size of the header in bytes, the chunks start straight after it
+	 */
+	public static final int HEADER_SIZE = 40;
+
+	/**
+	 * The width and height of the chunks written when no size is given
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 64;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Loads a tiled map. Only the header is read, the costs are read a chunk at a time as
+	 * they are looked at. Changed costs are written back to the file, and if the file can
+	 * only be opened for reading the costs can't be changed at all.
+	 *
+	 * @param zFileName				The name of the tiled map file
+	 * @param nMaxResidentChunks	The most chunks to keep in memory at once
+	 * @return						The map, its cell costs are a ChunkedCellCosts
+	 * @throws IOException			If the file can't be read or isn't a tiled map
+	 */
+	public static MapFile load(String zFileName, int nMaxResidentChunks) throws IOException
+	{
+		// the costs check the rest of the header, the points are only read out of it here
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		RandomAccessFile tiledFile = new RandomAccessFile(zFileName, "r");
+		try
+		{
+			tiledFile.readFully(header.array());
+		}
+		catch (EOFException e)
+		{
+			throw new IOException(zFileName + " is too short to be a tiled map");
+		}
+		finally
+		{
+			tiledFile.close();
+		}
+
+		MapFile.checkPoint(zFileName, "start", header.getInt(20), header.getInt(24), header.getInt(8), header.getInt(12));
+		MapFile.checkPoint(zFileName, "goal", header.getInt(28), header.getInt(32), header.getInt(8), header.getInt(12));
+
+		ChunkedCellCosts costs = new ChunkedCellCosts(zFileName, nMaxResidentChunks);
+
+		return new MapFile(header.getInt(8), header.getInt(12), header.getInt(20), header.getInt(24),
+							header.getInt(28), header.getInt(32), costs);
+	}
+
+	/**
+	 * Writes a map to a tiled map file, packing the costs into as few bits as they fit in
+	 *
+	 * @param mapFile			The map to write
+	 * @param zFileName			The name of the file to write
+	 * @param nChunkSize		The width and height of each chunk in cells, a power of two up
+	 * 							to 4096
+	 * @throws IOException		If the file can't be written
+	 * @throws IllegalArgumentException	If the chunk size isn't a power of two or a cost is
+	 * 							too big to fit in 16 bits
+	 */
+	public static void save(MapFile mapFile, String zFileName, int nChunkSize) throws IOException
+	{
+		if ((nChunkSize <= 0) || (Integer.bitCount(nChunkSize) != 1) || (nChunkSize > 4096))
+		{
+			throw new IllegalArgumentException("The chunk size must be a power of two up to 4096, not " + nChunkSize);
+		}
+
+		int nWidth = mapFile.getWidth();
+		int nHeight = mapFile.getHeight();
+		CellCosts costs = mapFile.getCellCosts();
+		int nNumCells = nWidth * nHeight;
+
+		// find the fewest bits the costs fit in and the cheapest cost
+		int nMaxCost = 0;
+		int nMinCost = 0;
+		for (int i = 0; i < nNumCells; i++)
+		{
+			int nCost = costs.getCost(i);
+			nMaxCost = Math.max(nMaxCost, nCost);
+			if ((nCost > 0) && ((nMinCost == 0) || (nCost < nMinCost)))
+			{
+				nMinCost = nCost;
+			}
+		}
+		if (nMaxCost > 0xFFFF)
+		{
+			throw new IllegalArgumentException("A cost of " + nMaxCost + " is too big for a tiled map");
+		}
+		int nBitsPerCell = (nMaxCost > 0xFF) ? 16 : 8;
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC);
+		header.putShort((short)VERSION);
+		header.putShort((short)nBitsPerCell);
+		header.putInt(nWidth);
+		header.putInt(nHeight);
+		header.putInt(nChunkSize);
+		header.putInt(mapFile.getStartPointX());
+		header.putInt(mapFile.getStartPointY());
+		header.putInt(mapFile.getGoalPointX());
+		header.putInt(mapFile.getGoalPointY());
+		header.putInt(nMinCost);
+		header.flip();
+
+		RandomAccessFile tiledFile = new RandomAccessFile(zFileName, "rw");
+
+		try
+		{
+			tiledFile.setLength(0);
+			FileChannel channel = tiledFile.getChannel();
+			writeFully(channel, header);
+
+			// write the chunks one at a time so only one is ever in memory
+			int nChunksX = (nWidth + nChunkSize - 1) / nChunkSize;
+			int nChunksY = (nHeight + nChunkSize - 1) / nChunkSize;
+			ByteBuffer chunk = ByteBuffer.allocate(nChunkSize * nChunkSize * (nBitsPerCell / 8))
+											.order(ByteOrder.LITTLE_ENDIAN);
+
+			for (int nChunkY = 0; nChunkY < nChunksY; nChunkY++)
+			{
+				for (int nChunkX = 0; nChunkX < nChunksX; nChunkX++)
+				{
+					chunk.clear();
+					for (int j = 0; j < nChunkSize; j++)
+					{
+						int nY = (nChunkY * nChunkSize) + j;
+						for (int i = 0; i < nChunkSize; i++)
+						{
+							int nX = (nChunkX * nChunkSize) + i;
+							int nCost = ((nX < nWidth) && (nY < nHeight)) ? costs.getCost((nY * nWidth) + nX) : 0;
+
+							if (nBitsPerCell == 8)
+							{
+								chunk.put((byte)nCost);
+							}
+							else
+							{
+								chunk.putShort((short)nCost);
+							}
+						}
+					}
+					chunk.flip();
+					writeFully(channel, chunk);
+				}
+			}
+		}
+		finally
+		{
+			tiledFile.close();
+		}
+	}
+
+	/**
+	 * Writes everything left in a buffer to the end of a channel
+	 *
+	 * @param channel			The channel to write to
+	 * @param buffer			The buffer to write
+	 * @throws IOException		If the buffer can't be written
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Converts the map named by the first argument to the tiled map named by the second,
+	 * with chunks the size of the third argument if it is given. The map can be in the text
+	 * format, a binary map ending in ".gmap" or a Moving AI map ending in ".map".
+	 *
+	 * @param args		The map, the tiled map and the chunk size
+	 */
+	public static void main(String[] args)
+	{
+		if ((args.length != 2) && (args.length != 3))
+		{
+			System.err.println("Usage: java TiledMapFile <map> <tiled map> [chunk size]");
+			return;
+		}
+
+		GridMap gridMap = new GridMap();
+		boolean bInitialized;
+		if (args[0].endsWith(".gmap"))
+		{
+			bInitialized = gridMap.InitBinary(args[0]);
+		}
+		else if (args[0].endsWith(".map"))
+		{
+			bInitialized = gridMap.InitMovingAi(args[0]);
+		}
+		else
+		{
+			bInitialized = gridMap.Init(args[0]);
+		}
+
+		if (!bInitialized)
+		{
+			return;
+		}
+
+		try
+		{
+			int nChunkSize = (args.length == 3) ? Integer.parseInt(args[2]) : DEFAULT_CHUNK_SIZE;
+			save(gridMap.toMapFile(), args[1], nChunkSize);
+			System.out.println("Completed!");
+		}
+		catch (NumberFormatException e)
+		{
+			System.err.println("The chunk size must be a number: " + args[2]);
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.err.println("Cannot write the tiled map: " + e.getMessage());
+		}
+		catch (IOException e)
+		{
+			System.err.println("Cannot write the tiled map: " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,63 @@
+/**
+ * The WeightedHeuristic multiplies the estimate of another heuristic by a weight of one or
+ * more. A* with a weighted heuristic (Weighted A*) heads for the goal more greedily and
+ * expands far fewer nodes, and as long as the heuristic it weights never overestimates the
+ * path it finds costs no more than the weight times the cost of the best path. A weight of
+ * 1.2 gives a path within 20% of the best.
+ *
+ * @author Jonathan Hanks (jonhanks@gmail.com)
+ * @version 1.0
+ *
+ */
+public class WeightedHeuristic implements Heuristic
+{
+	/*
+	 * Members
+	 */
+	/**
+	 * The heuristic being weighted
+	 */
+	private final Heuristic m_heuristic;
+
+	/**
+	 * The weight the estimates are multiplied by
+	 */
+	private final double m_dWeight;
+
+	/*
+	 * Functions
+	 */
+	/**
+	 * Creates the weighted heuristic
+	 *
+	 * @param heuristic			The heuristic to weight
+	 * @param dWeight			The weight, at least one
+	 */
+	public WeightedHeuristic(Heuristic heuristic, double dWeight)
+	{
+		if (!(dWeight >= 1))
+		{
+			throw new IllegalArgumentException("The weight can't be less than one");
+		}
+
+		m_heuristic = heuristic;
+		m_dWeight = dWeight;
+	}
+
+	/**
+	 * Provides the weight
+	 *
+	 * @return					The weight the estimates are multiplied by
+	 */
+	public double getWeight()
+	{
+		return m_dWeight;
+	}
+
+	public int getEstimate(SearchGraph searchGraph, int nFromNodeID, int nToNodeID)
+	{
+		// rounding down keeps the bound
+		return (int)Math.min(m_dWeight * m_heuristic.getEstimate(searchGraph, nFromNodeID, nToNodeID),
+								Integer.MAX_VALUE / 2);
+	}
+}